@@ -0,0 +1,145 @@
+/**
+ * 
+ */
+package simdeLite.bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Scanner;
+import java.util.TreeMap;
+
+import simdeLite.Code;
+import simdeLite.FunctionalUnit;
+
+/**
+ * Ficheros (.pla, .vliw y .mem) de un programa de prueba, generados en un directorio temporal
+ * @author Iván Castilla
+ *
+ */
+public class BenchmarkFiles {
+	/** Latencias por defecto de las UF, las mismas que usan los simuladores */
+	public final static int[] LATENCIES = {1, 2, 4, 6, 4, 2};
+	/** Directorio temporal donde se crean los ficheros */
+	private final Path dir;
+	/** Fichero con el código secuencial */
+	private final String plaFileName;
+	/** Fichero con la planificación VLIW */
+	private final String vliwFileName;
+	/** Fichero con el contenido inicial de memoria y registros */
+	private final String memFileName;
+	/** Fichero para la imagen binaria del contenido inicial de memoria y registros, que crea quien la necesite */
+	private final String memImageFileName;
+	/** Configuración de UF para la que se generó la planificación VLIW */
+	private final TreeMap<FunctionalUnit, Integer> configuration;
+	/** Número de palabras de memoria que necesita el programa */
+	private final int memSize;
+
+	/**
+	 * Genera los ficheros de un programa de prueba
+	 * @param program Programa de prueba
+	 * @param size Tamaño del problema
+	 * @param config Configuración de la máquina VLIW, expresada como número de UF de cada tipo, separadas por comas
+	 * @throws IOException Si no se pueden crear los ficheros
+	 */
+	public BenchmarkFiles(BenchmarkProgram program, int size, String config) throws IOException {
+		dir = Files.createTempDirectory("simdeBench");
+		plaFileName = write(program.name().toLowerCase() + ".pla", program.getCode(size));
+		memFileName = write(program.name().toLowerCase() + ".mem", program.getMemory(size));
+		memImageFileName = dir.resolve(program.name().toLowerCase() + ".img").toString();
+		configuration = getConfiguration(config);
+		final Code code = Code.loadCode(plaFileName);
+		vliwFileName = write(program.name().toLowerCase() + ".vliw", new ListScheduler(configuration, LATENCIES).schedule(code));
+		memSize = program.getMemorySize(size);
+	}
+	
+	/**
+	 * Crea una configuración de máquina a partir de una lista de números separados por comas, igual que el simulador VLIW
+	 * @param config lista de números separados por comas donde cada número corresponde a un tipo de unidad funcional
+	 * @return Una configuración de máquina
+	 */
+	public static TreeMap<FunctionalUnit, Integer> getConfiguration(String config) {
+		final TreeMap<FunctionalUnit, Integer> configuration = new TreeMap<>();
+		final Scanner scan = new Scanner(config);
+		scan.useDelimiter(",");
+		for (int i = 0; i < FunctionalUnit.values().length - 1; i++) {
+			configuration.put(FunctionalUnit.values()[i], scan.hasNextInt() ? scan.nextInt() : 1);
+		}
+		configuration.put(FunctionalUnit.JUMP,  1);		
+		scan.close();
+		return configuration;
+	}
+	
+	/**
+	 * Escribe un fichero en el directorio temporal
+	 * @param name Nombre del fichero
+	 * @param content Contenido del fichero
+	 * @return Ruta completa del fichero
+	 * @throws IOException Si no se puede escribir el fichero
+	 */
+	private String write(String name, String content) throws IOException {
+		final Path path = dir.resolve(name);
+		Files.write(path, content.getBytes(StandardCharsets.UTF_8));
+		return path.toString();
+	}
+	
+	/**
+	 * Borra los ficheros generados
+	 */
+	public void delete() {
+		for (String fileName : new String[] {plaFileName, vliwFileName, memFileName, memImageFileName})
+			new File(fileName).delete();
+		dir.toFile().delete();
+	}
+
+	/**
+	 * Devuelve el nombre del fichero con el código secuencial
+	 * @return Nombre del fichero con el código secuencial
+	 */
+	public String getPlaFileName() {
+		return plaFileName;
+	}
+
+	/**
+	 * Devuelve el nombre del fichero con la planificación VLIW
+	 * @return Nombre del fichero con la planificación VLIW
+	 */
+	public String getVliwFileName() {
+		return vliwFileName;
+	}
+
+	/**
+	 * Devuelve el nombre del fichero con el contenido inicial de memoria y registros
+	 * @return Nombre del fichero con el contenido inicial de memoria y registros
+	 */
+	public String getMemFileName() {
+		return memFileName;
+	}
+
+	/**
+	 * Devuelve el nombre del fichero para la imagen binaria ({@link simdeLite.MemoryImage}) del contenido inicial de memoria y registros. 
+	 * El fichero no existe hasta que se guarda en él el estado de una máquina
+	 * @return Nombre del fichero para la imagen binaria del contenido inicial de memoria y registros
+	 */
+	public String getMemImageFileName() {
+		return memImageFileName;
+	}
+
+	/**
+	 * Devuelve la configuración de UF para la que se generó la planificación VLIW
+	 * @return Configuración de UF para la que se generó la planificación VLIW
+	 */
+	public TreeMap<FunctionalUnit, Integer> getConfiguration() {
+		return configuration;
+	}
+
+	/**
+	 * Devuelve el número de palabras de memoria que necesita el programa
+	 * @return Número de palabras de memoria que necesita el programa
+	 */
+	public int getMemSize() {
+		return memSize;
+	}
+}
@@ -0,0 +1,254 @@
+/**
+ * 
+ */
+package simdeLite.bench;
+
+import java.util.Random;
+
+/**
+ * Programas representativos que se usan en las pruebas de rendimiento de los simuladores. Son versiones en pseudoMIPS de los ejemplos 
+ * del paquete "samples": multiplicación de matrices, filtro de Sobel y ordenación por burbuja bidireccional. Cada programa se genera 
+ * para un tamaño de problema concreto, junto con el contenido inicial de la memoria.
+ * @author Iván Castilla
+ *
+ */
+public enum BenchmarkProgram {
+	/** Multiplicación de dos matrices enteras de tamaño n x n. A empieza en 0, B en n*n y C en 2*n*n */
+	MATRIX {
+		@Override
+		public String getCode(int n) {
+			final StringBuilder str = new StringBuilder();
+			line(str, "ADDI	R10 R0 #" + n);
+			line(str, "ADDI	R11 R0 #" + (n * n));
+			line(str, "ADDI	R12 R0 #" + (2 * n * n));
+			line(str, "ADDI	R1 R0 #0");
+			line(str, "ADDI	R20 R0 #0");
+			label(str, "LOOPI");
+			line(str, "ADDI	R2 R0 #0");
+			label(str, "LOOPJ");
+			line(str, "ADDI	R3 R0 #0");
+			line(str, "ADDI	R5 R0 #0");
+			line(str, "ADDI	R6 R20 #0");
+			line(str, "ADD	R7 R11 R2");
+			label(str, "LOOPK");
+			line(str, "LW	R8 (R6)");
+			line(str, "LW	R9 (R7)");
+			line(str, "MULT	R13 R8 R9");
+			line(str, "ADD	R5 R5 R13");
+			line(str, "ADDI	R6 R6 #1");
+			line(str, "ADD	R7 R7 R10");
+			line(str, "ADDI	R3 R3 #1");
+			line(str, "BNE	R3 R10 LOOPK");
+			line(str, "ADD	R14 R12 R20");
+			line(str, "ADD	R14 R14 R2");
+			line(str, "SW	R5 (R14)");
+			line(str, "ADDI	R2 R2 #1");
+			line(str, "BNE	R2 R10 LOOPJ");
+			line(str, "ADD	R20 R20 R10");
+			line(str, "ADDI	R1 R1 #1");
+			line(str, "BNE	R1 R10 LOOPI");
+			return finish(str);
+		}
+
+		@Override
+		public String getMemory(int n) {
+			final Random rnd = new Random(n);
+			final StringBuilder str = new StringBuilder();
+			str.append("[0]");
+			for (int i = 0; i < 2 * n * n; i++)
+				str.append(" " + (rnd.nextInt(10) + 1));
+			return memory(str);
+		}
+
+		@Override
+		public int getMemorySize(int n) {
+			return 3 * n * n;
+		}
+	},
+	/** Filtro de Sobel (gradiente horizontal) sobre una imagen en punto flotante de tamaño n x n. La imagen empieza en 0, el resultado en n*n */
+	SOBEL {
+		@Override
+		public String getCode(int n) {
+			final StringBuilder str = new StringBuilder();
+			line(str, "ADDI	R10 R0 #" + n);
+			line(str, "ADDI	R11 R0 #" + (n - 1));
+			line(str, "ADDI	R12 R0 #" + (n * n));
+			line(str, "ADDI	R13 R0 #" + (2 * n * n));
+			line(str, "LF	F10 (R13)");
+			line(str, "ADDI	R1 R0 #1");
+			label(str, "LOOPI");
+			line(str, "MULT	R4 R1 R10");
+			line(str, "ADDI	R2 R0 #1");
+			label(str, "LOOPJ");
+			line(str, "ADD	R5 R4 R2");
+			line(str, "LF	F1 " + (-n - 1) + "(R5)");
+			line(str, "LF	F2 " + (-n + 1) + "(R5)");
+			line(str, "LF	F3 -1(R5)");
+			line(str, "LF	F4 1(R5)");
+			line(str, "LF	F5 " + (n - 1) + "(R5)");
+			line(str, "LF	F6 " + (n + 1) + "(R5)");
+			line(str, "SUBF	F7 F2 F1");
+			line(str, "SUBF	F8 F4 F3");
+			line(str, "SUBF	F9 F6 F5");
+			line(str, "MULTF	F8 F8 F10");
+			line(str, "ADDF	F7 F7 F9");
+			line(str, "ADDF	F7 F7 F8");
+			line(str, "ADD	R6 R5 R12");
+			line(str, "SF	F7 (R6)");
+			line(str, "ADDI	R2 R2 #1");
+			line(str, "BNE	R2 R11 LOOPJ");
+			line(str, "ADDI	R1 R1 #1");
+			line(str, "BNE	R1 R11 LOOPI");
+			return finish(str);
+		}
+
+		@Override
+		public String getMemory(int n) {
+			final Random rnd = new Random(n);
+			final StringBuilder str = new StringBuilder();
+			str.append("[0]");
+			for (int i = 0; i < n * n; i++)
+				str.append(" " + (double)rnd.nextInt(256));
+			str.append(System.lineSeparator());
+			// Factor del filtro
+			str.append("[" + (2 * n * n) + "] 2.0");
+			return memory(str);
+		}
+
+		@Override
+		public int getMemorySize(int n) {
+			return 2 * n * n + 1;
+		}
+	},
+	/** Ordenación por burbuja bidireccional de un vector de n enteros distintos que empieza en 0 */
+	BUBBLE {
+		@Override
+		public String getCode(int n) {
+			final StringBuilder str = new StringBuilder();
+			// R1 <- izq, R2 <- der, R3 <- ultimo, R4 <- i
+			line(str, "ADDI	R1 R0 #0");
+			line(str, "ADDI	R2 R0 #" + n);
+			line(str, "ADDI	R3 R0 #" + (n - 1));
+			label(str, "OUTER");
+			line(str, "ADDI	R4 R2 #-1");
+			line(str, "BGT	R4 R1 DOWN");
+			line(str, "BEQ	R0 R0 ENDDOWN");
+			label(str, "DOWN");
+			line(str, "LW	R5 -1(R4)");
+			line(str, "LW	R6 (R4)");
+			line(str, "BGT	R6 R5 NOSWAP1");
+			line(str, "SW	R6 -1(R4)");
+			line(str, "SW	R5 (R4)");
+			line(str, "ADDI	R3 R4 #0");
+			label(str, "NOSWAP1");
+			line(str, "ADDI	R4 R4 #-1");
+			line(str, "BGT	R4 R1 DOWN");
+			label(str, "ENDDOWN");
+			line(str, "ADDI	R1 R3 #0");
+			line(str, "ADDI	R4 R1 #1");
+			line(str, "BGT	R2 R4 UP");
+			line(str, "BEQ	R0 R0 ENDUP");
+			label(str, "UP");
+			line(str, "LW	R5 -1(R4)");
+			line(str, "LW	R6 (R4)");
+			line(str, "BGT	R6 R5 NOSWAP2");
+			line(str, "SW	R6 -1(R4)");
+			line(str, "SW	R5 (R4)");
+			line(str, "ADDI	R3 R4 #0");
+			label(str, "NOSWAP2");
+			line(str, "ADDI	R4 R4 #1");
+			line(str, "BGT	R2 R4 UP");
+			label(str, "ENDUP");
+			line(str, "ADDI	R2 R3 #0");
+			line(str, "BGT	R2 R1 OUTER");
+			return finish(str);
+		}
+
+		@Override
+		public String getMemory(int n) {
+			// Una permutación aleatoria de 1..n
+			final Random rnd = new Random(n);
+			final int[] values = new int[n];
+			for (int i = 0; i < n; i++)
+				values[i] = i + 1;
+			for (int i = n - 1; i > 0; i--) {
+				final int j = rnd.nextInt(i + 1);
+				final int aux = values[i];
+				values[i] = values[j];
+				values[j] = aux;
+			}
+			final StringBuilder str = new StringBuilder();
+			str.append("[0]");
+			for (int value : values)
+				str.append(" " + value);
+			return memory(str);
+		}
+
+		@Override
+		public int getMemorySize(int n) {
+			return n;
+		}
+	};
+	
+	/**
+	 * Devuelve el código secuencial en pseudoMIPS del programa, con el mismo formato que los ficheros .pla de SIMDE
+	 * @param n Tamaño del problema
+	 * @return Código secuencial del programa
+	 */
+	public abstract String getCode(int n);
+	
+	/**
+	 * Devuelve el contenido inicial de memoria y registros del programa, con el mismo formato que los ficheros .mem de SIMDE
+	 * @param n Tamaño del problema
+	 * @return Contenido inicial de memoria y registros del programa
+	 */
+	public abstract String getMemory(int n);
+	
+	/**
+	 * Devuelve el número de palabras de memoria que necesita el programa
+	 * @param n Tamaño del problema
+	 * @return Número de palabras de memoria que necesita el programa
+	 */
+	public abstract int getMemorySize(int n);
+
+	/**
+	 * Añade una instrucción al código
+	 * @param str Código
+	 * @param inst Instrucción
+	 */
+	private static void line(StringBuilder str, String inst) {
+		str.append("\t" + inst + System.lineSeparator());
+	}
+	
+	/**
+	 * Añade una etiqueta al código
+	 * @param str Código
+	 * @param label Etiqueta
+	 */
+	private static void label(StringBuilder str, String label) {
+		str.append(label + ":" + System.lineSeparator());
+	}
+
+	/**
+	 * Completa el código añadiendo al comienzo el número de instrucciones, como en los ficheros de SIMDE
+	 * @param str Código
+	 * @return El código completo
+	 */
+	private static String finish(StringBuilder str) {
+		int nLines = 0;
+		for (String line : str.toString().split(System.lineSeparator())) {
+			if (line.startsWith("\t"))
+				nLines++;
+		}
+		return nLines + System.lineSeparator() + str;
+	}
+	
+	/**
+	 * Completa el contenido de memoria añadiendo las cabeceras de registros y memoria
+	 * @param str Contenido de memoria
+	 * @return El contenido de memoria y registros completo
+	 */
+	private static String memory(StringBuilder str) {
+		return "#GPR" + System.lineSeparator() + "#FPR" + System.lineSeparator() + "#MEM" + System.lineSeparator() + str + System.lineSeparator();
+	}
+}
@@ -0,0 +1,31 @@
+/**
+ * 
+ */
+package simdeLite.bench;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Contador auxiliar de JMH con el número de ciclos simulados. Como es de tipo "OPERATIONS", JMH lo muestra como ciclos simulados por 
+ * unidad de tiempo, junto al número de ejecuciones por unidad de tiempo
+ * @author Iván Castilla
+ *
+ */
+@State(Scope.Thread)
+@AuxCounters(AuxCounters.Type.OPERATIONS)
+public class CycleCounter {
+	/** Ciclos simulados durante la iteración actual */
+	public long cycles;
+
+	/**
+	 * Reinicia el contador al comienzo de cada iteración
+	 */
+	@Setup(Level.Iteration)
+	public void clean() {
+		cycles = 0;
+	}
+}
@@ -0,0 +1,203 @@
+/**
+ * 
+ */
+package simdeLite.bench;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeMap;
+
+import simdeLite.Code;
+import simdeLite.FunctionalUnit;
+import simdeLite.Instruction;
+
+/**
+ * Un planificador de listas muy simple que genera una planificación VLIW válida (con el formato de los ficheros .vliw de SIMDE) para 
+ * un código secuencial. Planifica cada bloque básico por separado, colocando cada instrucción en la primera instrucción larga que 
+ * respeta las dependencias de datos y el número de UF. El salto se coloca al final del bloque, de manera que todas las operaciones del 
+ * bloque hayan terminado cuando se resuelve el salto. No usa predicados.
+ * Se usa para generar los programas de las pruebas de rendimiento, por lo que no pretende obtener planificaciones óptimas.
+ * @author Iván Castilla
+ *
+ */
+public class ListScheduler {
+	/** Número de registros de cada tipo */
+	private final static int NREG = 64;
+	/** Índice del "registro" que representa a la memoria a efectos de dependencias */
+	private final static int MEM = 2 * NREG;
+	/** Número de unidades funcionales de cada tipo */
+	private final TreeMap<FunctionalUnit, Integer> configuration;
+	/** Latencia de cada tipo de UF */
+	private final int[] latencies;
+	
+	/**
+	 * Crea un planificador para la configuración y latencias indicadas
+	 * @param configuration Número de unidades funcionales de cada tipo
+	 * @param latencies Latencia de cada tipo de UF
+	 */
+	public ListScheduler(TreeMap<FunctionalUnit, Integer> configuration, int[] latencies) {
+		this.configuration = configuration;
+		this.latencies = latencies;
+	}
+
+	/**
+	 * Planifica el código y devuelve la planificación con el formato de los ficheros .vliw de SIMDE
+	 * @param code Código secuencial
+	 * @return La planificación con el formato de los ficheros .vliw de SIMDE
+	 */
+	public String schedule(Code code) {
+		final List<Instruction> instructions = code.getInstructions();
+		final int[] issue = new int[instructions.size()];
+		final int[] fuIndex = new int[instructions.size()];
+		final int[] blockStart = new int[instructions.size()];
+		final ArrayList<Integer> blockFirst = new ArrayList<>();
+		final ArrayList<Integer> blockLength = new ArrayList<>();
+		
+		int first = 0;
+		int start = 0;
+		while (first < instructions.size()) {
+			int last = first;
+			while (last + 1 < instructions.size() && instructions.get(last + 1).getBasicBlock() == instructions.get(first).getBasicBlock())
+				last++;
+			final int length = scheduleBlock(instructions, first, last, issue, fuIndex);
+			for (int i = first; i <= last; i++)
+				blockStart[i] = start;
+			blockFirst.add(first);
+			blockLength.add(length);
+			start += length;
+			first = last + 1;
+		}
+		
+		final StringBuilder str = new StringBuilder();
+		str.append(start + System.lineSeparator());
+		for (int block = 0; block < blockFirst.size(); block++) {
+			final int bFirst = blockFirst.get(block);
+			for (int cycle = 0; cycle < blockLength.get(block); cycle++) {
+				final StringBuilder line = new StringBuilder();
+				int nOpers = 0;
+				for (int inst = bFirst; inst < instructions.size() && blockStart[inst] == blockStart[bFirst]; inst++) {
+					if (issue[inst] == cycle) {
+						final Instruction in = instructions.get(inst);
+						final FunctionalUnit fu = in.getOpcode().getFU();
+						line.append(" " + in.getId() + " " + fu.ordinal() + " " + fuIndex[inst] + " 0");
+						if (FunctionalUnit.JUMP.equals(fu))
+							line.append(" " + blockStart[in.getOp(2)] + " 0 0");
+						nOpers++;
+					}
+				}
+				str.append(nOpers).append(line).append(System.lineSeparator());
+			}
+		}
+		return str.toString();
+	}
+	
+	/**
+	 * Planifica un bloque básico
+	 * @param instructions Instrucciones del código
+	 * @param first Primera instrucción del bloque
+	 * @param last Última instrucción del bloque
+	 * @param issue Array donde se guarda la instrucción larga (relativa al comienzo del bloque) en la que se lanza cada instrucción
+	 * @param fuIndex Array donde se guarda el índice de la UF que ejecuta cada instrucción
+	 * @return Número de instrucciones largas que ocupa el bloque
+	 */
+	private int scheduleBlock(List<Instruction> instructions, int first, int last, int[] issue, int[] fuIndex) {
+		// Ciclo a partir del cual está disponible el resultado de cada registro
+		final int[] ready = new int[MEM + 1];
+		// Ciclo en el que termina la última escritura de cada registro
+		final int[] lastWrite = new int[MEM + 1];
+		// Último ciclo en que se lee cada registro
+		final int[] lastRead = new int[MEM + 1];
+		Arrays.fill(lastWrite, -1);
+		Arrays.fill(lastRead, -1);
+		final ArrayList<int[]> used = new ArrayList<>();
+		int length = 0;
+		int end = 0;
+		for (int i = first; i <= last; i++) {
+			final Instruction inst = instructions.get(i);
+			final FunctionalUnit fu = inst.getOpcode().getFU();
+			final int lat = latencies[fu.ordinal()];
+			final int[] sources = getSources(inst);
+			final int dest = getDestination(inst);
+			int cycle = 0;
+			for (int src : sources)
+				cycle = Math.max(cycle, ready[src]);
+			if (dest != -1) {
+				// La escritura debe terminar después de la escritura anterior y de la última lectura
+				cycle = Math.max(cycle, lastWrite[dest] - lat + 2);
+				cycle = Math.max(cycle, lastRead[dest] - lat + 1);
+			}
+			if (FunctionalUnit.JUMP.equals(fu)) {
+				// El salto se resuelve cuando ya han terminado todas las operaciones del bloque
+				for (int j = first; j < i; j++)
+					cycle = Math.max(cycle, issue[j]);
+				cycle = Math.max(cycle, end - lat);
+			}
+			while (true) {
+				while (used.size() <= cycle)
+					used.add(new int[FunctionalUnit.values().length]);
+				if (used.get(cycle)[fu.ordinal()] < configuration.get(fu))
+					break;
+				cycle++;
+			}
+			issue[i] = cycle;
+			fuIndex[i] = used.get(cycle)[fu.ordinal()]++;
+			for (int src : sources)
+				lastRead[src] = Math.max(lastRead[src], cycle);
+			if (dest != -1) {
+				ready[dest] = cycle + lat;
+				lastWrite[dest] = cycle + lat - 1;
+			}
+			end = Math.max(end, cycle + lat);
+			length = Math.max(length, cycle + 1);
+		}
+		return Math.max(length, end);
+	}
+	
+	/**
+	 * Devuelve los registros (o la memoria) que lee una instrucción
+	 * @param inst Instrucción
+	 * @return Registros (o la memoria) que lee una instrucción
+	 */
+	private static int[] getSources(Instruction inst) {
+		final int[] op = inst.getOp();
+		switch (inst.getOpcode()) {
+		case ADDI:	return new int[] {op[1]};
+		case ADDF:
+		case SUBF:
+		case MULTF:	return new int[] {NREG + op[1], NREG + op[2]};
+		case LW:
+		case LF:	return new int[] {op[2], MEM};
+		case SW:	return new int[] {op[0], op[2], MEM};
+		case SF:	return new int[] {NREG + op[0], op[2], MEM};
+		case BEQF:
+		case BGTF:
+		case BNEF:	return new int[] {NREG + op[0], NREG + op[1]};
+		case BEQ:
+		case BGT:
+		case BNE:	return new int[] {op[0], op[1]};
+		default:	return new int[] {op[1], op[2]};
+		}
+	}
+	
+	/**
+	 * Devuelve el registro (o la memoria) que escribe una instrucción, o -1 si no escribe ninguno
+	 * @param inst Instrucción
+	 * @return Registro (o la memoria) que escribe una instrucción, o -1 si no escribe ninguno
+	 */
+	private static int getDestination(Instruction inst) {
+		final int[] op = inst.getOp();
+		switch (inst.getOpcode().getFU()) {
+		case JUMP:		return -1;
+		case FP_ADD:
+		case FP_MULT:	return NREG + op[0];
+		case MEM:
+			switch (inst.getOpcode()) {
+			case LF:	return NREG + op[0];
+			case LW:	return op[0];
+			default:	return MEM;
+			}
+		default:		return op[0];
+		}
+	}
+}
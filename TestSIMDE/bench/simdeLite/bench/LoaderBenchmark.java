@@ -0,0 +1,123 @@
+/**
+ * 
+ */
+package simdeLite.bench;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import simdeLite.Code;
+import simdeLite.SIMDEException;
+import simdeLite.SequentialMachine;
+import simdeLite.VLIWCode;
+import simdeLite.VLIWMachine;
+
+/**
+ * Mide el rendimiento de la carga de ficheros: código secuencial, planificación VLIW y contenido de memoria y registros 
+ * @author Iván Castilla
+ *
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LoaderBenchmark {
+	/** Programa de prueba */
+	@Param({"MATRIX", "SOBEL", "BUBBLE"})
+	public BenchmarkProgram program;
+	/** Tamaño del problema */
+	@Param({"8", "32", "256"})
+	public int size;
+	
+	/** Ficheros del programa de prueba */
+	private BenchmarkFiles files;
+	/** Código secuencial */
+	private Code code;
+	/** Máquina VLIW en la que se carga la memoria */
+	private VLIWMachine vliwMachine;
+	/** Máquina secuencial en la que se carga la memoria */
+	private SequentialMachine seqMachine;
+
+	/**
+	 * Genera el programa de prueba
+	 * @throws IOException Si no se pueden crear o leer los ficheros del programa
+	 */
+	@Setup(Level.Trial)
+	public void setup() throws IOException {
+		files = new BenchmarkFiles(program, size, "2,2,2,2,2");
+		code = Code.loadCode(files.getPlaFileName());
+		final int memSize = Math.max(VLIWMachine.NMEM, files.getMemSize());
+		vliwMachine = new VLIWMachine(BenchmarkFiles.LATENCIES, memSize, 0, 5);
+		seqMachine = new SequentialMachine(BenchmarkFiles.LATENCIES, memSize, 0, 5);
+	}
+	
+	/**
+	 * Borra los ficheros generados
+	 */
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		files.delete();
+	}
+
+	/**
+	 * Carga el código secuencial
+	 * @return El código cargado
+	 * @throws IOException Si no se puede leer el fichero
+	 */
+	@Benchmark
+	public Code loadCode() throws IOException {
+		return Code.loadCode(files.getPlaFileName());
+	}
+	
+	/**
+	 * Carga la planificación VLIW
+	 * @return El código cargado
+	 * @throws IOException Si no se puede leer el fichero
+	 */
+	@Benchmark
+	public VLIWCode loadVLIWCode() throws IOException {
+		return VLIWCode.loadCode(files.getConfiguration(), code, files.getVliwFileName());
+	}
+	
+	/**
+	 * Carga la memoria y registros en la máquina VLIW
+	 * @return La máquina cargada
+	 * @throws IOException Si no se puede leer el fichero
+	 * @throws SIMDEException Si el fichero de memoria no es válido
+	 */
+	@Benchmark
+	public VLIWMachine loadVLIWMemoryAndRegisters() throws IOException, SIMDEException {
+		vliwMachine.reset();
+		vliwMachine.loadMemoryAndRegisters(files.getMemFileName());
+		return vliwMachine;
+	}
+
+	/**
+	 * Carga la memoria y registros en la máquina secuencial
+	 * @return La máquina cargada
+	 * @throws IOException Si no se puede leer el fichero
+	 * @throws SIMDEException Si el fichero de memoria no es válido
+	 */
+	@Benchmark
+	public SequentialMachine loadSequentialMemoryAndRegisters() throws IOException, SIMDEException {
+		seqMachine.reset();
+		seqMachine.loadMemoryAndRegisters(files.getMemFileName());
+		return seqMachine;
+	}
+}
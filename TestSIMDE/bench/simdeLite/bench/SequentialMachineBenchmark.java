@@ -0,0 +1,104 @@
+/**
+ * 
+ */
+package simdeLite.bench;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import simdeLite.Code;
+import simdeLite.MemoryImage;
+import simdeLite.SIMDEException;
+import simdeLite.SequentialMachine;
+
+/**
+ * Mide el rendimiento de {@link SequentialMachine#execute(Code)}: ejecuciones y ciclos simulados por segundo 
+ * @author Iván Castilla
+ *
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SequentialMachineBenchmark {
+	/** Semilla para los fallos de caché, para que todas las ejecuciones sean comparables */
+	private final static long SEED = 1234L;
+	/** Programa de prueba */
+	@Param({"MATRIX", "SOBEL", "BUBBLE"})
+	public BenchmarkProgram program;
+	/** Tamaño del problema */
+	@Param({"8", "32"})
+	public int size;
+	/** Porcentaje de fallos de caché */
+	@Param({"0", "5", "20"})
+	public int cacheMissRate;
+	
+	/** Ficheros del programa de prueba */
+	private BenchmarkFiles files;
+	/** Código secuencial */
+	private Code code;
+	/** Máquina simulada */
+	private SequentialMachine machine;
+	/** Contenido inicial de memoria y registros, que se restaura antes de cada ejecución */
+	private MemoryImage initialState;
+
+	/**
+	 * Genera y carga el programa de prueba, y guarda el contenido inicial de memoria y registros como imagen binaria, para restaurarlo 
+	 * en cada ejecución sin volver a analizar el fichero de texto
+	 * @throws IOException Si no se pueden crear o leer los ficheros del programa
+	 * @throws SIMDEException Si el fichero de memoria no es válido
+	 */
+	@Setup(Level.Trial)
+	public void setup() throws IOException, SIMDEException {
+		// La configuración de UF no afecta a la máquina secuencial
+		files = new BenchmarkFiles(program, size, "1,1,1,1,1");
+		code = Code.loadCode(files.getPlaFileName());
+		machine = new SequentialMachine(BenchmarkFiles.LATENCIES, Math.max(SequentialMachine.NMEM, files.getMemSize()), cacheMissRate, 5);
+		machine.loadMemoryAndRegisters(files.getMemFileName());
+		machine.saveMemoryAndRegisters(files.getMemImageFileName());
+		initialState = new MemoryImage(files.getMemImageFileName());
+	}
+	
+	/**
+	 * Borra los ficheros generados
+	 */
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		files.delete();
+	}
+
+	/**
+	 * Restaura el estado inicial de la máquina, ya que los programas modifican la memoria, y ejecuta el programa de prueba. La 
+	 * restauración se mide junto con la ejecución, en lugar de hacerla con un {@link Setup} a nivel de invocación, pero solo copia 
+	 * bloques desde la imagen ya cargada y apenas reserva memoria, así que su coste es despreciable frente al de la simulación
+	 * @param counter Contador de ciclos simulados
+	 * @return El número de ciclos simulados
+	 * @throws IOException Si la imagen del estado inicial está incompleta
+	 * @throws SIMDEException Si la imagen del estado inicial no cabe en la máquina
+	 */
+	@Benchmark
+	public int execute(CycleCounter counter) throws IOException, SIMDEException {
+		machine.reset();
+		machine.setSeed(SEED);
+		machine.loadMemoryAndRegisters(initialState);
+		final int cycles = machine.execute(code);
+		counter.cycles += cycles;
+		return cycles;
+	}
+}
@@ -0,0 +1,18 @@
+/**
+ * Pruebas de rendimiento de los simuladores, basadas en JMH (https://github.com/openjdk/jmh). 
+ * Miden las ejecuciones y ciclos simulados por segundo de {@link simdeLite.VLIWMachine} y {@link simdeLite.SequentialMachine}, y 
+ * la velocidad de carga de ficheros, con los programas de {@link simdeLite.bench.BenchmarkProgram}, que se generan para cada 
+ * tamaño de problema y configuración de UF.
+ * 
+ * Para compilarlas hay que añadir a la carpeta "jar" las librerías jmh-core, jmh-generator-annprocess, jopt-simple y commons-math3, 
+ * e incluir la carpeta "bench" como carpeta de fuentes, con el procesado de anotaciones habilitado. Se lanzan con:
+ * 
+ * java -cp bin:jar/* org.openjdk.jmh.Main simdeLite.bench -prof gc
+ * 
+ * Con "-prof gc", la métrica "gc.alloc.rate.norm" indica los bytes reservados por ejecución; dividiéndola entre los ciclos simulados por 
+ * ejecución (el cociente entre "cycles" y la métrica principal) se obtienen los bytes reservados por ciclo simulado. Cada ejecución de las máquinas restaura antes el estado inicial de memoria y registros 
+ * desde una imagen binaria cargada al preparar la prueba, lo que solo añade unos pocos objetos por ejecución a esa métrica.
+ * @author Iván Castilla
+ *
+ */
+package simdeLite.bench;
@@ -0,0 +1,284 @@
+/**
+ *
+ */
+package simdeLite;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.beust.jcommander.JCommander;
+import com.beust.jcommander.Parameter;
+import com.beust.jcommander.ParameterException;
+
+/**
+ * Analiza la localidad de los accesos a memoria guardados con {@link AccessTraceWriter} (opción --accesstrace de los simuladores), para
+ * elegir un porcentaje de fallos de caché (--cachemissrate) realista para cada programa en lugar de uno global.
+ *
+ * La distancia de reutilización de un acceso es el número de líneas distintas que se usaron desde el último acceso a su misma línea. En
+ * una caché LRU totalmente asociativa de C líneas, el acceso falla si y solo si su distancia es al menos C o es el primer acceso a la
+ * línea, así que con una sola pasada por la traza se estima la tasa de fallos de cualquier tamaño de caché. La aplicación muestra el
+ * histograma de las distancias, la tasa de fallos de cada tamaño de caché indicado y las mismas estadísticas para cada instrucción.
+ * @author Iván Castilla
+ *
+ */
+public class AccessTraceAnalyzer {
+	/** Número de bytes de la cabecera del fichero */
+	private final static int HEADER_SIZE = 8;
+	/** Ciclo de reloj de cada acceso */
+	private final int[] cycles;
+	/** Identificador de la instrucción secuencial de cada acceso */
+	private final int[] instructions;
+	/** Dirección de cada acceso */
+	private final int[] addresses;
+	/** Verdadero si el acceso es una escritura */
+	private final boolean[] writes;
+
+	/**
+	 * Carga una traza de accesos a memoria
+	 * @param fileName Nombre del fichero escrito con {@link AccessTraceWriter}
+	 * @throws IOException Si no se pudo leer el fichero o no es una traza de accesos
+	 */
+	public AccessTraceAnalyzer(String fileName) throws IOException {
+		try (FileChannel channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.READ)) {
+			final long size = channel.size() - HEADER_SIZE;
+			if (size < 0 || size % AccessTraceWriter.RECORD_SIZE != 0 || size / AccessTraceWriter.RECORD_SIZE > Integer.MAX_VALUE)
+				throw new IOException("ERROR: El fichero " + fileName + " no es una traza de accesos válida");
+			final int nAccesses = (int)(size / AccessTraceWriter.RECORD_SIZE);
+			cycles = new int[nAccesses];
+			instructions = new int[nAccesses];
+			addresses = new int[nAccesses];
+			writes = new boolean[nAccesses];
+			final ByteBuffer buffer = ByteBuffer.allocateDirect(AccessTraceWriter.RECORD_SIZE * 4096);
+			buffer.limit(HEADER_SIZE);
+			readFully(channel, buffer);
+			if (buffer.getInt() != AccessTraceWriter.MAGIC)
+				throw new IOException("ERROR: El fichero " + fileName + " no es una traza de accesos válida");
+			final int version = buffer.getInt();
+			if (version != AccessTraceWriter.VERSION)
+				throw new IOException("ERROR: Versión de la traza de accesos no soportada (" + version + "): " + fileName);
+			int i = 0;
+			while (i < nAccesses) {
+				buffer.clear();
+				buffer.limit(Math.min(buffer.capacity(), (nAccesses - i) * AccessTraceWriter.RECORD_SIZE));
+				readFully(channel, buffer);
+				while (buffer.hasRemaining()) {
+					cycles[i] = buffer.getInt();
+					instructions[i] = buffer.getInt();
+					addresses[i] = buffer.getInt();
+					writes[i] = (buffer.get() != 0);
+					i++;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Llena un buffer desde un canal y lo prepara para leerlo
+	 * @param channel Canal del fichero
+	 * @param buffer Buffer a llenar hasta su límite
+	 * @throws IOException Si no se pudo leer o el fichero terminó antes de tiempo
+	 */
+	private static void readFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer) < 0)
+				throw new IOException("ERROR: La traza de accesos está incompleta");
+		}
+		buffer.flip();
+	}
+
+	/**
+	 * Devuelve el número de accesos de la traza
+	 * @return Número de accesos de la traza
+	 */
+	public int getSize() {
+		return addresses.length;
+	}
+
+	/**
+	 * Calcula la distancia de reutilización de cada acceso de la traza
+	 * @param lineSize Número de palabras de cada línea. Tiene que ser una potencia de 2
+	 * @return Distancia de reutilización de cada acceso, o {@link StackDistance#COLD} si es el primer acceso a su línea
+	 */
+	public int[] getReuseDistances(int lineSize) {
+		final int lineBits = Integer.numberOfTrailingZeros(lineSize);
+		final int[] lines = new int[addresses.length];
+		for (int i = 0; i < lines.length; i++)
+			lines[i] = addresses[i] >>> lineBits;
+		return StackDistance.getDistances(lines, 1);
+	}
+
+	/**
+	 * Devuelve el intervalo del histograma de distancias de reutilización al que pertenece una distancia: el 0 para la distancia 0 y el
+	 * k para las distancias en [2^(k-1), 2^k - 1]
+	 * @param distance Distancia de reutilización
+	 * @return Intervalo del histograma
+	 */
+	private static int getBucket(int distance) {
+		return 32 - Integer.numberOfLeadingZeros(distance);
+	}
+
+	/**
+	 * Devuelve la tasa de fallos como porcentaje entre 0 y 100
+	 * @param misses Número de fallos
+	 * @param accesses Número de accesos
+	 * @return Porcentaje de fallos, o 0 si no hay accesos
+	 */
+	private static double getMissRate(long misses, long accesses) {
+		return (accesses == 0) ? 0.0 : (100.0 * misses / accesses);
+	}
+
+	/**
+	 * Muestra el resumen de la traza, el histograma de distancias de reutilización, la tasa de fallos estimada para cada tamaño de caché y
+	 * la localidad de cada instrucción
+	 * @param lineSize Número de palabras de cada línea
+	 * @param cacheSizes Tamaños de caché, en palabras, para los que se estima la tasa de fallos
+	 * @param code Código secuencial que generó la traza, para mostrar cada instrucción, o null si no se conoce
+	 */
+	public void print(int lineSize, List<Integer> cacheSizes, Code code) {
+		final int size = addresses.length;
+		final int[] distances = getReuseDistances(lineSize);
+		int nWrites = 0;
+		int maxInstruction = -1;
+		for (int i = 0; i < size; i++) {
+			if (writes[i])
+				nWrites++;
+			maxInstruction = Math.max(maxInstruction, instructions[i]);
+		}
+		final int nDistinct = (int)Arrays.stream(addresses).distinct().count();
+		int nCold = 0;
+		for (int distance : distances)
+			if (distance == StackDistance.COLD)
+				nCold++;
+		System.out.println("Accesos (lecturas / escrituras): " + size + " (" + (size - nWrites) + " / " + nWrites + ")");
+		if (size > 0)
+			System.out.println("Ciclos [primero-último]: [" + cycles[0] + " - " + cycles[size - 1] + "]");
+		System.out.println("Direcciones distintas: " + nDistinct);
+		System.out.println("Líneas distintas (de " + lineSize + " palabras): " + nCold);
+
+		// Histograma de distancias de reutilización por potencias de 2
+		final long[] buckets = new long[33];
+		int maxBucket = -1;
+		for (int distance : distances) {
+			if (distance != StackDistance.COLD) {
+				final int bucket = getBucket(distance);
+				buckets[bucket]++;
+				maxBucket = Math.max(maxBucket, bucket);
+			}
+		}
+		System.out.println("Distancias de reutilización (líneas distintas usadas entre dos accesos a la misma línea):");
+		System.out.println("\tPrimer acceso: " + nCold + " (" + getMissRate(nCold, size) + "%)");
+		long acc = 0;
+		for (int b = 0; b <= maxBucket; b++) {
+			acc += buckets[b];
+			final String range = (b < 2) ? ("[" + b + "]") : ("[" + (1L << (b - 1)) + " - " + ((1L << b) - 1) + "]");
+			System.out.println("\t" + range + ": " + buckets[b] + " (" + getMissRate(buckets[b], size) + "%, acumulado " + getMissRate(acc, size) + "%)");
+		}
+
+		// Un acceso falla en una caché LRU totalmente asociativa de C líneas si su distancia es al menos C
+		final int[] cacheLines = new int[cacheSizes.size()];
+		for (int c = 0; c < cacheLines.length; c++)
+			cacheLines[c] = cacheSizes.get(c) / lineSize;
+		final long[] misses = new long[cacheLines.length];
+		for (int distance : distances)
+			for (int c = 0; c < cacheLines.length; c++)
+				if (distance >= cacheLines[c])
+					misses[c]++;
+		System.out.println("Tasa de fallos estimada (caché LRU totalmente asociativa, líneas de " + lineSize + " palabras):");
+		System.out.println("Tamaño\tFallos\tTasa fallos\t--cachemissrate");
+		for (int c = 0; c < cacheLines.length; c++) {
+			final double rate = getMissRate(misses[c], size);
+			System.out.println(cacheSizes.get(c) + "\t" + misses[c] + "\t" + rate + "%\t" + Math.round(rate));
+		}
+
+		// Localidad de cada instrucción
+		final int nInst = maxInstruction + 1;
+		final long[] instAccesses = new long[nInst];
+		final long[] instWrites = new long[nInst];
+		final long[] instCold = new long[nInst];
+		final double[] instDistance = new double[nInst];
+		final long[][] instMisses = new long[nInst][cacheLines.length];
+		for (int i = 0; i < size; i++) {
+			final int inst = instructions[i];
+			instAccesses[inst]++;
+			if (writes[i])
+				instWrites[inst]++;
+			if (distances[i] == StackDistance.COLD)
+				instCold[inst]++;
+			else
+				instDistance[inst] += distances[i];
+			for (int c = 0; c < cacheLines.length; c++)
+				if (distances[i] >= cacheLines[c])
+					instMisses[inst][c]++;
+		}
+		System.out.println("Localidad por instrucción:");
+		final StringBuilder header = new StringBuilder("Instrucción\tAccesos\tLecturas\tEscrituras\tPrimer acceso\tDistancia media");
+		for (int cacheSize : cacheSizes)
+			header.append("\tFallos ").append(cacheSize);
+		System.out.println(header);
+		for (int inst = 0; inst < nInst; inst++) {
+			if (instAccesses[inst] == 0)
+				continue;
+			final long reused = instAccesses[inst] - instCold[inst];
+			final StringBuilder line = new StringBuilder();
+			line.append(inst).append("\t").append(instAccesses[inst]).append("\t").append(instAccesses[inst] - instWrites[inst]);
+			line.append("\t").append(instWrites[inst]).append("\t").append(instCold[inst]);
+			line.append("\t").append((reused == 0) ? "-" : String.valueOf(instDistance[inst] / reused));
+			for (int c = 0; c < cacheLines.length; c++)
+				line.append("\t").append(getMissRate(instMisses[inst][c], instAccesses[inst])).append("%");
+			if (code != null && inst < code.getInstructions().size())
+				line.append("\t").append(code.getInstructions().get(inst));
+			System.out.println(line);
+		}
+	}
+
+	/**
+	 * Lanza la aplicación
+	 * @param args Argumentos de la aplicación, definidos en {@link Arguments}
+	 */
+	public static void main(String[] args) {
+		try {
+			final Arguments args1 = new Arguments();
+			JCommander jc = JCommander.newBuilder()
+					  .addObject(args1)
+					  .build();
+			jc.parse(args);
+			if (Integer.bitCount(args1.lineSize) != 1)
+				throw new ParameterException("ERROR: El tamaño de línea debe ser una potencia de 2. Usado: " + args1.lineSize);
+			for (int cacheSize : args1.cacheSizes)
+				if (cacheSize < args1.lineSize)
+					throw new ParameterException("ERROR: Cada tamaño de caché debe tener al menos una línea. Usado: " + cacheSize);
+			final Code code = (args1.fileName != null) ? Code.loadCode(args1.fileName) : null;
+			final AccessTraceAnalyzer analyzer = new AccessTraceAnalyzer(args1.traceFileName);
+			analyzer.print(args1.lineSize, args1.cacheSizes, code);
+		} catch (IOException ex) {
+			System.out.println(ex.getMessage());
+			System.exit(-1);
+		} catch (ParameterException ex) {
+			System.out.println(ex.getMessage());
+			ex.usage();
+			System.exit(-1);
+		}
+	}
+
+	/**
+	 * Argumentos de la línea de comandos del programa
+	 * @author Iván Castilla
+	 *
+	 */
+	private static class Arguments {
+		@Parameter(names ={"--trace", "-tr"}, description = "Nombre del fichero con la traza de accesos a memoria, generado con la opción --accesstrace de los simuladores", order = 1, required = true)
+		private String traceFileName = null;
+		@Parameter(names ={"--source", "-s"}, description = "Nombre del fichero con el fuente (generalmente con extensión pla), para mostrar cada instrucción en la localidad por instrucción", order = 1)
+		private String fileName = null;
+		@Parameter(names ={"--linesize", "-ls"}, description = "Tamaño de línea de la caché, en palabras. Tiene que ser una potencia de 2", order = 2)
+		private int lineSize = 1;
+		@Parameter(names ={"--cachesizes", "-cs"}, description = "Lista de tamaños de caché, en palabras y separados por comas, para los que se estima la tasa de fallos", order = 2)
+		private List<Integer> cacheSizes = new ArrayList<>(Arrays.asList(64, 256, 1024));
+	}
+}
@@ -0,0 +1,96 @@
+/**
+ *
+ */
+package simdeLite;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Escribe los accesos a memoria de una ejecución en un fichero binario, para analizarlos después con {@link AccessTraceAnalyzer}. Se
+ * conecta a una máquina con {@link VLIWMachine#setAccessTrace(AccessTraceWriter)} o {@link SequentialMachine#setAccessTrace(AccessTraceWriter)}.
+ *
+ * El fichero comienza con {@link #MAGIC} y {@link #VERSION}, y después tiene un registro de {@link #RECORD_SIZE} bytes por acceso, en el
+ * orden en que se realizan: ciclo de reloj (int), identificador de la instrucción secuencial (int), dirección (int) y 1 si es una escritura
+ * o 0 si es una lectura (byte). Los registros se acumulan en un buffer y se escriben por bloques a través de un {@link FileChannel}
+ * @author Iván Castilla
+ *
+ */
+public final class AccessTraceWriter implements Closeable {
+	/** Identificador de los ficheros de trazas de accesos: "SMDT" */
+	public final static int MAGIC = 0x534D4454;
+	/** Versión del formato del fichero */
+	public final static int VERSION = 1;
+	/** Número de bytes de cada registro */
+	public final static int RECORD_SIZE = 13;
+	/** Número de bytes del buffer */
+	private final static int BUFFER_SIZE = 1 << 16;
+	/** Canal del fichero */
+	private final FileChannel channel;
+	/** Buffer de los registros pendientes de escribir */
+	private final ByteBuffer buffer;
+	/** Número de accesos escritos */
+	private long count = 0;
+
+	/**
+	 * Crea un fichero de traza de accesos vacío. Si el fichero ya existe, se sobrescribe
+	 * @param fileName Nombre del fichero
+	 * @throws IOException Si no se pudo crear el fichero
+	 */
+	public AccessTraceWriter(String fileName) throws IOException {
+		channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+		buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+		buffer.putInt(MAGIC);
+		buffer.putInt(VERSION);
+	}
+
+	/**
+	 * Añade un acceso a memoria
+	 * @param cycle Ciclo de reloj en el que se realiza el acceso
+	 * @param instruction Identificador de la instrucción secuencial que realiza el acceso
+	 * @param address Dirección del acceso
+	 * @param write Verdadero si es una escritura; falso si es una lectura
+	 * @throws IOException Si no se pudo escribir en el fichero
+	 */
+	public void write(int cycle, int instruction, int address, boolean write) throws IOException {
+		if (buffer.remaining() < RECORD_SIZE)
+			flush();
+		buffer.putInt(cycle);
+		buffer.putInt(instruction);
+		buffer.putInt(address);
+		buffer.put(write ? (byte)1 : (byte)0);
+		count++;
+	}
+
+	/**
+	 * Escribe en el fichero los registros pendientes
+	 * @throws IOException Si no se pudo escribir en el fichero
+	 */
+	private void flush() throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining())
+			channel.write(buffer);
+		buffer.clear();
+	}
+
+	/**
+	 * Devuelve el número de accesos escritos
+	 * @return Número de accesos escritos
+	 */
+	public long getCount() {
+		return count;
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			flush();
+		} finally {
+			channel.close();
+		}
+	}
+}
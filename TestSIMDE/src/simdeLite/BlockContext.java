@@ -0,0 +1,92 @@
+/**
+ * 
+ */
+package simdeLite;
+
+/**
+ * Estado de la máquina VLIW que usan los bloques compilados ({@link CompiledBlock}). Las operaciones que estaban en curso al entrar en un bloque, 
+ * los fallos de caché y las operaciones que siguen en curso al salir del bloque se tratan igual que en el intérprete, a través de estos métodos
+ * @author Iván Castilla
+ *
+ */
+public interface BlockContext {
+	/**
+	 * Devuelve el banco de registros de propósito general
+	 * @return Banco de registros de propósito general
+	 */
+	GPRegisterBank getGPRegisterBank();
+
+	/**
+	 * Devuelve el banco de registros de punto flotante
+	 * @return Banco de registros de punto flotante
+	 */
+	FPRegisterBank getFPRegisterBank();
+
+	/**
+	 * Devuelve la memoria
+	 * @return Memoria
+	 */
+	Memory getMemory();
+
+	/**
+	 * Devuelve el banco de registros de predicado
+	 * @return Banco de registros de predicado
+	 */
+	PredicateRegisterBank getPredicateRegisterBank();
+
+	/**
+	 * Devuelve los valores de los operandos fuente de cada operación, indexados por su posición en el código decodificado ({@link DecodedVLIWCode})
+	 * @return Valores de los operandos fuente de cada operación
+	 */
+	OperandValues[] getOperandValues();
+
+	/**
+	 * Devuelve el ciclo actual de la rueda temporal (sin contar las burbujas)
+	 * @return Ciclo actual de la rueda temporal
+	 */
+	int getCycle();
+
+	/**
+	 * Decide si un acceso a memoria que comienza ahora producirá un fallo de caché. Se llama en el mismo orden que en el intérprete, para 
+	 * que se use la misma secuencia de números aleatorios
+	 * @param oper Posición del acceso en el código decodificado
+	 * @return Verdadero si el acceso no produce fallo de caché
+	 */
+	boolean drawCached(int oper);
+
+	/**
+	 * Devuelve el número de burbujas añadidas durante la ejecución actual
+	 * @return Número de burbujas añadidas durante la ejecución actual
+	 */
+	int getStallEpoch();
+
+	/**
+	 * Finaliza las operaciones de un tipo de UF que estaban en curso al entrar en el bloque y que terminan en el ciclo actual
+	 * @param fu Índice del tipo de UF
+	 * @throws SIMDEException Errores de ejecución
+	 */
+	void retireInFlight(int fu) throws SIMDEException;
+
+	/**
+	 * Aplaza una operación de memoria que provoca un fallo de caché hasta el final del ciclo
+	 * @param oper Posición de la operación en el código decodificado
+	 * @param values Valores de los operandos fuente de la operación
+	 */
+	void defer(int oper, OperandValues values);
+
+	/**
+	 * Termina el ciclo actual: resuelve los fallos de caché aplazados, añadiendo la burbuja correspondiente, y avanza la rueda temporal
+	 * @throws SIMDEException Errores de ejecución
+	 */
+	void endCycle() throws SIMDEException;
+
+	/**
+	 * Devuelve a la máquina una operación que sigue en curso al salir del bloque
+	 * @param oper Posición de la operación en el código decodificado
+	 * @param cycle Ciclo de la rueda temporal en el que se va a finalizar la operación
+	 * @param values Valores de los operandos fuente de la operación
+	 * @param cached Falso si es un acceso a memoria que produce un fallo de caché
+	 * @param epoch Número de burbujas que se habían añadido cuando comenzó la operación
+	 */
+	void handOff(int oper, int cycle, OperandValues values, boolean cached, int epoch);
+}
@@ -0,0 +1,94 @@
+/**
+ *
+ */
+package simdeLite;
+
+import java.util.SplittableRandom;
+
+/**
+ * Decide qué accesos a memoria producen un fallo de caché. En lugar de sortear cada acceso, se sortea directamente cuántos aciertos
+ * quedan hasta el siguiente fallo, que sigue una distribución geométrica: si la tasa de fallos es "p", el número de aciertos
+ * consecutivos K cumple P(K >= k) = (1 - p)^k. Así, solo se genera un número aleatorio por cada fallo, y no por cada acceso, con
+ * la misma probabilidad de fallo en cada acceso que sorteándolos uno a uno.
+ *
+ * Los números aleatorios se obtienen de un {@link SplittableRandom}, cuya secuencia depende únicamente de la semilla: la misma 
+ * semilla da los mismos fallos en cualquier hilo y en cualquier máquina virtual.
+ * @author Iván Castilla
+ *
+ */
+public final class CacheMissGenerator {
+	/** Generador de números aleatorios */
+	private SplittableRandom rnd;
+	/** Tasa de fallos de la caché, expresada en tanto por 1 */
+	private final double cacheMissRate;
+	/** Logaritmo neperiano de la probabilidad de acierto */
+	private final double logHitRate;
+	/** Número de aciertos que quedan hasta el siguiente fallo */
+	private long hits;
+
+	/**
+	 * Crea un generador de fallos de caché
+	 * @param cacheMissRate Tasa de fallos de la caché, expresada en tanto por 1
+	 */
+	public CacheMissGenerator(double cacheMissRate) {
+		this.rnd = new SplittableRandom();
+		this.cacheMissRate = cacheMissRate;
+		this.logHitRate = Math.log1p(-cacheMissRate);
+		this.hits = nextGap();
+	}
+
+	/**
+	 * Establece la semilla del generador de números aleatorios y vuelve a sortear la distancia al siguiente fallo
+	 * @param seed Semilla del generador de números aleatorios
+	 */
+	public void setSeed(long seed) {
+		rnd = new SplittableRandom(seed);
+		hits = nextGap();
+	}
+
+	/**
+	 * Devuelve la tasa de fallos de la caché
+	 * @return Tasa de fallos de la caché, expresada en tanto por 1
+	 */
+	public double getCacheMissRate() {
+		return cacheMissRate;
+	}
+
+	/**
+	 * Decide si el siguiente acceso a memoria produce un fallo de caché
+	 * @return Falso si el acceso produce un fallo de caché
+	 */
+	public boolean nextCached() {
+		if (hits == 0) {
+			hits = nextGap();
+			return false;
+		}
+		hits--;
+		return true;
+	}
+
+	/**
+	 * Devuelve cuántos accesos a memoria aciertan antes del siguiente fallo, y los consume junto con el fallo. Equivale a llamar a
+	 * {@link #nextCached()} hasta que devuelva falso
+	 * @return Número de accesos que aciertan antes del siguiente fallo, o {@link Long#MAX_VALUE} si la tasa de fallos es 0
+	 */
+	public long skip() {
+		final long gap = hits;
+		hits = nextGap();
+		return gap;
+	}
+
+	/**
+	 * Sortea el número de aciertos hasta el siguiente fallo
+	 * @return Número de aciertos hasta el siguiente fallo, o {@link Long#MAX_VALUE} si la tasa de fallos es 0
+	 */
+	private long nextGap() {
+		// En estos casos no hace falta generar ningún número aleatorio
+		if (cacheMissRate <= 0.0)
+			return Long.MAX_VALUE;
+		if (cacheMissRate >= 1.0)
+			return 0;
+		// 1 - U está en (0, 1], así que su logaritmo es finito
+		return (long)(Math.log(1.0 - rnd.nextDouble()) / logHitRate);
+	}
+}
@@ -0,0 +1,48 @@
+/**
+ *
+ */
+package simdeLite;
+
+/**
+ * Modelo de la caché de datos que decide, según la dirección, si un acceso a memoria produce un fallo. Se conecta a una memoria con
+ * {@link Memory#setCacheModel(CacheModel)}, y las máquinas lo consultan con {@link Memory#access(int, boolean)} justo antes de cada
+ * lectura o escritura. Los fallos que produce se suman a los de la tasa de fallos aleatoria de la memoria, que se puede poner a 0 para
+ * usar solo este modelo.
+ *
+ * Cada máquina necesita su propia instancia, porque el modelo guarda el contenido de la caché. La búsqueda no debería crear objetos,
+ * para que la simulación no sea mucho más lenta que con la tasa de fallos aleatoria
+ * @author Iván Castilla
+ *
+ */
+public interface CacheModel {
+	/**
+	 * Busca una dirección en la caché y actualiza su contenido
+	 * @param address Dirección de memoria del acceso
+	 * @param write Verdadero si es un almacenamiento; falso si es una carga
+	 * @return Verdadero si el acceso acierta en la caché; falso si produce un fallo
+	 */
+	boolean access(int address, boolean write);
+
+	/**
+	 * Vacía la caché y pone a 0 sus contadores
+	 */
+	void reset();
+
+	/**
+	 * Devuelve el número de accesos que acertaron desde el último reseteo
+	 * @return Número de accesos que acertaron
+	 */
+	long getHits();
+
+	/**
+	 * Devuelve el número de accesos que fallaron desde el último reseteo
+	 * @return Número de accesos que fallaron
+	 */
+	long getMisses();
+
+	/**
+	 * Crea una caché vacía con la misma configuración que esta, para otra máquina
+	 * @return Una caché vacía con la misma configuración
+	 */
+	CacheModel newInstance();
+}
@@ -0,0 +1,35 @@
+/**
+ * 
+ */
+package simdeLite;
+
+import com.beust.jcommander.IStringConverter;
+import com.beust.jcommander.ParameterException;
+
+/**
+ * Crea el modelo de caché del parámetro --cache de los simuladores a partir de una lista de valores separados por comas: tamaño de la 
+ * caché, tamaño de línea y número de vías, todos ellos potencias de 2 y los tamaños en palabras, y política de reemplazo (LRU o PLRU)
+ * @author Iván Castilla
+ *
+ */
+public class CacheModelConverter implements IStringConverter<CacheModel> {
+
+	/**
+	 * Crea un modelo de caché a partir de una lista de valores separados por comas
+	 * @param cache Lista de valores separados por comas, por ejemplo "1024,4,2,LRU"
+	 * @return Un modelo de caché asociativa por conjuntos
+	 * @throws ParameterException Si la lista de valores no es correcta
+	 */
+	@Override
+	public CacheModel convert(String cache) {
+		final String[] fields = cache.split(",");
+		if (fields.length != 4)
+			throw new ParameterException("ERROR: La caché se indica como tamaño,línea,vías,política (por ejemplo, 1024,4,2,LRU). Usado: " + cache);
+		try {
+			return new SetAssociativeCache(Integer.parseInt(fields[0].trim()), Integer.parseInt(fields[1].trim()), Integer.parseInt(fields[2].trim()), 
+					SetAssociativeCache.ReplacementPolicy.valueOf(fields[3].trim().toUpperCase()));
+		} catch (IllegalArgumentException ex) {
+			throw new ParameterException("ERROR: Configuración de caché incorrecta (" + cache + "): " + ex.getMessage());
+		}
+	}
+}
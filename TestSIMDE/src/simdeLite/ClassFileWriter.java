@@ -0,0 +1,419 @@
+/**
+ *
+ */
+package simdeLite;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * Generador mínimo de ficheros de clase de la JVM, con lo justo para los bloques de {@link VLIWCompiler}: una clase pública y final que
+ * hereda de Object, implementa una interfaz y tiene el constructor por defecto y un único método de instancia, cuyo bytecode se va añadiendo
+ * instrucción a instrucción.
+ *
+ * Las clases se generan con la versión 49 (Java 5) del formato, que la JVM verifica por inferencia de tipos, así que no hace falta calcular
+ * los marcos de pila (StackMapTable) de los saltos. La profundidad máxima de la pila se calcula a medida que se añaden instrucciones, lo
+ * que supone que en todos los saltos y etiquetas la pila tiene la misma profundidad, como ocurre en el código que genera el compilador
+ * @author Iván Castilla
+ *
+ */
+final class ClassFileWriter {
+	/** Versión del formato de fichero de clase (Java 5) */
+	private final static int MAJOR_VERSION = 49;
+	/** Modificadores de la clase: public, final y super */
+	private final static int CLASS_ACCESS = 0x0031;
+	/** Modificadores de los métodos: public */
+	private final static int METHOD_ACCESS = 0x0001;
+	// Códigos de las instrucciones de la JVM que se usan
+	public final static int ICONST_0 = 0x03;
+	public final static int BIPUSH = 0x10;
+	public final static int SIPUSH = 0x11;
+	public final static int LDC_W = 0x13;
+	public final static int ILOAD = 0x15;
+	public final static int ALOAD = 0x19;
+	public final static int ISTORE = 0x36;
+	public final static int ASTORE = 0x3a;
+	public final static int AALOAD = 0x32;
+	public final static int POP = 0x57;
+	public final static int IADD = 0x60;
+	public final static int IXOR = 0x82;
+	public final static int D2I = 0x8e;
+	public final static int IFEQ = 0x99;
+	public final static int IFNE = 0x9a;
+	public final static int IF_ICMPNE = 0xa0;
+	public final static int GOTO = 0xa7;
+	public final static int IRETURN = 0xac;
+	private final static int RETURN = 0xb1;
+	private final static int GETSTATIC = 0xb2;
+	private final static int INVOKEVIRTUAL = 0xb6;
+	private final static int INVOKESPECIAL = 0xb7;
+	private final static int INVOKEINTERFACE = 0xb9;
+	private final static int WIDE = 0xc4;
+	private final static int ALOAD_0 = 0x2a;
+	// Tipos de las constantes de la tabla de constantes
+	private final static int CP_UTF8 = 1;
+	private final static int CP_INTEGER = 3;
+	private final static int CP_CLASS = 7;
+	private final static int CP_FIELDREF = 9;
+	private final static int CP_METHODREF = 10;
+	private final static int CP_INTERFACE_METHODREF = 11;
+	private final static int CP_NAME_AND_TYPE = 12;
+
+	/** Contenido de la tabla de constantes */
+	private final ByteArrayOutputStream pool = new ByteArrayOutputStream();
+	/** Vista para escribir en la tabla de constantes */
+	private final DataOutputStream poolOut = new DataOutputStream(pool);
+	/** Índice de cada constante ya añadida, por su tipo y contenido */
+	private final HashMap<String, Integer> constants = new HashMap<>();
+	/** Siguiente índice libre de la tabla de constantes */
+	private int nextConstant = 1;
+	/** Bytecode del método */
+	private final ByteArrayOutputStream code = new ByteArrayOutputStream();
+	/** Profundidad actual de la pila */
+	private int stack = 0;
+	/** Profundidad máxima de la pila */
+	private int maxStack = 0;
+	/** Número de variables locales (incluidos this y los parámetros) */
+	private int maxLocals = 0;
+	/** Posición de cada etiqueta en el bytecode, o -1 si todavía no se ha colocado */
+	private final ArrayList<Integer> labels = new ArrayList<>();
+	/** Saltos pendientes de resolver: posición de la instrucción y etiqueta de destino, de dos en dos */
+	private final ArrayList<Integer> jumps = new ArrayList<>();
+	/** Índice de la clase en la tabla de constantes */
+	private final int thisClass;
+	/** Índice de la superclase (Object) en la tabla de constantes */
+	private final int superClass;
+	/** Índice de la interfaz en la tabla de constantes */
+	private final int interfaceClass;
+
+	/**
+	 * Crea el generador de una clase
+	 * @param className Nombre interno de la clase (con "/" para separar los paquetes)
+	 * @param interfaceName Nombre interno de la interfaz que implementa
+	 */
+	public ClassFileWriter(String className, String interfaceName) {
+		thisClass = classConstant(className);
+		superClass = classConstant("java/lang/Object");
+		interfaceClass = classConstant(interfaceName);
+	}
+
+	/**
+	 * Devuelve el índice de una constante, añadiéndola a la tabla si no estaba
+	 * @param key Tipo y contenido de la constante, que la identifican
+	 * @param tag Tipo de la constante en el formato de fichero de clase
+	 * @param values Contenido de la constante: cadenas (UTF-8) o índices de otras constantes (2 bytes), salvo en los enteros (4 bytes)
+	 * @return Índice de la constante
+	 */
+	private int constant(String key, int tag, Object... values) {
+		Integer index = constants.get(key);
+		if (index == null) {
+			try {
+				poolOut.writeByte(tag);
+				for (Object value : values) {
+					if (value instanceof String)
+						poolOut.writeUTF((String)value);
+					else if (tag == CP_INTEGER)
+						poolOut.writeInt((Integer)value);
+					else
+						poolOut.writeShort((Integer)value);
+				}
+			} catch (IOException e) {
+				// No ocurre al escribir en memoria
+				throw new IllegalStateException(e);
+			}
+			index = nextConstant++;
+			constants.put(key, index);
+		}
+		return index;
+	}
+
+	/**
+	 * Devuelve el índice de una cadena en la tabla de constantes
+	 * @param value Cadena
+	 * @return Índice de la constante
+	 */
+	private int utf8Constant(String value) {
+		return constant("U" + value, CP_UTF8, value);
+	}
+
+	/**
+	 * Devuelve el índice de una clase en la tabla de constantes
+	 * @param name Nombre interno de la clase
+	 * @return Índice de la constante
+	 */
+	private int classConstant(String name) {
+		return constant("C" + name, CP_CLASS, utf8Constant(name));
+	}
+
+	/**
+	 * Devuelve el índice de un campo o un método en la tabla de constantes
+	 * @param tag {@link #CP_FIELDREF}, {@link #CP_METHODREF} o {@link #CP_INTERFACE_METHODREF}
+	 * @param owner Nombre interno de la clase o interfaz
+	 * @param name Nombre del campo o método
+	 * @param descriptor Descriptor del campo o método
+	 * @return Índice de la constante
+	 */
+	private int memberConstant(int tag, String owner, String name, String descriptor) {
+		final int nameAndType = constant("N" + name + " " + descriptor, CP_NAME_AND_TYPE, utf8Constant(name), utf8Constant(descriptor));
+		return constant("M" + tag + ":" + owner + "." + name + " " + descriptor, tag, classConstant(owner), nameAndType);
+	}
+
+	/**
+	 * Añade un byte al bytecode
+	 * @param b Byte
+	 */
+	private void u1(int b) {
+		code.write(b);
+	}
+
+	/**
+	 * Añade dos bytes al bytecode
+	 * @param s Valor de 16 bits
+	 */
+	private void u2(int s) {
+		code.write(s >>> 8);
+		code.write(s);
+	}
+
+	/**
+	 * Actualiza la profundidad de la pila
+	 * @param delta Número de posiciones que se añaden (o se quitan, si es negativo)
+	 */
+	private void stack(int delta) {
+		stack += delta;
+		maxStack = Math.max(maxStack, stack);
+	}
+
+	/**
+	 * Añade una instrucción sin operandos
+	 * @param opcode Código de la instrucción
+	 * @param delta Cambio en la profundidad de la pila
+	 */
+	public void insn(int opcode, int delta) {
+		u1(opcode);
+		stack(delta);
+	}
+
+	/**
+	 * Apila un entero constante, con la instrucción más corta posible
+	 * @param value Valor del entero
+	 */
+	public void pushInt(int value) {
+		if (value >= -1 && value <= 5) {
+			u1(ICONST_0 + value);
+		}
+		else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+			u1(BIPUSH);
+			u1(value);
+		}
+		else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+			u1(SIPUSH);
+			u2(value);
+		}
+		else {
+			u1(LDC_W);
+			u2(constant("I" + value, CP_INTEGER, value));
+		}
+		stack(1);
+	}
+
+	/**
+	 * Añade una instrucción de carga o almacenamiento de una variable local
+	 * @param opcode {@link #ILOAD}, {@link #ALOAD}, {@link #ISTORE} o {@link #ASTORE}
+	 * @param local Índice de la variable local
+	 */
+	public void local(int opcode, int local) {
+		if (local > 0xff) {
+			u1(WIDE);
+			u1(opcode);
+			u2(local);
+		}
+		else {
+			u1(opcode);
+			u1(local);
+		}
+		stack((opcode == ILOAD || opcode == ALOAD) ? 1 : -1);
+		maxLocals = Math.max(maxLocals, local + 1);
+	}
+
+	/**
+	 * Apila el valor de un campo estático
+	 * @param owner Nombre interno de la clase del campo
+	 * @param name Nombre del campo
+	 * @param descriptor Descriptor del tipo del campo, que no puede ser long ni double
+	 */
+	public void getStatic(String owner, String name, String descriptor) {
+		u1(GETSTATIC);
+		u2(memberConstant(CP_FIELDREF, owner, name, descriptor));
+		stack(1);
+	}
+
+	/**
+	 * Invoca un método de instancia de una clase
+	 * @param owner Nombre interno de la clase
+	 * @param name Nombre del método
+	 * @param descriptor Descriptor del método
+	 */
+	public void invokeVirtual(String owner, String name, String descriptor) {
+		u1(INVOKEVIRTUAL);
+		u2(memberConstant(CP_METHODREF, owner, name, descriptor));
+		stack(getReturnSize(descriptor) - getArgumentsSize(descriptor) - 1);
+	}
+
+	/**
+	 * Invoca un método de una interfaz
+	 * @param owner Nombre interno de la interfaz
+	 * @param name Nombre del método
+	 * @param descriptor Descriptor del método
+	 */
+	public void invokeInterface(String owner, String name, String descriptor) {
+		final int args = getArgumentsSize(descriptor);
+		u1(INVOKEINTERFACE);
+		u2(memberConstant(CP_INTERFACE_METHODREF, owner, name, descriptor));
+		u1(args + 1);
+		u1(0);
+		stack(getReturnSize(descriptor) - args - 1);
+	}
+
+	/**
+	 * Devuelve el número de posiciones de pila que ocupan los parámetros de un método
+	 * @param descriptor Descriptor del método
+	 * @return Número de posiciones de pila de los parámetros (dos para long y double)
+	 */
+	private static int getArgumentsSize(String descriptor) {
+		int size = 0;
+		for (int i = 1; descriptor.charAt(i) != ')'; i++) {
+			final char c = descriptor.charAt(i);
+			size += (c == 'J' || c == 'D') ? 2 : 1;
+			while (descriptor.charAt(i) == '[')
+				i++;
+			if (descriptor.charAt(i) == 'L')
+				i = descriptor.indexOf(';', i);
+		}
+		return size;
+	}
+
+	/**
+	 * Devuelve el número de posiciones de pila que ocupa el resultado de un método
+	 * @param descriptor Descriptor del método
+	 * @return Número de posiciones de pila del resultado (0 para void y dos para long y double)
+	 */
+	private static int getReturnSize(String descriptor) {
+		final char c = descriptor.charAt(descriptor.indexOf(')') + 1);
+		return (c == 'V') ? 0 : ((c == 'J' || c == 'D') ? 2 : 1);
+	}
+
+	/**
+	 * Crea una etiqueta, que se coloca después con {@link #mark(int)}
+	 * @return Identificador de la etiqueta
+	 */
+	public int newLabel() {
+		labels.add(-1);
+		return labels.size() - 1;
+	}
+
+	/**
+	 * Coloca una etiqueta en la posición actual del bytecode
+	 * @param label Identificador de la etiqueta
+	 */
+	public void mark(int label) {
+		labels.set(label, code.size());
+	}
+
+	/**
+	 * Añade un salto a una etiqueta
+	 * @param opcode Instrucción de salto ({@link #IFEQ}, {@link #IFNE}, {@link #IF_ICMPNE} o {@link #GOTO})
+	 * @param label Identificador de la etiqueta de destino
+	 */
+	public void jump(int opcode, int label) {
+		jumps.add(code.size());
+		jumps.add(label);
+		u1(opcode);
+		u2(0);
+		stack((opcode == GOTO) ? 0 : ((opcode == IF_ICMPNE) ? -2 : -1));
+	}
+
+	/**
+	 * Devuelve el tamaño actual del bytecode del método
+	 * @return Número de bytes del bytecode del método
+	 */
+	public int getCodeSize() {
+		return code.size();
+	}
+
+	/**
+	 * Genera el fichero de clase
+	 * @param methodName Nombre del método
+	 * @param descriptor Descriptor del método
+	 * @return El contenido del fichero de clase
+	 */
+	public byte[] toByteArray(String methodName, String descriptor) {
+		final byte[] bytecode = code.toByteArray();
+		for (int i = 0; i < jumps.size(); i += 2) {
+			final int at = jumps.get(i);
+			final int offset = labels.get(jumps.get(i + 1)) - at;
+			bytecode[at + 1] = (byte)(offset >>> 8);
+			bytecode[at + 2] = (byte)offset;
+		}
+		final int codeAttribute = utf8Constant("Code");
+		final int initName = utf8Constant("<init>");
+		final int initDescriptor = utf8Constant("()V");
+		final int objectInit = memberConstant(CP_METHODREF, "java/lang/Object", "<init>", "()V");
+		final int name = utf8Constant(methodName);
+		final int type = utf8Constant(descriptor);
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (DataOutputStream out = new DataOutputStream(bytes)) {
+			out.writeInt(0xCAFEBABE);
+			out.writeShort(0);
+			out.writeShort(MAJOR_VERSION);
+			out.writeShort(nextConstant);
+			pool.writeTo(out);
+			out.writeShort(CLASS_ACCESS);
+			out.writeShort(thisClass);
+			out.writeShort(superClass);
+			out.writeShort(1);
+			out.writeShort(interfaceClass);
+			// Ni campos...
+			out.writeShort(0);
+			// ... y dos métodos: el constructor por defecto...
+			out.writeShort(2);
+			out.writeShort(METHOD_ACCESS);
+			out.writeShort(initName);
+			out.writeShort(initDescriptor);
+			out.writeShort(1);
+			out.writeShort(codeAttribute);
+			out.writeInt(12 + 5);
+			out.writeShort(1);
+			out.writeShort(1);
+			out.writeInt(5);
+			out.writeByte(ALOAD_0);
+			out.writeByte(INVOKESPECIAL);
+			out.writeShort(objectInit);
+			out.writeByte(RETURN);
+			out.writeShort(0);
+			out.writeShort(0);
+			// ... y el método generado
+			out.writeShort(METHOD_ACCESS);
+			out.writeShort(name);
+			out.writeShort(type);
+			out.writeShort(1);
+			out.writeShort(codeAttribute);
+			out.writeInt(12 + bytecode.length);
+			out.writeShort(maxStack);
+			out.writeShort(Math.max(maxLocals, getArgumentsSize(descriptor) + 1));
+			out.writeInt(bytecode.length);
+			out.write(bytecode);
+			out.writeShort(0);
+			out.writeShort(0);
+			// Sin atributos de clase
+			out.writeShort(0);
+		} catch (IOException e) {
+			// No ocurre al escribir en memoria
+			throw new IllegalStateException(e);
+		}
+		return bytes.toByteArray();
+	}
+}
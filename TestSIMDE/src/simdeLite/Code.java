@@ -8,10 +8,13 @@ import java.io.FileNotFoundException;
 import java.io.FileReader;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.SortedMap;
 import java.util.TreeMap;
 
 /**
- * El código secuencial en pseudoMIPS
+ * El código secuencial en pseudoMIPS. Una vez cargado no se puede modificar, así que se puede compartir entre varias máquinas
  * @author Iván Castilla
  *
  */
@@ -24,7 +27,7 @@ public class Code {
 	/**
 	 * Crea un código vacío
 	 */
-	public Code() {
+	Code() {
 		instructions = new ArrayList<>();
 		labels = new TreeMap<>();
 	}
@@ -33,7 +36,7 @@ public class Code {
 	 * Añade una instrucción al final de la lista de instrucciones 
 	 * @param inst Instrucción a añadir
 	 */
-	public void addInstruction(Instruction inst) {
+	void addInstruction(Instruction inst) {
 		instructions.add(inst);
 	}
 	
@@ -42,17 +45,21 @@ public class Code {
 	 * @param label Etiqueta de un salto
 	 * @param line Línea de código a la que corresponde
 	 */
-	public void addLabel(String label, int line) {
+	void addLabel(String label, int line) {
 		labels.put(label, line);			
 	}
 	
 	/**
-	 * Realiza los últimos ajustes del código, como repasar los valores de las etiquetas
+	 * Realiza los últimos ajustes del código, como repasar los valores de las etiquetas. Como las instrucciones son inmutables, cada salto
+	 * se sustituye por una copia con el destino resuelto
 	 */
-	public void finishCode() {
-		for (Instruction inst : instructions) {
+	void finishCode() {
+		for (int i = 0; i < instructions.size(); i++) {
+			final Instruction inst = instructions.get(i);
 			if (FunctionalUnit.JUMP.equals(inst.getOpcode().getFU())) {
-				inst.getOp()[2] = labels.get(inst.getStrOp()[2]);
+				final int[] op = inst.getOp();
+				op[2] = labels.get(inst.getStrOp(2));
+				instructions.set(i, new Instruction(inst.getId(), inst.getBasicBlock(), inst.getOpcode(), op, inst.getStrOp()));
 			}
 		}
 	}
@@ -67,10 +74,18 @@ public class Code {
 
 	/**
 	 * Devuelve la lista de instrucciones que conforman el código
-	 * @return lista de instrucciones que conforman el código
+	 * @return lista de instrucciones que conforman el código, que no se puede modificar
 	 */
-	public ArrayList<Instruction> getInstructions() {
-		return instructions;
+	public List<Instruction> getInstructions() {
+		return Collections.unmodifiableList(instructions);
+	}
+
+	/**
+	 * Devuelve las etiquetas que se usan en el código y la línea de código a la que corresponde cada una
+	 * @return etiquetas que se usan en el código y línea de código a la que corresponden, que no se pueden modificar
+	 */
+	public SortedMap<String, Integer> getLabels() {
+		return Collections.unmodifiableSortedMap(labels);
 	}
 
 	/**
@@ -0,0 +1,21 @@
+/**
+ * 
+ */
+package simdeLite;
+
+/**
+ * Bloque de instrucciones largas traducido a bytecode por {@link VLIWCompiler}. Un bloque comienza en una instrucción larga sin ningún salto 
+ * en curso y termina cuando se finaliza el siguiente salto o cuando se llega al final del código. Los bloques no tienen estado: todo el estado 
+ * de la simulación lo aporta la máquina a través del {@link BlockContext}, así que un mismo bloque se puede ejecutar a la vez en varias máquinas
+ * @author Iván Castilla
+ *
+ */
+public interface CompiledBlock {
+	/**
+	 * Ejecuta el bloque desde el ciclo actual de la máquina, empezando por comenzar la ejecución de su primera instrucción larga
+	 * @param ctx Contexto de ejecución de la máquina
+	 * @return La siguiente instrucción larga cuya ejecución hay que comenzar
+	 * @throws SIMDEException Errores de ejecución
+	 */
+	int run(BlockContext ctx) throws SIMDEException;
+}
@@ -0,0 +1,342 @@
+/**
+ *
+ */
+package simdeLite;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Iterator;
+
+/**
+ * Distribución exacta del número de ciclos de un código VLIW cuando cada acceso a memoria falla en la caché con la misma probabilidad,
+ * calculada a partir de una única traza de sus accesos ({@link MemoryTrace#getDistribution(double, int)}) sin lanzar réplicas.
+ *
+ * El número de ciclos es el de la ejecución sin fallos más una penalización por cada ciclo de finalización en el que algún acceso falla,
+ * así que basta con obtener la distribución del número de burbujas. Si las burbujas fueran independientes, sería una suma de variables
+ * de Bernoulli, una por ciclo de finalización con k accesos y probabilidad 1 - (1 - p)^k. Pero un acceso que estaba en curso cuando se
+ * añadió una burbuja ya no puede fallar, así que la probabilidad de cada burbuja depende del ciclo de la anterior. Por eso se recorre la
+ * traza una sola vez llevando, para cada posible ciclo de la última burbuja que aún afecta a algún acceso pendiente, la distribución del
+ * número de burbujas. Como solo afectan las burbujas de los ciclos en los que hay accesos en curso, el número de estados está acotado por
+ * la latencia de la memoria.
+ *
+ * En cada ciclo de finalización se actualiza la distribución de cada estado, así que el coste es proporcional al número de ciclos de
+ * finalización de la traza, por el número de estados vivos (como mucho, la latencia de la memoria), por la suma de los accesos del ciclo
+ * y de la anchura de la distribución (el número de burbujas con probabilidad no despreciable), que crece con el número de accesos. El
+ * promedio y la varianza se obtienen de los momentos que se acumulan en ese mismo recorrido, así que cuestan lo mismo que la distribución
+ * completa, pero son exactos: no les afecta que la distribución descarte los valores con probabilidad menor que {@link #NEGLIGIBLE}. Por
+ * ese descarte, la suma de las probabilidades de la distribución puede diferir de 1 en una cantidad despreciable.
+ * @author Iván Castilla
+ *
+ */
+public final class CycleDistribution {
+	/** Probabilidad por debajo de la cual se descarta un número de burbujas */
+	public final static double NEGLIGIBLE = 1e-20;
+	/** Número de ciclos de la ejecución sin fallos de caché */
+	private final int baseCycles;
+	/** Penalización en ciclos de cada burbuja */
+	private final int cacheMissPenalty;
+	/** Menor número de burbujas con probabilidad no despreciable */
+	private final int offset;
+	/** Probabilidad de cada número de burbujas, a partir de {@link #offset} */
+	private final double[] prob;
+	/** Suma de las probabilidades de {@link #prob} */
+	private final double total;
+	/** Promedio del número de ciclos */
+	private final double mean;
+	/** Varianza del número de ciclos */
+	private final double variance;
+
+	/**
+	 * Calcula la distribución del número de ciclos de la ejecución grabada en una traza
+	 * @param trace Traza de los accesos a memoria del código
+	 * @param cacheMissRate Tasa de fallos de la caché, expresada en tanto por 1
+	 * @param cacheMissPenalty Penalización en ciclos si se produce un fallo de la caché
+	 */
+	CycleDistribution(MemoryTrace trace, double cacheMissRate, int cacheMissPenalty) {
+		this.baseCycles = trace.getCycles();
+		this.cacheMissPenalty = cacheMissPenalty;
+		final int size = trace.getSize();
+		// Menor ciclo de comienzo de los accesos que quedan a partir de cada posición de la traza
+		final int[] minIssue = new int[size + 1];
+		minIssue[size] = Integer.MAX_VALUE;
+		for (int i = size - 1; i >= 0; i--)
+			minIssue[i] = Math.min(trace.getIssueCycle(i), minIssue[i + 1]);
+		final double logHitRate = Math.log1p(-cacheMissRate);
+		// El primer estado agrupa las burbujas que ya no afectan a ningún acceso pendiente, incluida la ausencia de burbujas
+		final ArrayList<StallState> states = new ArrayList<>();
+		final StallState none = new StallState(-1, 1.0);
+		states.add(none);
+		int i = 0;
+		while (i < size) {
+			final int cycle = trace.getRetireCycle(i);
+			int end = i;
+			while (end < size && trace.getRetireCycle(end) == cycle)
+				end++;
+			final StallState stalled = new StallState(cycle);
+			for (StallState state : states) {
+				// Solo pueden fallar los accesos que comenzaron después de la última burbuja
+				int k = 0;
+				for (int j = i; j < end; j++)
+					if (trace.getIssueCycle(j) > state.cycle)
+						k++;
+				if (k > 0) {
+					final double hit = Math.exp(k * logHitRate);
+					stalled.addShifted(state, 1.0 - hit, 1);
+					state.scale(hit);
+				}
+			}
+			states.add(stalled);
+			// Las burbujas anteriores a todos los accesos pendientes ya no afectan a nadie
+			final Iterator<StallState> iter = states.listIterator(1);
+			while (iter.hasNext()) {
+				final StallState state = iter.next();
+				if (state.cycle < minIssue[end]) {
+					none.addShifted(state, 1.0, 0);
+					iter.remove();
+				}
+			}
+			for (StallState state : states)
+				state.trim();
+			i = end;
+		}
+		final StallState result = new StallState(-1);
+		for (StallState state : states)
+			result.addShifted(state, 1.0, 0);
+		offset = result.offset;
+		prob = result.prob;
+		double sum = 0.0;
+		for (double p : prob)
+			sum += p;
+		total = sum;
+		final double stallsMean = result.m1 / result.m0;
+		mean = baseCycles + cacheMissPenalty * stallsMean;
+		variance = (double)cacheMissPenalty * cacheMissPenalty * Math.max(0.0, result.m2 / result.m0 - stallsMean * stallsMean);
+	}
+
+	/**
+	 * Devuelve el promedio del número de ciclos
+	 * @return Promedio del número de ciclos
+	 */
+	public double getMean() {
+		return mean;
+	}
+
+	/**
+	 * Devuelve la varianza del número de ciclos
+	 * @return Varianza del número de ciclos
+	 */
+	public double getVariance() {
+		return variance;
+	}
+
+	/**
+	 * Devuelve la desviación estándar del número de ciclos
+	 * @return Desviación estándar del número de ciclos
+	 */
+	public double getStdDev() {
+		return Math.sqrt(variance);
+	}
+
+	/**
+	 * Devuelve el menor número de ciclos con probabilidad no despreciable
+	 * @return Menor número de ciclos con probabilidad no despreciable
+	 */
+	public int getMin() {
+		return baseCycles + offset * cacheMissPenalty;
+	}
+
+	/**
+	 * Devuelve el mayor número de ciclos con probabilidad no despreciable
+	 * @return Mayor número de ciclos con probabilidad no despreciable
+	 */
+	public int getMax() {
+		return baseCycles + (offset + prob.length - 1) * cacheMissPenalty;
+	}
+
+	/**
+	 * Devuelve la probabilidad de que la ejecución tarde el número de ciclos indicado
+	 * @param cycles Número de ciclos
+	 * @return Probabilidad de tardar exactamente ese número de ciclos
+	 */
+	public double getProbability(int cycles) {
+		// Sin penalización, todas las réplicas tardan lo mismo
+		if (cacheMissPenalty == 0)
+			return (cycles == baseCycles) ? 1.0 : 0.0;
+		final int extra = cycles - baseCycles;
+		if (extra < 0 || extra % cacheMissPenalty != 0)
+			return 0.0;
+		final int stalls = extra / cacheMissPenalty - offset;
+		return (stalls < 0 || stalls >= prob.length) ? 0.0 : prob[stalls] / total;
+	}
+
+	/**
+	 * Devuelve un cuantil del número de ciclos: el menor número de ciclos tal que la probabilidad de tardar como mucho ese número es,
+	 * al menos, q
+	 * @param q Probabilidad acumulada, en [0, 1]
+	 * @return El cuantil del número de ciclos
+	 */
+	public int getQuantile(double q) {
+		double acc = 0.0;
+		for (int i = 0; i < prob.length; i++) {
+			acc += prob[i];
+			if (acc >= q * total)
+				return baseCycles + (offset + i) * cacheMissPenalty;
+		}
+		return getMax();
+	}
+
+	/**
+	 * Devuelve varios cuantiles del número de ciclos (ver {@link #getQuantile(double)})
+	 * @param qs Probabilidades acumuladas, en [0, 1]
+	 * @return Cada cuantil del número de ciclos
+	 */
+	public int[] getQuantiles(double... qs) {
+		final int[] values = new int[qs.length];
+		for (int i = 0; i < qs.length; i++)
+			values[i] = getQuantile(qs[i]);
+		return values;
+	}
+
+	/**
+	 * Agrupa la distribución en intervalos de la misma anchura
+	 * @param from Límite inferior del primer intervalo
+	 * @param width Anchura de cada intervalo
+	 * @param nBins Número de intervalos
+	 * @return La probabilidad de cada intervalo. No se cuentan los números de ciclos fuera de los intervalos
+	 */
+	public double[] getBins(int from, int width, int nBins) {
+		final double[] bins = new double[nBins];
+		for (int i = 0; i < prob.length; i++) {
+			final long cycles = baseCycles + (long)(offset + i) * cacheMissPenalty;
+			if (cycles >= from) {
+				final long bin = (cycles - from) / width;
+				if (bin < nBins)
+					bins[(int)bin] += prob[i] / total;
+			}
+		}
+		return bins;
+	}
+
+	/**
+	 * Muestra los percentiles de la distribución y un histograma compacto, igual que la distribución de los ciclos de las réplicas
+	 * (ver {@link Statistics.Histogram#print(PrintStream, int)})
+	 * @param out Flujo en el que se muestra la distribución
+	 * @param nBins Número máximo de intervalos del histograma
+	 */
+	public void print(PrintStream out, int nBins) {
+		final int[] percentiles = getQuantiles(0.5, 0.9, 0.99, 0.999);
+		out.println("Ciclos percentiles [p50, p90, p99, p99.9]: [" + percentiles[0] + ", " + percentiles[1] + ", " + percentiles[2] + ", " + percentiles[3] + "]");
+		final int range = getMax() - getMin() + 1;
+		final int width = (range + nBins - 1) / nBins;
+		final double[] bins = getBins(getMin(), width, nBins);
+		out.println("Histograma de ciclos:");
+		for (int i = 0; i < bins.length && getMin() + i * width <= getMax(); i++) {
+			final int from = getMin() + i * width;
+			out.println("\t[" + from + " - " + (from + width - 1) + "]: " + (100.0 * bins[i]) + "%");
+		}
+	}
+
+	/**
+	 * Reparto de probabilidad entre los números de burbujas cuando la última burbuja se añadió en un ciclo concreto. Guarda tanto la
+	 * probabilidad de cada número de burbujas como los momentos de orden 0, 1 y 2 del número de burbujas, que no se ven afectados por
+	 * los valores descartados
+	 * @author Iván Castilla
+	 *
+	 */
+	private static final class StallState {
+		/** Ciclo de la última burbuja, o -1 si ya no afecta a ningún acceso pendiente */
+		private final int cycle;
+		/** Probabilidad total del estado */
+		private double m0 = 0.0;
+		/** Suma de la probabilidad de cada número de burbujas por ese número */
+		private double m1 = 0.0;
+		/** Suma de la probabilidad de cada número de burbujas por el cuadrado de ese número */
+		private double m2 = 0.0;
+		/** Menor número de burbujas de {@link #prob} */
+		private int offset = 0;
+		/** Probabilidad de cada número de burbujas, a partir de {@link #offset} */
+		private double[] prob = new double[0];
+
+		/**
+		 * Crea un estado sin probabilidad
+		 * @param cycle Ciclo de la última burbuja
+		 */
+		private StallState(int cycle) {
+			this.cycle = cycle;
+		}
+
+		/**
+		 * Crea un estado con toda la probabilidad en 0 burbujas
+		 * @param cycle Ciclo de la última burbuja
+		 * @param m0 Probabilidad del estado
+		 */
+		private StallState(int cycle, double m0) {
+			this.cycle = cycle;
+			this.m0 = m0;
+			this.prob = new double[] {m0};
+		}
+
+		/**
+		 * Multiplica la probabilidad del estado por un factor
+		 * @param factor Factor por el que se multiplica
+		 */
+		private void scale(double factor) {
+			m0 *= factor;
+			m1 *= factor;
+			m2 *= factor;
+			for (int i = 0; i < prob.length; i++)
+				prob[i] *= factor;
+		}
+
+		/**
+		 * Añade a este estado la probabilidad de otro multiplicada por un factor, sumando un número de burbujas
+		 * @param other Estado cuya probabilidad se añade
+		 * @param factor Factor por el que se multiplica la probabilidad del otro estado
+		 * @param shift Número de burbujas que se suman
+		 */
+		private void addShifted(StallState other, double factor, int shift) {
+			if (factor == 0.0)
+				return;
+			m2 += factor * (other.m2 + 2.0 * shift * other.m1 + (double)shift * shift * other.m0);
+			m1 += factor * (other.m1 + shift * other.m0);
+			m0 += factor * other.m0;
+			if (other.prob.length == 0)
+				return;
+			final int otherOffset = other.offset + shift;
+			if (prob.length == 0) {
+				offset = otherOffset;
+				prob = new double[other.prob.length];
+			}
+			else {
+				final int from = Math.min(offset, otherOffset);
+				final int to = Math.max(offset + prob.length, otherOffset + other.prob.length);
+				if (from < offset || to > offset + prob.length) {
+					final double[] newProb = new double[to - from];
+					System.arraycopy(prob, 0, newProb, offset - from, prob.length);
+					offset = from;
+					prob = newProb;
+				}
+			}
+			for (int i = 0; i < other.prob.length; i++)
+				prob[otherOffset - offset + i] += factor * other.prob[i];
+		}
+
+		/**
+		 * Descarta los números de burbujas de los extremos con probabilidad despreciable
+		 */
+		private void trim() {
+			int from = 0;
+			int to = prob.length;
+			while (from < to && prob[from] < NEGLIGIBLE)
+				from++;
+			while (to > from && prob[to - 1] < NEGLIGIBLE)
+				to--;
+			if (from > 0 || to < prob.length) {
+				final double[] newProb = new double[to - from];
+				System.arraycopy(prob, from, newProb, 0, to - from);
+				offset += from;
+				prob = newProb;
+			}
+		}
+	}
+}
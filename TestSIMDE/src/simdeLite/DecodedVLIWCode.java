@@ -0,0 +1,296 @@
+/**
+ *
+ */
+package simdeLite;
+
+import simdeLite.LongInstruction.LongInstructionJumpOperation;
+import simdeLite.LongInstruction.LongInstructionOperation;
+
+/**
+ * Código de instrucciones largas decodificado para una configuración de latencias concreta. Las operaciones válidas (excluyendo NOP)
+ * de todas las instrucciones largas se guardan consecutivas en arrays planos, uno por campo (código de operación, destino, fuentes,
+ * predicado, latencia, destino del salto...), de manera que el intérprete no tiene que recorrer la estructura de cada instrucción larga
+ * ni crear listas nuevas en cada ciclo. Las operaciones de la instrucción larga "i" ocupan las posiciones desde {@link #getFirst(int)}
+ * (incluida) hasta {@link #getLast(int)} (excluida), en el mismo orden que devuelve {@link LongInstruction#getValidOperations()}.
+ *
+ * Como el código original, el código decodificado no cambia durante la ejecución y se puede compartir entre varias máquinas.
+ * @author Iván Castilla
+ *
+ */
+public final class DecodedVLIWCode {
+	/** Valor de los campos que no usa una operación */
+	public final static int NONE = OperandFormat.NONE;
+	/** Código de instrucciones largas original */
+	private final VLIWCode code;
+	/** Posición de la primera operación de cada instrucción larga. Tiene una posición extra al final con el número total de operaciones */
+	private final int[] first;
+	/** Instrucción secuencial de cada operación. Solo se usa para mostrar la traza en modo de depuración */
+	private final Instruction[] inst;
+	/** Código de operación de cada operación */
+	private final Opcode[] opcode;
+	/** Índice del tipo de UF de cada operación */
+	private final int[] fu;
+	/** Latencia de cada operación */
+	private final int[] latency;
+	/** Registro de predicado de cada operación */
+	private final int[] pred;
+	/** Registro destino de cada operación, o {@link #NONE} si no escribe ningún registro */
+	private final int[] dest;
+	/** Registro del primer operando fuente de cada operación. En los accesos a memoria es el registro base de la dirección */
+	private final int[] src1;
+	/** Registro del segundo operando fuente de cada operación, o {@link #NONE} si no lo usa. En los almacenamientos es el registro cuyo valor se escribe */
+	private final int[] src2;
+	/** Valor inmediato de cada operación: el inmediato de ADDI o el desplazamiento de los accesos a memoria (ver {@link OperandFormat}) */
+	private final int[] imm;
+	/** Instrucción larga de destino de cada operación de salto */
+	private final int[] target;
+	/** Registro de predicado que se activa si se toma cada operación de salto */
+	private final int[] predTrue;
+	/** Registro de predicado que se activa si no se toma cada operación de salto */
+	private final int[] predFalse;
+	/** Latencia para cada tipo de UF incluida en la máquina */
+	private final int[] latencies;
+	/** Bloques compilados del código (ver {@link VLIWCompiler}), o null si todavía no se han compilado */
+	private volatile CompiledBlock[] blocks = null;
+
+	/**
+	 * Decodifica un código de instrucciones largas
+	 * @param code Código de instrucciones largas
+	 * @param latencies Latencia para cada tipo de UF incluida en la máquina
+	 */
+	public DecodedVLIWCode(VLIWCode code, int[] latencies) {
+		this.code = code;
+		this.latencies = latencies;
+		final int n = code.getSize();
+		first = new int[n + 1];
+		int nOpers = 0;
+		for (int i = 0; i < n; i++) {
+			first[i] = nOpers;
+			nOpers += code.getInstruction(i).getValidOperations().size();
+		}
+		first[n] = nOpers;
+		inst = new Instruction[nOpers];
+		opcode = new Opcode[nOpers];
+		fu = new int[nOpers];
+		latency = new int[nOpers];
+		pred = new int[nOpers];
+		dest = new int[nOpers];
+		src1 = new int[nOpers];
+		src2 = new int[nOpers];
+		imm = new int[nOpers];
+		target = new int[nOpers];
+		predTrue = new int[nOpers];
+		predFalse = new int[nOpers];
+		int k = 0;
+		for (int i = 0; i < n; i++) {
+			for (LongInstructionOperation oper : code.getInstruction(i).getValidOperations()) {
+				decode(k++, oper, latencies);
+			}
+		}
+	}
+
+	/**
+	 * Decodifica una operación y la guarda en la posición "k"
+	 * @param k Posición de la operación en los arrays
+	 * @param oper Operación a decodificar
+	 * @param latencies Latencia para cada tipo de UF incluida en la máquina
+	 */
+	private void decode(int k, LongInstructionOperation oper, int[] latencies) {
+		final Instruction ins = oper.getInstruction();
+		inst[k] = ins;
+		opcode[k] = ins.getOpcode();
+		fu[k] = ins.getOpcode().getFU().ordinal();
+		latency[k] = latencies[fu[k]];
+		pred[k] = oper.getPred();
+		final OperandFormat format = ins.getOpcode().getFormat();
+		dest[k] = format.getDest(ins);
+		src1[k] = format.getSrc1(ins);
+		src2[k] = format.getSrc2(ins);
+		imm[k] = format.getImm(ins);
+		if (FunctionalUnit.JUMP.equals(ins.getOpcode().getFU())) {
+			final LongInstructionJumpOperation jump = (LongInstructionJumpOperation)oper;
+			target[k] = jump.getDestination();
+			predTrue[k] = jump.getPredTrue();
+			predFalse[k] = jump.getPredFalse();
+		}
+		else {
+			target[k] = NONE;
+			predTrue[k] = NONE;
+			predFalse[k] = NONE;
+		}
+	}
+
+	/**
+	 * Devuelve los bloques compilados del código, compilándolos la primera vez que se piden. Si dos máquinas que comparten el código 
+	 * los piden a la vez, ambas los compilan y se queda con los de cualquiera de ellas, que son equivalentes
+	 * @return El bloque compilado que comienza en cada instrucción larga, o null si en esa instrucción no comienza ningún bloque o no se
+	 * pudo compilar
+	 */
+	public CompiledBlock[] getCompiledBlocks() {
+		CompiledBlock[] result = blocks;
+		if (result == null) {
+			result = VLIWCompiler.compile(this, latencies);
+			blocks = result;
+		}
+		return result;
+	}
+
+	/**
+	 * Devuelve el código de instrucciones largas original
+	 * @return Código de instrucciones largas original
+	 */
+	public VLIWCode getCode() {
+		return code;
+	}
+
+	/**
+	 * Devuelve el número de instrucciones largas
+	 * @return Número de instrucciones largas
+	 */
+	public int getSize() {
+		return first.length - 1;
+	}
+
+	/**
+	 * Devuelve verdadero si es una instrucción larga de parada de ejecución (ver {@link VLIWCode#isHalt(int)})
+	 * @param index Posición en el código de instrucciones largas
+	 * @return Verdadero si es una instrucción larga de parada de ejecución
+	 */
+	public boolean isHalt(int index) {
+		return index >= first.length - 1;
+	}
+
+	/**
+	 * Devuelve la posición de la primera operación de la instrucción larga indicada
+	 * @param index Posición en el código de instrucciones largas
+	 * @return Posición de la primera operación de la instrucción larga; si es una instrucción de parada, el número total de operaciones
+	 */
+	public int getFirst(int index) {
+		return first[Math.min(index, first.length - 1)];
+	}
+
+	/**
+	 * Devuelve la posición siguiente a la última operación de la instrucción larga indicada
+	 * @param index Posición en el código de instrucciones largas
+	 * @return Posición siguiente a la última operación de la instrucción larga; si es una instrucción de parada, el número total de operaciones
+	 */
+	public int getLast(int index) {
+		return first[Math.min(index + 1, first.length - 1)];
+	}
+
+	/**
+	 * Devuelve el número total de operaciones válidas del código
+	 * @return Número total de operaciones válidas del código
+	 */
+	public int getNOperations() {
+		return first[first.length - 1];
+	}
+
+	/**
+	 * Devuelve la instrucción secuencial de la operación indicada
+	 * @param k Posición de la operación
+	 * @return Instrucción secuencial de la operación
+	 */
+	public Instruction getInstruction(int k) {
+		return inst[k];
+	}
+
+	/**
+	 * Devuelve el código de operación de la operación indicada
+	 * @param k Posición de la operación
+	 * @return Código de operación
+	 */
+	public Opcode getOpcode(int k) {
+		return opcode[k];
+	}
+
+	/**
+	 * Devuelve el índice del tipo de UF de la operación indicada
+	 * @param k Posición de la operación
+	 * @return Índice del tipo de UF, según el orden de {@link FunctionalUnit}
+	 */
+	public int getFU(int k) {
+		return fu[k];
+	}
+
+	/**
+	 * Devuelve la latencia de la operación indicada
+	 * @param k Posición de la operación
+	 * @return Latencia de la operación
+	 */
+	public int getLatency(int k) {
+		return latency[k];
+	}
+
+	/**
+	 * Devuelve el registro de predicado de la operación indicada
+	 * @param k Posición de la operación
+	 * @return Registro de predicado
+	 */
+	public int getPred(int k) {
+		return pred[k];
+	}
+
+	/**
+	 * Devuelve el registro destino de la operación indicada
+	 * @param k Posición de la operación
+	 * @return Registro destino, o {@link #NONE} si no escribe ningún registro
+	 */
+	public int getDest(int k) {
+		return dest[k];
+	}
+
+	/**
+	 * Devuelve el registro del primer operando fuente de la operación indicada
+	 * @param k Posición de la operación
+	 * @return Registro del primer operando fuente
+	 */
+	public int getSrc1(int k) {
+		return src1[k];
+	}
+
+	/**
+	 * Devuelve el registro del segundo operando fuente de la operación indicada
+	 * @param k Posición de la operación
+	 * @return Registro del segundo operando fuente, o {@link #NONE} si no lo usa
+	 */
+	public int getSrc2(int k) {
+		return src2[k];
+	}
+
+	/**
+	 * Devuelve el valor inmediato de la operación indicada
+	 * @param k Posición de la operación
+	 * @return Valor inmediato de la operación
+	 */
+	public int getImm(int k) {
+		return imm[k];
+	}
+
+	/**
+	 * Devuelve la instrucción larga de destino de la operación de salto indicada
+	 * @param k Posición de la operación
+	 * @return Instrucción larga de destino, o {@link #NONE} si no es un salto
+	 */
+	public int getTarget(int k) {
+		return target[k];
+	}
+
+	/**
+	 * Devuelve el registro de predicado que se activa si se toma la operación de salto indicada
+	 * @param k Posición de la operación
+	 * @return Registro de predicado que se activa si se toma el salto
+	 */
+	public int getPredTrue(int k) {
+		return predTrue[k];
+	}
+
+	/**
+	 * Devuelve el registro de predicado que se activa si no se toma la operación de salto indicada
+	 * @param k Posición de la operación
+	 * @return Registro de predicado que se activa si no se toma el salto
+	 */
+	public int getPredFalse(int k) {
+		return predFalse[k];
+	}
+}
@@ -3,7 +3,8 @@
  */
 package simdeLite;
 
-import java.util.TreeMap;
+import java.nio.DoubleBuffer;
+import java.util.BitSet;
 
 /**
  * Banco de registros de punto flotante
@@ -14,7 +15,9 @@ public class FPRegisterBank {
 	/** Identificador en fichero de la parte que describe el contenido de estos registros */
 	public final static String STR = "#FPR";
 	/** Estructura interna que almacena los valores de los registros */
-	private final TreeMap<Integer, Double> innerStructure;
+	private final double[] values;
+	/** Registros a los que se ha asignado algún valor desde el último reseteo */
+	private final BitSet written;
 	/** Número de registros que contiene el banco */
 	private final int size;
 
@@ -24,7 +27,8 @@ public class FPRegisterBank {
 	 */
 	public FPRegisterBank(int size) {
 		this.size = size;
-		this.innerStructure = new TreeMap<>();
+		this.values = new double[size];
+		this.written = new BitSet(size);
 	}
 
 	/**
@@ -34,7 +38,30 @@ public class FPRegisterBank {
 	 * @param value Valor a escribir
 	 */
 	public void write(int index, double value) {
-		innerStructure.put(index, value);
+		values[index] = value;
+		written.set(index);
+	}
+	
+	/**
+	 * Escribe un bloque de valores en registros consecutivos.
+	 * No realiza control de errores: asume que los índices son válidos
+	 * @param index Índice del primer registro en el que hay que escribir
+	 * @param src Valores a escribir. Se escriben todos los que quedan en el buffer
+	 */
+	public void write(int index, DoubleBuffer src) {
+		final int end = index + src.remaining();
+		src.get(values, index, end - index);
+		written.set(index, end);
+	}
+	
+	/**
+	 * Lee los valores de registros consecutivos.
+	 * No realiza control de errores: asume que los índices son válidos
+	 * @param index Índice del primer registro del que hay que leer
+	 * @param dst Buffer donde se dejan los valores. Se llena con tantos registros como quepan
+	 */
+	public void read(int index, DoubleBuffer dst) {
+		dst.put(values, index, dst.remaining());
 	}
 	
 	/**
@@ -45,16 +72,26 @@ public class FPRegisterBank {
 	 * @return El valor del registro que ocupa la posición "index"
 	 */
 	public double read(int index) {
-		if (innerStructure.containsKey(index))
-			return innerStructure.get(index);
-		return 0;
+		return values[index];
 	}
 	
 	/**
-	 * Resetea el banco de registros, eliminando cualquier asignación de valor que se haya realizado
+	 * Resetea el banco de registros, eliminando cualquier asignación de valor que se haya realizado.
+	 * Solo se recorren los registros que se han escrito
 	 */
 	public void reset() {
-		innerStructure.clear();
+		for (int dir = written.nextSetBit(0); dir >= 0; dir = written.nextSetBit(dir + 1)) {
+			values[dir] = 0.0;
+		}
+		written.clear();
+	}
+	
+	/**
+	 * Devuelve los registros a los que se ha asignado algún valor desde el último reseteo
+	 * @return Una copia del conjunto de registros escritos
+	 */
+	public BitSet getWritten() {
+		return (BitSet)written.clone();
 	}
 	
 	/**
@@ -68,8 +105,8 @@ public class FPRegisterBank {
 	@Override
 	public String toString() {
 		final StringBuffer str = new StringBuffer(STR + System.lineSeparator());
-		for (Integer dir : innerStructure.keySet()) {
-			str.append("[" + dir + "] " + innerStructure.get(dir) + System.lineSeparator());
+		for (int dir = written.nextSetBit(0); dir >= 0; dir = written.nextSetBit(dir + 1)) {
+			str.append("[" + dir + "] " + values[dir] + System.lineSeparator());
 		}
 		return str.toString();
 	}
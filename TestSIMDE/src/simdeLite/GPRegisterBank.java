@@ -3,7 +3,8 @@
  */
 package simdeLite;
 
-import java.util.TreeMap;
+import java.nio.IntBuffer;
+import java.util.BitSet;
 
 /**
  * Banco de registros de propósito general. El registro 0 siempre vale 0
@@ -14,7 +15,9 @@ public class GPRegisterBank {
 	/** Identificador en fichero de la parte que describe el contenido de estos registros */
 	public final static String STR = "#GPR";
 	/** Estructura interna que almacena los valores de los registros */
-	private final TreeMap<Integer, Integer> innerStructure;
+	private final int[] values;
+	/** Registros a los que se ha asignado algún valor desde el último reseteo */
+	private final BitSet written;
 	/** Número de registros que contiene el banco */
 	private final int size;
 
@@ -24,7 +27,8 @@ public class GPRegisterBank {
 	 */
 	public GPRegisterBank(int size) {
 		this.size = size;
-		this.innerStructure = new TreeMap<>();
+		this.values = new int[size];
+		this.written = new BitSet(size);
 	}
 
 	/**
@@ -36,8 +40,38 @@ public class GPRegisterBank {
 	 */
 	public void write(int index, int value) {
 		// Para prevenir modificar el registro 0
-		if (index > 0)
-			innerStructure.put(index, value);
+		if (index > 0) {
+			values[index] = value;
+			written.set(index);
+		}
+	}
+	
+	/**
+	 * Escribe un bloque de valores en registros consecutivos.
+	 * Ignora las escrituras al registro 0.
+	 * No realiza control de errores: asume que los índices son válidos
+	 * @param index Índice del primer registro en el que hay que escribir
+	 * @param src Valores a escribir. Se escriben todos los que quedan en el buffer
+	 */
+	public void write(int index, IntBuffer src) {
+		final int end = index + src.remaining();
+		// Para prevenir modificar el registro 0
+		if (index == 0 && end > 0) {
+			src.get();
+			index++;
+		}
+		src.get(values, index, end - index);
+		written.set(index, end);
+	}
+	
+	/**
+	 * Lee los valores de registros consecutivos.
+	 * No realiza control de errores: asume que los índices son válidos
+	 * @param index Índice del primer registro del que hay que leer
+	 * @param dst Buffer donde se dejan los valores. Se llena con tantos registros como quepan
+	 */
+	public void read(int index, IntBuffer dst) {
+		dst.put(values, index, dst.remaining());
 	}
 	
 	/**
@@ -48,16 +82,26 @@ public class GPRegisterBank {
 	 * @return El valor del registro que ocupa la posición "index"
 	 */
 	public int read(int index) {
-		if (innerStructure.containsKey(index))
-			return innerStructure.get(index);
-		return 0;
+		return values[index];
 	}
 	
 	/**
-	 * Resetea el banco de registros, eliminando cualquier asignación de valor que se haya realizado
+	 * Resetea el banco de registros, eliminando cualquier asignación de valor que se haya realizado.
+	 * Solo se recorren los registros que se han escrito
 	 */
 	public void reset() {
-		innerStructure.clear();
+		for (int dir = written.nextSetBit(0); dir >= 0; dir = written.nextSetBit(dir + 1)) {
+			values[dir] = 0;
+		}
+		written.clear();
+	}
+	
+	/**
+	 * Devuelve los registros a los que se ha asignado algún valor desde el último reseteo
+	 * @return Una copia del conjunto de registros escritos
+	 */
+	public BitSet getWritten() {
+		return (BitSet)written.clone();
 	}
 	
 	/**
@@ -71,8 +115,8 @@ public class GPRegisterBank {
 	@Override
 	public String toString() {
 		final StringBuffer str = new StringBuffer(STR + System.lineSeparator());
-		for (Integer dir : innerStructure.keySet()) {
-			str.append("[" + dir + "] " + innerStructure.get(dir) + System.lineSeparator());
+		for (int dir = written.nextSetBit(0); dir >= 0; dir = written.nextSetBit(dir + 1)) {
+			str.append("[" + dir + "] " + values[dir] + System.lineSeparator());
 		}
 		return str.toString();
 	}
@@ -4,7 +4,7 @@
 package simdeLite;
 
 /**
- * Una instrucción secuencial de la máquina simulada
+ * Una instrucción secuencial de la máquina simulada. Es inmutable, así que se puede compartir entre varias máquinas
  * @author Iván Castilla
  *
  */
@@ -32,8 +32,8 @@ public class Instruction {
 		this.id = id;
 		this.basicBlock = basicBlock;
 		this.opcode = opcode;
-		this.op = op;
-		this.strOp = strOp;
+		this.op = op.clone();
+		this.strOp = strOp.clone();
 	}
 
 	/**
@@ -61,19 +61,37 @@ public class Instruction {
 	}
 
 	/**
-	 * Devuelve los valores de los 3 potenciales operandos de la instrucción
+	 * Devuelve una copia de los valores de los 3 potenciales operandos de la instrucción
 	 * @return Valores de los 3 operandos
 	 */
 	public int[] getOp() {
-		return op;
+		return op.clone();
 	}
 
 	/**
-	 * Devuelve la cadena de caracteres que representa cada operando
+	 * Devuelve el valor de uno de los operandos de la instrucción
+	 * @param index Posición del operando
+	 * @return Valor del operando
+	 */
+	public int getOp(int index) {
+		return op[index];
+	}
+
+	/**
+	 * Devuelve una copia de la cadena de caracteres que representa cada operando
 	 * @return Cadena de caracteres que representa cada operando
 	 */
 	public String[] getStrOp() {
-		return strOp;
+		return strOp.clone();
+	}
+
+	/**
+	 * Devuelve la cadena de caracteres que representa uno de los operandos de la instrucción
+	 * @param index Posición del operando
+	 * @return Cadena de caracteres que representa el operando
+	 */
+	public String getStrOp(int index) {
+		return strOp[index];
 	}
 
 	@Override
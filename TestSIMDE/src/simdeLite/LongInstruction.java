@@ -9,7 +9,8 @@ import java.util.TreeMap;
 /**
  * Instrucción larga de la máquina simulada. Las instrucciones largas están compuestas de instrucciones cortas (del código secuencial original), 
  * enriquecidas con información adicional (a esta instrucción enriquecida se le llama "operación". Cada instrucción larga puede contener, como máximo, 
- * tantas instrucciones cortas como unidades funcionales se hayan definido. Como mucho, se permite una instrucción corta de salto dentro de cada instrucción larga 
+ * tantas instrucciones cortas como unidades funcionales se hayan definido. Como mucho, se permite una instrucción corta de salto dentro de cada instrucción larga.
+ * Es inmutable: se crea completa a partir de su planificación y no se puede modificar después, así que se puede compartir entre varias máquinas
  * @author Iván Castilla
  *
  */
@@ -19,13 +20,23 @@ public class LongInstruction {
 	/** Estructura interna para almacenar las instrucciones largas */
 	private final TreeMap<FunctionalUnit, LongInstructionOperation[]> innerStructure;
 	/** Verdadero si la instrucción larga contiene una instrucción de salto; falso en otro caso */
-	private boolean isJump = false;
+	private final boolean isJump;
 
 	/**
 	 * Crea una instrucción larga vacía con la configuración indicada 
 	 * @param configuration Número de unidades funcionales de cada tipo que contiene la máquina que usarán estas instrucciones 
 	 */
-	public LongInstruction(TreeMap<FunctionalUnit, Integer> configuration) {
+	LongInstruction(TreeMap<FunctionalUnit, Integer> configuration) {
+		this(configuration, null, new int[0]);
+	}
+
+	/**
+	 * Crea una instrucción larga con la configuración indicada y las operaciones de su planificación
+	 * @param configuration Número de unidades funcionales de cada tipo que contiene la máquina que usarán estas instrucciones 
+	 * @param code Código secuencial original
+	 * @param opers Operaciones de la instrucción larga, con el formato de {@link VLIWCode#readSchedule(Code, String)}
+	 */
+	LongInstruction(TreeMap<FunctionalUnit, Integer> configuration, Code code, int[] opers) {
 		this.innerStructure = new TreeMap<>();
 		for (FunctionalUnit fu : FunctionalUnit.values()) {
 			final LongInstructionOperation[] ops;
@@ -41,31 +52,19 @@ public class LongInstruction {
 			}
 			innerStructure.put(fu, ops);
 		}
-	}
-
-	/**
-	 * Añade una instrucción secuencial a la instrucción larga
-	 * @param inst Instrucción del código secuencial original
-	 * @param idFU Identificador de la unidad funcional que la ejecutará
-	 * @param pred Registro de predicado asignado a la instrucción
-	 */
-	public void addInstruction(Instruction inst, int idFU, int pred) {
-		final LongInstructionOperation[] ops = innerStructure.get(inst.getOpcode().getFU());
-		ops[idFU] = new LongInstructionOperation(inst, pred);
-	}
-
-	/**
-	 * Añade una instrucción secuencial de salto a la instrucción larga
-	 * @param inst Instrucción de salto del código secuencial original
-	 * @param pred Registro de predicado asignado a la instrucción
-	 * @param predTrue Registro de predicado que se habilita si la condición del salto resulta ser verdadera
-	 * @param predFalse Registro de predicado que se habilita si la condición del salto resulta ser falsa
-	 * @param destination Instrucción larga de destino del salto
-	 */
-	public void addJumpInstruction(Instruction inst, int pred, int predTrue, int predFalse, int destination) {
-		final LongInstructionOperation[] ops = innerStructure.get(inst.getOpcode().getFU());
-		ops[0] = new LongInstructionJumpOperation(inst, pred, predTrue, predFalse, destination);
-		isJump = true;
+		boolean jump = false;
+		for (int k = 0; k < opers.length; k += VLIWCode.OPERATION_SIZE) {
+			final Instruction inst = code.getInstructions().get(opers[k]);
+			final LongInstructionOperation[] ops = innerStructure.get(inst.getOpcode().getFU());
+			if (FunctionalUnit.JUMP.equals(inst.getOpcode().getFU())) {
+				ops[0] = new LongInstructionJumpOperation(inst, opers[k + 2], opers[k + 4], opers[k + 5], opers[k + 3]);
+				jump = true;
+			}
+			else {
+				ops[opers[k + 1]] = new LongInstructionOperation(inst, opers[k + 2]);
+			}
+		}
+		this.isJump = jump;
 	}
 
 	/**
@@ -102,7 +101,9 @@ public class LongInstruction {
 	}
 
 	/**
-	 * Operación que encapsula una instrucción secuencial y la información adicional necesaria para planificarla dentro de una instrucción larga
+	 * Operación que encapsula una instrucción secuencial y la información adicional necesaria para planificarla dentro de una instrucción larga.
+	 * Es inmutable: los valores de los operandos en tiempo de ejecución los guarda la máquina que la ejecuta, de manera que un mismo
+	 * código se puede ejecutar a la vez en varias máquinas
 	 * @author Iván Castilla
 	 *
 	 */
@@ -111,8 +112,6 @@ public class LongInstruction {
 		private final int pred;
 		/** La instrucción a ejecutar */
 		private final Instruction inst;
-		/** Valores de los operandos fuente durante la ejecución */
-		private final double[]operandValues;
 
 		/**
 		 * Crea una operación
@@ -123,7 +122,6 @@ public class LongInstruction {
 			super();
 			this.inst = inst;
 			this.pred = pred;
-			this.operandValues = new double[2];
 		}
 
 		/**
@@ -141,31 +139,6 @@ public class LongInstruction {
 		public int getPred() {
 			return pred;
 		}
-		
-		/**
-		 * Devuelve el valor en tiempo de ejecución del primer operando fuente de la instrucción
-		 * @return Valor en tiempo de ejecución del primer operando fuente de la instrucción
-		 */
-		public double getOperand1Value() {
-			return operandValues[0];
-		}
-		
-		/**
-		 * Devuelve el valor en tiempo de ejecución del segundo operando fuente de la instrucción
-		 * @return Valor en tiempo de ejecución del segundo operando fuente de la instrucción
-		 */
-		public double getOperand2Value() {
-			return operandValues[1];			
-		}
-		
-		/**
-		 * Establece los valores de los operandos fuente de la instrucción durante el tiempo de ejecución
-		 * @param values Valores de los operandos fuente
-		 */
-		public void setOperandValues(double[] values) {
-			operandValues[0] = values[0];
-			operandValues[1] = values[1];
-		}
 	}
 	
 	/**
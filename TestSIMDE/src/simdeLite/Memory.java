@@ -3,25 +3,44 @@
  */
 package simdeLite;
 
-import java.util.TreeMap;
+import java.nio.DoubleBuffer;
+import java.util.Arrays;
+import java.util.BitSet;
 
 /**
  * Crea una estructura de memoria de datos muy simple que incluye una caché con una tasa de 
- * fallos aleatoria.
+ * fallos aleatoria. Opcionalmente, se le puede conectar un modelo de caché ({@link CacheModel}) que decide los
+ * fallos según las direcciones de los accesos.
+ * Las memorias pequeñas se almacenan en un único array. Las memorias grandes se dividen en páginas de tamaño fijo 
+ * que solo se crean cuando se escribe en ellas por primera vez.
  * @author Iván Castilla Rodríguez
  *
  */
 public class Memory {
 	/** Identificador en fichero de la parte que describe el contenido de esta memoria */
 	public final static String STR = "#MEM";
-	/** Estructura interna que almacena los valores de la memoria */
-	private final TreeMap<Integer, Double> innerStructure;
+	/** Número máximo de palabras de una memoria que se almacena en un único array */
+	public final static int DENSE_LIMIT = 1 << 20;
+	/** Número de bits de la dirección que indican la posición dentro de una página */
+	private final static int PAGE_BITS = 12;
+	/** Número de palabras de cada página */
+	private final static int PAGE_SIZE = 1 << PAGE_BITS;
+	/** Máscara para obtener la posición dentro de una página */
+	private final static int PAGE_MASK = PAGE_SIZE - 1;
+	/** Estructura interna que almacena los valores de la memoria si es pequeña; null en otro caso */
+	private final double[] words;
+	/** Páginas que almacenan los valores de la memoria si es grande; null en otro caso */
+	private final double[][] pages;
+	/** Direcciones en las que se ha escrito algún valor desde el último reseteo */
+	private final BitSet written;
 	/** Número de palabras que contiene la memoria principal */
 	private final int size;
 	/** Tasa de fallos de la caché, expresada en tanto por 1 */
 	private final double cacheMissRate;
 	/** Penalización en ciclos si se produce un fallo de la caché */
 	private final int cacheMissPenalty;
+	/** Modelo de caché que decide los fallos según las direcciones, o null si solo se usa la tasa de fallos aleatoria */
+	private CacheModel cache = null;
 
 	/**
 	 * Crea una memoria simple
@@ -31,7 +50,15 @@ public class Memory {
 	 */
 	public Memory(int size, double cacheMissRate, int cacheMissPenalty) {
 		this.size = size;
-		this.innerStructure = new TreeMap<>();
+		if (size <= DENSE_LIMIT) {
+			this.words = new double[size];
+			this.pages = null;
+		}
+		else {
+			this.words = null;
+			this.pages = new double[(size + PAGE_SIZE - 1) >>> PAGE_BITS][];
+		}
+		this.written = new BitSet();
 		this.cacheMissRate = cacheMissRate;
 		this.cacheMissPenalty = cacheMissPenalty;
 	}
@@ -45,7 +72,18 @@ public class Memory {
 	public void write(int address, double value) throws SIMDEException {
 		if (address < 0 || address >= size)
 			throw new SIMDEException("Dirección de memoria inválida (" + address + ")");
-		innerStructure.put(address, value);
+		if (words != null) {
+			words[address] = value;
+		}
+		else {
+			double[] page = pages[address >>> PAGE_BITS];
+			if (page == null) {
+				page = new double[PAGE_SIZE];
+				pages[address >>> PAGE_BITS] = page;
+			}
+			page[address & PAGE_MASK] = value;
+		}
+		written.set(address);
 	}
 
 	/**
@@ -57,16 +95,127 @@ public class Memory {
 	public double read(int address) throws SIMDEException {
 		if (address < 0 || address >= size)
 			throw new SIMDEException("Dirección de memoria inválida (" + address + ")");
-		if (innerStructure.containsKey(address))
-			return innerStructure.get(address);
-		return 0;
+		if (words != null)
+			return words[address];
+		final double[] page = pages[address >>> PAGE_BITS];
+		return (page == null) ? 0.0 : page[address & PAGE_MASK];
+	}
+	
+	/**
+	 * Escribe un bloque de valores en direcciones consecutivas de la memoria
+	 * @param address Dirección donde comienza la escritura
+	 * @param src Valores a escribir. Se escriben todos los que quedan en el buffer
+	 * @throws SIMDEException Excepción en caso de que el bloque se salga de la memoria
+	 */
+	public void write(int address, DoubleBuffer src) throws SIMDEException {
+		final int end = address + src.remaining();
+		if (address < 0 || end > size || end < address)
+			throw new SIMDEException("Bloque de memoria inválido ([" + address + ", " + end + "))");
+		if (words != null) {
+			src.get(words, address, end - address);
+		}
+		else {
+			for (int dir = address; dir < end; ) {
+				double[] page = pages[dir >>> PAGE_BITS];
+				if (page == null) {
+					page = new double[PAGE_SIZE];
+					pages[dir >>> PAGE_BITS] = page;
+				}
+				final int length = Math.min(end - dir, PAGE_SIZE - (dir & PAGE_MASK));
+				src.get(page, dir & PAGE_MASK, length);
+				dir += length;
+			}
+		}
+		written.set(address, end);
+	}
+
+	/**
+	 * Lee los valores de direcciones consecutivas de la memoria
+	 * @param address Dirección donde comienza la lectura
+	 * @param dst Buffer donde se dejan los valores. Se llena con tantas palabras como quepan
+	 * @throws SIMDEException Excepción en caso de que el bloque se salga de la memoria
+	 */
+	public void read(int address, DoubleBuffer dst) throws SIMDEException {
+		final int end = address + dst.remaining();
+		if (address < 0 || end > size || end < address)
+			throw new SIMDEException("Bloque de memoria inválido ([" + address + ", " + end + "))");
+		if (words != null) {
+			dst.put(words, address, end - address);
+		}
+		else {
+			for (int dir = address; dir < end; ) {
+				final double[] page = pages[dir >>> PAGE_BITS];
+				final int length = Math.min(end - dir, PAGE_SIZE - (dir & PAGE_MASK));
+				if (page == null) {
+					for (int i = 0; i < length; i++)
+						dst.put(0.0);
+				}
+				else {
+					dst.put(page, dir & PAGE_MASK, length);
+				}
+				dir += length;
+			}
+		}
+	}
+
+	/**
+	 * Devuelve las direcciones en las que se ha escrito algún valor desde el último reseteo
+	 * @return Una copia del conjunto de direcciones escritas
+	 */
+	public BitSet getWritten() {
+		return (BitSet)written.clone();
+	}
+	
+	/**
+	 * Busca en el modelo de caché, si lo hay, la dirección de un acceso que se va a realizar. Las máquinas lo llaman una sola vez 
+	 * por acceso, justo antes de la lectura o escritura correspondiente
+	 * @param address Dirección del acceso
+	 * @param write Verdadero si es un almacenamiento; falso si es una carga
+	 * @return Falso si el modelo de caché indica que el acceso produce un fallo; verdadero si acierta o si no hay modelo de caché
+	 */
+	public boolean access(int address, boolean write) {
+		return (cache == null) || cache.access(address, write);
 	}
 	
 	/**
-	 * Vacía el contenido de la memoria
+	 * Devuelve el modelo de caché que decide los fallos según las direcciones
+	 * @return Modelo de caché, o null si solo se usa la tasa de fallos aleatoria
+	 */
+	public CacheModel getCacheModel() {
+		return cache;
+	}
+
+	/**
+	 * Establece el modelo de caché que decide los fallos según las direcciones. Sus fallos se suman a los de la tasa de fallos aleatoria
+	 * @param cache Modelo de caché, o null para usar solo la tasa de fallos aleatoria
+	 */
+	public void setCacheModel(CacheModel cache) {
+		this.cache = cache;
+	}
+	
+	/**
+	 * Vacía el contenido de la memoria y de la caché
 	 */
 	public void reset() {
-		innerStructure.clear();
+		if (cache != null)
+			cache.reset();
+		if (words != null) {
+			for (int dir = written.nextSetBit(0); dir >= 0; dir = written.nextSetBit(dir + 1)) {
+				words[dir] = 0.0;
+			}
+		}
+		else {
+			Arrays.fill(pages, null);
+		}
+		written.clear();
+	}
+	
+	/**
+	 * Devuelve el número de palabras que contiene la memoria
+	 * @return número de palabras que contiene la memoria
+	 */
+	public int getSize() {
+		return size;
 	}
 	
 	/**
@@ -88,8 +237,9 @@ public class Memory {
 	@Override
 	public String toString() {
 		final StringBuffer str = new StringBuffer(STR + System.lineSeparator());
-		for (Integer dir : innerStructure.keySet()) {
-			str.append("[" + dir + "] " + innerStructure.get(dir) + System.lineSeparator());
+		for (int dir = written.nextSetBit(0); dir >= 0; dir = written.nextSetBit(dir + 1)) {
+			final double value = (words != null) ? words[dir] : pages[dir >>> PAGE_BITS][dir & PAGE_MASK];
+			str.append("[" + dir + "] " + value + System.lineSeparator());
 		}
 		return str.toString();
 	}
@@ -0,0 +1,289 @@
+/**
+ *
+ */
+package simdeLite;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.BitSet;
+
+/**
+ * Imagen binaria del contenido de la memoria y los registros de una máquina, equivalente a los ficheros de texto .mem de SIMDE pero
+ * mucho más rápida de cargar y guardar con memorias grandes. El fichero se proyecta en memoria y cada bloque de valores se copia de una
+ * vez en los arrays de los bancos de registros y de la memoria. Las máquinas detectan el formato al cargar el fichero
+ * ({@link VLIWMachine#loadMemoryAndRegisters(String)}), así que se puede usar en cualquier sitio donde se use un .mem.
+ *
+ * El fichero, en little-endian, comienza con {@link #MAGIC}, {@link #VERSION} y el número de palabras de la memoria que se guardó.
+ * Después tiene cuatro secciones, en este orden: registros de propósito general (int), de punto flotante (double), de predicado (un
+ * byte, 0 o 1) y memoria (double). Cada sección tiene su número de bloques y, por cada bloque, su primera posición, su número de
+ * valores y los valores. Igual que en el formato de texto, solo se guardan las posiciones escritas desde el último reseteo, agrupadas en
+ * bloques de posiciones consecutivas. {@link MemoryImageConverter} convierte entre este formato y el de texto.
+ *
+ * Un fichero no puede tener más de 2 GB, el límite de la proyección de un único fichero en memoria
+ * @author Iván Castilla
+ *
+ */
+public final class MemoryImage {
+	/** Identificador de los ficheros de imagen de memoria: "SMDM" */
+	public final static int MAGIC = 0x4D444D53;
+	/** Versión del formato del fichero */
+	public final static int VERSION = 1;
+	/** Número de bytes de la cabecera */
+	private final static int HEADER_SIZE = 12;
+	/** Número de bytes de la cabecera de una sección o de un bloque */
+	private final static int BLOCK_HEADER_SIZE = 8;
+	/** Nombre del fichero */
+	private final String fileName;
+	/** Contenido del fichero */
+	private final MappedByteBuffer buffer;
+	/** Número de palabras de la memoria que se guardó */
+	private final int memSize;
+
+	/**
+	 * Abre una imagen de memoria y comprueba su cabecera
+	 * @param fileName Nombre del fichero
+	 * @throws FileNotFoundException Si el fichero no existe
+	 * @throws IOException Si no se pudo leer el fichero o no es una imagen de memoria
+	 */
+	public MemoryImage(String fileName) throws IOException {
+		this.fileName = fileName;
+		try (RandomAccessFile file = new RandomAccessFile(fileName, "r"); FileChannel channel = file.getChannel()) {
+			if (channel.size() > Integer.MAX_VALUE)
+				throw new IOException("ERROR: La imagen de memoria " + fileName + " es demasiado grande");
+			// La proyección sigue siendo válida después de cerrar el canal
+			buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+		buffer.order(ByteOrder.LITTLE_ENDIAN);
+		if (buffer.remaining() < HEADER_SIZE || buffer.getInt() != MAGIC)
+			throw new IOException("ERROR: El fichero " + fileName + " no es una imagen de memoria válida");
+		final int version = buffer.getInt();
+		if (version != VERSION)
+			throw new IOException("ERROR: Versión de la imagen de memoria no soportada (" + version + "): " + fileName);
+		memSize = buffer.getInt();
+	}
+
+	/**
+	 * Devuelve verdadero si un fichero es una imagen de memoria, comprobando solo sus primeros bytes
+	 * @param fileName Nombre del fichero
+	 * @return Verdadero si el fichero comienza con {@link #MAGIC}
+	 * @throws FileNotFoundException Si el fichero no existe
+	 * @throws IOException Si no se pudo leer el fichero
+	 */
+	public static boolean isImage(String fileName) throws IOException {
+		try (RandomAccessFile file = new RandomAccessFile(fileName, "r")) {
+			// RandomAccessFile lee en big-endian
+			return file.length() >= HEADER_SIZE && Integer.reverseBytes(file.readInt()) == MAGIC;
+		}
+	}
+
+	/**
+	 * Devuelve el número de palabras de la memoria que se guardó
+	 * @return Número de palabras de la memoria que se guardó
+	 */
+	public int getMemSize() {
+		return memSize;
+	}
+
+	/**
+	 * Lee la cabecera de un bloque y prepara el límite del buffer para leer sus valores
+	 * @param valueSize Número de bytes de cada valor
+	 * @return Primera posición del bloque
+	 * @throws IOException Si el bloque se sale del fichero
+	 */
+	private int nextBlock(int valueSize) throws IOException {
+		if (buffer.remaining() < BLOCK_HEADER_SIZE)
+			throw new IOException("ERROR: La imagen de memoria " + fileName + " está incompleta");
+		final int index = buffer.getInt();
+		final long length = buffer.getInt();
+		if (index < 0 || length < 0 || length * valueSize > buffer.remaining())
+			throw new IOException("ERROR: La imagen de memoria " + fileName + " está incompleta");
+		buffer.limit(buffer.position() + (int)length * valueSize);
+		return index;
+	}
+
+	/**
+	 * Lee el número de bloques de una sección
+	 * @return Número de bloques de la sección
+	 * @throws IOException Si la sección se sale del fichero
+	 */
+	private int nextSection() throws IOException {
+		if (buffer.remaining() < Integer.BYTES)
+			throw new IOException("ERROR: La imagen de memoria " + fileName + " está incompleta");
+		return buffer.getInt();
+	}
+
+	/**
+	 * Copia el contenido de la imagen en los registros y la memoria de una máquina. Solo se escriben las posiciones guardadas en la
+	 * imagen, así que la máquina debería estar reseteada
+	 * @param gpr Banco de registros de propósito general
+	 * @param fpr Banco de registros de punto flotante
+	 * @param pred Banco de registros de predicado, o null si la máquina no tiene; en ese caso se ignoran
+	 * @param mem Memoria
+	 * @throws IOException Si la imagen está incompleta
+	 * @throws SIMDEException Si algún bloque se sale de la memoria o de los bancos de registros
+	 */
+	public void load(GPRegisterBank gpr, FPRegisterBank fpr, PredicateRegisterBank pred, Memory mem) throws IOException, SIMDEException {
+		buffer.position(HEADER_SIZE);
+		for (int n = nextSection(); n > 0; n--) {
+			final int index = nextBlock(Integer.BYTES);
+			final int end = buffer.limit();
+			checkRegisters(GPRegisterBank.STR, index, (end - buffer.position()) / Integer.BYTES, gpr.getSize());
+			gpr.write(index, buffer.asIntBuffer());
+			endBlock(buffer, end);
+		}
+		for (int n = nextSection(); n > 0; n--) {
+			final int index = nextBlock(Double.BYTES);
+			final int end = buffer.limit();
+			checkRegisters(FPRegisterBank.STR, index, (end - buffer.position()) / Double.BYTES, fpr.getSize());
+			fpr.write(index, buffer.asDoubleBuffer());
+			endBlock(buffer, end);
+		}
+		for (int n = nextSection(); n > 0; n--) {
+			final int index = nextBlock(Byte.BYTES);
+			final int end = buffer.limit();
+			if (pred != null) {
+				checkRegisters(PredicateRegisterBank.STR, index, end - buffer.position(), pred.getSize());
+				pred.write(index, buffer);
+			}
+			endBlock(buffer, end);
+		}
+		for (int n = nextSection(); n > 0; n--) {
+			final int index = nextBlock(Double.BYTES);
+			final int end = buffer.limit();
+			mem.write(index, buffer.asDoubleBuffer());
+			endBlock(buffer, end);
+		}
+	}
+
+	/**
+	 * Comprueba que un bloque de registros cabe en su banco
+	 * @param bank Identificador del banco de registros
+	 * @param index Primer registro del bloque
+	 * @param length Número de registros del bloque
+	 * @param size Número de registros del banco
+	 * @throws SIMDEException Si el bloque se sale del banco
+	 */
+	private static void checkRegisters(String bank, int index, int length, int size) throws SIMDEException {
+		if (index + length > size)
+			throw new SIMDEException("Bloque de registros inválido en " + bank + " ([" + index + ", " + (index + length) + "))");
+	}
+
+	/**
+	 * Cuenta los bloques de posiciones consecutivas de un conjunto y el número de bytes que ocupan en la imagen
+	 * @param written Posiciones escritas
+	 * @param valueSize Número de bytes de cada valor
+	 * @return Número de bytes que ocupa la sección
+	 */
+	private static long getSectionSize(BitSet written, int valueSize) {
+		long bytes = Integer.BYTES;
+		for (int from = written.nextSetBit(0); from >= 0; from = written.nextSetBit(written.nextClearBit(from))) {
+			bytes += BLOCK_HEADER_SIZE + (long)(written.nextClearBit(from) - from) * valueSize;
+		}
+		return bytes;
+	}
+
+	/**
+	 * Escribe la cabecera de una sección
+	 * @param buffer Contenido del fichero
+	 * @param written Posiciones escritas
+	 */
+	private static void putSection(ByteBuffer buffer, BitSet written) {
+		int nBlocks = 0;
+		for (int from = written.nextSetBit(0); from >= 0; from = written.nextSetBit(written.nextClearBit(from)))
+			nBlocks++;
+		buffer.putInt(nBlocks);
+	}
+
+	/**
+	 * Escribe la cabecera de un bloque y prepara el límite del buffer para escribir sus valores
+	 * @param buffer Contenido del fichero
+	 * @param from Primera posición del bloque
+	 * @param to Posición siguiente a la última del bloque
+	 * @param valueSize Número de bytes de cada valor
+	 * @return Posición del buffer siguiente al último valor del bloque
+	 */
+	private static int putBlock(ByteBuffer buffer, int from, int to, int valueSize) {
+		buffer.putInt(from);
+		buffer.putInt(to - from);
+		final int end = buffer.position() + (to - from) * valueSize;
+		buffer.limit(end);
+		return end;
+	}
+
+	/**
+	 * Guarda el contenido de los registros y la memoria de una máquina en una imagen. Si el fichero ya existe, se sobrescribe
+	 * @param fileName Nombre del fichero
+	 * @param gpr Banco de registros de propósito general
+	 * @param fpr Banco de registros de punto flotante
+	 * @param pred Banco de registros de predicado, o null si la máquina no tiene
+	 * @param mem Memoria
+	 * @throws IOException Si no se pudo escribir el fichero o la imagen ocupa más de 2 GB
+	 * @throws SIMDEException Errores de acceso a la memoria
+	 */
+	public static void save(String fileName, GPRegisterBank gpr, FPRegisterBank fpr, PredicateRegisterBank pred, Memory mem) throws IOException, SIMDEException {
+		final BitSet gprWritten = gpr.getWritten();
+		final BitSet fprWritten = fpr.getWritten();
+		final BitSet predWritten = (pred == null) ? new BitSet() : pred.getWritten();
+		final BitSet memWritten = mem.getWritten();
+		final long size = HEADER_SIZE + getSectionSize(gprWritten, Integer.BYTES) + getSectionSize(fprWritten, Double.BYTES)
+				+ getSectionSize(predWritten, Byte.BYTES) + getSectionSize(memWritten, Double.BYTES);
+		if (size > Integer.MAX_VALUE)
+			throw new IOException("ERROR: La imagen de memoria es demasiado grande para guardarla en " + fileName);
+		try (RandomAccessFile file = new RandomAccessFile(fileName, "rw"); FileChannel channel = file.getChannel()) {
+			file.setLength(size);
+			final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+			buffer.order(ByteOrder.LITTLE_ENDIAN);
+			buffer.putInt(MAGIC);
+			buffer.putInt(VERSION);
+			buffer.putInt(mem.getSize());
+			putSection(buffer, gprWritten);
+			for (int from = gprWritten.nextSetBit(0); from >= 0; from = gprWritten.nextSetBit(from)) {
+				final int to = gprWritten.nextClearBit(from);
+				final int end = putBlock(buffer, from, to, Integer.BYTES);
+				gpr.read(from, buffer.asIntBuffer());
+				endBlock(buffer, end);
+				from = to;
+			}
+			putSection(buffer, fprWritten);
+			for (int from = fprWritten.nextSetBit(0); from >= 0; from = fprWritten.nextSetBit(from)) {
+				final int to = fprWritten.nextClearBit(from);
+				final int end = putBlock(buffer, from, to, Double.BYTES);
+				fpr.read(from, buffer.asDoubleBuffer());
+				endBlock(buffer, end);
+				from = to;
+			}
+			putSection(buffer, predWritten);
+			for (int from = predWritten.nextSetBit(0); from >= 0; from = predWritten.nextSetBit(from)) {
+				final int to = predWritten.nextClearBit(from);
+				final int end = putBlock(buffer, from, to, Byte.BYTES);
+				pred.read(from, buffer);
+				endBlock(buffer, end);
+				from = to;
+			}
+			putSection(buffer, memWritten);
+			for (int from = memWritten.nextSetBit(0); from >= 0; from = memWritten.nextSetBit(from)) {
+				final int to = memWritten.nextClearBit(from);
+				final int end = putBlock(buffer, from, to, Double.BYTES);
+				mem.read(from, buffer.asDoubleBuffer());
+				endBlock(buffer, end);
+				from = to;
+			}
+			buffer.force();
+		}
+	}
+
+	/**
+	 * Pasa al siguiente bloque de un buffer, después de leer o escribir los valores del actual
+	 * @param buffer Contenido del fichero
+	 * @param end Posición siguiente al último valor del bloque
+	 */
+	private static void endBlock(ByteBuffer buffer, int end) {
+		buffer.limit(buffer.capacity());
+		buffer.position(end);
+	}
+}
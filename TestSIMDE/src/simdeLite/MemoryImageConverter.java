@@ -0,0 +1,77 @@
+/**
+ *
+ */
+package simdeLite;
+
+import java.io.IOException;
+import java.io.PrintStream;
+
+import com.beust.jcommander.JCommander;
+import com.beust.jcommander.Parameter;
+import com.beust.jcommander.ParameterException;
+
+/**
+ * Convierte los ficheros de memoria y registros entre el formato de texto de SIMDE (.mem) y el de imagen binaria ({@link MemoryImage}),
+ * para que los ficheros generados con SIMDE se puedan seguir usando. El formato de texto no incluye los registros de predicado, que se
+ * pierden al convertir una imagen a texto
+ * @author Iván Castilla
+ *
+ */
+public class MemoryImageConverter {
+	/**
+	 * Lanza la aplicación. El sentido de la conversión se decide según el fichero de entrada
+	 * @param args Argumentos de la aplicación, definidos en {@link Arguments}
+	 */
+	public static void main(String[] args) {
+		try {
+			final Arguments args1 = new Arguments();
+			JCommander jc = JCommander.newBuilder()
+					  .addObject(args1)
+					  .build();
+			jc.parse(args);
+			final int[] latencies = new int[FunctionalUnit.values().length];
+			for (int i = 0; i < latencies.length; i++)
+				latencies[i] = FunctionalUnit.values()[i].getDefaultLatency();
+			if (MemoryImage.isImage(args1.input)) {
+				final VLIWMachine machine = new VLIWMachine(latencies, new MemoryImage(args1.input).getMemSize(), 0, 0);
+				machine.loadMemoryAndRegisters(args1.input);
+				try (PrintStream out = new PrintStream(args1.output)) {
+					machine.printMemoryAndRegisters(out);
+				}
+				System.out.println("Imagen binaria " + args1.input + " convertida a texto en " + args1.output);
+			}
+			else {
+				if (args1.memSize < 1)
+					throw new ParameterException("ERROR: El tamaño de la memoria debe ser mayor que 0. Usado: " + args1.memSize);
+				final VLIWMachine machine = new VLIWMachine(latencies, args1.memSize, 0, 0);
+				machine.loadMemoryAndRegisters(args1.input);
+				machine.saveMemoryAndRegisters(args1.output);
+				System.out.println("Fichero de texto " + args1.input + " convertido a imagen binaria en " + args1.output);
+			}
+		} catch (IOException ex) {
+			System.out.println(ex.getMessage());
+			System.exit(-1);
+		} catch (ParameterException ex) {
+			System.out.println(ex.getMessage());
+			ex.usage();
+			System.exit(-1);
+		} catch (SIMDEException e) {
+			e.printStackTrace();
+			System.exit(-1);
+		}
+	}
+
+	/**
+	 * Argumentos de la línea de comandos del conversor
+	 * @author Iván Castilla
+	 *
+	 */
+	private static class Arguments {
+		@Parameter(names ={"--input", "-i"}, description = "Nombre del fichero de memoria y registros a convertir: si es una imagen binaria, se convierte a texto; si no, a imagen binaria", order = 1, required = true)
+		private String input = null;
+		@Parameter(names ={"--output", "-o"}, description = "Nombre del fichero convertido. Si ya existe, se sobrescribe", order = 1, required = true)
+		private String output = null;
+		@Parameter(names ={"--memsize", "-ms"}, description = "Número de palabras de memoria de la imagen, al convertir de texto a imagen binaria", order = 2)
+		private int memSize = SequentialMachine.NMEM;
+	}
+}
@@ -0,0 +1,275 @@
+/**
+ *
+ */
+package simdeLite;
+
+import java.util.Arrays;
+
+/**
+ * Traza dinámica de los accesos a memoria de una ejecución del código VLIW, obtenida con {@link VLIWMachine#record(VLIWCode)}.
+ *
+ * Un fallo de caché congela la máquina entera durante la penalización, así que los fallos cambian el número de ciclos pero no
+ * los valores que se calculan. Por eso basta con ejecutar el programa una vez sin fallos y guardar, para cada acceso a memoria
+ * que se finaliza, en qué orden se sorteó su fallo, en qué ciclo comenzó y en qué ciclo terminó. Cada réplica solo tiene que
+ * volver a sortear los fallos sobre esta traza ({@link #replay(CacheMissGenerator, int)}) para obtener el mismo número de ciclos que
+ * daría una simulación completa con la misma semilla.
+ *
+ * La única excepción es que una operación que falla se finaliza después del resto de operaciones de su ciclo. Si en un mismo ciclo
+ * un acceso a memoria escribe el mismo registro que otra operación, o dos accesos usan la misma dirección y alguno es un almacenamiento,
+ * el resultado podría depender de los fallos y la traza no es exacta (ver {@link #isExact()}).
+ *
+ * Todos los ciclos de la traza son ciclos de la rueda temporal, que no cuentan las burbujas.
+ * @author Iván Castilla
+ *
+ */
+public final class MemoryTrace {
+	/** Capacidad inicial de los arrays de accesos */
+	private final static int INITIAL_CAPACITY = 256;
+	/** Número de ciclos de la ejecución sin fallos de caché */
+	private int cycles = 0;
+	/** Número de accesos a memoria planificados, incluidos los que se cancelan por su predicado. Cada uno consume un sorteo */
+	private int nDraws = 0;
+	/** Identificador de la instrucción secuencial de cada acceso planificado, en el orden en que se sortearon sus fallos */
+	private int[] drawInstruction;
+	/** Número de accesos a memoria finalizados */
+	private int size = 0;
+	/** Orden en que se sorteó el fallo de caché de cada acceso */
+	private int[] draw;
+	/** Ciclo en que comenzó cada acceso */
+	private int[] issueCycle;
+	/** Ciclo en que terminó cada acceso */
+	private int[] retireCycle;
+	/** Dirección de memoria de cada acceso */
+	private int[] address;
+	/** Verdadero si el acceso es un almacenamiento; falso si es una carga */
+	private boolean[] store;
+	/** Falso si el resultado del programa podría depender de los fallos de caché */
+	private boolean exact = true;
+
+	/**
+	 * Crea una traza vacía
+	 */
+	MemoryTrace() {
+		drawInstruction = new int[INITIAL_CAPACITY];
+		draw = new int[INITIAL_CAPACITY];
+		issueCycle = new int[INITIAL_CAPACITY];
+		retireCycle = new int[INITIAL_CAPACITY];
+		address = new int[INITIAL_CAPACITY];
+		store = new boolean[INITIAL_CAPACITY];
+	}
+
+	/**
+	 * Añade un acceso a memoria finalizado. Los accesos se tienen que añadir en el orden en que se finalizan
+	 * @param draw Orden en que se sorteó el fallo de caché del acceso
+	 * @param issueCycle Ciclo en que comenzó el acceso
+	 * @param retireCycle Ciclo en que terminó el acceso
+	 * @param address Dirección de memoria del acceso
+	 * @param store Verdadero si el acceso es un almacenamiento; falso si es una carga
+	 */
+	void add(int draw, int issueCycle, int retireCycle, int address, boolean store) {
+		if (size == this.draw.length) {
+			final int capacity = size * 2;
+			this.draw = Arrays.copyOf(this.draw, capacity);
+			this.issueCycle = Arrays.copyOf(this.issueCycle, capacity);
+			this.retireCycle = Arrays.copyOf(this.retireCycle, capacity);
+			this.address = Arrays.copyOf(this.address, capacity);
+			this.store = Arrays.copyOf(this.store, capacity);
+		}
+		this.draw[size] = draw;
+		this.issueCycle[size] = issueCycle;
+		this.retireCycle[size] = retireCycle;
+		this.address[size] = address;
+		this.store[size] = store;
+		size++;
+	}
+
+	/**
+	 * Añade un acceso a memoria planificado. Los accesos se tienen que añadir en el orden en que se sortean sus fallos
+	 * @param instruction Identificador de la instrucción secuencial del acceso
+	 */
+	void addDraw(int instruction) {
+		if (nDraws == drawInstruction.length)
+			drawInstruction = Arrays.copyOf(drawInstruction, nDraws * 2);
+		drawInstruction[nDraws++] = instruction;
+	}
+
+	/**
+	 * Termina la traza
+	 * @param cycles Número de ciclos de la ejecución sin fallos de caché
+	 */
+	void finish(int cycles) {
+		this.cycles = cycles;
+	}
+
+	/**
+	 * Indica que el resultado del programa podría depender de los fallos de caché
+	 */
+	void setInexact() {
+		exact = false;
+	}
+
+	/**
+	 * Devuelve falso si algún ciclo finaliza un acceso a memoria junto con otra operación que escribe su mismo registro, o
+	 * junto con otro acceso a la misma dirección cuando alguno de ellos es un almacenamiento. En ese caso, el resultado del
+	 * programa podría depender de los fallos de caché y hay que simular cada réplica completa
+	 * @return Verdadero si {@link #replay(CacheMissGenerator, int)} da el mismo número de ciclos que una simulación completa
+	 */
+	public boolean isExact() {
+		return exact;
+	}
+
+	/**
+	 * Devuelve el número de ciclos de la ejecución sin fallos de caché
+	 * @return Número de ciclos de la ejecución sin fallos de caché
+	 */
+	public int getCycles() {
+		return cycles;
+	}
+
+	/**
+	 * Devuelve el número de accesos a memoria planificados, incluidos los que se cancelan por su predicado
+	 * @return Número de accesos a memoria planificados
+	 */
+	public int getNDraws() {
+		return nDraws;
+	}
+
+	/**
+	 * Devuelve el identificador de la instrucción secuencial del acceso planificado indicado
+	 * @param draw Orden en que se sorteó el fallo de caché del acceso
+	 * @return Identificador de la instrucción secuencial del acceso
+	 */
+	public int getDrawInstruction(int draw) {
+		return drawInstruction[draw];
+	}
+
+	/**
+	 * Devuelve el número de accesos a memoria finalizados
+	 * @return Número de accesos a memoria finalizados
+	 */
+	public int getSize() {
+		return size;
+	}
+
+	/**
+	 * Devuelve el orden en que se sorteó el fallo de caché del acceso indicado
+	 * @param i Posición del acceso en la traza
+	 * @return Orden en que se sorteó el fallo de caché del acceso
+	 */
+	public int getDraw(int i) {
+		return draw[i];
+	}
+
+	/**
+	 * Devuelve el ciclo en que comenzó el acceso indicado
+	 * @param i Posición del acceso en la traza
+	 * @return Ciclo en que comenzó el acceso
+	 */
+	public int getIssueCycle(int i) {
+		return issueCycle[i];
+	}
+
+	/**
+	 * Devuelve el ciclo en que terminó el acceso indicado
+	 * @param i Posición del acceso en la traza
+	 * @return Ciclo en que terminó el acceso
+	 */
+	public int getRetireCycle(int i) {
+		return retireCycle[i];
+	}
+
+	/**
+	 * Devuelve la dirección de memoria del acceso indicado
+	 * @param i Posición del acceso en la traza
+	 * @return Dirección de memoria del acceso
+	 */
+	public int getAddress(int i) {
+		return address[i];
+	}
+
+	/**
+	 * Devuelve verdadero si el acceso indicado es un almacenamiento
+	 * @param i Posición del acceso en la traza
+	 * @return Verdadero si el acceso es un almacenamiento; falso si es una carga
+	 */
+	public boolean isStore(int i) {
+		return store[i];
+	}
+
+	/**
+	 * Sortea los fallos de caché sobre la traza y devuelve el número de ciclos resultante. Los fallos se sortean en el mismo orden
+	 * que en {@link VLIWMachine#execute(VLIWCode)}, y se aplica la misma regla: un fallo añade una única burbuja por ciclo, y un
+	 * acceso que estaba en curso cuando se añadió una burbuja ya no puede fallar
+	 * @param misses Generador de los fallos de caché
+	 * @param cacheMissPenalty Penalización en ciclos si se produce un fallo de la caché
+	 * @return Número de ciclos de la ejecución con los fallos sorteados
+	 */
+	public int replay(CacheMissGenerator misses, int cacheMissPenalty) {
+		final boolean[] miss = new boolean[nDraws];
+		// Se salta directamente de un fallo al siguiente
+		for (long draw = misses.skip(); draw < nDraws; draw += 1 + misses.skip())
+			miss[(int)draw] = true;
+		return replay(miss, cacheMissPenalty);
+	}
+
+	/**
+	 * Calcula la distribución exacta del número de ciclos cuando cada acceso a memoria falla con la misma probabilidad, sin sortear
+	 * ningún fallo. Aplica la misma regla que {@link #replay(boolean[], int)}, así que da la distribución de lo que devolvería cualquier
+	 * réplica, sea cual sea su semilla
+	 * @param cacheMissRate Tasa de fallos de la caché, expresada en tanto por 1
+	 * @param cacheMissPenalty Penalización en ciclos si se produce un fallo de la caché
+	 * @return Distribución del número de ciclos de la ejecución
+	 */
+	public CycleDistribution getDistribution(double cacheMissRate, int cacheMissPenalty) {
+		return new CycleDistribution(this, cacheMissRate, cacheMissPenalty);
+	}
+
+	/**
+	 * Devuelve el número de ciclos de la ejecución con los fallos que decide un modelo de caché (ver {@link StackDistance}). A diferencia
+	 * de los sorteados, un fallo del modelo se penaliza aunque se haya añadido una burbuja mientras el acceso estaba en curso, igual que
+	 * en {@link VLIWMachine#setCacheModel(CacheModel)}; solo se comparte la burbuja entre los fallos de un mismo ciclo
+	 * @param miss Indica, para cada acceso de la traza y en su orden, si falla en el modelo de caché
+	 * @param cacheMissPenalty Penalización en ciclos si se produce un fallo de la caché
+	 * @return Número de ciclos de la ejecución con los fallos indicados
+	 */
+	public int replayModel(boolean[] miss, int cacheMissPenalty) {
+		int stalls = 0;
+		int i = 0;
+		while (i < size) {
+			final int cycle = retireCycle[i];
+			boolean stall = false;
+			for (; i < size && retireCycle[i] == cycle; i++)
+				stall |= miss[i];
+			if (stall)
+				stalls++;
+		}
+		return cycles + stalls * cacheMissPenalty;
+	}
+
+	/**
+	 * Devuelve el número de ciclos de la ejecución cuando los fallos de caché ya están sorteados
+	 * @param miss Indica, para cada acceso planificado en el orden en que se sortearon sus fallos, si produce un fallo de caché
+	 * @param cacheMissPenalty Penalización en ciclos si se produce un fallo de la caché
+	 * @return Número de ciclos de la ejecución con los fallos indicados
+	 */
+	public int replay(boolean[] miss, int cacheMissPenalty) {
+		int stalls = 0;
+		// Ciclo de la última burbuja
+		int lastStall = -1;
+		int i = 0;
+		while (i < size) {
+			final int cycle = retireCycle[i];
+			boolean stall = false;
+			for (; i < size && retireCycle[i] == cycle; i++) {
+				// Solo falla si no se añadió ninguna burbuja desde que comenzó
+				if (miss[draw[i]] && issueCycle[i] > lastStall)
+					stall = true;
+			}
+			if (stall) {
+				stalls++;
+				lastStall = cycle;
+			}
+		}
+		return cycles + stalls * cacheMissPenalty;
+	}
+}
@@ -9,42 +9,178 @@ package simdeLite;
  *
  */
 public enum Opcode {
-	ADD(FunctionalUnit.INT_ADD, new OperandType[] {OperandType.GPREGISTER, OperandType.GPREGISTER, OperandType.GPREGISTER}),
-	ADDI(FunctionalUnit.INT_ADD, new OperandType[] {OperandType.GPREGISTER, OperandType.GPREGISTER, OperandType.INMEDIATE}), 
-	SUB(FunctionalUnit.INT_ADD, new OperandType[] {OperandType.GPREGISTER, OperandType.GPREGISTER, OperandType.GPREGISTER}),
-	OR(FunctionalUnit.INT_ADD, new OperandType[] {OperandType.GPREGISTER, OperandType.GPREGISTER, OperandType.GPREGISTER}), 
-	AND(FunctionalUnit.INT_ADD, new OperandType[] {OperandType.GPREGISTER, OperandType.GPREGISTER, OperandType.GPREGISTER}), 
-	XOR(FunctionalUnit.INT_ADD, new OperandType[] {OperandType.GPREGISTER, OperandType.GPREGISTER, OperandType.GPREGISTER}), 
-	NOR(FunctionalUnit.INT_ADD, new OperandType[] {OperandType.GPREGISTER, OperandType.GPREGISTER, OperandType.GPREGISTER}), 
-	SLLV(FunctionalUnit.INT_ADD, new OperandType[] {OperandType.GPREGISTER, OperandType.GPREGISTER, OperandType.GPREGISTER}), 
-	SRLV(FunctionalUnit.INT_ADD, new OperandType[] {OperandType.GPREGISTER, OperandType.GPREGISTER, OperandType.GPREGISTER}), 
-	ADDF(FunctionalUnit.FP_ADD, new OperandType[] {OperandType.FPREGISTER, OperandType.FPREGISTER, OperandType.FPREGISTER}), 
-	SUBF(FunctionalUnit.FP_ADD, new OperandType[] {OperandType.FPREGISTER, OperandType.FPREGISTER, OperandType.FPREGISTER}), 
-	MULT(FunctionalUnit.INT_MULT, new OperandType[] {OperandType.GPREGISTER, OperandType.GPREGISTER, OperandType.GPREGISTER}), 
-	MULTF(FunctionalUnit.FP_MULT, new OperandType[] {OperandType.FPREGISTER, OperandType.FPREGISTER, OperandType.FPREGISTER}), 
-	SW(FunctionalUnit.MEM, new OperandType[] {OperandType.GPREGISTER, OperandType.ADDRESS}), 
-	SF(FunctionalUnit.MEM, new OperandType[] {OperandType.FPREGISTER, OperandType.ADDRESS}), 
-	LW(FunctionalUnit.MEM, new OperandType[] {OperandType.GPREGISTER, OperandType.ADDRESS}), 
-	LF(FunctionalUnit.MEM, new OperandType[] {OperandType.FPREGISTER, OperandType.ADDRESS}), 
-	BNE(FunctionalUnit.JUMP, new OperandType[] {OperandType.GPREGISTER, OperandType.GPREGISTER, OperandType.LABEL}), 
-	BEQ(FunctionalUnit.JUMP, new OperandType[] {OperandType.GPREGISTER, OperandType.GPREGISTER, OperandType.LABEL}), 
-	BGT(FunctionalUnit.JUMP, new OperandType[] {OperandType.GPREGISTER, OperandType.GPREGISTER, OperandType.LABEL}),
-	BNEF(FunctionalUnit.JUMP, new OperandType[] {OperandType.FPREGISTER, OperandType.FPREGISTER, OperandType.LABEL}), 
-	BEQF(FunctionalUnit.JUMP, new OperandType[] {OperandType.FPREGISTER, OperandType.FPREGISTER, OperandType.LABEL}), 
-	BGTF(FunctionalUnit.JUMP, new OperandType[] {OperandType.FPREGISTER, OperandType.FPREGISTER, OperandType.LABEL});
+	ADD(FunctionalUnit.INT_ADD, OperandFormat.GP_REGISTER, new OperandType[] {OperandType.GPREGISTER, OperandType.GPREGISTER, OperandType.GPREGISTER}) {
+		@Override
+		public boolean execute(GPRegisterBank gpr, FPRegisterBank fpr, Memory mem, int dest, OperandValues values) {
+			gpr.write(dest, (int)values.getOperand1Value() + (int)values.getOperand2Value());
+			return true;
+		}
+	},
+	ADDI(FunctionalUnit.INT_ADD, OperandFormat.GP_INMEDIATE, new OperandType[] {OperandType.GPREGISTER, OperandType.GPREGISTER, OperandType.INMEDIATE}) {
+		@Override
+		public boolean execute(GPRegisterBank gpr, FPRegisterBank fpr, Memory mem, int dest, OperandValues values) {
+			gpr.write(dest, (int)values.getOperand1Value() + (int)values.getOperand2Value());
+			return true;
+		}
+	},
+	SUB(FunctionalUnit.INT_ADD, OperandFormat.GP_REGISTER, new OperandType[] {OperandType.GPREGISTER, OperandType.GPREGISTER, OperandType.GPREGISTER}) {
+		@Override
+		public boolean execute(GPRegisterBank gpr, FPRegisterBank fpr, Memory mem, int dest, OperandValues values) {
+			gpr.write(dest, (int)values.getOperand1Value() - (int)values.getOperand2Value());
+			return true;
+		}
+	},
+	OR(FunctionalUnit.INT_ADD, OperandFormat.GP_REGISTER, new OperandType[] {OperandType.GPREGISTER, OperandType.GPREGISTER, OperandType.GPREGISTER}) {
+		@Override
+		public boolean execute(GPRegisterBank gpr, FPRegisterBank fpr, Memory mem, int dest, OperandValues values) {
+			gpr.write(dest, (int)values.getOperand1Value() | (int)values.getOperand2Value());
+			return true;
+		}
+	},
+	AND(FunctionalUnit.INT_ADD, OperandFormat.GP_REGISTER, new OperandType[] {OperandType.GPREGISTER, OperandType.GPREGISTER, OperandType.GPREGISTER}) {
+		@Override
+		public boolean execute(GPRegisterBank gpr, FPRegisterBank fpr, Memory mem, int dest, OperandValues values) {
+			gpr.write(dest, (int)values.getOperand1Value() & (int)values.getOperand2Value());
+			return true;
+		}
+	},
+	XOR(FunctionalUnit.INT_ADD, OperandFormat.GP_REGISTER, new OperandType[] {OperandType.GPREGISTER, OperandType.GPREGISTER, OperandType.GPREGISTER}) {
+		@Override
+		public boolean execute(GPRegisterBank gpr, FPRegisterBank fpr, Memory mem, int dest, OperandValues values) {
+			gpr.write(dest, (int)values.getOperand1Value() ^ (int)values.getOperand2Value());
+			return true;
+		}
+	},
+	NOR(FunctionalUnit.INT_ADD, OperandFormat.GP_REGISTER, new OperandType[] {OperandType.GPREGISTER, OperandType.GPREGISTER, OperandType.GPREGISTER}) {
+		@Override
+		public boolean execute(GPRegisterBank gpr, FPRegisterBank fpr, Memory mem, int dest, OperandValues values) {
+			gpr.write(dest, ~((int)values.getOperand1Value() | (int)values.getOperand2Value()));
+			return true;
+		}
+	},
+	SLLV(FunctionalUnit.INT_ADD, OperandFormat.GP_REGISTER, new OperandType[] {OperandType.GPREGISTER, OperandType.GPREGISTER, OperandType.GPREGISTER}) {
+		@Override
+		public boolean execute(GPRegisterBank gpr, FPRegisterBank fpr, Memory mem, int dest, OperandValues values) {
+			gpr.write(dest, (int)values.getOperand1Value() << (int)values.getOperand2Value());
+			return true;
+		}
+	},
+	SRLV(FunctionalUnit.INT_ADD, OperandFormat.GP_REGISTER, new OperandType[] {OperandType.GPREGISTER, OperandType.GPREGISTER, OperandType.GPREGISTER}) {
+		@Override
+		public boolean execute(GPRegisterBank gpr, FPRegisterBank fpr, Memory mem, int dest, OperandValues values) {
+			gpr.write(dest, (int)values.getOperand1Value() >> (int)values.getOperand2Value());
+			return true;
+		}
+	},
+	ADDF(FunctionalUnit.FP_ADD, OperandFormat.FP_REGISTER, new OperandType[] {OperandType.FPREGISTER, OperandType.FPREGISTER, OperandType.FPREGISTER}) {
+		@Override
+		public boolean execute(GPRegisterBank gpr, FPRegisterBank fpr, Memory mem, int dest, OperandValues values) {
+			fpr.write(dest, values.getOperand1Value() + values.getOperand2Value());
+			return true;
+		}
+	},
+	SUBF(FunctionalUnit.FP_ADD, OperandFormat.FP_REGISTER, new OperandType[] {OperandType.FPREGISTER, OperandType.FPREGISTER, OperandType.FPREGISTER}) {
+		@Override
+		public boolean execute(GPRegisterBank gpr, FPRegisterBank fpr, Memory mem, int dest, OperandValues values) {
+			fpr.write(dest, values.getOperand1Value() - values.getOperand2Value());
+			return true;
+		}
+	},
+	MULT(FunctionalUnit.INT_MULT, OperandFormat.GP_REGISTER, new OperandType[] {OperandType.GPREGISTER, OperandType.GPREGISTER, OperandType.GPREGISTER}) {
+		@Override
+		public boolean execute(GPRegisterBank gpr, FPRegisterBank fpr, Memory mem, int dest, OperandValues values) {
+			gpr.write(dest, (int)values.getOperand1Value() * (int)values.getOperand2Value());
+			return true;
+		}
+	},
+	MULTF(FunctionalUnit.FP_MULT, OperandFormat.FP_REGISTER, new OperandType[] {OperandType.FPREGISTER, OperandType.FPREGISTER, OperandType.FPREGISTER}) {
+		@Override
+		public boolean execute(GPRegisterBank gpr, FPRegisterBank fpr, Memory mem, int dest, OperandValues values) {
+			fpr.write(dest, values.getOperand1Value() * values.getOperand2Value());
+			return true;
+		}
+	},
+	SW(FunctionalUnit.MEM, OperandFormat.GP_STORE, new OperandType[] {OperandType.GPREGISTER, OperandType.ADDRESS}) {
+		@Override
+		public boolean execute(GPRegisterBank gpr, FPRegisterBank fpr, Memory mem, int dest, OperandValues values) throws SIMDEException {
+			mem.write((int)values.getOperand1Value(), (int)values.getOperand2Value());
+			return true;
+		}
+	},
+	SF(FunctionalUnit.MEM, OperandFormat.FP_STORE, new OperandType[] {OperandType.FPREGISTER, OperandType.ADDRESS}) {
+		@Override
+		public boolean execute(GPRegisterBank gpr, FPRegisterBank fpr, Memory mem, int dest, OperandValues values) throws SIMDEException {
+			mem.write((int)values.getOperand1Value(), values.getOperand2Value());
+			return true;
+		}
+	},
+	LW(FunctionalUnit.MEM, OperandFormat.LOAD, new OperandType[] {OperandType.GPREGISTER, OperandType.ADDRESS}) {
+		@Override
+		public boolean execute(GPRegisterBank gpr, FPRegisterBank fpr, Memory mem, int dest, OperandValues values) throws SIMDEException {
+			gpr.write(dest, (int)mem.read((int)values.getOperand1Value()));
+			return true;
+		}
+	},
+	LF(FunctionalUnit.MEM, OperandFormat.LOAD, new OperandType[] {OperandType.FPREGISTER, OperandType.ADDRESS}) {
+		@Override
+		public boolean execute(GPRegisterBank gpr, FPRegisterBank fpr, Memory mem, int dest, OperandValues values) throws SIMDEException {
+			fpr.write(dest, mem.read((int)values.getOperand1Value()));
+			return true;
+		}
+	},
+	BNE(FunctionalUnit.JUMP, OperandFormat.GP_BRANCH, new OperandType[] {OperandType.GPREGISTER, OperandType.GPREGISTER, OperandType.LABEL}) {
+		@Override
+		public boolean execute(GPRegisterBank gpr, FPRegisterBank fpr, Memory mem, int dest, OperandValues values) {
+			return (int)values.getOperand1Value() != (int)values.getOperand2Value();
+		}
+	},
+	BEQ(FunctionalUnit.JUMP, OperandFormat.GP_BRANCH, new OperandType[] {OperandType.GPREGISTER, OperandType.GPREGISTER, OperandType.LABEL}) {
+		@Override
+		public boolean execute(GPRegisterBank gpr, FPRegisterBank fpr, Memory mem, int dest, OperandValues values) {
+			return (int)values.getOperand1Value() == (int)values.getOperand2Value();
+		}
+	},
+	BGT(FunctionalUnit.JUMP, OperandFormat.GP_BRANCH, new OperandType[] {OperandType.GPREGISTER, OperandType.GPREGISTER, OperandType.LABEL}) {
+		@Override
+		public boolean execute(GPRegisterBank gpr, FPRegisterBank fpr, Memory mem, int dest, OperandValues values) {
+			return (int)values.getOperand1Value() > (int)values.getOperand2Value();
+		}
+	},
+	BNEF(FunctionalUnit.JUMP, OperandFormat.FP_BRANCH, new OperandType[] {OperandType.FPREGISTER, OperandType.FPREGISTER, OperandType.LABEL}) {
+		@Override
+		public boolean execute(GPRegisterBank gpr, FPRegisterBank fpr, Memory mem, int dest, OperandValues values) {
+			return values.getOperand1Value() != values.getOperand2Value();
+		}
+	},
+	BEQF(FunctionalUnit.JUMP, OperandFormat.FP_BRANCH, new OperandType[] {OperandType.FPREGISTER, OperandType.FPREGISTER, OperandType.LABEL}) {
+		@Override
+		public boolean execute(GPRegisterBank gpr, FPRegisterBank fpr, Memory mem, int dest, OperandValues values) {
+			return values.getOperand1Value() == values.getOperand2Value();
+		}
+	},
+	BGTF(FunctionalUnit.JUMP, OperandFormat.FP_BRANCH, new OperandType[] {OperandType.FPREGISTER, OperandType.FPREGISTER, OperandType.LABEL}) {
+		@Override
+		public boolean execute(GPRegisterBank gpr, FPRegisterBank fpr, Memory mem, int dest, OperandValues values) {
+			return values.getOperand1Value() > values.getOperand2Value();
+		}
+	};
 	
 	/** Unidad funcional donde se ejecuta esta instrucción */
 	private final FunctionalUnit fu;
+	/** Formato de los operandos de la instrucción */
+	private final OperandFormat format;
 	/** Operandos que define la instrucción */
 	private final OperandType[] operands;
 	
 	/**
 	 * Crea un código de operación
 	 * @param fu Unidad funcional donde se ejecuta esta instrucción
+	 * @param format Formato de los operandos de la instrucción
 	 * @param operands Operandos que define la instrucción
 	 */
-	private Opcode(FunctionalUnit fu, OperandType[] operands) {
+	private Opcode(FunctionalUnit fu, OperandFormat format, OperandType[] operands) {
 		this.fu = fu;
+		this.format = format;
 		this.operands = operands;
 	}
 	
@@ -63,4 +199,38 @@ public enum Opcode {
 	public OperandType[] getOperands() {
 		return operands;
 	}
+
+	/**
+	 * Devuelve el formato de los operandos de la instrucción
+	 * @return Formato de los operandos de la instrucción
+	 */
+	public OperandFormat getFormat() {
+		return format;
+	}
+
+	/**
+	 * Lee los operandos fuente de una instrucción con este código de operación al comenzar su ejecución
+	 * @param gpr Banco de registros de propósito general
+	 * @param fpr Banco de registros de punto flotante
+	 * @param src1 Registro del primer operando fuente
+	 * @param src2 Registro del segundo operando fuente
+	 * @param imm Valor inmediato
+	 * @param values Donde se guardan los valores leídos
+	 */
+	public void fetch(GPRegisterBank gpr, FPRegisterBank fpr, int src1, int src2, int imm, OperandValues values) {
+		format.fetch(gpr, fpr, src1, src2, imm, values);
+	}
+
+	/**
+	 * Finaliza una instrucción con este código de operación, usando los valores de los operandos fuente leídos al comenzar su ejecución.
+	 * Es la semántica común de la máquina secuencial y la VLIW: cada máquina se encarga de los predicados, del PC y de los fallos de caché 
+	 * @param gpr Banco de registros de propósito general
+	 * @param fpr Banco de registros de punto flotante
+	 * @param mem Memoria
+	 * @param dest Registro destino
+	 * @param values Valores de los operandos fuente
+	 * @return En los saltos, si se cumple la condición del salto; verdadero en cualquier otro caso
+	 * @throws SIMDEException Errores de ejecución, como intentar acceder a una dirección de memoria no válida
+	 */
+	public abstract boolean execute(GPRegisterBank gpr, FPRegisterBank fpr, Memory mem, int dest, OperandValues values) throws SIMDEException;
 }
@@ -0,0 +1,155 @@
+/**
+ *
+ */
+package simdeLite;
+
+/**
+ * Formatos de operandos de las instrucciones secuenciales. Cada formato indica qué posición de {@link Instruction#getOp(int)}
+ * ocupa cada campo de la instrucción (destino, fuentes, inmediato y destino del salto) y cómo se leen los operandos fuente
+ * al comenzar la ejecución
+ * @author Iván Castilla
+ *
+ */
+public enum OperandFormat {
+	/** Dos registros fuente de propósito general: "op rd, rs, rt" */
+	GP_REGISTER(0, 1, 2, OperandFormat.NONE, OperandFormat.NONE) {
+		@Override
+		public void fetch(GPRegisterBank gpr, FPRegisterBank fpr, int src1, int src2, int imm, OperandValues values) {
+			values.setOperandValues(gpr.read(src1), gpr.read(src2));
+		}
+	},
+	/** Un registro fuente de propósito general y un inmediato: "op rd, rs, #imm" */
+	GP_INMEDIATE(0, 1, OperandFormat.NONE, 2, OperandFormat.NONE) {
+		@Override
+		public void fetch(GPRegisterBank gpr, FPRegisterBank fpr, int src1, int src2, int imm, OperandValues values) {
+			values.setOperandValues(gpr.read(src1), imm);
+		}
+	},
+	/** Dos registros fuente de punto flotante: "op fd, fs, ft" */
+	FP_REGISTER(0, 1, 2, OperandFormat.NONE, OperandFormat.NONE) {
+		@Override
+		public void fetch(GPRegisterBank gpr, FPRegisterBank fpr, int src1, int src2, int imm, OperandValues values) {
+			values.setOperandValues(fpr.read(src1), fpr.read(src2));
+		}
+	},
+	/** Carga de memoria: "op rd, imm(rs)". El primer operando es la dirección efectiva */
+	LOAD(0, 2, OperandFormat.NONE, 1, OperandFormat.NONE) {
+		@Override
+		public void fetch(GPRegisterBank gpr, FPRegisterBank fpr, int src1, int src2, int imm, OperandValues values) {
+			values.setOperandValues(imm + gpr.read(src1), 0.0);
+		}
+	},
+	/** Almacenamiento en memoria de un registro de propósito general: "op rt, imm(rs)". El primer operando es la dirección efectiva */
+	GP_STORE(OperandFormat.NONE, 2, 0, 1, OperandFormat.NONE) {
+		@Override
+		public void fetch(GPRegisterBank gpr, FPRegisterBank fpr, int src1, int src2, int imm, OperandValues values) {
+			values.setOperandValues(imm + gpr.read(src1), gpr.read(src2));
+		}
+	},
+	/** Almacenamiento en memoria de un registro de punto flotante: "op ft, imm(rs)". El primer operando es la dirección efectiva */
+	FP_STORE(OperandFormat.NONE, 2, 0, 1, OperandFormat.NONE) {
+		@Override
+		public void fetch(GPRegisterBank gpr, FPRegisterBank fpr, int src1, int src2, int imm, OperandValues values) {
+			values.setOperandValues(imm + gpr.read(src1), fpr.read(src2));
+		}
+	},
+	/** Salto que compara dos registros de propósito general: "op rs, rt, etiqueta" */
+	GP_BRANCH(OperandFormat.NONE, 0, 1, OperandFormat.NONE, 2) {
+		@Override
+		public void fetch(GPRegisterBank gpr, FPRegisterBank fpr, int src1, int src2, int imm, OperandValues values) {
+			values.setOperandValues(gpr.read(src1), gpr.read(src2));
+		}
+	},
+	/** Salto que compara dos registros de punto flotante: "op fs, ft, etiqueta" */
+	FP_BRANCH(OperandFormat.NONE, 0, 1, OperandFormat.NONE, 2) {
+		@Override
+		public void fetch(GPRegisterBank gpr, FPRegisterBank fpr, int src1, int src2, int imm, OperandValues values) {
+			values.setOperandValues(fpr.read(src1), fpr.read(src2));
+		}
+	};
+
+	/** Valor de los campos que no usa un formato */
+	public final static int NONE = -1;
+	/** Posición del registro destino en los operandos de la instrucción */
+	private final int dest;
+	/** Posición del registro del primer operando fuente en los operandos de la instrucción */
+	private final int src1;
+	/** Posición del registro del segundo operando fuente en los operandos de la instrucción */
+	private final int src2;
+	/** Posición del valor inmediato (o desplazamiento) en los operandos de la instrucción */
+	private final int imm;
+	/** Posición de la etiqueta de destino del salto en los operandos de la instrucción */
+	private final int target;
+
+	/**
+	 * Crea un formato de operandos. Cada parámetro indica la posición del campo en los operandos de la instrucción, o {@link #NONE} si no lo usa
+	 * @param dest Posición del registro destino
+	 * @param src1 Posición del registro del primer operando fuente
+	 * @param src2 Posición del registro del segundo operando fuente
+	 * @param imm Posición del valor inmediato
+	 * @param target Posición de la etiqueta de destino del salto
+	 */
+	private OperandFormat(int dest, int src1, int src2, int imm, int target) {
+		this.dest = dest;
+		this.src1 = src1;
+		this.src2 = src2;
+		this.imm = imm;
+		this.target = target;
+	}
+
+	/**
+	 * Devuelve el registro destino de la instrucción
+	 * @param inst Instrucción
+	 * @return Registro destino de la instrucción, o {@link #NONE} si no escribe ningún registro
+	 */
+	public int getDest(Instruction inst) {
+		return (dest == NONE) ? NONE : inst.getOp(dest);
+	}
+
+	/**
+	 * Devuelve el registro del primer operando fuente de la instrucción. En los accesos a memoria es el registro base de la dirección
+	 * @param inst Instrucción
+	 * @return Registro del primer operando fuente de la instrucción
+	 */
+	public int getSrc1(Instruction inst) {
+		return (src1 == NONE) ? NONE : inst.getOp(src1);
+	}
+
+	/**
+	 * Devuelve el registro del segundo operando fuente de la instrucción. En los almacenamientos es el registro cuyo valor se escribe
+	 * @param inst Instrucción
+	 * @return Registro del segundo operando fuente de la instrucción, o {@link #NONE} si no lo usa
+	 */
+	public int getSrc2(Instruction inst) {
+		return (src2 == NONE) ? NONE : inst.getOp(src2);
+	}
+
+	/**
+	 * Devuelve el valor inmediato de la instrucción: el inmediato de ADDI o el desplazamiento de los accesos a memoria
+	 * @param inst Instrucción
+	 * @return Valor inmediato de la instrucción, o 0 si no lo usa
+	 */
+	public int getImm(Instruction inst) {
+		return (imm == NONE) ? 0 : inst.getOp(imm);
+	}
+
+	/**
+	 * Devuelve la instrucción de destino de un salto en el código secuencial
+	 * @param inst Instrucción
+	 * @return Instrucción de destino del salto en el código secuencial, o {@link #NONE} si no es un salto
+	 */
+	public int getTarget(Instruction inst) {
+		return (target == NONE) ? NONE : inst.getOp(target);
+	}
+
+	/**
+	 * Lee los operandos fuente de una instrucción con este formato
+	 * @param gpr Banco de registros de propósito general
+	 * @param fpr Banco de registros de punto flotante
+	 * @param src1 Registro del primer operando fuente
+	 * @param src2 Registro del segundo operando fuente
+	 * @param imm Valor inmediato
+	 * @param values Donde se guardan los valores leídos
+	 */
+	public abstract void fetch(GPRegisterBank gpr, FPRegisterBank fpr, int src1, int src2, int imm, OperandValues values);
+}
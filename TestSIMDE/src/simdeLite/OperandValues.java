@@ -0,0 +1,44 @@
+/**
+ *
+ */
+package simdeLite;
+
+/**
+ * Valores de los operandos fuente de una instrucción en tiempo de ejecución. Los lee el manejador de la instrucción
+ * ({@link Opcode#fetch(GPRegisterBank, FPRegisterBank, int, int, int, OperandValues)}) y los usa al finalizarla
+ * ({@link Opcode#execute(GPRegisterBank, FPRegisterBank, Memory, int, OperandValues)})
+ * @author Iván Castilla
+ *
+ */
+public class OperandValues {
+	/** Valor del primer operando fuente. En los accesos a memoria es la dirección efectiva */
+	private double operand1Value = 0.0;
+	/** Valor del segundo operando fuente. En los almacenamientos es el valor a escribir */
+	private double operand2Value = 0.0;
+
+	/**
+	 * Devuelve el valor en tiempo de ejecución del primer operando fuente de la instrucción
+	 * @return Valor en tiempo de ejecución del primer operando fuente de la instrucción
+	 */
+	public double getOperand1Value() {
+		return operand1Value;
+	}
+
+	/**
+	 * Devuelve el valor en tiempo de ejecución del segundo operando fuente de la instrucción
+	 * @return Valor en tiempo de ejecución del segundo operando fuente de la instrucción
+	 */
+	public double getOperand2Value() {
+		return operand2Value;
+	}
+
+	/**
+	 * Establece los valores de los operandos fuente de la instrucción durante el tiempo de ejecución
+	 * @param value1 Valor del primer operando fuente
+	 * @param value2 Valor del segundo operando fuente
+	 */
+	public void setOperandValues(double value1, double value2) {
+		operand1Value = value1;
+		operand2Value = value2;
+	}
+}
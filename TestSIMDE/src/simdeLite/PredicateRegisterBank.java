@@ -3,7 +3,8 @@
  */
 package simdeLite;
 
-import java.util.TreeMap;
+import java.nio.ByteBuffer;
+import java.util.BitSet;
 
 /**
  * Banco de registros de predicado
@@ -14,7 +15,9 @@ public class PredicateRegisterBank {
 	/** Identificador en fichero de la parte que describe el contenido de estos registros (no usado) */
 	public final static String STR = "#PRED";
 	/** Estructura interna que almacena los valores de los registros */
-	private final TreeMap<Integer, Boolean> innerStructure;
+	private final BitSet values;
+	/** Registros a los que se ha asignado algún valor desde el último reseteo */
+	private final BitSet written;
 	/** Número de registros que contiene el banco */
 	private final int size;
 
@@ -24,7 +27,10 @@ public class PredicateRegisterBank {
 	 */
 	public PredicateRegisterBank(int size) {
 		this.size = size;
-		this.innerStructure = new TreeMap<>();
+		this.values = new BitSet(size);
+		this.written = new BitSet(size);
+		// El registro 0 siempre es verdadero
+		values.set(0);
 	}
 
 	/**
@@ -36,28 +42,61 @@ public class PredicateRegisterBank {
 	 */
 	public void write(int index, boolean value) {
 		// Para prevenir modificar el registro 0
-		if (index > 0)
-			innerStructure.put(index, value);
+		if (index > 0) {
+			values.set(index, value);
+			written.set(index);
+		}
+	}
+	
+	/**
+	 * Escribe un bloque de valores en registros consecutivos, expresados como bytes: 0 es falso y cualquier otro valor, verdadero.
+	 * Ignora las escrituras al registro 0.
+	 * No realiza control de errores: asume que los índices son válidos
+	 * @param index Índice del primer registro en el que hay que escribir
+	 * @param src Valores a escribir. Se escriben todos los que quedan en el buffer
+	 */
+	public void write(int index, ByteBuffer src) {
+		while (src.hasRemaining())
+			write(index++, src.get() != 0);
+	}
+	
+	/**
+	 * Lee los valores de registros consecutivos, expresados como bytes: 1 es verdadero y 0, falso.
+	 * No realiza control de errores: asume que los índices son válidos
+	 * @param index Índice del primer registro del que hay que leer
+	 * @param dst Buffer donde se dejan los valores. Se llena con tantos registros como quepan
+	 */
+	public void read(int index, ByteBuffer dst) {
+		while (dst.hasRemaining())
+			dst.put(values.get(index++) ? (byte)1 : (byte)0);
 	}
 	
 	/**
 	 * Lee el valor de un registro
-	 * Asume que todos los registros se inicializan a 1 (verdadero).
+	 * Asume que el registro 0 vale 1 (verdadero) y el resto se inicializan a 0 (falso).
 	 * No realiza control de errores: asume que el índice es válido
 	 * @param index Índice del registro del que hay que leer el valor
 	 * @return El valor del registro que ocupa la posición "index"
 	 */
 	public boolean read(int index) {
-		if (innerStructure.containsKey(index))
-			return innerStructure.get(index);
-		return (index==0);
+		return values.get(index);
 	}
 	
 	/**
 	 * Resetea el banco de registros, eliminando cualquier asignación de valor que se haya realizado
 	 */
 	public void reset() {
-		innerStructure.clear();
+		values.clear();
+		values.set(0);
+		written.clear();
+	}
+	
+	/**
+	 * Devuelve los registros a los que se ha asignado algún valor desde el último reseteo
+	 * @return Una copia del conjunto de registros escritos
+	 */
+	public BitSet getWritten() {
+		return (BitSet)written.clone();
 	}
 	
 	/**
@@ -71,8 +110,8 @@ public class PredicateRegisterBank {
 	@Override
 	public String toString() {
 		final StringBuffer str = new StringBuffer(STR + System.lineSeparator());
-		for (Integer dir : innerStructure.keySet()) {
-			str.append("[" + dir + "] " + innerStructure.get(dir) + System.lineSeparator());
+		for (int dir = written.nextSetBit(0); dir >= 0; dir = written.nextSetBit(dir + 1)) {
+			str.append("[" + dir + "] " + values.get(dir) + System.lineSeparator());
 		}
 		return str.toString();
 	}
@@ -0,0 +1,257 @@
+/**
+ *
+ */
+package simdeLite;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Versión precompilada de un programa: el código secuencial ya decodificado, con sus etiquetas resueltas, y opcionalmente la
+ * planificación de sus instrucciones largas, para no tener que volver a analizar los fuentes (.pla y .vliw) en cada simulación.
+ *
+ * La imagen se guarda junto al fuente de la planificación, o junto al código secuencial si no hay planificación, con la extensión
+ * {@link #EXTENSION}, e incluye un resumen SHA-256 del contenido de los fuentes. {@link #load(String, String)} usa la imagen si el
+ * resumen coincide con el de los fuentes actuales y, si no, vuelve a analizar los fuentes y regenera la imagen. La imagen se escribe
+ * en un fichero temporal que después se renombra, para que varias simulaciones lanzadas a la vez no lean nunca una imagen a medias.
+ *
+ * El fichero comienza con {@link #MAGIC}, {@link #VERSION} y el resumen de los fuentes. Después tiene las instrucciones secuenciales
+ * (bloque básico, código de operación, valores y cadenas de los operandos), las etiquetas y, si la hay, la planificación, con el
+ * formato de {@link VLIWCode#readSchedule(Code, String)}
+ * @author Iván Castilla
+ *
+ */
+public final class ProgramImage {
+	/** Identificador de los ficheros de programa precompilado: "SMDP" */
+	public final static int MAGIC = 0x534D4450;
+	/** Versión del formato del fichero */
+	public final static int VERSION = 1;
+	/** Extensión que se añade al nombre del fuente para obtener el nombre de la imagen */
+	public final static String EXTENSION = ".prog";
+	/** Algoritmo del resumen de los fuentes */
+	private final static String HASH_ALGORITHM = "SHA-256";
+	/** Código secuencial */
+	private final Code code;
+	/** Operaciones de cada instrucción larga, o null si el programa no tiene planificación */
+	private final int[][] schedule;
+	/** Verdadero si la imagen se ha regenerado a partir de los fuentes */
+	private final boolean regenerated;
+
+	/**
+	 * Crea un programa precompilado
+	 * @param code Código secuencial
+	 * @param schedule Operaciones de cada instrucción larga, o null si el programa no tiene planificación
+	 * @param regenerated Verdadero si la imagen se ha regenerado a partir de los fuentes
+	 */
+	private ProgramImage(Code code, int[][] schedule, boolean regenerated) {
+		this.code = code;
+		this.schedule = schedule;
+		this.regenerated = regenerated;
+	}
+
+	/**
+	 * Carga un programa desde su imagen precompilada si está al día con los fuentes, o desde los fuentes en otro caso. En ese caso
+	 * regenera la imagen; si no se puede escribir, se avisa y se sigue con el programa cargado de los fuentes
+	 * @param codeFileName Nombre del fichero con el código secuencial (generalmente con extensión pla)
+	 * @param vliwFileName Nombre del fichero con la planificación (generalmente con extensión vliw), o null si no se usa
+	 * @return El programa cargado
+	 * @throws IOException Si no se pudo leer algún fuente
+	 */
+	public static ProgramImage load(String codeFileName, String vliwFileName) throws IOException {
+		final String imageFileName = ((vliwFileName != null) ? vliwFileName : codeFileName) + EXTENSION;
+		final byte[] hash = getHash(codeFileName, vliwFileName);
+		final Path imagePath = Paths.get(imageFileName);
+		if (Files.exists(imagePath)) {
+			try {
+				final ProgramImage image = read(imagePath, hash);
+				if (image != null && (image.schedule != null) == (vliwFileName != null))
+					return image;
+			} catch (IOException | RuntimeException ex) {
+				// Una imagen dañada o de otra versión del simulador se regenera
+			}
+		}
+		final Code code = Code.loadCode(codeFileName);
+		final ProgramImage image = new ProgramImage(code, (vliwFileName != null) ? VLIWCode.readSchedule(code, vliwFileName) : null, true);
+		try {
+			image.write(imagePath, Paths.get((vliwFileName != null) ? vliwFileName : codeFileName), hash);
+		} catch (IOException ex) {
+			System.out.println("AVISO: No se pudo guardar el programa precompilado en " + imageFileName + " (" + ex.getMessage() + ")");
+		}
+		return image;
+	}
+
+	/**
+	 * Calcula el resumen del contenido de los fuentes de un programa
+	 * @param codeFileName Nombre del fichero con el código secuencial
+	 * @param vliwFileName Nombre del fichero con la planificación, o null si no se usa
+	 * @return Resumen de los fuentes
+	 * @throws IOException Si no se pudo leer algún fuente
+	 */
+	private static byte[] getHash(String codeFileName, String vliwFileName) throws IOException {
+		final MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance(HASH_ALGORITHM);
+		} catch (NoSuchAlgorithmException ex) {
+			// Todas las implementaciones de Java incluyen SHA-256
+			throw new IllegalStateException(ex);
+		}
+		final byte[] source = Files.readAllBytes(Paths.get(codeFileName));
+		// La longitud separa los dos fuentes, para que no se confunda el final de uno con el principio del otro
+		digest.update(Integer.toString(source.length).getBytes(StandardCharsets.US_ASCII));
+		digest.update(source);
+		if (vliwFileName != null)
+			digest.update(Files.readAllBytes(Paths.get(vliwFileName)));
+		return digest.digest();
+	}
+
+	/**
+	 * Lee una imagen precompilada
+	 * @param imagePath Ruta de la imagen
+	 * @param hash Resumen de los fuentes actuales
+	 * @return El programa de la imagen, o null si la imagen no corresponde a los fuentes actuales o es de otra versión
+	 * @throws IOException Si no se pudo leer la imagen o está incompleta
+	 */
+	private static ProgramImage read(Path imagePath, byte[] hash) throws IOException {
+		try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(Files.readAllBytes(imagePath)))) {
+			if (in.readInt() != MAGIC || in.readInt() != VERSION)
+				return null;
+			final byte[] imageHash = new byte[hash.length];
+			in.readFully(imageHash);
+			if (!Arrays.equals(hash, imageHash))
+				return null;
+			final Code code = new Code();
+			final int nInst = in.readInt();
+			for (int id = 0; id < nInst; id++) {
+				final int basicBlock = in.readInt();
+				final Opcode opcode = Opcode.valueOf(in.readUTF());
+				final int[] op = new int[3];
+				final String[] strOp = new String[3];
+				for (int i = 0; i < op.length; i++)
+					op[i] = in.readInt();
+				for (int i = 0; i < strOp.length; i++)
+					strOp[i] = in.readBoolean() ? in.readUTF() : null;
+				code.addInstruction(new Instruction(id, basicBlock, opcode, op, strOp));
+			}
+			// Los destinos de los saltos ya están resueltos, así que no hace falta llamar a finishCode
+			final int nLabels = in.readInt();
+			for (int i = 0; i < nLabels; i++)
+				code.addLabel(in.readUTF(), in.readInt());
+			int[][] schedule = null;
+			if (in.readBoolean()) {
+				schedule = new int[in.readInt()][];
+				for (int i = 0; i < schedule.length; i++) {
+					schedule[i] = new int[in.readInt()];
+					for (int k = 0; k < schedule[i].length; k++)
+						schedule[i][k] = in.readInt();
+				}
+			}
+			return new ProgramImage(code, schedule, false);
+		}
+	}
+
+	/**
+	 * Escribe la imagen precompilada en un fichero temporal y la renombra con su nombre definitivo. El fichero temporal se crea con
+	 * permisos 0600, así que antes de renombrarlo se le copian los permisos del fuente, para que la imagen sea tan accesible como él
+	 * @param imagePath Ruta de la imagen
+	 * @param sourcePath Ruta del fuente del que se toma el nombre de la imagen
+	 * @param hash Resumen de los fuentes
+	 * @throws IOException Si no se pudo escribir la imagen
+	 */
+	private void write(Path imagePath, Path sourcePath, byte[] hash) throws IOException {
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (DataOutputStream out = new DataOutputStream(bytes)) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.write(hash);
+			out.writeInt(code.getNLines());
+			for (Instruction inst : code.getInstructions()) {
+				out.writeInt(inst.getBasicBlock());
+				out.writeUTF(inst.getOpcode().name());
+				for (int op : inst.getOp())
+					out.writeInt(op);
+				for (String strOp : inst.getStrOp()) {
+					out.writeBoolean(strOp != null);
+					if (strOp != null)
+						out.writeUTF(strOp);
+				}
+			}
+			final SortedMap<String, Integer> labels = code.getLabels();
+			out.writeInt(labels.size());
+			for (Map.Entry<String, Integer> label : labels.entrySet()) {
+				out.writeUTF(label.getKey());
+				out.writeInt(label.getValue());
+			}
+			out.writeBoolean(schedule != null);
+			if (schedule != null) {
+				out.writeInt(schedule.length);
+				for (int[] opers : schedule) {
+					out.writeInt(opers.length);
+					for (int value : opers)
+						out.writeInt(value);
+				}
+			}
+		}
+		final Path parent = imagePath.toAbsolutePath().getParent();
+		final Path temp = Files.createTempFile(parent, imagePath.getFileName().toString(), ".tmp");
+		try {
+			Files.write(temp, bytes.toByteArray());
+			try {
+				Files.setPosixFilePermissions(temp, Files.getPosixFilePermissions(sourcePath));
+			} catch (UnsupportedOperationException ex) {
+				// Sin permisos POSIX la imagen se queda con los que le dé el sistema de ficheros
+			}
+			try {
+				Files.move(temp, imagePath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			} catch (AtomicMoveNotSupportedException ex) {
+				Files.move(temp, imagePath, StandardCopyOption.REPLACE_EXISTING);
+			}
+		} finally {
+			Files.deleteIfExists(temp);
+		}
+	}
+
+	/**
+	 * Devuelve el código secuencial
+	 * @return Código secuencial
+	 */
+	public Code getCode() {
+		return code;
+	}
+
+	/**
+	 * Crea el código de instrucciones largas del programa para una configuración de la máquina
+	 * @param configuration Número de unidades funcionales de cada tipo que incluye la máquina simulada
+	 * @param code Código secuencial al que se refiere la planificación. Debe ser el de este programa o uno cargado de los mismos fuentes,
+	 * para que varias planificaciones del mismo código compartan sus instrucciones secuenciales
+	 * @return Código de instrucciones largas creado
+	 * @throws IllegalStateException Si el programa no tiene planificación
+	 */
+	public VLIWCode getVLIWCode(TreeMap<FunctionalUnit, Integer> configuration, Code code) {
+		if (schedule == null)
+			throw new IllegalStateException("El programa precompilado no tiene planificación de instrucciones largas");
+		return VLIWCode.createCode(configuration, code, schedule);
+	}
+
+	/**
+	 * Devuelve verdadero si la imagen se ha regenerado a partir de los fuentes porque no existía o no estaba al día
+	 * @return Verdadero si la imagen se ha regenerado a partir de los fuentes
+	 */
+	public boolean isRegenerated() {
+		return regenerated;
+	}
+}
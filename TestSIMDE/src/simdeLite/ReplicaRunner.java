@@ -0,0 +1,422 @@
+/**
+ * 
+ */
+package simdeLite;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Lanza las réplicas de una simulación con fallos de caché repartidas entre varios hilos. Cada hilo usa su propia máquina, y cada 
+ * réplica usa su propia semilla, derivada de una semilla maestra. Así, los resultados de cada réplica son los mismos independientemente 
+ * del número de hilos empleados.
+ * La semilla de cada réplica solo depende de la semilla maestra y del índice de la réplica (ver {@link #getSeed(long, int)}), de 
+ * manera que la réplica "i" tiene los mismos fallos de caché si se lanza en serie, en paralelo o en otro equipo.
+ * @author Iván Castilla
+ *
+ */
+public class ReplicaRunner {
+	/** Incremento de la secuencia de SplitMix64: parte fraccionaria de la razón áurea, impar */
+	private final static long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+	/** 
+	 * Número de réplicas de cada tramo de un lote. Cada tramo se resume en orden de réplica y los tramos se combinan en orden, así que 
+	 * el resumen de un lote no depende de cuántos hilos lo lancen. Los lotes, salvo el primero, se redondean a un múltiplo de tramos
+	 */
+	public final static int CHUNK = 64;
+	/** Número de hilos que se usan para lanzar las réplicas */
+	private final int nThreads;
+	
+	/**
+	 * Crea un lanzador de réplicas que usa el número de hilos indicado
+	 * @param nThreads Número de hilos que se usan para lanzar las réplicas
+	 */
+	public ReplicaRunner(int nThreads) {
+		this.nThreads = nThreads;
+	}
+	
+	/**
+	 * Crea un lanzador de réplicas que usa tantos hilos como procesadores tenga el sistema
+	 */
+	public ReplicaRunner() {
+		this(Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Devuelve la semilla de cada réplica, derivada de la semilla maestra
+	 * @param nReplicas Número de réplicas
+	 * @param masterSeed Semilla maestra
+	 * @return La semilla de cada réplica
+	 */
+	public static long[] getSeeds(int nReplicas, long masterSeed) {
+		final long[] seeds = new long[nReplicas];
+		for (int i = 0; i < nReplicas; i++)
+			seeds[i] = getSeed(masterSeed, i);
+		return seeds;
+	}
+	
+	/**
+	 * Devuelve la semilla de una réplica. Es el elemento "replica" de la secuencia SplitMix64 que comienza en la semilla maestra, 
+	 * así que se calcula directamente, sin generar las semillas de las réplicas anteriores, y réplicas distintas tienen 
+	 * semillas bien separadas
+	 * @param masterSeed Semilla maestra
+	 * @param replica Índice de la réplica
+	 * @return La semilla de la réplica
+	 */
+	public static long getSeed(long masterSeed, int replica) {
+		long z = masterSeed + (replica + 1L) * GOLDEN_GAMMA;
+		z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+		z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+		return z ^ (z >>> 31);
+	}
+	
+	/**
+	 * Lanza las réplicas y devuelve el número de ciclos que tardó cada una
+	 * @param nReplicas Número de réplicas
+	 * @param masterSeed Semilla maestra de la que se derivan las semillas de cada réplica
+	 * @param factory Crea el simulador que usará cada hilo
+	 * @return El número de ciclos que tardó cada réplica, en orden de réplica
+	 * @throws IOException Si algún simulador no pudo leer sus ficheros
+	 * @throws SIMDEException Errores de ejecución de la máquina simulada
+	 */
+	public int[] run(int nReplicas, long masterSeed, WorkerFactory factory) throws IOException, SIMDEException {
+		return run(0, nReplicas, masterSeed, factory);
+	}
+	
+	/**
+	 * Lanza las réplicas first, first + 1... first + nReplicas - 1 y devuelve el número de ciclos que tardó cada una. Como la semilla 
+	 * de cada réplica solo depende de su índice, lanzar las réplicas por lotes da los mismos resultados que lanzarlas todas a la vez
+	 * @param first Índice de la primera réplica
+	 * @param nReplicas Número de réplicas
+	 * @param masterSeed Semilla maestra de la que se derivan las semillas de cada réplica
+	 * @param factory Crea el simulador que usará cada hilo
+	 * @return El número de ciclos que tardó cada réplica, en orden de réplica
+	 * @throws IOException Si algún simulador no pudo leer sus ficheros
+	 * @throws SIMDEException Errores de ejecución de la máquina simulada
+	 */
+	public int[] run(int first, int nReplicas, long masterSeed, WorkerFactory factory) throws IOException, SIMDEException {
+		final int[] results = new int[nReplicas];
+		final int nWorkers = Math.max(1, Math.min(nThreads, nReplicas));
+		runTasks(nWorkers, index -> {
+			final Worker worker = factory.create(index);
+			for (int i = index; i < nReplicas; i += nWorkers)
+				results[i] = worker.simulate(first + i, getSeed(masterSeed, first + i));
+			return null;
+		});
+		return results;
+	}
+	
+	/**
+	 * Lanza réplicas por lotes hasta que la semiamplitud del IC95% del promedio de ciclos sea, como mucho, la fracción indicada 
+	 * del promedio, o hasta llegar al máximo de réplicas. El primer lote tiene "nReplicas" réplicas; con su desviación estándar 
+	 * se estima cuántas hacen falta en total, y el siguiente lote lanza las que faltan, redondeadas a un múltiplo de {@link #CHUNK}, 
+	 * sin pasar del doble de las ya lanzadas para no fiarse demasiado de una estimación con pocas réplicas.
+	 * 
+	 * La precisión solo se comprueba al terminar cada lote, y el tamaño de los lotes solo depende de las réplicas ya lanzadas, de las 
+	 * estimadas y del máximo, nunca del número de hilos. Como el resumen de cada lote tampoco depende de los hilos (ver {@link #CHUNK}), 
+	 * se lanzan las mismas réplicas y se obtiene exactamente el mismo resultado con cualquier número de hilos.
+	 * 
+	 * Si se indican varios simuladores, todos lanzan las mismas réplicas, con las mismas semillas, y la precisión se exige tanto 
+	 * al promedio de cada uno como a la diferencia de cada uno con el primero (relativa al promedio del primero).
+	 * 
+	 * Los resultados de cada réplica no se guardan: se resumen por tramos a medida que terminan, y los resúmenes se combinan en orden 
+	 * (ver {@link #runBatch(int, int, long, WorkerFactory[])}), así que la memoria usada apenas depende del número de réplicas
+	 * @param nReplicas Número de réplicas del primer lote
+	 * @param maxReplicas Número máximo de réplicas
+	 * @param precision Semiamplitud máxima del IC95%, en tanto por 1 del promedio. Si es 0 o menor, solo se lanza el primer lote
+	 * @param masterSeed Semilla maestra de la que se derivan las semillas de cada réplica
+	 * @param factories Crean el simulador que usará cada hilo, uno por cada configuración a simular
+	 * @return El resumen de los ciclos de cada configuración y de su diferencia con la primera
+	 * @throws IOException Si algún simulador no pudo leer sus ficheros
+	 * @throws SIMDEException Errores de ejecución de la máquina simulada
+	 */
+	public Results run(int nReplicas, int maxReplicas, double precision, long masterSeed, WorkerFactory... factories) throws IOException, SIMDEException {
+		final Results results = new Results(factories.length);
+		int n = 0;
+		int batch = Math.min(nReplicas, maxReplicas);
+		while (batch > 0) {
+			results.merge(runBatch(n, batch, masterSeed, factories));
+			n += batch;
+			if (precision <= 0.0)
+				break;
+			final int needed = results.getRequiredReplicas(precision);
+			if (needed <= n)
+				break;
+			// Tramos completos, y como mucho el doble de las ya lanzadas
+			final long missing = (long)needed - n;
+			final long chunks = (missing + CHUNK - 1) / CHUNK;
+			batch = (int)Math.min(Math.min(chunks * CHUNK, n), maxReplicas - n);
+		}
+		return results;
+	}
+	
+	/**
+	 * Lanza un lote de réplicas en todas las configuraciones. El lote se divide en tramos de {@link #CHUNK} réplicas, y cada hilo lanza 
+	 * el siguiente tramo pendiente en cuanto termina el anterior. Cada réplica se lanza en todas las configuraciones seguidas, para 
+	 * poder calcular las diferencias entre configuraciones sin guardar los resultados. Cada tramo se resume por separado y los resúmenes
+	 * se combinan en orden de tramo en cuanto están disponibles, así que solo se guardan los de los tramos que terminan antes que alguno
+	 * anterior
+	 * @param first Índice de la primera réplica del lote
+	 * @param nReplicas Número de réplicas del lote
+	 * @param masterSeed Semilla maestra de la que se derivan las semillas de cada réplica
+	 * @param factories Crean el simulador que usará cada hilo, uno por cada configuración a simular
+	 * @return El resumen de los ciclos del lote
+	 * @throws IOException Si algún simulador no pudo leer sus ficheros
+	 * @throws SIMDEException Errores de ejecución de la máquina simulada
+	 */
+	private Results runBatch(int first, int nReplicas, long masterSeed, WorkerFactory[] factories) throws IOException, SIMDEException {
+		final int nChunks = (nReplicas + CHUNK - 1) / CHUNK;
+		final Results results = new Results(factories.length);
+		final Results[] partials = new Results[nChunks];
+		final AtomicInteger nextChunk = new AtomicInteger();
+		// Primer tramo que todavía no se ha combinado
+		final int[] nextMerge = {0};
+		final int nWorkers = Math.max(1, Math.min(nThreads, nChunks));
+		runTasks(nWorkers, index -> {
+			final Worker[] workers = new Worker[factories.length];
+			for (int s = 0; s < factories.length; s++)
+				workers[s] = factories[s].create(index);
+			final int[] cycles = new int[factories.length];
+			for (int c = nextChunk.getAndIncrement(); c < nChunks; c = nextChunk.getAndIncrement()) {
+				final Results partial = new Results(factories.length);
+				for (int i = c * CHUNK; i < Math.min(nReplicas, (c + 1) * CHUNK); i++) {
+					final long seed = getSeed(masterSeed, first + i);
+					for (int s = 0; s < workers.length; s++)
+						cycles[s] = workers[s].simulate(first + i, seed);
+					partial.add(cycles);
+				}
+				// Se combinan siempre en orden de tramo, sea cual sea el hilo que lanzó cada uno
+				synchronized (partials) {
+					partials[c] = partial;
+					while (nextMerge[0] < nChunks && partials[nextMerge[0]] != null) {
+						results.merge(partials[nextMerge[0]]);
+						partials[nextMerge[0]++] = null;
+					}
+				}
+			}
+			return null;
+		});
+		return results;
+	}
+	
+	/**
+	 * Lanza una tarea en cada hilo y espera a que terminen todas. Si solo hay un hilo, se lanza en el hilo actual
+	 * @param nWorkers Número de hilos
+	 * @param task Tarea a lanzar en cada hilo
+	 * @return El resultado de la tarea de cada hilo, en orden de hilo
+	 * @throws IOException Si algún simulador no pudo leer sus ficheros
+	 * @throws SIMDEException Errores de ejecución de la máquina simulada
+	 */
+	private static <T> List<T> runTasks(int nWorkers, Task<T> task) throws IOException, SIMDEException {
+		final ArrayList<T> results = new ArrayList<>();
+		if (nWorkers == 1) {
+			results.add(task.run(0));
+			return results;
+		}
+		final ExecutorService pool = Executors.newFixedThreadPool(nWorkers);
+		try {
+			final ArrayList<Future<T>> futures = new ArrayList<>();
+			for (int w = 0; w < nWorkers; w++) {
+				final int index = w;
+				futures.add(pool.submit(() -> task.run(index)));
+			}
+			for (Future<T> future : futures)
+				results.add(future.get());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new SIMDEException("Simulación de réplicas interrumpida");
+		} catch (ExecutionException e) {
+			final Throwable cause = e.getCause();
+			if (cause instanceof IOException)
+				throw (IOException)cause;
+			if (cause instanceof SIMDEException)
+				throw (SIMDEException)cause;
+			if (cause instanceof RuntimeException)
+				throw (RuntimeException)cause;
+			throw new SIMDEException("Error en la simulación de réplicas: " + cause);
+		} finally {
+			pool.shutdownNow();
+		}
+		return results;
+	}
+
+	/**
+	 * Tarea que lanza un hilo
+	 * @author Iván Castilla
+	 *
+	 * @param <T> Tipo del resultado de la tarea
+	 */
+	private interface Task<T> {
+		/**
+		 * Lanza la tarea
+		 * @param index Índice del hilo
+		 * @return Resultado de la tarea
+		 * @throws IOException Si algún simulador no pudo leer sus ficheros
+		 * @throws SIMDEException Errores de ejecución de la máquina simulada
+		 */
+		T run(int index) throws IOException, SIMDEException;
+	}
+	
+	/**
+	 * Resumen de los ciclos de las réplicas de una o varias configuraciones que se simulan con las mismas semillas. Se guarda, para 
+	 * cada configuración, un acumulador con sus ciclos y otro con la diferencia entre sus ciclos y los de la primera configuración 
+	 * en la misma réplica
+	 * @author Iván Castilla
+	 *
+	 */
+	public static class Results {
+		/** Ciclos de cada configuración */
+		private final Statistics.Accumulator[] cycles;
+		/** Diferencia entre los ciclos de cada configuración y los de la primera */
+		private final Statistics.Accumulator[] differences;
+		/** Distribución de los ciclos de cada configuración */
+		private final Statistics.Histogram[] histograms;
+
+		/**
+		 * Crea un resumen vacío
+		 * @param nConfigurations Número de configuraciones
+		 */
+		public Results(int nConfigurations) {
+			cycles = new Statistics.Accumulator[nConfigurations];
+			differences = new Statistics.Accumulator[nConfigurations];
+			histograms = new Statistics.Histogram[nConfigurations];
+			for (int s = 0; s < nConfigurations; s++) {
+				cycles[s] = new Statistics.Accumulator();
+				differences[s] = new Statistics.Accumulator();
+				histograms[s] = new Statistics.Histogram();
+			}
+		}
+
+		/**
+		 * Añade los ciclos de una réplica
+		 * @param replicaCycles Ciclos que tardó la réplica en cada configuración
+		 */
+		public void add(int[] replicaCycles) {
+			for (int s = 0; s < cycles.length; s++) {
+				cycles[s].add(replicaCycles[s]);
+				differences[s].add(replicaCycles[s] - replicaCycles[0]);
+				histograms[s].add(replicaCycles[s]);
+			}
+		}
+
+		/**
+		 * Añade los ciclos de las réplicas de otro resumen
+		 * @param other Resumen de otras réplicas de las mismas configuraciones
+		 */
+		public void merge(Results other) {
+			for (int s = 0; s < cycles.length; s++) {
+				cycles[s].merge(other.cycles[s]);
+				differences[s].merge(other.differences[s]);
+				histograms[s].merge(other.histograms[s]);
+			}
+		}
+
+		/**
+		 * Devuelve el número de configuraciones
+		 * @return Número de configuraciones
+		 */
+		public int getNConfigurations() {
+			return cycles.length;
+		}
+
+		/**
+		 * Devuelve el número de réplicas
+		 * @return Número de réplicas
+		 */
+		public long getNReplicas() {
+			return cycles[0].getCount();
+		}
+
+		/**
+		 * Devuelve el resumen de los ciclos de una configuración
+		 * @param config Índice de la configuración
+		 * @return Resumen de los ciclos de la configuración
+		 */
+		public Statistics.Accumulator getCycles(int config) {
+			return cycles[config];
+		}
+
+		/**
+		 * Devuelve la distribución de los ciclos de una configuración, de la que se obtienen sus percentiles
+		 * @param config Índice de la configuración
+		 * @return Distribución de los ciclos de la configuración
+		 */
+		public Statistics.Histogram getHistogram(int config) {
+			return histograms[config];
+		}
+
+		/**
+		 * Devuelve el resumen de la diferencia entre los ciclos de una configuración y los de la primera, réplica a réplica
+		 * @param config Índice de la configuración
+		 * @return Resumen de la diferencia entre los ciclos de la configuración y los de la primera
+		 */
+		public Statistics.Accumulator getDifference(int config) {
+			return differences[config];
+		}
+
+		/**
+		 * Estima el número total de réplicas necesario para que la semiamplitud del IC95% del promedio de cada configuración, y de su 
+		 * diferencia con la primera, sea como mucho la fracción indicada del promedio
+		 * @param precision Semiamplitud máxima del IC95%, en tanto por 1 del promedio
+		 * @return Número total de réplicas necesario
+		 */
+		public int getRequiredReplicas(double precision) {
+			final double reference = cycles[0].getMean();
+			int needed = 0;
+			for (int s = 0; s < cycles.length; s++) {
+				needed = Math.max(needed, Statistics.requiredSampleSize(cycles[s].getStdDev(), precision * cycles[s].getMean()));
+				if (s > 0)
+					needed = Math.max(needed, Statistics.requiredSampleSize(differences[s].getStdDev(), precision * reference));
+			}
+			return needed;
+		}
+
+		/**
+		 * Devuelve verdadero si la semiamplitud del IC95% del promedio de cada configuración, y de su diferencia con la primera, es 
+		 * como mucho la fracción indicada del promedio
+		 * @param precision Semiamplitud máxima del IC95%, en tanto por 1 del promedio
+		 * @return Verdadero si se alcanzó la precisión indicada
+		 */
+		public boolean isPrecise(double precision) {
+			return getRequiredReplicas(precision) <= getNReplicas();
+		}
+	}
+
+	/**
+	 * Simulador que usa un hilo para lanzar sus réplicas. Cada simulador tiene su propia máquina
+	 * @author Iván Castilla
+	 *
+	 */
+	public interface Worker {
+		/**
+		 * Lanza una réplica
+		 * @param replica Índice de la réplica
+		 * @param seed Semilla de la réplica
+		 * @return El número de ciclos que tardó la réplica
+		 * @throws IOException Si el simulador no pudo leer sus ficheros
+		 * @throws SIMDEException Errores de ejecución de la máquina simulada
+		 */
+		int simulate(int replica, long seed) throws IOException, SIMDEException;
+	}
+	
+	/**
+	 * Crea los simuladores de cada hilo
+	 * @author Iván Castilla
+	 *
+	 */
+	public interface WorkerFactory {
+		/**
+		 * Crea el simulador de un hilo
+		 * @param index Índice del hilo
+		 * @return El simulador del hilo
+		 * @throws IOException Si el simulador no pudo leer sus ficheros
+		 * @throws SIMDEException Errores al crear la máquina simulada
+		 */
+		Worker create(int index) throws IOException, SIMDEException;
+	}
+}
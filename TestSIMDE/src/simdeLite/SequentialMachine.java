@@ -3,12 +3,9 @@
  */
 package simdeLite;
 
-import java.io.File;
-import java.io.FileNotFoundException;
-import java.util.ArrayList;
-import java.util.Locale;
-import java.util.Random;
-import java.util.Scanner;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.List;
 
 /**
  * La máquina secuencial simulada
@@ -16,12 +13,12 @@ import java.util.Scanner;
  *
  */
 public class SequentialMachine {
-	/** Cadena de texto que identifica el comienzo de una dirección en un fichero de contenido de memoria y registros */
-	private final static String STR_START_DIR = "[";
+	/** Carácter que identifica el comienzo de una dirección en un fichero de contenido de memoria y registros */
+	private final static char START_DIR = '[';
 	/** Número de registros de cualquier tipo en la máquina */
 	private final static int NREG = 64;
-	/** Número de palabras de memoria en la máquina */
-	private final static int NMEM = 1024;
+	/** Número de palabras de memoria en la máquina por defecto */
+	public final static int NMEM = 1024;
 	/** Banco de registros de propósito general */
 	private final GPRegisterBank gpr;
 	/** Banco de registros de punto flotante */
@@ -31,8 +28,10 @@ public class SequentialMachine {
 
 	/** Modo de depuración */
 	private boolean debugMode = false;
-	/** Generador de números aleatorios para los fallos de caché */
-	private final Random rnd;
+	/** Generador de los fallos de caché */
+	private final CacheMissGenerator misses;
+	/** Fichero donde se escriben los accesos a memoria, o null si no se escriben (ver {@link #setAccessTrace(AccessTraceWriter)}) */
+	private AccessTraceWriter accessTrace = null;
 	
 	private final int[] latencies;
 	private int pc;
@@ -45,39 +44,61 @@ public class SequentialMachine {
 	 * @param cacheMissPenalty Penalización en ciclos si se produce un fallo de la caché
 	 */
 	public SequentialMachine(int[] latencies, int cacheFailRate, int cacheFailPenalty) {
+		this(latencies, NMEM, cacheFailRate, cacheFailPenalty);
+	}
+
+	/**
+	 * Crea una máquina secuencial con la configuración y el tamaño de memoria indicados
+	 * @param latencies Latencia para cada tipo de UF incluida en la máquina
+	 * @param memSize Número de palabras de memoria de la máquina
+	 * @param cacheMissRate Tasa de fallos de la caché, expresada como un valor entre 0 y 100 (%).
+	 * @param cacheMissPenalty Penalización en ciclos si se produce un fallo de la caché
+	 */
+	public SequentialMachine(int[] latencies, int memSize, int cacheFailRate, int cacheFailPenalty) {
 		gpr = new GPRegisterBank(NREG);
 		fpr = new FPRegisterBank(NREG);
-		mem = new Memory(NMEM, (double)cacheFailRate / 100.0, cacheFailPenalty);
-		this.rnd = new Random();
+		mem = new Memory(memSize, (double)cacheFailRate / 100.0, cacheFailPenalty);
+		this.misses = new CacheMissGenerator(mem.getCacheMissRate());
 		this.latencies = latencies;
 	}
 
+	/**
+	 * Carga la memoria y los registros desde una imagen binaria ya abierta. La misma imagen se puede cargar tantas veces como se 
+	 * quiera, así que sirve para restaurar el estado inicial de la máquina entre ejecuciones copiando bloques, sin volver a leer el fichero
+	 * @param image Imagen binaria de memoria y registros
+	 * @throws IOException Si la imagen está incompleta
+	 * @throws SIMDEException Si algún bloque de la imagen se sale de la memoria o de los bancos de registros
+	 */
+	public void loadMemoryAndRegisters(MemoryImage image) throws IOException, SIMDEException {
+		image.load(gpr, fpr, null, mem);
+	}
+
 	/**
 	 * Carga la memoria y los registros desde un fichero que, al menos, debe tener 3 líneas con las cadenas
-	 * "#GPR", "#FPR" y "#MEM".
+	 * "#GPR", "#FPR" y "#MEM", o desde una imagen binaria ({@link MemoryImage})
 	 * @param fileName Nombre del fichero que define los contenidos de registros y memoria
 	 */
-	public void loadMemoryAndRegisters(String fileName) throws FileNotFoundException, SIMDEException {
-		final File memFile = new File(fileName);
-		Scanner scan;
-		int what = -1;
-		scan = new Scanner(memFile);
+	public void loadMemoryAndRegisters(String fileName) throws IOException, SIMDEException {
+		if (MemoryImage.isImage(fileName)) {
+			loadMemoryAndRegisters(new MemoryImage(fileName));
+			return;
+		}
 		// Todos los ficheros están con el "." para separar los decimales
-		scan.useLocale(Locale.ENGLISH);
+		final TextTokenizer scan = new TextTokenizer(fileName);
+		int what = -1;
 		while (scan.hasNext()) {
-			final String text = scan.next();
-			if (GPRegisterBank.STR.equals(text)) {
+			if (scan.skip(GPRegisterBank.STR)) {
 				what = 0;					
 			}
-			else if (FPRegisterBank.STR.equals(text)) {
+			else if (scan.skip(FPRegisterBank.STR)) {
 				what = 1;					
 			}
-			else if (Memory.STR.equals(text)) {
+			else if (scan.skip(Memory.STR)) {
 				what = 2;					
 			}
-			else if (text.startsWith(STR_START_DIR)) {
+			else if (scan.startsWith(START_DIR)) {
 				// Dirección
-				int dir = Integer.parseInt(text.substring(1, text.length() - 1));
+				int dir = scan.nextAddress();
 				switch(what) {
 				case 0:
 					while (scan.hasNextInt()) {
@@ -98,17 +119,38 @@ public class SequentialMachine {
 					break;
 				}
 			}
+			else {
+				scan.skip();
+			}
 		}
-		scan.close();
+	}
+
+	/**
+	 * Guarda el contenido de memoria y registros en una imagen binaria ({@link MemoryImage}), que se puede volver a cargar con
+	 * {@link #loadMemoryAndRegisters(String)}
+	 * @param fileName Nombre del fichero. Si ya existe, se sobrescribe
+	 * @throws IOException Si no se pudo escribir el fichero
+	 * @throws SIMDEException Errores de acceso a la memoria
+	 */
+	public void saveMemoryAndRegisters(String fileName) throws IOException, SIMDEException {
+		MemoryImage.save(fileName, gpr, fpr, null, mem);
 	}
 
 	/**
 	 * Imprime por pantalla el contenido de memoria y registros
 	 */
 	public void printMemoryAndRegisters() {
-		System.out.print(gpr);
-		System.out.print(fpr);
-		System.out.print(mem);
+		printMemoryAndRegisters(System.out);
+	}
+
+	/**
+	 * Imprime el contenido de memoria y registros con el formato de los ficheros de texto de memoria y registros
+	 * @param out Flujo en el que se imprime
+	 */
+	public void printMemoryAndRegisters(PrintStream out) {
+		out.print(gpr);
+		out.print(fpr);
+		out.print(mem);
 	}
 
 	/**
@@ -121,153 +163,39 @@ public class SequentialMachine {
 	}
 	
 	/**
-	 * Busca y establece los valores de los operandos en tiempo de ejecución
-	 * @param op Operación que encapsula la instrucción secuencial que se quiere ejecutar
-	 */
-	private void setOperandValues(Action op) {
-		double []values = new double[2];
-		final Instruction inst = op.getInstruction();
-		switch (inst.getOpcode()) {
-		case ADD:
-		case SUB:
-		case AND:
-		case NOR:
-		case OR:
-		case XOR:
-		case MULT:
-		case SLLV:
-		case SRLV:
-			values[0] = gpr.read(inst.getOp()[1]);
-			values[1] = gpr.read(inst.getOp()[2]);
-			break;
-		case ADDF:
-		case SUBF:
-		case MULTF:
-			values[0] = fpr.read(inst.getOp()[1]);
-			values[1] = fpr.read(inst.getOp()[2]);
-			break;
-		case ADDI:
-			values[0] = gpr.read(inst.getOp()[1]);
-			values[1] = inst.getOp()[2];
-			break;
-		case BEQ:
-		case BGT:
-		case BNE:
-			values[0] = gpr.read(inst.getOp()[0]);
-			values[1] = gpr.read(inst.getOp()[1]);
-			break;
-		case LF:
-		case LW:
-			values[0] = inst.getOp()[1] + gpr.read(inst.getOp()[2]);
-			values[1] = 0.0;
-			break;
-		case SF:
-			values[0] = inst.getOp()[1] + gpr.read(inst.getOp()[2]);
-			values[1] = fpr.read(inst.getOp()[0]);
-			break;
-		case SW:
-			values[0] = inst.getOp()[1] + gpr.read(inst.getOp()[2]);
-			values[1] = gpr.read(inst.getOp()[0]);
-			break;
-		default:
-			break;
-		
-		}
-		op.setOperandValues(values);
-	}
-	
-	/**
-	 * Finaliza la ejecución de una instrucción
+	 * Ejecuta una instrucción. La semántica de cada instrucción la define su código de operación 
+	 * ({@link Opcode#execute(GPRegisterBank, FPRegisterBank, Memory, int, OperandValues)}), la misma que en la máquina VLIW; 
+	 * aquí solo se actualizan el PC y el ciclo de reloj
 	 * @param action Acción que encapsula a la instrucción
-	 * @param pc Contador de programa que indica cuándo se está ejecutando la instrucción
-	 * @return El contador de programa resultante de la ejecución de esta instrucción
 	 * @throws SIMDEException Errores de ejecución
 	 */
 	private void execute(Action action) throws SIMDEException {
-		int op1, op2;
-		double opFP1, opFP2;
 		final Instruction inst = action.getInstruction();
-		setOperandValues(action);
-		switch (inst.getOpcode().getFU()) {
-		case FP_ADD:
-			opFP1 = action.getOperand1Value();
-			opFP2 = action.getOperand2Value();
-			switch(inst.getOpcode()) {
-			case ADDF:	fpr.write(inst.getOp()[0], opFP1 + opFP2);	break;
-			case SUBF:	fpr.write(inst.getOp()[0], opFP1 - opFP2);	break;
-			default:
-				throw new SIMDEException("Código de operación inesperado en la unidad de suma de punto flotante: " + inst.getOpcode());
-			}
-			pc++;
-			break;
-		case FP_MULT:
-			opFP1 = action.getOperand1Value();
-			opFP2 = action.getOperand2Value();
-			if (Opcode.MULTF.equals(inst.getOpcode()))
-				fpr.write(inst.getOp()[0], opFP1 * opFP2);
-			else
-				throw new SIMDEException("Código de operación inesperado en la unidad de multiplicación de punto flotante: " + inst.getOpcode());
-			pc++;
-			break;
-		case INT_ADD:
-			op1 = (int)action.getOperand1Value();
-			op2 = (int)action.getOperand2Value();
-			switch (inst.getOpcode()) {
-			case ADD:
-			case ADDI:	gpr.write(inst.getOp()[0], op1 + op2);		break;
-			case AND:	gpr.write(inst.getOp()[0], op1 & op2);		break;
-			case NOR:	gpr.write(inst.getOp()[0], ~(op1 | op2));	break;
-			case OR:	gpr.write(inst.getOp()[0], op1 | op2);		break;
-			case SLLV:	gpr.write(inst.getOp()[0], op1 << op2);		break;
-			case SRLV:	gpr.write(inst.getOp()[0], op1 >> op2);		break;
-			case SUB:	gpr.write(inst.getOp()[0], op1 - op2);		break;
-			case XOR:	gpr.write(inst.getOp()[0], op1 ^ op2);		break;
-			default:
-				throw new SIMDEException("Código de operación inesperado en la unidad de suma entera: " + inst.getOpcode());
-			}
-			pc++;
-			break;
-		case INT_MULT:
-			op1 = (int)action.getOperand1Value();
-			op2 = (int)action.getOperand2Value();
-			if (Opcode.MULT.equals(inst.getOpcode()))
-				gpr.write(inst.getOp()[0], op1 * op2);
-			else
-				throw new SIMDEException("Código de operación inesperado en la unidad de multiplicación entera: " + inst.getOpcode());
-			pc++;
-			break;
-		case JUMP:
-			op1 = (int)action.getOperand1Value();
-			op2 = (int)action.getOperand2Value();
-			boolean cond = false;
-			switch (inst.getOpcode()) {
-			case BEQ: cond = (op1 == op2);	break;
-			case BGT: cond = (op1 > op2);	break;
-			case BNE: cond = (op1 != op2);	break;
-			default:
-				throw new SIMDEException("Código de operación inesperado en la unidad de salto: " + inst.getOpcode());
-			}
-			pc = cond ? inst.getOp()[2] : pc + 1;
-			break;
-		case MEM:
-			switch (inst.getOpcode()) {
-			case LF: fpr.write(inst.getOp()[0], mem.read((int)action.getOperand1Value()));		break;
-			case LW: gpr.write(inst.getOp()[0], (int)mem.read((int)action.getOperand1Value()));	break;
-			case SF: mem.write((int)action.getOperand1Value(), action.getOperand2Value());			break;
-			case SW: mem.write((int)action.getOperand1Value(), (int)action.getOperand2Value());		break;
-			default:
-				throw new SIMDEException("Código de operación inesperado en la unidad de memoria: " + inst.getOpcode());
-			}
+		final Opcode opcode = inst.getOpcode();
+		final OperandFormat format = opcode.getFormat();
+		opcode.fetch(gpr, fpr, format.getSrc1(inst), format.getSrc2(inst), format.getImm(inst), action);
+		boolean cached = action.isCached();
+		if (opcode.getFU() == FunctionalUnit.MEM) {
+			final int address = (int)action.getOperand1Value();
+			final boolean write = (format.getDest(inst) == OperandFormat.NONE);
+			if (accessTrace != null)
+				traceAccess(inst.getId(), address, write);
+			// El acceso se busca en el modelo de caché aunque ya haya fallado en el sorteo, para que la caché se actualice igual
+			cached &= mem.access(address, write);
+		}
+		final boolean cond = opcode.execute(gpr, fpr, mem, format.getDest(inst), action);
+		if (opcode.getFU() == FunctionalUnit.JUMP) {
+			pc = cond ? format.getTarget(inst) : pc + 1;
+		}
+		else {
 			pc++;
-			if (!action.isCached()) {
-				System.out.println("FALLO CACHE! Añadiendo penalización: " + mem.getCacheMissPenalty());
+			if (!cached) {
+				if (debugMode)
+					System.out.println("FALLO CACHE! Añadiendo penalización: " + mem.getCacheMissPenalty());
 				cycle += mem.getCacheMissPenalty();
 			}
-			break;
-		default:
-			throw new SIMDEException("Unidad funcional desconocida: " + inst.getOpcode().getFU());
 		}
-		cycle += latencies[inst.getOpcode().getFU().ordinal()];
+		cycle += latencies[opcode.getFU().ordinal()];
 		if (debugMode)
 			System.out.println("\tFINAL:\t" + inst);
 	}
@@ -278,7 +206,9 @@ public class SequentialMachine {
 	 * @return El número de ciclos que tardó la ejecución
 	 */
 	public int execute(Code code) {
-		final ArrayList<Instruction> instructions = code.getInstructions();
+		final List<Instruction> instructions = code.getInstructions();
+		pc = 0;
+		cycle = 0;
 		
 		if (debugMode)
 			System.out.println("CICLO: " + cycle + "\tPC: " + pc);
@@ -296,6 +226,62 @@ public class SequentialMachine {
 		return cycle;
 	}
 	
+	/**
+	 * Devuelve el modelo de caché que decide los fallos según las direcciones (ver {@link Memory#getCacheModel()})
+	 * @return Modelo de caché, o null si solo se usa la tasa de fallos aleatoria
+	 */
+	public CacheModel getCacheModel() {
+		return mem.getCacheModel();
+	}
+
+	/**
+	 * Establece el modelo de caché que decide los fallos según las direcciones (ver {@link Memory#setCacheModel(CacheModel)})
+	 * @param cache Modelo de caché, o null para usar solo la tasa de fallos aleatoria
+	 */
+	public void setCacheModel(CacheModel cache) {
+		mem.setCacheModel(cache);
+	}
+	
+	/**
+	 * Escribe un acceso a memoria en el fichero de accesos, con el ciclo de reloj actual
+	 * @param instruction Identificador de la instrucción secuencial que realiza el acceso
+	 * @param address Dirección del acceso
+	 * @param write Verdadero si es una escritura; falso si es una lectura
+	 * @throws SIMDEException Si no se pudo escribir en el fichero
+	 */
+	private void traceAccess(int instruction, int address, boolean write) throws SIMDEException {
+		try {
+			accessTrace.write(cycle, instruction, address, write);
+		} catch (IOException ex) {
+			throw new SIMDEException("No se pudo escribir la traza de accesos a memoria (" + ex.getMessage() + ")");
+		}
+	}
+
+	/**
+	 * Devuelve el fichero donde se escriben los accesos a memoria
+	 * @return Fichero donde se escriben los accesos a memoria, o null si no se escriben
+	 */
+	public AccessTraceWriter getAccessTrace() {
+		return accessTrace;
+	}
+
+	/**
+	 * Establece el fichero donde se escribe cada acceso a memoria que se realiza, con su ciclo de reloj, la instrucción secuencial que lo 
+	 * realiza, su dirección y si es una lectura o una escritura
+	 * @param accessTrace Fichero donde se escriben los accesos a memoria, o null para no escribirlos
+	 */
+	public void setAccessTrace(AccessTraceWriter accessTrace) {
+		this.accessTrace = accessTrace;
+	}
+	
+	/**
+	 * Establece la semilla del generador de números aleatorios de los fallos de caché
+	 * @param seed Semilla del generador de números aleatorios
+	 */
+	public void setSeed(long seed) {
+		misses.setSeed(seed);
+	}
+	
 	/**
 	 * Devuelve verdadero si la máquina está en modo de depuración
 	 * @return Verdadero si la máquina está en modo de depuración
@@ -313,17 +299,16 @@ public class SequentialMachine {
 	}
 
 	/**
-	 * Una estructura para poder simular la ejecución de las instrucciones. Indica una operación y el ciclo en que se espera que deba terminar la ejecución de la instrucción
+	 * Una estructura para poder simular la ejecución de las instrucciones. Indica una operación y el ciclo en que se espera que deba terminar la ejecución de la instrucción,
+	 * y guarda los valores de sus operandos fuente
 	 * @author Iván Castilla
 	 *
 	 */
-	private class Action {
+	private class Action extends OperandValues {
 		/** Instrucción a finalizar */
 		private final Instruction oper;
 		/** En el caso de las instrucciones de acceso a memoria, indica si el acceso producirá un fallo de caché (valor false). En el resto de casos, siempre es verdadero */
 		private final boolean cached;
-		/** Valores de los operandos fuente durante la ejecución */
-		private final double[]operandValues;
 		
 		/**
 		 * Crea una nueva acción para ejecutar la operación "oper" el ciclo "cycle"
@@ -332,9 +317,8 @@ public class SequentialMachine {
 		 */
 		public Action(int cycle, Instruction oper) {
 			this.oper = oper;
-			this.operandValues = new double[2];
 			if (FunctionalUnit.MEM.equals(oper.getOpcode().getFU())) {
-				cached = (rnd.nextDouble() >= mem.getCacheMissRate());
+				cached = misses.nextCached();
 			}
 			else {
 				cached = true;
@@ -356,30 +340,5 @@ public class SequentialMachine {
 		public boolean isCached() {
 			return cached;
 		}
-
-		/**
-		 * Devuelve el valor en tiempo de ejecución del primer operando fuente de la instrucción
-		 * @return Valor en tiempo de ejecución del primer operando fuente de la instrucción
-		 */
-		public double getOperand1Value() {
-			return operandValues[0];
-		}
-		
-		/**
-		 * Devuelve el valor en tiempo de ejecución del segundo operando fuente de la instrucción
-		 * @return Valor en tiempo de ejecución del segundo operando fuente de la instrucción
-		 */
-		public double getOperand2Value() {
-			return operandValues[1];			
-		}
-		
-		/**
-		 * Establece los valores de los operandos fuente de la instrucción durante el tiempo de ejecución
-		 * @param values Valores de los operandos fuente
-		 */
-		public void setOperandValues(double[] values) {
-			operandValues[0] = values[0];
-			operandValues[1] = values[1];
-		}
 	}
 }
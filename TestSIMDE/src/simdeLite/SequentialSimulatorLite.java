@@ -4,6 +4,7 @@
 package simdeLite;
 
 import java.io.IOException;
+import java.util.Random;
 import java.util.Scanner;
 
 import com.beust.jcommander.JCommander;
@@ -22,6 +23,8 @@ import com.beust.jcommander.ParameterException;
  *
  */
 public class SequentialSimulatorLite {
+	/** Número máximo de intervalos del histograma de ciclos */
+	private final static int HISTOGRAM_BINS = 10;
 
 	/**
 	 * Crea una configuración de latencias de la  máquina a partir de una lista de números separados por comas. 
@@ -50,6 +53,31 @@ public class SequentialSimulatorLite {
 		return configuration;
 	}
 	
+	/**
+	 * Ejecuta una vez el código secuencial escribiendo sus accesos a memoria en el fichero indicado con --accesstrace. Si se indica una 
+	 * semilla, se usa para los fallos de caché de esta ejecución
+	 * @param args1 Argumentos de la aplicación
+	 * @param machine Máquina que ejecuta el código. Se resetea al terminar
+	 * @param code Código secuencial
+	 * @throws IOException Si no se pudo leer el fichero de memoria o escribir el de accesos
+	 * @throws SIMDEException Errores de ejecución de la máquina simulada
+	 */
+	private static void traceAccesses(Arguments args1, SequentialMachine machine, Code code) throws IOException, SIMDEException {
+		machine.reset();
+		if (args1.seed != null)
+			machine.setSeed(args1.seed);
+		if (args1.memFileName != null)
+			machine.loadMemoryAndRegisters(args1.memFileName);
+		try (AccessTraceWriter writer = new AccessTraceWriter(args1.accessTraceFileName)) {
+			machine.setAccessTrace(writer);
+			final int cycles = machine.execute(code);
+			System.out.println("Traza de accesos: " + writer.getCount() + " accesos en " + cycles + " ciclos guardados en " + args1.accessTraceFileName);
+		} finally {
+			machine.setAccessTrace(null);
+		}
+		machine.reset();
+	}
+	
 	/**
 	 * Lanza la aplicación
 	 * @param args Argumentos de la aplicación, definidos en {@link Arguments}
@@ -64,12 +92,17 @@ public class SequentialSimulatorLite {
 			
 			if(args1.cacheMissRate < 0 || args1.cacheMissRate > 100)
 				throw new ParameterException("ERROR: El porcentaje de fallos de caché debe ser un número entre 0 y 100. Usado: " + args1.cacheMissRate);
+			if(args1.memSize < 1)
+				throw new ParameterException("ERROR: El tamaño de la memoria debe ser mayor que 0. Usado: " + args1.memSize);
 			int []latencies = getLatencies(args1.latencies);
-			final SequentialMachine machine = new SequentialMachine(latencies, args1.cacheMissRate, args1.cacheMissPenalty);
+			final SequentialMachine machine = new SequentialMachine(latencies, args1.memSize, args1.cacheMissRate, args1.cacheMissPenalty);
 			machine.setDebugMode(args1.debug);
-			final Code code = Code.loadCode(args1.fileName);
+			machine.setCacheModel(args1.cache);
+			final Code code = args1.precompiled ? ProgramImage.load(args1.fileName, null).getCode() : Code.loadCode(args1.fileName);
 			if (args1.debug)
 				System.out.println(code);
+			if (args1.accessTraceFileName != null)
+				traceAccesses(args1, machine, code);
 			// Si no hay fallos de caché, lanzo una única simulación
 			if (args1.cacheMissRate == 0) {
 				if (args1.memFileName != null)
@@ -80,30 +113,64 @@ public class SequentialSimulatorLite {
 				if (args1.debug)
 					machine.printMemoryAndRegisters();
 				System.out.println("Total ciclos: " + cycles);
+				if (machine.getCacheModel() != null)
+					System.out.println("Caché (aciertos / fallos): " + machine.getCacheModel().getHits() + " / " + machine.getCacheModel().getMisses());
 			}
 			// En otro caso, lanzo tantas como indique el parámetro cacheMissSimul
 			else {
 				if(args1.cacheMissSimul < 1)
 					throw new ParameterException("ERROR: El número de réplicas a lanzar cuando el porcentaje de fallos de caché es mayor que 0 debe ser mayor que 0. Usado: " + args1.cacheMissSimul);
-				final int[] results = new int[args1.cacheMissSimul];
-				for (int i = 0; i < args1.cacheMissSimul; i++) {
-					if (args1.debug)
-						System.out.println("Simulando réplica " + i);
-					machine.reset();
-					if (args1.memFileName != null) {
-						machine.loadMemoryAndRegisters(args1.memFileName);
+				if(args1.threads < 1)
+					throw new ParameterException("ERROR: El número de hilos debe ser mayor que 0. Usado: " + args1.threads);
+				if(args1.precision < 0.0)
+					throw new ParameterException("ERROR: La precisión no puede ser negativa. Usado: " + args1.precision);
+				if(args1.precision > 0.0 && args1.maxReplicas < args1.cacheMissSimul)
+					throw new ParameterException("ERROR: El número máximo de réplicas no puede ser menor que el número de réplicas iniciales (" + args1.cacheMissSimul + "). Usado: " + args1.maxReplicas);
+				// En modo de depuración se usa un único hilo para no mezclar la salida de las réplicas
+				final int nThreads = args1.debug ? 1 : args1.threads;
+				final ReplicaRunner runner = new ReplicaRunner(nThreads);
+				// Sin semilla, se usa una aleatoria, que se muestra para poder repetir la simulación
+				final long masterSeed = (args1.seed != null) ? args1.seed : new Random().nextLong();
+				// Las máquinas de cada hilo se reutilizan en cada lote de réplicas
+				final SequentialMachine[] workerMachines = new SequentialMachine[nThreads];
+				workerMachines[0] = machine;
+				final ReplicaRunner.Results results = runner.run(args1.cacheMissSimul, args1.maxReplicas, args1.precision, masterSeed, index -> {
+					// El primer hilo usa la máquina principal. El código secuencial no cambia durante la ejecución, así que se puede compartir
+					if (workerMachines[index] == null) {
+						workerMachines[index] = new SequentialMachine(latencies, args1.memSize, args1.cacheMissRate, args1.cacheMissPenalty);
+						// Cada máquina necesita su propia caché
+						if (machine.getCacheModel() != null)
+							workerMachines[index].setCacheModel(machine.getCacheModel().newInstance());
 					}
-					results[i] = machine.execute(code);
-					if (args1.debug)
-						machine.printMemoryAndRegisters();
-				}
-				double promedio = Statistics.average(results);
-				double sd = Statistics.stdDev(results, promedio);
-				double []ci = Statistics.normal95CI(promedio, sd, args1.cacheMissSimul);
-				System.out.println("Número réplicas: " + args1.cacheMissSimul);
-				System.out.println("Ciclos Promedio (Desv. Est.): " + promedio + " (" + sd + ")");
+					final SequentialMachine workerMachine = workerMachines[index];
+					return (replica, seed) -> {
+						if (args1.debug)
+							System.out.println("Simulando réplica " + replica);
+						workerMachine.reset();
+						workerMachine.setSeed(seed);
+						if (args1.memFileName != null) {
+							workerMachine.loadMemoryAndRegisters(args1.memFileName);
+						}
+						final int cycles = workerMachine.execute(code);
+						if (args1.debug)
+							workerMachine.printMemoryAndRegisters();
+						return cycles;
+					};
+				});
+				final Statistics.Accumulator cycles = results.getCycles(0);
+				final double []ci = cycles.get95CI();
+				System.out.println("Semilla: " + masterSeed);
+				System.out.println("Número réplicas: " + results.getNReplicas());
+				System.out.println("Ciclos Promedio (Desv. Est.): " + cycles.getMean() + " (" + cycles.getStdDev() + ")");
 				System.out.println("Ciclos IC95%: [" + ci[0] + ", " + ci[1] + "]");
-				System.out.println("Ciclos [min-max]: [" + Statistics.min(results) + " - " + Statistics.max(results) + "]");
+				System.out.println("Ciclos [min-max]: [" + (int)cycles.getMin() + " - " + (int)cycles.getMax() + "]");
+				results.getHistogram(0).print(System.out, HISTOGRAM_BINS);
+				if (args1.precision > 0.0 && !results.isPrecise(args1.precision))
+					System.out.println("AVISO: Se alcanzó el máximo de réplicas (" + args1.maxReplicas + ") sin llegar a la precisión indicada");
+			}
+			if (args1.memOutFileName != null) {
+				machine.saveMemoryAndRegisters(args1.memOutFileName);
+				System.out.println("Memoria y registros guardados en " + args1.memOutFileName);
 			}
 		} catch (IOException ex) {
 			System.out.println(ex.getMessage());
@@ -126,18 +193,36 @@ public class SequentialSimulatorLite {
 	private static class Arguments {
 		@Parameter(names ={"--source", "-s"}, description = "Nombre del fichero con el fuente (generalmente con extensión pla)", order = 1, required = true)
 		private String fileName = null;
+		@Parameter(names ={"--precompiled", "-pc"}, description = "Carga el código secuencial de su versión precompilada (fichero con extensión .prog junto al fuente), que se regenera automáticamente si no existe o si cambia el fuente", order = 1)
+		private boolean precompiled = false;
 		@Parameter(names ={"--latencies", "-l"}, description = "Latencias de cada unidad funcional de la máquina secuencial, expresado como una lista separadas por comas: <#SUMA_ENTERA,#MULT_ENTERA,#SUMA_FP,#MULT_FP,#MEMORIA,#SALTO>.", order = 2)
 		private String latencies = "1,2,4,6,4,2";
-		@Parameter(names ={"--mem", "-m"}, description = "Nombre del fichero de configuración de memoria y registros", order = 3)
+		@Parameter(names ={"--mem", "-m"}, description = "Nombre del fichero de configuración de memoria y registros, en texto o como imagen binaria (ver MemoryImage)", order = 3)
 		private String memFileName = null;
+		@Parameter(names ={"--memsize", "-ms"}, description = "Número de palabras de memoria de la máquina", order = 3)
+		private int memSize = SequentialMachine.NMEM;
+		@Parameter(names ={"--memout", "-mo"}, description = "Nombre del fichero donde se guarda, como imagen binaria (ver MemoryImage), el contenido final de memoria y registros. Si se lanzan réplicas, es el de la última réplica que simuló el primer hilo", order = 3)
+		private String memOutFileName = null;
 		@Parameter(names ={"--debug", "-d"}, description = "Habilita el modo de debug", order = 4)
 		private boolean debug = false;
 		@Parameter(names ={"--cachemissrate", "-cmr"}, description = "Porcentaje de fallos de caché (un número entero entre 0 y 100)", order = 5)
 		private int cacheMissRate = 0;
 		@Parameter(names ={"--cachemisspenalty", "-cmp"}, description = "Latencia ADICIONAL cuando se produce un fallo de caché", order = 5)
 		private int cacheMissPenalty = 5;
+		@Parameter(names ={"--cache", "-ca"}, description = "Modelo de caché asociativa por conjuntos, que decide los fallos según las direcciones: tamaño,línea,vías,política (por ejemplo, 1024,4,2,LRU). Los tamaños son potencias de 2 en palabras y la política es LRU o PLRU. Sus fallos se suman a los de --cachemissrate, que se puede dejar a 0 para usar solo este modelo", converter = CacheModelConverter.class, order = 5)
+		private CacheModel cache = null;
 		@Parameter(names ={"--cachemisssimul", "-cms"}, description = "Número de réplicas a lanzar cuando se pone un porcentaje de fallos de caché > 0", order = 5)
 		private int cacheMissSimul = 20;
+		@Parameter(names ={"--precision", "-pr"}, description = "Semiamplitud del IC95% que se quiere alcanzar, en tanto por 1 del promedio de ciclos (por ejemplo, 0.005). Se lanzan réplicas por lotes, empezando por --cachemisssimul, hasta alcanzarla o llegar a --maxreplicas. Por defecto, 0: solo se lanzan --cachemisssimul réplicas", order = 5)
+		private double precision = 0.0;
+		@Parameter(names ={"--maxreplicas", "-mr"}, description = "Número máximo de réplicas a lanzar cuando se indica una precisión con --precision", order = 5)
+		private int maxReplicas = 100000;
+		@Parameter(names ={"--seed", "-sd"}, description = "Semilla maestra de la que se deriva la semilla de cada réplica. Con la misma semilla se obtienen los mismos resultados con cualquier número de hilos. Por defecto, una aleatoria", order = 5)
+		private Long seed = null;
+		@Parameter(names ={"--threads", "-t"}, description = "Número de hilos para lanzar las réplicas. Por defecto, tantos como procesadores tenga el sistema", order = 5)
+		private int threads = Runtime.getRuntime().availableProcessors();
+		@Parameter(names ={"--accesstrace", "-at"}, description = "Nombre del fichero binario donde se escribe cada acceso a memoria de una ejecución (ciclo, instrucción, dirección y si es lectura o escritura), para analizarlo con AccessTraceAnalyzer. La ejecución usa la semilla de --seed, si se indica", order = 6)
+		private String accessTraceFileName = null;
 	}
 	
 }
@@ -0,0 +1,224 @@
+/**
+ *
+ */
+package simdeLite;
+
+import java.util.Arrays;
+
+/**
+ * Caché asociativa por conjuntos, con reemplazo LRU o pseudo-LRU en árbol. Los tamaños se expresan en palabras de memoria, igual que las
+ * direcciones, y tienen que ser potencias de 2. Tanto las cargas como los almacenamientos traen la línea a la caché si fallan (escritura
+ * con asignación), y como solo interesa el número de fallos, no se modela la escritura en memoria principal de las líneas modificadas.
+ *
+ * El contenido de la caché se guarda en arrays de tipos primitivos, así que buscar una dirección no crea ningún objeto
+ * @author Iván Castilla
+ *
+ */
+public final class SetAssociativeCache implements CacheModel {
+	/**
+	 * Políticas de reemplazo de una línea cuando el conjunto está lleno
+	 * @author Iván Castilla
+	 *
+	 */
+	public enum ReplacementPolicy {
+		/** Se reemplaza la línea que lleva más tiempo sin usarse */
+		LRU,
+		/** Pseudo-LRU en árbol: cada conjunto guarda un bit por nodo de un árbol binario sobre sus vías, que apunta a la mitad usada hace más tiempo */
+		PLRU
+	}
+
+	/** Número máximo de vías, limitado por los bits del árbol de pseudo-LRU */
+	public final static int MAX_ASSOCIATIVITY = 64;
+	/** Valor de una vía que no contiene ninguna línea */
+	private final static int INVALID = -1;
+	/** Número de palabras de la caché */
+	private final int size;
+	/** Número de palabras de cada línea */
+	private final int lineSize;
+	/** Número de vías de cada conjunto */
+	private final int associativity;
+	/** Política de reemplazo */
+	private final ReplacementPolicy policy;
+	/** Número de bits de la dirección que indican la posición dentro de una línea */
+	private final int lineBits;
+	/** Máscara para obtener el conjunto a partir del número de línea */
+	private final int setMask;
+	/** Número de línea guardado en cada vía, por conjuntos; {@link #INVALID} si la vía está vacía */
+	private final int[] lines;
+	/** Con LRU, momento del último uso de cada vía, por conjuntos */
+	private final long[] lastUse;
+	/** Con pseudo-LRU, bits del árbol de cada conjunto. El nodo i tiene sus hijos en 2i y 2i+1, y la raíz es el nodo 1 */
+	private final long[] tree;
+	/** Reloj para el LRU, que avanza en cada acceso */
+	private long clock = 0;
+	/** Número de accesos que acertaron */
+	private long hits = 0;
+	/** Número de accesos que fallaron */
+	private long misses = 0;
+
+	/**
+	 * Crea una caché asociativa por conjuntos vacía
+	 * @param size Número de palabras de la caché
+	 * @param lineSize Número de palabras de cada línea
+	 * @param associativity Número de vías de cada conjunto. Si es igual al número de líneas, la caché es totalmente asociativa
+	 * @param policy Política de reemplazo
+	 * @throws IllegalArgumentException Si algún tamaño no es una potencia de 2, si la caché no tiene al menos una línea por vía, o si hay
+	 * más de {@link #MAX_ASSOCIATIVITY} vías
+	 */
+	public SetAssociativeCache(int size, int lineSize, int associativity, ReplacementPolicy policy) {
+		if (Integer.bitCount(size) != 1 || Integer.bitCount(lineSize) != 1 || Integer.bitCount(associativity) != 1)
+			throw new IllegalArgumentException("Los tamaños de la caché tienen que ser potencias de 2: " + size + ", " + lineSize + ", " + associativity);
+		if (lineSize * associativity > size)
+			throw new IllegalArgumentException("La caché no tiene espacio para " + associativity + " líneas de " + lineSize + " palabras: " + size);
+		if (associativity > MAX_ASSOCIATIVITY)
+			throw new IllegalArgumentException("La caché no puede tener más de " + MAX_ASSOCIATIVITY + " vías: " + associativity);
+		this.size = size;
+		this.lineSize = lineSize;
+		this.associativity = associativity;
+		this.policy = policy;
+		this.lineBits = Integer.numberOfTrailingZeros(lineSize);
+		this.setMask = size / (lineSize * associativity) - 1;
+		this.lines = new int[size / lineSize];
+		this.lastUse = (policy == ReplacementPolicy.LRU) ? new long[lines.length] : null;
+		this.tree = (policy == ReplacementPolicy.PLRU) ? new long[setMask + 1] : null;
+		reset();
+	}
+
+	@Override
+	public boolean access(int address, boolean write) {
+		final int line = address >>> lineBits;
+		final int first = (line & setMask) * associativity;
+		clock++;
+		int way = -1;
+		for (int i = 0; i < associativity; i++) {
+			if (lines[first + i] == line) {
+				way = i;
+				break;
+			}
+		}
+		final boolean hit = (way != -1);
+		if (hit) {
+			hits++;
+		}
+		else {
+			misses++;
+			way = getVictim(first);
+			lines[first + way] = line;
+		}
+		touch(first, way);
+		return hit;
+	}
+
+	/**
+	 * Elige la vía que se reemplaza en un conjunto: la primera vacía, si la hay, o la que indique la política de reemplazo
+	 * @param first Posición de la primera vía del conjunto
+	 * @return Vía que se reemplaza
+	 */
+	private int getVictim(int first) {
+		for (int i = 0; i < associativity; i++) {
+			if (lines[first + i] == INVALID)
+				return i;
+		}
+		if (policy == ReplacementPolicy.LRU) {
+			int victim = 0;
+			for (int i = 1; i < associativity; i++) {
+				if (lastUse[first + i] < lastUse[first + victim])
+					victim = i;
+			}
+			return victim;
+		}
+		// Se baja por el árbol siguiendo los bits, que apuntan a la mitad usada hace más tiempo
+		final long bits = tree[first / associativity];
+		int node = 1;
+		while (node < associativity)
+			node = 2 * node + (int)((bits >>> node) & 1L);
+		return node - associativity;
+	}
+
+	/**
+	 * Marca una vía como la usada más recientemente en su conjunto
+	 * @param first Posición de la primera vía del conjunto
+	 * @param way Vía usada
+	 */
+	private void touch(int first, int way) {
+		if (policy == ReplacementPolicy.LRU) {
+			lastUse[first + way] = clock;
+			return;
+		}
+		// Se sube por el árbol desde la hoja de la vía, haciendo que cada nodo apunte a la otra mitad
+		final int set = first / associativity;
+		long bits = tree[set];
+		for (int node = way + associativity; node > 1; node >>>= 1) {
+			final int parent = node >>> 1;
+			if ((node & 1) == 0)
+				bits |= 1L << parent;
+			else
+				bits &= ~(1L << parent);
+		}
+		tree[set] = bits;
+	}
+
+	@Override
+	public void reset() {
+		Arrays.fill(lines, INVALID);
+		if (lastUse != null)
+			Arrays.fill(lastUse, 0L);
+		if (tree != null)
+			Arrays.fill(tree, 0L);
+		clock = 0;
+		hits = 0;
+		misses = 0;
+	}
+
+	@Override
+	public long getHits() {
+		return hits;
+	}
+
+	@Override
+	public long getMisses() {
+		return misses;
+	}
+
+	@Override
+	public CacheModel newInstance() {
+		return new SetAssociativeCache(size, lineSize, associativity, policy);
+	}
+
+	/**
+	 * Devuelve el número de palabras de la caché
+	 * @return Número de palabras de la caché
+	 */
+	public int getSize() {
+		return size;
+	}
+
+	/**
+	 * Devuelve el número de palabras de cada línea
+	 * @return Número de palabras de cada línea
+	 */
+	public int getLineSize() {
+		return lineSize;
+	}
+
+	/**
+	 * Devuelve el número de vías de cada conjunto
+	 * @return Número de vías de cada conjunto
+	 */
+	public int getAssociativity() {
+		return associativity;
+	}
+
+	/**
+	 * Devuelve la política de reemplazo
+	 * @return Política de reemplazo
+	 */
+	public ReplacementPolicy getPolicy() {
+		return policy;
+	}
+
+	@Override
+	public String toString() {
+		return size + " palabras, líneas de " + lineSize + ", " + associativity + " vías, " + policy;
+	}
+}
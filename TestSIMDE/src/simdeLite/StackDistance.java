@@ -0,0 +1,173 @@
+/**
+ *
+ */
+package simdeLite;
+
+import java.util.Arrays;
+
+/**
+ * Distancias de pila LRU de los accesos a memoria de una traza ({@link MemoryTrace}), para un tamaño de línea y un número de conjuntos.
+ *
+ * La distancia de pila de un acceso es el número de líneas distintas de su mismo conjunto que se usaron desde el último acceso a su
+ * línea. En una caché LRU con ese tamaño de línea y ese número de conjuntos, el acceso acierta si y solo si su distancia es menor que el
+ * número de vías. Así, con una sola pasada por la traza se obtienen los fallos de todas las asociatividades a la vez, y con un único
+ * conjunto (caché totalmente asociativa), los de todos los tamaños de caché.
+ *
+ * Las distancias se calculan en O(n log n) con un árbol de Fenwick que marca, para cada línea, la posición de su último acceso. Los
+ * accesos de cada conjunto se colocan juntos en el árbol, de manera que contar las marcas entre dos accesos a la misma línea solo cuenta
+ * las líneas de su conjunto.
+ *
+ * Los accesos a memoria no cambian con los fallos de caché, que solo congelan la máquina, así que los fallos que se obtienen para una
+ * configuración son los mismos que daría la máquina con ese modelo de caché ({@link SetAssociativeCache}), y {@link #getCycles(int, int)}
+ * da sus ciclos exactos siempre que la traza sea exacta (ver {@link MemoryTrace#isExact()})
+ * @author Iván Castilla
+ *
+ */
+public final class StackDistance {
+	/** Distancia de un acceso a una línea que no se había usado antes */
+	public final static int COLD = Integer.MAX_VALUE;
+	/** Traza de los accesos a memoria */
+	private final MemoryTrace trace;
+	/** Número de palabras de cada línea */
+	private final int lineSize;
+	/** Número de conjuntos */
+	private final int nSets;
+	/** Distancia de pila de cada acceso de la traza */
+	private final int[] distances;
+
+	/**
+	 * Calcula las distancias de pila de los accesos de una traza
+	 * @param trace Traza de los accesos a memoria
+	 * @param lineSize Número de palabras de cada línea. Tiene que ser una potencia de 2
+	 * @param nSets Número de conjuntos. Tiene que ser una potencia de 2
+	 * @throws IllegalArgumentException Si el tamaño de línea o el número de conjuntos no son potencias de 2
+	 */
+	public StackDistance(MemoryTrace trace, int lineSize, int nSets) {
+		if (Integer.bitCount(lineSize) != 1 || Integer.bitCount(nSets) != 1)
+			throw new IllegalArgumentException("El tamaño de línea y el número de conjuntos tienen que ser potencias de 2: " + lineSize + ", " + nSets);
+		this.trace = trace;
+		this.lineSize = lineSize;
+		this.nSets = nSets;
+		final int lineBits = Integer.numberOfTrailingZeros(lineSize);
+		final int[] lines = new int[trace.getSize()];
+		for (int i = 0; i < lines.length; i++)
+			lines[i] = trace.getAddress(i) >>> lineBits;
+		distances = getDistances(lines, nSets);
+	}
+
+	/**
+	 * Calcula las distancias de pila LRU de una secuencia de accesos a líneas de memoria
+	 * @param lines Línea de memoria (dirección dividida por el tamaño de línea) de cada acceso, en el orden en que se realizan
+	 * @param nSets Número de conjuntos. Tiene que ser una potencia de 2; con 1, se obtienen las distancias de reutilización
+	 * @return Distancia de pila de cada acceso, o {@link #COLD} si es el primer acceso a su línea
+	 */
+	public static int[] getDistances(int[] lines, int nSets) {
+		final int size = lines.length;
+		// Posición de cada acceso en el árbol: primero todos los del conjunto 0, después los del 1...
+		final int[] first = new int[nSets + 1];
+		for (int i = 0; i < size; i++)
+			first[(lines[i] & (nSets - 1)) + 1]++;
+		for (int set = 0; set < nSets; set++)
+			first[set + 1] += first[set];
+		final int[] position = new int[size];
+		for (int i = 0; i < size; i++)
+			position[i] = first[lines[i] & (nSets - 1)]++;
+		// Cada línea distinta se identifica por su posición en la lista ordenada de líneas
+		final int[] distinct = Arrays.stream(lines).sorted().distinct().toArray();
+		final int[] last = new int[distinct.length];
+		Arrays.fill(last, -1);
+		final int[] tree = new int[size + 1];
+		final int[] distances = new int[size];
+		for (int i = 0; i < size; i++) {
+			final int line = Arrays.binarySearch(distinct, lines[i]);
+			final int previous = last[line];
+			if (previous == -1) {
+				distances[i] = COLD;
+			}
+			else {
+				// Líneas cuyo último acceso está entre el anterior a esta línea y el actual
+				distances[i] = sum(tree, position[i]) - sum(tree, previous + 1);
+				add(tree, previous, -1);
+			}
+			add(tree, position[i], 1);
+			last[line] = position[i];
+		}
+		return distances;
+	}
+
+	/**
+	 * Suma un valor en una posición de un árbol de Fenwick
+	 * @param tree Árbol de Fenwick
+	 * @param pos Posición, empezando en 0
+	 * @param value Valor a sumar
+	 */
+	private static void add(int[] tree, int pos, int value) {
+		for (int i = pos + 1; i < tree.length; i += i & -i)
+			tree[i] += value;
+	}
+
+	/**
+	 * Devuelve la suma de las posiciones de un árbol de Fenwick anteriores a la indicada
+	 * @param tree Árbol de Fenwick
+	 * @param pos Posición, empezando en 0, que no se incluye en la suma
+	 * @return Suma de las posiciones [0, pos)
+	 */
+	private static int sum(int[] tree, int pos) {
+		int total = 0;
+		for (int i = pos; i > 0; i -= i & -i)
+			total += tree[i];
+		return total;
+	}
+
+	/**
+	 * Devuelve el número de palabras de cada línea
+	 * @return Número de palabras de cada línea
+	 */
+	public int getLineSize() {
+		return lineSize;
+	}
+
+	/**
+	 * Devuelve el número de conjuntos
+	 * @return Número de conjuntos
+	 */
+	public int getNSets() {
+		return nSets;
+	}
+
+	/**
+	 * Devuelve la distancia de pila de un acceso
+	 * @param i Posición del acceso en la traza
+	 * @return Distancia de pila del acceso, o {@link #COLD} si es el primer acceso a su línea
+	 */
+	public int getDistance(int i) {
+		return distances[i];
+	}
+
+	/**
+	 * Devuelve el número de fallos de una caché LRU con el tamaño de línea y el número de conjuntos de estas distancias
+	 * @param associativity Número de vías de cada conjunto
+	 * @return Número de accesos de la traza que fallan en la caché
+	 */
+	public int getMisses(int associativity) {
+		int misses = 0;
+		for (int distance : distances)
+			if (distance >= associativity)
+				misses++;
+		return misses;
+	}
+
+	/**
+	 * Devuelve el número de ciclos de la ejecución con una caché LRU con el tamaño de línea y el número de conjuntos de estas distancias,
+	 * aplicando los fallos sobre la traza con {@link MemoryTrace#replayModel(boolean[], int)}
+	 * @param associativity Número de vías de cada conjunto
+	 * @param cacheMissPenalty Penalización en ciclos si se produce un fallo de la caché
+	 * @return Número de ciclos de la ejecución con esa caché
+	 */
+	public int getCycles(int associativity, int cacheMissPenalty) {
+		final boolean[] miss = new boolean[distances.length];
+		for (int i = 0; i < distances.length; i++)
+			miss[i] = (distances[i] >= associativity);
+		return trace.replayModel(miss, cacheMissPenalty);
+	}
+}
@@ -3,6 +3,7 @@
  */
 package simdeLite;
 
+import java.io.PrintStream;
 import java.util.ArrayList;
 
 /**
@@ -237,6 +238,22 @@ public class Statistics {
 		return relError(th, exp) * 100;
 	}
 	
+	/**
+	 * Returns the number of samples required for the half-width of the normal 95% confidence interval of the mean to be, 
+	 * at most, the specified value
+	 * @param sd Standard deviation of the samples
+	 * @param halfWidth Target half-width of the confidence interval
+	 * @return The number of samples required; {@link Integer#MAX_VALUE} if the target cannot be reached
+	 */
+	public static int requiredSampleSize(double sd, double halfWidth) {
+		if (sd == 0.0)
+			return 1;
+		if (!(halfWidth > 0.0))
+			return Integer.MAX_VALUE;
+		final double n = Math.ceil(Math.pow(CI95FACTOR * sd / halfWidth, 2));
+		return (n >= Integer.MAX_VALUE) ? Integer.MAX_VALUE : (int)n;
+	}
+	
 	public static double[] normal95CI(double mean, double sd, int n) {
 		final double ci = CI95FACTOR * sd / Math.sqrt(n);
 		return new double[] {mean - ci, mean + ci};
@@ -334,4 +351,391 @@ public class Statistics {
 		final double variance = sd * sd;
 		return variance * k * (initBetaParams[0] - 1) / (initBetaParams[0] - 3 * variance * k);		
 	}
+
+	/**
+	 * A streaming accumulator that summarises a set of values in one pass and in constant memory: count, mean, variance, 
+	 * minimum and maximum. The mean and variance are updated with Welford's algorithm, which avoids the cancellation 
+	 * errors of the sum of squares. Accumulators fed with disjoint sets of values (for instance, by different threads) can 
+	 * be merged with {@link #merge(Accumulator)} (Chan et al. pairwise formula). The merged summary is equivalent, up to 
+	 * floating-point rounding, to adding all the values to a single accumulator: the mean and variance may differ in the last 
+	 * bits depending on how the values were split and in which order the accumulators were merged. The count, minimum and 
+	 * maximum are always exact. To get bit-for-bit reproducible results, split the values and merge the accumulators in a 
+	 * fixed order (as {@link ReplicaRunner} does).
+	 * @author Iván Castilla Rodríguez
+	 *
+	 */
+	public static class Accumulator {
+		/** Number of values */
+		private long count = 0;
+		/** Mean of the values */
+		private double mean = 0.0;
+		/** Sum of squared differences from the mean */
+		private double m2 = 0.0;
+		/** Minimum value */
+		private double min = Double.NaN;
+		/** Maximum value */
+		private double max = Double.NaN;
+
+		/**
+		 * Creates an empty accumulator
+		 */
+		public Accumulator() {
+		}
+
+		/**
+		 * Adds a value
+		 * @param value Value to add
+		 */
+		public void add(double value) {
+			count++;
+			final double delta = value - mean;
+			mean += delta / count;
+			m2 += delta * (value - mean);
+			if (count == 1) {
+				min = value;
+				max = value;
+			}
+			else {
+				if (value < min)
+					min = value;
+				if (value > max)
+					max = value;
+			}
+		}
+
+		/**
+		 * Adds the values summarised by another accumulator. The result is equivalent, up to floating-point rounding, to adding 
+		 * the values one by one
+		 * @param other Accumulator with a disjoint set of values
+		 */
+		public void merge(Accumulator other) {
+			if (other.count == 0)
+				return;
+			if (count == 0) {
+				count = other.count;
+				mean = other.mean;
+				m2 = other.m2;
+				min = other.min;
+				max = other.max;
+				return;
+			}
+			final long n = count + other.count;
+			final double delta = other.mean - mean;
+			mean += delta * other.count / n;
+			m2 += other.m2 + delta * delta * ((double)count * other.count / n);
+			count = n;
+			min = Math.min(min, other.min);
+			max = Math.max(max, other.max);
+		}
+
+		/**
+		 * Returns the number of values
+		 * @return The number of values
+		 */
+		public long getCount() {
+			return count;
+		}
+
+		/**
+		 * Returns the average of the values
+		 * @return The average of the values; NaN if there are no values
+		 */
+		public double getMean() {
+			return (count == 0) ? Double.NaN : mean;
+		}
+
+		/**
+		 * Returns the sample variance of the values
+		 * @return The sample variance of the values; NaN if there are no values
+		 */
+		public double getVariance() {
+			if (count == 0)
+				return Double.NaN;
+			else if (count == 1)
+				return 0.0;
+			return m2 / (count - 1);
+		}
+
+		/**
+		 * Returns the standard deviation of the values
+		 * @return The standard deviation of the values; NaN if there are no values
+		 */
+		public double getStdDev() {
+			return Math.sqrt(getVariance());
+		}
+
+		/**
+		 * Returns the minimum value
+		 * @return The minimum value; NaN if there are no values
+		 */
+		public double getMin() {
+			return min;
+		}
+
+		/**
+		 * Returns the maximum value
+		 * @return The maximum value; NaN if there are no values
+		 */
+		public double getMax() {
+			return max;
+		}
+
+		/**
+		 * Returns the normal 95% confidence interval of the mean (see {@link Statistics#normal95CI(double, double, int)})
+		 * @return The lower and upper bounds of the normal 95% confidence interval of the mean
+		 */
+		public double[] get95CI() {
+			final double ci = CI95FACTOR * getStdDev() / Math.sqrt(count);
+			return new double[] {getMean() - ci, getMean() + ci};
+		}
+	}
+
+	/**
+	 * A mergeable histogram of non-negative integer values (such as cycle counts), used to get their quantiles in one pass. 
+	 * The values are counted in equal-width bins that cover only the observed range. The width is 1 while the range of the 
+	 * values (maximum - minimum + 1) fits in {@link #MAX_BINS} bins, so the quantiles are exact; when a value falls farther 
+	 * away, the width is doubled (adding up pairs of neighbouring bins) as many times as needed, and any quantile is then off, 
+	 * at most, by half the width, i.e. about range / {@link #MAX_BINS}. The memory depends on the spread of the values and not 
+	 * on their number. Bins are aligned to multiples of their width, so merging two histograms with {@link #merge(Histogram)} 
+	 * gives exactly the same histogram as adding all the values to a single one.
+	 * @author Iván Castilla Rodríguez
+	 *
+	 */
+	public static class Histogram {
+		/** Maximum number of bins */
+		public final static int MAX_BINS = 1 << 16;
+		/** Number of bins allocated for the first value */
+		private final static int INITIAL_BINS = 64;
+		/** Counts of each bin, starting from bin {@link #firstBin} */
+		private long[] counts = new long[0];
+		/** Index of the first bin of {@link #counts}. Bin b contains the values v such that v / width == b */
+		private long firstBin = 0;
+		/** Logarithm base 2 of the width of the bins */
+		private int shift = 0;
+		/** Number of values */
+		private long count = 0;
+		/** Minimum value */
+		private long min = Long.MAX_VALUE;
+		/** Maximum value */
+		private long max = Long.MIN_VALUE;
+
+		/**
+		 * Creates an empty histogram
+		 */
+		public Histogram() {
+		}
+
+		/**
+		 * Returns the width of the bins
+		 * @return The width of the bins; 1 while the quantiles are exact
+		 */
+		public long getWidth() {
+			return 1L << shift;
+		}
+
+		/**
+		 * Returns the value that represents a bin: the value itself if the width is 1, or the middle of the bin, bounded by the 
+		 * minimum and maximum values
+		 * @param bin Index of the bin
+		 * @return The value that represents the bin
+		 */
+		private long getValue(long bin) {
+			final long middle = (bin << shift) + (((1L << shift) - 1) >>> 1);
+			return Math.max(min, Math.min(max, middle));
+		}
+
+		/**
+		 * Doubles the width of the bins, adding up each pair of neighbouring bins
+		 */
+		private void coarsen() {
+			final long newFirst = firstBin >>> 1;
+			final long[] newCounts = new long[counts.length];
+			for (int i = 0; i < counts.length; i++)
+				newCounts[(int)(((firstBin + i) >>> 1) - newFirst)] += counts[i];
+			counts = newCounts;
+			firstBin = newFirst;
+			shift++;
+		}
+
+		/**
+		 * Makes room for a value, widening the bins or enlarging the array of counts if needed, and returns its bin
+		 * @param value A non-negative value
+		 * @return The position of the bin of the value in {@link #counts}
+		 */
+		private int getIndex(long value) {
+			if (counts.length == 0) {
+				counts = new long[INITIAL_BINS];
+				firstBin = value >>> shift;
+			}
+			long bin = value >>> shift;
+			long lo = Math.min(firstBin, bin);
+			long hi = Math.max(firstBin + counts.length - 1, bin);
+			while (hi - lo >= MAX_BINS) {
+				coarsen();
+				bin = value >>> shift;
+				lo = Math.min(firstBin, bin);
+				hi = Math.max(firstBin + counts.length - 1, bin);
+			}
+			if (bin < firstBin || bin >= firstBin + counts.length) {
+				// Leave room to keep growing in the same direction
+				final int newLength = (int)Math.max(hi - lo + 1, Math.min(MAX_BINS, 2L * counts.length));
+				final long newFirst = (bin < firstBin) ? Math.max(0, hi - newLength + 1) : lo;
+				final long[] newCounts = new long[newLength];
+				System.arraycopy(counts, 0, newCounts, (int)(firstBin - newFirst), counts.length);
+				counts = newCounts;
+				firstBin = newFirst;
+			}
+			return (int)(bin - firstBin);
+		}
+
+		/**
+		 * Adds a value
+		 * @param value Value to add
+		 * @throws IllegalArgumentException If the value is negative
+		 */
+		public void add(long value) {
+			add(value, 1);
+		}
+
+		/**
+		 * Adds several times the same value
+		 * @param value Value to add
+		 * @param times Number of times that the value is added
+		 * @throws IllegalArgumentException If the value or the number of times are negative
+		 */
+		public void add(long value, long times) {
+			if (value < 0)
+				throw new IllegalArgumentException("Negative value: " + value);
+			if (times < 0)
+				throw new IllegalArgumentException("Negative number of times: " + times);
+			if (times == 0)
+				return;
+			// getIndex may replace the array of counts, so it has to be called first
+			final int index = getIndex(value);
+			counts[index] += times;
+			count += times;
+			if (value < min)
+				min = value;
+			if (value > max)
+				max = value;
+		}
+
+		/**
+		 * Adds the values of another histogram
+		 * @param other Histogram with a disjoint set of values
+		 */
+		public void merge(Histogram other) {
+			if (other.count == 0)
+				return;
+			while (shift < other.shift)
+				coarsen();
+			for (int i = 0; i < other.counts.length; i++) {
+				// All the values of a bin of the other histogram fall into the same bin of this one
+				if (other.counts[i] > 0) {
+					final int index = getIndex((other.firstBin + i) << other.shift);
+					counts[index] += other.counts[i];
+				}
+			}
+			count += other.count;
+			min = Math.min(min, other.min);
+			max = Math.max(max, other.max);
+		}
+
+		/**
+		 * Returns the number of values
+		 * @return The number of values
+		 */
+		public long getCount() {
+			return count;
+		}
+
+		/**
+		 * Returns the minimum value
+		 * @return The minimum value; {@link Long#MAX_VALUE} if there are no values
+		 */
+		public long getMin() {
+			return min;
+		}
+
+		/**
+		 * Returns the maximum value
+		 * @return The maximum value; {@link Long#MIN_VALUE} if there are no values
+		 */
+		public long getMax() {
+			return max;
+		}
+
+		/**
+		 * Returns a quantile, using the nearest-rank definition: the smallest value such that, at least, a fraction q of the 
+		 * values are lower or equal. The quantile is exact while the width of the bins is 1; otherwise, it is the middle of 
+		 * the bin where that value falls, bounded by the minimum and maximum values
+		 * @param q Fraction of the values, in [0, 1]
+		 * @return The quantile; {@link Long#MIN_VALUE} if there are no values
+		 */
+		public long getQuantile(double q) {
+			if (count == 0)
+				return Long.MIN_VALUE;
+			final long rank = Math.max(1, (long)Math.ceil(q * count));
+			long acc = 0;
+			for (int i = 0; i < counts.length; i++) {
+				acc += counts[i];
+				if (acc >= rank)
+					return getValue(firstBin + i);
+			}
+			return max;
+		}
+
+		/**
+		 * Returns several quantiles (see {@link #getQuantile(double)})
+		 * @param qs Fractions of the values, in [0, 1]
+		 * @return Each quantile
+		 */
+		public long[] getQuantiles(double... qs) {
+			final long[] values = new long[qs.length];
+			for (int i = 0; i < qs.length; i++)
+				values[i] = getQuantile(qs[i]);
+			return values;
+		}
+
+		/**
+		 * Groups the values into equal-width bins, to get a compact view of the histogram. The values of each bin of the 
+		 * histogram are assigned to the group of the value that represents the bin, which is exact while their width is 1
+		 * @param from Lower bound of the first group
+		 * @param width Width of each group
+		 * @param nBins Number of groups
+		 * @return The number of values in each group. Values out of the groups are not counted
+		 */
+		public long[] getBins(long from, long width, int nBins) {
+			final long[] bins = new long[nBins];
+			for (int i = 0; i < counts.length; i++) {
+				if (counts[i] > 0) {
+					final long value = getValue(firstBin + i);
+					if (value >= from) {
+						final long bin = (value - from) / width;
+						if (bin < nBins)
+							bins[(int)bin] += counts[i];
+					}
+				}
+			}
+			return bins;
+		}
+
+		/**
+		 * Prints the percentiles of the values and a compact histogram, as the simulators show the cycles of their replicas
+		 * @param out Stream where the distribution is printed
+		 * @param nBins Maximum number of groups of the histogram
+		 */
+		public void print(PrintStream out, int nBins) {
+			final long[] percentiles = getQuantiles(0.5, 0.9, 0.99, 0.999);
+			out.println("Ciclos percentiles [p50, p90, p99, p99.9]: [" + percentiles[0] + ", " + percentiles[1] + ", " + percentiles[2] + ", " + percentiles[3] + "]");
+			final long range = max - min + 1;
+			final long width = (range + nBins - 1) / nBins;
+			final long[] bins = getBins(min, width, nBins);
+			out.println("Histograma de ciclos:");
+			for (int i = 0; i < bins.length && min + i * width <= max; i++) {
+				final long from = min + i * width;
+				out.println("\t[" + from + " - " + (from + width - 1) + "]: " + bins[i] + " (" + (100.0 * bins[i] / count) + "%)");
+			}
+		}
+	}
 }
@@ -0,0 +1,408 @@
+/**
+ *
+ */
+package simdeLite;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.InputMismatchException;
+import java.util.Locale;
+import java.util.NoSuchElementException;
+import java.util.Scanner;
+
+/**
+ * Lector de los ficheros de texto de SIMDE (memoria y registros, y planificaciones VLIW) que sustituye a {@link java.util.Scanner}.
+ * El fichero se lee de una vez a través de un {@link FileChannel} y se recorre byte a byte, de manera que los enteros y los reales se
+ * obtienen directamente de sus dígitos, sin crear cadenas ni usar expresiones regulares.
+ *
+ * Igual que con {@link java.util.Scanner}, los elementos del fichero (tokens) están separados por espacios o saltos de línea, y los
+ * métodos hasNextXXX comprueban el siguiente elemento sin consumirlo. El elemento reconocido se recuerda, así que el nextXXX que sigue
+ * a un hasNextXXX no lo vuelve a recorrer. Los enteros y los reales con "." para separar los decimales y, opcionalmente, con exponente
+ * se reconocen directamente; los reales que tienen demasiadas cifras para convertirse de forma exacta se convierten con
+ * {@link Double#parseDouble(String)}. También se reconocen directamente "NaN" e "Infinity", con signo opcional, que es como
+ * {@link Double#toString(double)} escribe los valores no finitos. Cualquier otro elemento que pueda ser un número (con separadores
+ * de miles, como "1,000", o con cifras que no son ASCII) se comprueba con un {@link java.util.Scanner} con {@link Locale#ENGLISH},
+ * así que se aceptan los mismos elementos y se obtienen los mismos valores que con {@link java.util.Scanner}.
+ *
+ * La única diferencia está en los separadores: aquí lo son todos los caracteres de control ASCII y ninguno de los espacios que no son
+ * ASCII, mientras que {@link java.util.Scanner} usa los espacios de {@link Character#isWhitespace(char)}
+ * @author Iván Castilla
+ *
+ */
+public final class TextTokenizer {
+	/** Mayor potencia de 10 que se representa de forma exacta con un double */
+	private final static int MAX_EXACT_POW10 = 22;
+	/** Mayor entero que se representa de forma exacta con un double */
+	private final static long MAX_EXACT_LONG = 1L << 53;
+	/** Máximo número de cifras significativas que se acumulan en un long sin desbordarse */
+	private final static int MAX_DIGITS = 18;
+	/** Potencias de 10 que se representan de forma exacta con un double */
+	private final static double[] POW10 = new double[MAX_EXACT_POW10 + 1];
+	static {
+		POW10[0] = 1.0;
+		for (int i = 1; i < POW10.length; i++)
+			POW10[i] = POW10[i - 1] * 10.0;
+	}
+	/** Carácter con el que comienza una dirección, que nunca puede comenzar un número */
+	private final static char START_DIR = '[';
+	/** Carácter con el que comienza una sección, que nunca puede comenzar un número */
+	private final static char START_SECTION = '#';
+	/** Cómo escribe {@link Double#toString(double)} un valor que no es un número */
+	private final static String NAN = "NaN";
+	/** Cómo escribe {@link Double#toString(double)} un valor infinito */
+	private final static String INFINITY = "Infinity";
+	/** Nombre del fichero */
+	private final String fileName;
+	/** Contenido del fichero */
+	private final byte[] data;
+	/** Posición del siguiente byte a leer */
+	private int pos = 0;
+	/** Posición en la que se reconoció el último entero, o -1 si no se ha reconocido ninguno */
+	private int intPos = -1;
+	/** Posición siguiente al último entero reconocido, o -1 si no era un entero válido */
+	private int intEnd;
+	/** Valor del último entero reconocido */
+	private int intValue;
+	/** Posición en la que se reconoció el último real, o -1 si no se ha reconocido ninguno */
+	private int doublePos = -1;
+	/** Posición siguiente al último real reconocido, o -1 si no era un real válido */
+	private int doubleEnd;
+	/** Valor del último real reconocido */
+	private double doubleValue;
+
+	/**
+	 * Abre un fichero de texto y carga su contenido
+	 * @param fileName Nombre del fichero
+	 * @throws FileNotFoundException Si el fichero no existe
+	 * @throws IOException Si no se pudo leer el fichero
+	 */
+	public TextTokenizer(String fileName) throws IOException {
+		this.fileName = fileName;
+		try (RandomAccessFile file = new RandomAccessFile(fileName, "r"); FileChannel channel = file.getChannel()) {
+			if (channel.size() > Integer.MAX_VALUE)
+				throw new IOException("ERROR: El fichero " + fileName + " es demasiado grande para leerlo como texto");
+			data = new byte[(int)channel.size()];
+			final ByteBuffer buffer = ByteBuffer.wrap(data);
+			while (buffer.hasRemaining())
+				if (channel.read(buffer) < 0)
+					break;
+		}
+	}
+
+	/**
+	 * Devuelve verdadero si el byte es un separador
+	 * @param b Byte del fichero
+	 * @return Verdadero si es un espacio, un tabulador, un salto de línea o cualquier otro carácter de control
+	 */
+	private static boolean isSpace(int b) {
+		return b <= ' ' && b >= 0;
+	}
+
+	/**
+	 * Devuelve verdadero si una posición del fichero es el final de un elemento
+	 * @param p Posición del fichero
+	 * @return Verdadero si es el final del fichero o un separador
+	 */
+	private boolean isEnd(int p) {
+		return p >= data.length || isSpace(data[p]);
+	}
+
+	/**
+	 * Devuelve verdadero si el byte es una cifra decimal
+	 * @param b Byte del fichero
+	 * @return Verdadero si está entre '0' y '9'
+	 */
+	private static boolean isDigit(int b) {
+		return b >= '0' && b <= '9';
+	}
+
+	/**
+	 * Devuelve verdadero si quedan elementos en el fichero. Salta los separadores hasta el siguiente elemento
+	 * @return Verdadero si quedan elementos en el fichero
+	 */
+	public boolean hasNext() {
+		while (pos < data.length && isSpace(data[pos]))
+			pos++;
+		return pos < data.length;
+	}
+
+	/**
+	 * Salta el siguiente elemento, sea el que sea
+	 * @throws NoSuchElementException Si no quedan elementos
+	 */
+	public void skip() {
+		if (!hasNext())
+			throw new NoSuchElementException();
+		while (!isEnd(pos))
+			pos++;
+	}
+
+	/**
+	 * Si el siguiente elemento es la palabra indicada, lo consume
+	 * @param word Palabra a buscar, en ASCII
+	 * @return Verdadero si el siguiente elemento era la palabra; falso si no, y en ese caso no se consume
+	 */
+	public boolean skip(String word) {
+		if (!hasNext())
+			return false;
+		final int end = scanWord(pos, word);
+		if (end == -1 || !isEnd(end))
+			return false;
+		pos = end;
+		return true;
+	}
+
+	/**
+	 * Reconoce una palabra a partir de una posición del fichero, sin consumirla
+	 * @param p Posición del fichero en la que comienza la palabra
+	 * @param word Palabra a buscar, en ASCII
+	 * @return Posición siguiente a la palabra, o -1 si la palabra no está en esa posición
+	 */
+	private int scanWord(int p, String word) {
+		if (data.length - p < word.length())
+			return -1;
+		for (int i = 0; i < word.length(); i++)
+			if (data[p + i] != word.charAt(i))
+				return -1;
+		return p + word.length();
+	}
+
+	/**
+	 * Reconoce con un {@link java.util.Scanner} el elemento que comienza en una posición del fichero, sin consumirlo, y guarda su valor
+	 * en {@link #intValue} o {@link #doubleValue}. Es lento, así que solo se usa con los elementos que no se reconocen directamente; los
+	 * que comienzan por "[" o "#" (direcciones y secciones) no pueden ser números y no se comprueban
+	 * @param p Posición del fichero en la que comienza el elemento
+	 * @param real Verdadero si se busca un real; falso si se busca un entero
+	 * @return Posición siguiente al elemento, o -1 si no es un número válido
+	 */
+	private int scanWithScanner(int p, boolean real) {
+		if (data[p] == START_DIR || data[p] == START_SECTION)
+			return -1;
+		int end = p;
+		while (!isEnd(end))
+			end++;
+		// El Scanner original leía el fichero con la codificación por defecto
+		try (Scanner scanner = new Scanner(new String(data, p, end - p, Charset.defaultCharset()))) {
+			scanner.useLocale(Locale.ENGLISH);
+			if (real) {
+				if (!scanner.hasNextDouble())
+					return -1;
+				doubleValue = scanner.nextDouble();
+			}
+			else {
+				if (!scanner.hasNextInt())
+					return -1;
+				intValue = scanner.nextInt();
+			}
+			// Un espacio que no es ASCII divide el elemento en varios para el Scanner
+			return scanner.hasNext() ? -1 : end;
+		}
+	}
+
+	/**
+	 * Devuelve verdadero si el siguiente elemento comienza por el carácter indicado
+	 * @param c Carácter, en ASCII
+	 * @return Verdadero si quedan elementos y el siguiente comienza por el carácter
+	 */
+	public boolean startsWith(char c) {
+		return hasNext() && data[pos] == c;
+	}
+
+	/**
+	 * Reconoce un entero con signo opcional a partir de una posición del fichero, sin consumirlo, y guarda su valor en {@link #intValue}
+	 * @param p Posición del fichero en la que comienza el entero
+	 * @return Posición siguiente al entero, o -1 si no hay un entero válido en esa posición
+	 */
+	private int scanInt(int p) {
+		boolean negative = false;
+		if (p < data.length && (data[p] == '-' || data[p] == '+')) {
+			negative = (data[p] == '-');
+			p++;
+		}
+		final int first = p;
+		long value = 0;
+		while (p < data.length && isDigit(data[p])) {
+			value = value * 10 + (data[p] - '0');
+			// Cualquier entero fuera de rango se detecta antes de desbordar el long
+			if (value > (long)Integer.MAX_VALUE + 1)
+				return -1;
+			p++;
+		}
+		if (p == first)
+			return -1;
+		if (negative)
+			value = -value;
+		if (value > Integer.MAX_VALUE)
+			return -1;
+		intValue = (int)value;
+		return p;
+	}
+
+	/**
+	 * Reconoce el siguiente elemento como un entero, si no se había hecho ya
+	 * @return Verdadero si el siguiente elemento es un entero que cabe en un int
+	 */
+	public boolean hasNextInt() {
+		if (!hasNext())
+			return false;
+		if (intPos != pos) {
+			intPos = pos;
+			intEnd = scanInt(pos);
+			if (intEnd == -1 || !isEnd(intEnd))
+				intEnd = scanWithScanner(pos, false);
+		}
+		return intEnd != -1;
+	}
+
+	/**
+	 * Consume el siguiente elemento como un entero
+	 * @return El valor del entero
+	 * @throws NoSuchElementException Si no quedan elementos
+	 * @throws InputMismatchException Si el siguiente elemento no es un entero
+	 */
+	public int nextInt() {
+		if (!hasNextInt()) {
+			if (pos >= data.length)
+				throw new NoSuchElementException();
+			throw new InputMismatchException("Se esperaba un entero en la posición " + pos + " de " + fileName);
+		}
+		pos = intEnd;
+		return intValue;
+	}
+
+	/**
+	 * Consume el siguiente elemento como una dirección escrita entre corchetes: "[dirección]"
+	 * @return El valor de la dirección
+	 * @throws NoSuchElementException Si no quedan elementos
+	 * @throws InputMismatchException Si el siguiente elemento no es una dirección entre corchetes
+	 */
+	public int nextAddress() {
+		if (!hasNext())
+			throw new NoSuchElementException();
+		if (data[pos] == '[') {
+			final int end = scanInt(pos + 1);
+			if (end != -1 && end < data.length && data[end] == ']' && isEnd(end + 1)) {
+				pos = end + 1;
+				return intValue;
+			}
+		}
+		throw new InputMismatchException("Se esperaba una dirección entre corchetes en la posición " + pos + " de " + fileName);
+	}
+
+	/**
+	 * Reconoce un real a partir de una posición del fichero, sin consumirlo, y guarda su valor en {@link #doubleValue}: signo opcional,
+	 * cifras con un punto decimal opcional y exponente opcional, o bien "NaN" o "Infinity". Si la mantisa cabe en un double y la potencia de 10 también, una única
+	 * multiplicación o división da el real más cercano; en otro caso se usa {@link Double#parseDouble(String)}
+	 * @param p Posición del fichero en la que comienza el real
+	 * @return Posición siguiente al real, o -1 si no hay un real válido en esa posición
+	 */
+	private int scanDouble(int p) {
+		final int from = p;
+		boolean negative = false;
+		if (p < data.length && (data[p] == '-' || data[p] == '+')) {
+			negative = (data[p] == '-');
+			p++;
+		}
+		int end = scanWord(p, NAN);
+		if (end != -1) {
+			doubleValue = Double.NaN;
+			return end;
+		}
+		end = scanWord(p, INFINITY);
+		if (end != -1) {
+			doubleValue = negative ? Double.NEGATIVE_INFINITY : Double.POSITIVE_INFINITY;
+			return end;
+		}
+		long mantissa = 0;
+		int digits = 0;
+		int significant = 0;
+		int exponent = 0;
+		while (p < data.length && isDigit(data[p])) {
+			// Los ceros iniciales no cuentan como cifras significativas
+			if (mantissa != 0 || data[p] != '0') {
+				significant++;
+				mantissa = mantissa * 10 + (data[p] - '0');
+			}
+			p++;
+			digits++;
+		}
+		if (p < data.length && data[p] == '.') {
+			p++;
+			while (p < data.length && isDigit(data[p])) {
+				if (mantissa != 0 || data[p] != '0') {
+					significant++;
+					mantissa = mantissa * 10 + (data[p] - '0');
+				}
+				exponent--;
+				p++;
+				digits++;
+			}
+		}
+		if (digits == 0)
+			return -1;
+		if (p < data.length && (data[p] == 'e' || data[p] == 'E')) {
+			p++;
+			boolean negativeExp = false;
+			if (p < data.length && (data[p] == '-' || data[p] == '+')) {
+				negativeExp = (data[p] == '-');
+				p++;
+			}
+			final int first = p;
+			int exp = 0;
+			while (p < data.length && isDigit(data[p])) {
+				// Los exponentes muy grandes se dejan a parseDouble
+				if (exp < 10000)
+					exp = exp * 10 + (data[p] - '0');
+				p++;
+			}
+			if (p == first)
+				return -1;
+			exponent += negativeExp ? -exp : exp;
+		}
+		if (significant > MAX_DIGITS || mantissa > MAX_EXACT_LONG || exponent > MAX_EXACT_POW10 || exponent < -MAX_EXACT_POW10) {
+			doubleValue = Double.parseDouble(new String(data, from, p - from, StandardCharsets.US_ASCII));
+		}
+		else {
+			final double value = (exponent >= 0) ? mantissa * POW10[exponent] : mantissa / POW10[-exponent];
+			doubleValue = negative ? -value : value;
+		}
+		return p;
+	}
+
+	/**
+	 * Reconoce el siguiente elemento como un real (incluidos los enteros), si no se había hecho ya
+	 * @return Verdadero si el siguiente elemento es un real
+	 */
+	public boolean hasNextDouble() {
+		if (!hasNext())
+			return false;
+		if (doublePos != pos) {
+			doublePos = pos;
+			doubleEnd = scanDouble(pos);
+			if (doubleEnd == -1 || !isEnd(doubleEnd))
+				doubleEnd = scanWithScanner(pos, true);
+		}
+		return doubleEnd != -1;
+	}
+
+	/**
+	 * Consume el siguiente elemento como un real
+	 * @return El valor del real
+	 * @throws NoSuchElementException Si no quedan elementos
+	 * @throws InputMismatchException Si el siguiente elemento no es un real
+	 */
+	public double nextDouble() {
+		if (!hasNextDouble()) {
+			if (pos >= data.length)
+				throw new NoSuchElementException();
+			throw new InputMismatchException("Se esperaba un real en la posición " + pos + " de " + fileName);
+		}
+		pos = doubleEnd;
+		return doubleValue;
+	}
+}
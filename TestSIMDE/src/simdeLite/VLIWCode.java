@@ -3,20 +3,22 @@
  */
 package simdeLite;
 
-import java.io.File;
-import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Scanner;
 import java.util.TreeMap;
 
 import simdeLite.LongInstruction.LongInstructionOperation;
 
 /**
- * Código de instrucciones largas de la máquina simulada
+ * Código de instrucciones largas de la máquina simulada. Es inmutable: se crea completo con {@link #createCode(TreeMap, Code, int[][])}
+ * o {@link #loadCode(TreeMap, Code, String)} y no se puede modificar después, así que se puede compartir entre varias máquinas que se
+ * ejecuten en hilos distintos
  * @author Iván Castilla
  *
  */
 public class VLIWCode {
+	/** Número de valores de cada operación en la planificación leída con {@link #readSchedule(Code, String)} */
+	public final static int OPERATION_SIZE = 6;
 	/** Lista ordenada de las instrucciones largas */
 	private final ArrayList<LongInstruction> longInstructions;
 	/** Número de unidades funcionales de cada tipo que incluye la máquina simulada */
@@ -27,21 +29,15 @@ public class VLIWCode {
 	/**
 	 * Crea un código de instrucciones largas con la configuración de unidades funcionales indicada
 	 * @param configuration Número de unidades funcionales de cada tipo que incluye la máquina simulada
+	 * @param code Código secuencial original
+	 * @param schedule Las operaciones de cada instrucción larga
 	 */
-	public VLIWCode(TreeMap<FunctionalUnit, Integer> configuration) {
-		longInstructions = new ArrayList<>();
-		this.configuration = configuration;
-		NOPLongInstruction = new LongInstruction(configuration);
-	}
-	
-	/**
-	 * Crea y agrega una instrucción larga al final de la lista de instrucciones largas
-	 * @return La instrucción larga creada
-	 */
-	public LongInstruction addLongInstruction() {
-		LongInstruction longInst = new LongInstruction(configuration); 
-		longInstructions.add(longInst);
-		return longInst;
+	private VLIWCode(TreeMap<FunctionalUnit, Integer> configuration, Code code, int[][] schedule) {
+		this.configuration = new TreeMap<>(configuration);
+		longInstructions = new ArrayList<>(schedule.length);
+		for (int[] opers : schedule)
+			longInstructions.add(new LongInstruction(this.configuration, code, opers));
+		NOPLongInstruction = new LongInstruction(this.configuration);
 	}
 	
 	/**
@@ -55,6 +51,14 @@ public class VLIWCode {
 		return longInstructions.get(index);
 	}
 	
+	/**
+	 * Devuelve el número de instrucciones largas del código
+	 * @return Número de instrucciones largas del código
+	 */
+	public int getSize() {
+		return longInstructions.size();
+	}
+	
 	/**
 	 * Devuelve verdadero si es una instrucción larga de parada de ejecución.
 	 * En la implementación actual, esto no es estrictamente una instrucción de parada, sino un indicador de que ya no quedan más instrucciones por ejecutar 
@@ -71,36 +75,58 @@ public class VLIWCode {
 	 * @param code Código secuencial original
 	 * @param fileName Nombre del fichero que contiene la planificación de las instrucciones largas
 	 * @return Código de instrucciones largas creado
+	 * @throws IOException Si el fichero indicado no existe o no se pudo leer
 	 */
-	public static VLIWCode loadCode(TreeMap<FunctionalUnit, Integer> configuration, Code code, String fileName) throws FileNotFoundException {
-		final File vliwFile = new File(fileName);
-		final VLIWCode vliwcode = new VLIWCode(configuration);
-		Scanner scan;
-		scan = new Scanner(vliwFile);
+	public static VLIWCode loadCode(TreeMap<FunctionalUnit, Integer> configuration, Code code, String fileName) throws IOException {
+		return createCode(configuration, code, readSchedule(code, fileName));
+	}
+
+	/**
+	 * Lee la planificación de las instrucciones largas desde un fichero definido previamente con la versión de escritorio de SIMDE o 
+	 * SIMDEWeb, sin crear las instrucciones largas. Para cada instrucción larga, devuelve sus operaciones una detrás de otra, con 
+	 * {@link #OPERATION_SIZE} valores cada una: instrucción secuencial, unidad funcional, predicado y, solo en los saltos, instrucción 
+	 * larga de destino y predicados de la condición verdadera y falsa (0 en otro caso)
+	 * @param code Código secuencial original, que indica qué operaciones son saltos
+	 * @param fileName Nombre del fichero que contiene la planificación de las instrucciones largas
+	 * @return Las operaciones de cada instrucción larga
+	 * @throws IOException Si el fichero indicado no existe o no se pudo leer
+	 */
+	public static int[][] readSchedule(Code code, String fileName) throws IOException {
+		final TextTokenizer scan = new TextTokenizer(fileName);
 		int n = scan.nextInt();
+		final int[][] schedule = new int[n][];
 		for (int i = 0; i < n; i++) {
-			final LongInstruction longInst = vliwcode.addLongInstruction();
 			int noper = scan.nextInt();
+			final int[] opers = new int[noper * OPERATION_SIZE];
 	        for (int j = 0; j < noper; j++) {
-	        	int ind = scan.nextInt();
+	        	final int k = j * OPERATION_SIZE;
+	        	opers[k] = scan.nextInt();
 	        	// Se ignora el tipo: Se asume que es correcto
 	        	scan.nextInt();
-	        	int idFU = scan.nextInt();
-	        	int pred = scan.nextInt();
+	        	opers[k + 1] = scan.nextInt();
+	        	opers[k + 2] = scan.nextInt();
 
-	            final Instruction inst = code.getInstructions().get(ind);
+	            final Instruction inst = code.getInstructions().get(opers[k]);
 	            if (FunctionalUnit.JUMP.equals(inst.getOpcode().getFU())) {
-	            	int destination = scan.nextInt();
-		            int predTrue = scan.nextInt();
-		            int predFalse = scan.nextInt();
-	            	longInst.addJumpInstruction(inst, pred, predTrue, predFalse, destination);
+	            	opers[k + 3] = scan.nextInt();
+	            	opers[k + 4] = scan.nextInt();
+	            	opers[k + 5] = scan.nextInt();
 	            }
-	            else
-	            	longInst.addInstruction(inst, idFU, pred);
 	        }
+	        schedule[i] = opers;
 		}
-		scan.close();
-		return vliwcode;		
+		return schedule;
+	}
+
+	/**
+	 * Crea el código de instrucciones largas a partir de la planificación leída con {@link #readSchedule(Code, String)}
+	 * @param configuration Número de unidades funcionales de cada tipo que incluye la máquina simulada
+	 * @param code Código secuencial original
+	 * @param schedule Las operaciones de cada instrucción larga
+	 * @return Código de instrucciones largas creado
+	 */
+	public static VLIWCode createCode(TreeMap<FunctionalUnit, Integer> configuration, Code code, int[][] schedule) {
+		return new VLIWCode(configuration, code, schedule);
 	}
 
 	@Override
@@ -0,0 +1,515 @@
+/**
+ *
+ */
+package simdeLite;
+
+import static simdeLite.ClassFileWriter.*;
+
+/**
+ * Traduce los bloques de un código de instrucciones largas a bytecode de la JVM, de manera que HotSpot compile directamente el programa simulado.
+ *
+ * Un bloque comienza en una instrucción larga en la que no hay ningún salto en curso: la primera del código, el destino de un salto o la
+ * siguiente a las ranuras de retardo de un salto. El bloque comienza la ejecución de las instrucciones largas consecutivas hasta la que contiene
+ * el siguiente salto, más sus ranuras de retardo, y termina en el ciclo en que se finaliza ese salto (o antes, si se llega al final del código).
+ * Como dentro del bloque no hay saltos, el ciclo en que termina cada operación se conoce al compilar, y el bloque se traduce a una secuencia
+ * fija de lecturas de operandos y finalizaciones, en el mismo orden que usa el intérprete. Los predicados y los fallos de caché se comprueban
+ * en tiempo de ejecución; las operaciones que ya estaban en curso al entrar en el bloque, las que provocan un fallo de caché y las que siguen en
+ * curso al salir del bloque las gestiona la máquina a través del {@link BlockContext}. La semántica de cada operación es la de su
+ * {@link Opcode}, así que el resultado es exactamente el mismo que con el intérprete.
+ *
+ * El bytecode de cada bloque se genera directamente con {@link ClassFileWriter}, sin pasar por el compilador de Java, así que funciona
+ * igual con un JRE y apenas cuesta nada frente a la simulación. Cada bloque es una clase independiente: si un bloque no se puede compilar
+ * (tiene un salto en una ranura de retardo o su bytecode supera {@link #MAX_BLOCK_CODE_SIZE}) o no se puede cargar, solo ese bloque
+ * se ejecuta con el intérprete
+ * @author Iván Castilla
+ *
+ */
+public class VLIWCompiler {
+	/** Paquete de las clases generadas, en formato interno */
+	private final static String PACKAGE = "simdeLite/gen/";
+	/**
+	 * Máximo número de bytes del bytecode de un bloque. Es el límite a partir del cual HotSpot deja de compilar un método a código nativo
+	 * (HugeMethodLimit), muy por debajo del máximo de 64 KB por método de la JVM
+	 */
+	private final static int MAX_BLOCK_CODE_SIZE = 8000;
+	/** Nombres internos y descriptores de los tipos que usa el código generado */
+	private final static String CONTEXT = "simdeLite/BlockContext";
+	private final static String GPR = "LsimdeLite/GPRegisterBank;";
+	private final static String FPR = "LsimdeLite/FPRegisterBank;";
+	private final static String MEM = "LsimdeLite/Memory;";
+	private final static String PRED = "LsimdeLite/PredicateRegisterBank;";
+	private final static String VALUES = "LsimdeLite/OperandValues;";
+	/** Descriptor de {@link CompiledBlock#run(BlockContext)} */
+	private final static String RUN = "(LsimdeLite/BlockContext;)I";
+	/** Descriptor de {@link OperandFormat#fetch(GPRegisterBank, FPRegisterBank, int, int, int, OperandValues)} */
+	private final static String FETCH = "(" + GPR + FPR + "III" + VALUES + ")V";
+	/** Descriptor de {@link Opcode#execute(GPRegisterBank, FPRegisterBank, Memory, int, OperandValues)} */
+	private final static String EXECUTE = "(" + GPR + FPR + MEM + "I" + VALUES + ")Z";
+	/** Variables locales del método generado: contexto, bancos de registros, memoria, valores de los operandos... */
+	private final static int L_CTX = 1;
+	private final static int L_GPR = 2;
+	private final static int L_FPR = 3;
+	private final static int L_MEM = 4;
+	private final static int L_PRED = 5;
+	private final static int L_VALUES = 6;
+	/** ... ciclo de entrada en el bloque, siguiente instrucción larga y condición del salto... */
+	private final static int L_C0 = 7;
+	private final static int L_NEXT = 8;
+	private final static int L_COND = 9;
+	/** ... y, a partir de aquí, dos por cada acceso a memoria: si no falla en el sorteo y el número de burbujas cuando comenzó */
+	private final static int L_FIRST_MEM = 10;
+	/** Código decodificado que se compila */
+	private final DecodedVLIWCode code;
+	/** Latencia para cada tipo de UF incluida en la máquina */
+	private final int[] latencies;
+
+	/**
+	 * Crea un compilador para un código decodificado
+	 * @param code Código decodificado
+	 * @param latencies Latencia para cada tipo de UF incluida en la máquina, la misma que se usó al decodificar el código
+	 */
+	private VLIWCompiler(DecodedVLIWCode code, int[] latencies) {
+		this.code = code;
+		this.latencies = latencies;
+	}
+
+	/**
+	 * Compila los bloques de un código. Los bloques no tienen estado, así que se pueden ejecutar en cualquier máquina con las mismas latencias
+	 * @param code Código decodificado
+	 * @param latencies Latencia para cada tipo de UF incluida en la máquina, la misma que se usó al decodificar el código
+	 * @return El bloque compilado que comienza en cada instrucción larga, o null si en esa instrucción no comienza ningún bloque o no se
+	 * pudo compilar
+	 */
+	public static CompiledBlock[] compile(DecodedVLIWCode code, int[] latencies) {
+		return new VLIWCompiler(code, latencies).compile();
+	}
+
+	/**
+	 * Compila y carga cada bloque del código por separado
+	 * @return El bloque compilado que comienza en cada instrucción larga, o null si en esa instrucción no comienza ningún bloque o no se
+	 * pudo compilar
+	 */
+	private CompiledBlock[] compile() {
+		final CompiledBlock[] blocks = new CompiledBlock[code.getSize()];
+		final boolean[] starts = getBlockStarts();
+		final ProgramClassLoader loader = new ProgramClassLoader(VLIWCompiler.class.getClassLoader());
+		for (int start = 0; start < starts.length; start++) {
+			if (starts[start]) {
+				final byte[] bytes = generateBlock(start);
+				if (bytes != null) {
+					try {
+						final Class<?> cl = loader.define((PACKAGE + "B" + start).replace('/', '.'), bytes);
+						blocks[start] = (CompiledBlock)cl.getDeclaredConstructor().newInstance();
+					} catch (ReflectiveOperationException | LinkageError | RuntimeException e) {
+						// Este bloque se ejecuta con el intérprete
+					}
+				}
+			}
+		}
+		return blocks;
+	}
+
+	/**
+	 * Devuelve las instrucciones largas en las que puede comenzar un bloque: la primera, los destinos de los saltos y las siguientes a las
+	 * ranuras de retardo de los saltos
+	 * @return Verdadero en las posiciones de las instrucciones largas en las que puede comenzar un bloque
+	 */
+	private boolean[] getBlockStarts() {
+		final boolean[] starts = new boolean[code.getSize()];
+		final int latJump = latencies[FunctionalUnit.JUMP.ordinal()];
+		if (starts.length > 0)
+			starts[0] = true;
+		for (int pc = 0; pc < code.getSize(); pc++) {
+			for (int k = code.getFirst(pc); k < code.getLast(pc); k++) {
+				if (code.getFU(k) == FunctionalUnit.JUMP.ordinal()) {
+					if (code.getTarget(k) >= 0 && code.getTarget(k) < starts.length)
+						starts[code.getTarget(k)] = true;
+					if (pc + latJump < starts.length)
+						starts[pc + latJump] = true;
+				}
+			}
+		}
+		return starts;
+	}
+
+	/**
+	 * Devuelve la posición de la operación de salto de una instrucción larga
+	 * @param pc Posición de la instrucción larga
+	 * @return Posición de la operación de salto en el código decodificado, o -1 si la instrucción larga no contiene un salto
+	 */
+	private int getJump(int pc) {
+		for (int k = code.getFirst(pc); k < code.getLast(pc); k++) {
+			if (code.getFU(k) == FunctionalUnit.JUMP.ordinal())
+				return k;
+		}
+		return -1;
+	}
+
+	/**
+	 * Genera la clase del bloque que comienza en la instrucción larga "start"
+	 * @param start Posición de la primera instrucción larga del bloque
+	 * @return El contenido del fichero de clase, o null si el bloque no se puede compilar (tiene un salto en una ranura de retardo, o su
+	 * bytecode es demasiado grande)
+	 */
+	private byte[] generateBlock(int start) {
+		final int size = code.getSize();
+		final int latJump = latencies[FunctionalUnit.JUMP.ordinal()];
+		// Se busca el salto que termina el bloque
+		int jumpPc = start;
+		while (jumpPc < size && getJump(jumpPc) == -1)
+			jumpPc++;
+		final int jump = (jumpPc < size) ? getJump(jumpPc) : -1;
+		// Ciclo relativo en el que termina el bloque
+		final int last;
+		if (jump == -1)
+			last = size - 1 - start;
+		else {
+			for (int pc = jumpPc + 1; pc < Math.min(size, jumpPc + latJump); pc++) {
+				if (getJump(pc) != -1)
+					return null;
+			}
+			last = jumpPc - start + latJump - 1;
+		}
+		final int lastIssue = Math.min(start + last, size - 1);
+		final int firstOper = code.getFirst(start);
+		final int endOper = code.getFirst(lastIssue + 1);
+
+		final ClassFileWriter w = new ClassFileWriter(PACKAGE + "B" + start, "simdeLite/CompiledBlock");
+		final BlockWriter b = new BlockWriter(w, firstOper, endOper);
+		b.prologue();
+		if (jump != -1) {
+			w.pushInt(jumpPc + latJump);
+			w.local(ISTORE, L_NEXT);
+		}
+		for (int t = 0; t <= last; t++) {
+			final int pc = start + t;
+			// Ciclo t: comienza la instrucción larga pc
+			for (int k = code.getFirst(pc); k < code.getLast(pc); k++)
+				b.issue(k);
+			// Primero se finaliza el salto...
+			if (jump != -1 && t == last)
+				b.jump(jump);
+			// ... y después el resto, por tipo de UF y en el orden en que comenzaron
+			for (FunctionalUnit fu : FunctionalUnit.values()) {
+				if (FunctionalUnit.JUMP.equals(fu))
+					continue;
+				if (t <= latencies[fu.ordinal()] - 2)
+					b.retireInFlight(fu.ordinal());
+				for (int k = firstOper; k < code.getLast(pc); k++) {
+					if (code.getFU(k) == fu.ordinal() && getRetire(k, start) == t)
+						b.retire(k);
+				}
+			}
+			b.endCycle();
+			if (t == last || pc + 1 >= size) {
+				// Las operaciones que siguen en curso se devuelven a la máquina
+				for (int k = firstOper; k < code.getLast(pc); k++) {
+					if (getRetire(k, start) > t)
+						b.handOff(k, getRetire(k, start));
+				}
+				if (t == last && jump != -1)
+					w.local(ILOAD, L_NEXT);
+				else
+					w.pushInt(pc + 1);
+				w.insn(IRETURN, -1);
+				break;
+			}
+			if (w.getCodeSize() > MAX_BLOCK_CODE_SIZE)
+				return null;
+		}
+		if (w.getCodeSize() > MAX_BLOCK_CODE_SIZE)
+			return null;
+		return w.toByteArray("run", RUN);
+	}
+
+	/**
+	 * Devuelve el ciclo, relativo al comienzo del bloque, en que se finaliza una operación
+	 * @param k Posición de la operación en el código decodificado
+	 * @param start Posición de la primera instrucción larga del bloque
+	 * @return Ciclo, relativo al comienzo del bloque, en que se finaliza la operación
+	 */
+	private int getRetire(int k, int start) {
+		int pc = start;
+		while (code.getLast(pc) <= k)
+			pc++;
+		return pc - start + code.getLatency(k) - 1;
+	}
+
+	/**
+	 * Genera el bytecode de las partes de un bloque. Cada método produce lo mismo que haría el intérprete en ese punto del ciclo
+	 * @author Iván Castilla
+	 *
+	 */
+	private final class BlockWriter {
+		/** Generador de la clase del bloque */
+		private final ClassFileWriter w;
+		/** Primera operación del bloque */
+		private final int firstOper;
+		/** Operación siguiente a la última que comienza en el bloque */
+		private final int endOper;
+		/** Primera de las dos variables locales de cada acceso a memoria del bloque, indexado desde {@link #firstOper}, o -1 si no es un acceso */
+		private final int[] memLocals;
+
+		/**
+		 * Crea el generador del bytecode de un bloque
+		 * @param w Generador de la clase del bloque
+		 * @param firstOper Primera operación del bloque
+		 * @param endOper Operación siguiente a la última que comienza en el bloque
+		 */
+		BlockWriter(ClassFileWriter w, int firstOper, int endOper) {
+			this.w = w;
+			this.firstOper = firstOper;
+			this.endOper = endOper;
+			memLocals = new int[endOper - firstOper];
+			int local = L_FIRST_MEM;
+			for (int k = firstOper; k < endOper; k++) {
+				if (code.getFU(k) == FunctionalUnit.MEM.ordinal()) {
+					memLocals[k - firstOper] = local;
+					local += 2;
+				}
+				else {
+					memLocals[k - firstOper] = -1;
+				}
+			}
+		}
+
+		/**
+		 * Guarda en variables locales el estado de la máquina que usa el bloque, e inicializa las de los accesos a memoria
+		 */
+		void prologue() {
+			context(GPR, "getGPRegisterBank", L_GPR);
+			context(FPR, "getFPRegisterBank", L_FPR);
+			context(MEM, "getMemory", L_MEM);
+			context(PRED, "getPredicateRegisterBank", L_PRED);
+			context("[" + VALUES, "getOperandValues", L_VALUES);
+			w.local(ALOAD, L_CTX);
+			w.invokeInterface(CONTEXT, "getCycle", "()I");
+			w.local(ISTORE, L_C0);
+			for (int k = firstOper; k < endOper; k++) {
+				if (memLocals[k - firstOper] != -1) {
+					w.pushInt(1);
+					w.local(ISTORE, memLocals[k - firstOper]);
+					w.pushInt(0);
+					w.local(ISTORE, memLocals[k - firstOper] + 1);
+				}
+			}
+		}
+
+		/**
+		 * Guarda en una variable local el resultado de un método del contexto sin parámetros
+		 * @param type Descriptor del tipo del resultado
+		 * @param method Nombre del método
+		 * @param local Variable local
+		 */
+		private void context(String type, String method, int local) {
+			w.local(ALOAD, L_CTX);
+			w.invokeInterface(CONTEXT, method, "()" + type);
+			w.local(ASTORE, local);
+		}
+
+		/**
+		 * Apila los valores de los operandos de una operación
+		 * @param k Posición de la operación en el código decodificado
+		 */
+		private void values(int k) {
+			w.local(ALOAD, L_VALUES);
+			w.pushInt(k);
+			w.insn(AALOAD, -1);
+		}
+
+		/**
+		 * Genera el comienzo de una operación: la decisión de fallo de caché, si es un acceso a memoria, y la lectura de los operandos
+		 * @param k Posición de la operación en el código decodificado
+		 */
+		void issue(int k) {
+			final int local = memLocals[k - firstOper];
+			if (local != -1) {
+				w.local(ALOAD, L_CTX);
+				w.pushInt(k);
+				w.invokeInterface(CONTEXT, "drawCached", "(I)Z");
+				w.local(ISTORE, local);
+				w.local(ALOAD, L_CTX);
+				w.invokeInterface(CONTEXT, "getStallEpoch", "()I");
+				w.local(ISTORE, local + 1);
+			}
+			w.getStatic("simdeLite/OperandFormat", code.getOpcode(k).getFormat().name(), "LsimdeLite/OperandFormat;");
+			w.local(ALOAD, L_GPR);
+			w.local(ALOAD, L_FPR);
+			w.pushInt(code.getSrc1(k));
+			w.pushInt(code.getSrc2(k));
+			w.pushInt(code.getImm(k));
+			values(k);
+			w.invokeVirtual("simdeLite/OperandFormat", "fetch", FETCH);
+		}
+
+		/**
+		 * Apila el resultado de ejecutar una operación con su {@link Opcode}
+		 * @param k Posición de la operación en el código decodificado
+		 */
+		private void execute(int k) {
+			w.getStatic("simdeLite/Opcode", code.getOpcode(k).name(), "LsimdeLite/Opcode;");
+			w.local(ALOAD, L_GPR);
+			w.local(ALOAD, L_FPR);
+			w.local(ALOAD, L_MEM);
+			w.pushInt(code.getDest(k));
+			values(k);
+			w.invokeVirtual("simdeLite/Opcode", "execute", EXECUTE);
+		}
+
+		/**
+		 * Si la operación tiene predicado, genera la comprobación y devuelve la etiqueta a la que se salta si es falso
+		 * @param k Posición de la operación en el código decodificado
+		 * @return Etiqueta que hay que colocar después de la operación, o -1 si no tiene predicado
+		 */
+		private int predicate(int k) {
+			if (code.getPred(k) == 0)
+				return -1;
+			final int skip = w.newLabel();
+			w.local(ALOAD, L_PRED);
+			w.pushInt(code.getPred(k));
+			w.invokeVirtual("simdeLite/PredicateRegisterBank", "read", "(I)Z");
+			w.jump(IFEQ, skip);
+			return skip;
+		}
+
+		/**
+		 * Genera la finalización de una operación que no es un salto
+		 * @param k Posición de la operación en el código decodificado
+		 */
+		void retire(int k) {
+			final int skip = predicate(k);
+			final int local = memLocals[k - firstOper];
+			if (local != -1) {
+				// El acceso se busca en el modelo de caché aunque ya haya fallado en el sorteo. Un fallo del modelo se aplaza siempre; uno
+				// sorteado, solo si no se ha añadido ninguna burbuja desde que comenzó (la misma regla que VLIWMachine)
+				final int exec = w.newLabel();
+				final int defer = w.newLabel();
+				final int end = w.newLabel();
+				w.local(ALOAD, L_MEM);
+				values(k);
+				w.invokeVirtual("simdeLite/OperandValues", "getOperand1Value", "()D");
+				w.insn(D2I, -1);
+				w.pushInt((code.getDest(k) == DecodedVLIWCode.NONE) ? 1 : 0);
+				w.invokeVirtual("simdeLite/Memory", "access", "(IZ)Z");
+				w.jump(IFEQ, defer);
+				w.local(ILOAD, local);
+				w.jump(IFNE, exec);
+				w.local(ILOAD, local + 1);
+				w.local(ALOAD, L_CTX);
+				w.invokeInterface(CONTEXT, "getStallEpoch", "()I");
+				w.jump(IF_ICMPNE, exec);
+				w.mark(defer);
+				w.local(ALOAD, L_CTX);
+				w.pushInt(k);
+				values(k);
+				w.invokeInterface(CONTEXT, "defer", "(I" + VALUES + ")V");
+				w.jump(GOTO, end);
+				w.mark(exec);
+				execute(k);
+				w.insn(POP, -1);
+				w.mark(end);
+			}
+			else {
+				execute(k);
+				w.insn(POP, -1);
+			}
+			if (skip != -1)
+				w.mark(skip);
+		}
+
+		/**
+		 * Genera la finalización de la operación de salto que termina el bloque
+		 * @param k Posición de la operación en el código decodificado
+		 */
+		void jump(int k) {
+			final int skip = predicate(k);
+			final int notTaken = w.newLabel();
+			execute(k);
+			w.local(ISTORE, L_COND);
+			w.local(ILOAD, L_COND);
+			w.jump(IFEQ, notTaken);
+			w.pushInt(code.getTarget(k));
+			w.local(ISTORE, L_NEXT);
+			w.mark(notTaken);
+			w.local(ALOAD, L_PRED);
+			w.pushInt(code.getPredTrue(k));
+			w.local(ILOAD, L_COND);
+			w.invokeVirtual("simdeLite/PredicateRegisterBank", "write", "(IZ)V");
+			w.local(ALOAD, L_PRED);
+			w.pushInt(code.getPredFalse(k));
+			w.local(ILOAD, L_COND);
+			w.pushInt(1);
+			w.insn(IXOR, -1);
+			w.invokeVirtual("simdeLite/PredicateRegisterBank", "write", "(IZ)V");
+			if (skip != -1)
+				w.mark(skip);
+		}
+
+		/**
+		 * Genera la finalización de las operaciones de un tipo de UF que estaban en curso al entrar en el bloque
+		 * @param fu Índice del tipo de UF
+		 */
+		void retireInFlight(int fu) {
+			w.local(ALOAD, L_CTX);
+			w.pushInt(fu);
+			w.invokeInterface(CONTEXT, "retireInFlight", "(I)V");
+		}
+
+		/**
+		 * Genera el final de un ciclo
+		 */
+		void endCycle() {
+			w.local(ALOAD, L_CTX);
+			w.invokeInterface(CONTEXT, "endCycle", "()V");
+		}
+
+		/**
+		 * Genera la devolución a la máquina de una operación que sigue en curso al salir del bloque
+		 * @param k Posición de la operación en el código decodificado
+		 * @param retire Ciclo, relativo al comienzo del bloque, en que se finaliza la operación
+		 */
+		void handOff(int k, int retire) {
+			final int local = memLocals[k - firstOper];
+			w.local(ALOAD, L_CTX);
+			w.pushInt(k);
+			w.local(ILOAD, L_C0);
+			w.pushInt(retire);
+			w.insn(IADD, -1);
+			values(k);
+			if (local != -1) {
+				w.local(ILOAD, local);
+				w.local(ILOAD, local + 1);
+			}
+			else {
+				w.pushInt(1);
+				w.pushInt(0);
+			}
+			w.invokeInterface(CONTEXT, "handOff", "(II" + VALUES + "ZI)V");
+		}
+	}
+
+	/**
+	 * Cargador de las clases generadas. Delega en el cargador del simulador para el resto de clases
+	 * @author Iván Castilla
+	 *
+	 */
+	private static class ProgramClassLoader extends ClassLoader {
+		/**
+		 * Crea un cargador de las clases generadas
+		 * @param parent Cargador de las clases del simulador
+		 */
+		public ProgramClassLoader(ClassLoader parent) {
+			super(parent);
+		}
+
+		/**
+		 * Define una clase generada
+		 * @param name Nombre de la clase
+		 * @param bytes Contenido del fichero de clase
+		 * @return La clase definida
+		 */
+		public Class<?> define(String name, byte[] bytes) {
+			return defineClass(name, bytes, 0, bytes.length);
+		}
+	}
+}
@@ -3,16 +3,12 @@
  */
 package simdeLite;
 
-import java.io.File;
-import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.PrintStream;
 import java.util.ArrayList;
-import java.util.Locale;
-import java.util.PriorityQueue;
-import java.util.Random;
-import java.util.Scanner;
-
-import simdeLite.LongInstruction.LongInstructionJumpOperation;
-import simdeLite.LongInstruction.LongInstructionOperation;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.SplittableRandom;
 
 /**
  * La máquina VLIW simulada
@@ -20,12 +16,18 @@ import simdeLite.LongInstruction.LongInstructionOperation;
  *
  */
 public class VLIWMachine {
-	/** Cadena de texto que identifica el comienzo de una dirección en un fichero de contenido de memoria y registros */
-	private final static String STR_START_DIR = "[";
+	/** Carácter que identifica el comienzo de una dirección en un fichero de contenido de memoria y registros */
+	private final static char START_DIR = '[';
 	/** Número de registros de cualquier tipo en la máquina */
 	private final static int NREG = 64;
-	/** Número de palabras de memoria en la máquina */
-	private final static int NMEM = 1024;
+	/** Número de palabras de memoria en la máquina por defecto */
+	public final static int NMEM = 1024;
+	/** Número máximo de códigos decodificados que guarda la máquina */
+	private final static int MAX_DECODED = 8;
+	/** Resultado de finalizar una instrucción que no modifica el PC */
+	private final static int NO_JUMP = -1;
+	/** Resultado de finalizar una instrucción de memoria que provoca un fallo de caché */
+	private final static int CACHE_MISS = -2;
 	/** Banco de registros de propósito general */
 	private final GPRegisterBank gpr;
 	/** Banco de registros de punto flotante */
@@ -35,13 +37,51 @@ public class VLIWMachine {
 	/** Banco de registros de predicado */
 	private final PredicateRegisterBank pred;
 
-	/** Lista de instrucciones a finalizar por la máquina en cada ciclo de reloj. Se usa para la simulación */
-	private final PriorityQueue<Action> actionList;
+	/** Rueda temporal con las instrucciones a finalizar por la máquina en cada ciclo de reloj. Se usa para la simulación */
+	private final ActionWheel actionList;
+	/** Instrucciones a finalizar en el ciclo actual. Se reutiliza en cada ciclo para no crear listas nuevas */
+	private final ArrayList<Action> validActions;
+	/** Acciones finalizadas que se pueden reutilizar */
+	private Action[] freeActions;
+	/** Número de acciones en {@link #freeActions} */
+	private int nFreeActions = 0;
+	/** Código decodificado que se está ejecutando */
+	private DecodedVLIWCode code;
+	/** Últimos códigos decodificados por la máquina, del más reciente al más antiguo */
+	private final ArrayList<DecodedVLIWCode> decoded = new ArrayList<>();
+	/** Ciclos de penalización acumulados durante la ejecución actual. El ciclo real es el ciclo de la rueda temporal más este desplazamiento */
+	private int stallCycles = 0;
+	/** Número de burbujas añadidas durante la ejecución actual. Identifica las acciones planificadas antes de la última burbuja */
+	private int stallEpoch = 0;
 	/** Modo de depuración */
 	private boolean debugMode = false;
-	/** Generador de números aleatorios para los fallos de caché */
-	private final Random rnd;
-	
+	/** Verdadero si se ejecutan los bloques compilados del código cuando se pueda */
+	private boolean compiled = false;
+	/** Ciclo de la rueda temporal, que no avanza durante las burbujas */
+	private int cycle = 0;
+	/** Contador de programa: instrucción larga que se comienza a ejecutar en el ciclo actual */
+	private int pc = 0;
+	/** Acciones que provocaron un fallo de caché en el ciclo actual */
+	private final ArrayList<Action> pendingActions;
+	/** Valores de los operandos de cada operación del código actual, para los bloques compilados */
+	private OperandValues[] operandValues = null;
+	/** Estado de la máquina que usan los bloques compilados */
+	private final Context context;
+	/** Traza de accesos a memoria que se está grabando, o null si no se está grabando ninguna (ver {@link #record(VLIWCode)}) */
+	private MemoryTrace trace = null;
+	/** Fichero donde se escriben los accesos a memoria, o null si no se escriben (ver {@link #setAccessTrace(AccessTraceWriter)}) */
+	private AccessTraceWriter accessTrace = null;
+	/** Número de accesos a memoria planificados durante la ejecución actual, es decir, de fallos de caché sorteados */
+	private int nDraws = 0;
+	/** Generador de los fallos de caché */
+	private final CacheMissGenerator misses;
+	/** Verdadero si cada instrucción secuencial tiene su propia secuencia de fallos de caché (ver {@link #setCommonRandomNumbers(boolean)}) */
+	private boolean commonRandomNumbers = false;
+	/** Generador de los fallos de caché de cada instrucción secuencial, indexado por su identificador. Se crean la primera vez que se usan */
+	private CacheMissGenerator[] instructionMisses = new CacheMissGenerator[0];
+	/** Semilla de la que se derivan las secuencias de fallos de cada instrucción secuencial */
+	private long seed;
+	/** Latencia para cada tipo de UF incluida en la máquina */
 	private final int[] latencies;
 
 	/**
@@ -51,41 +91,71 @@ public class VLIWMachine {
 	 * @param cacheMissPenalty Penalización en ciclos si se produce un fallo de la caché
 	 */
 	public VLIWMachine(int[] latencies, int cacheFailRate, int cacheFailPenalty) {
+		this(latencies, NMEM, cacheFailRate, cacheFailPenalty);
+	}
+
+	/**
+	 * Crea una máquina VLIW con la configuración y el tamaño de memoria indicados
+	 * @param latencies Latencia para cada tipo de UF incluida en la máquina
+	 * @param memSize Número de palabras de memoria de la máquina
+	 * @param cacheMissRate Tasa de fallos de la caché, expresada como un valor entre 0 y 100 (%).
+	 * @param cacheMissPenalty Penalización en ciclos si se produce un fallo de la caché
+	 */
+	public VLIWMachine(int[] latencies, int memSize, int cacheFailRate, int cacheFailPenalty) {
 		gpr = new GPRegisterBank(NREG);
 		fpr = new FPRegisterBank(NREG);
-		mem = new Memory(NMEM, (double)cacheFailRate / 100.0, cacheFailPenalty);
+		mem = new Memory(memSize, (double)cacheFailRate / 100.0, cacheFailPenalty);
 		pred = new PredicateRegisterBank(NREG);
-		actionList = new PriorityQueue<>();
-		this.rnd = new Random();
+		int maxLatency = 1;
+		for (int lat : latencies)
+			maxLatency = Math.max(maxLatency, lat);
+		actionList = new ActionWheel(maxLatency);
+		validActions = new ArrayList<>();
+		freeActions = new Action[16];
+		pendingActions = new ArrayList<>();
+		context = new Context();
+		this.misses = new CacheMissGenerator(mem.getCacheMissRate());
+		this.seed = new SplittableRandom().nextLong();
 		this.latencies = latencies;
 	}
 
+	/**
+	 * Carga la memoria y los registros desde una imagen binaria ya abierta. La misma imagen se puede cargar tantas veces como se 
+	 * quiera, así que sirve para restaurar el estado inicial de la máquina entre ejecuciones copiando bloques, sin volver a leer el fichero
+	 * @param image Imagen binaria de memoria y registros
+	 * @throws IOException Si la imagen está incompleta
+	 * @throws SIMDEException Si algún bloque de la imagen se sale de la memoria o de los bancos de registros
+	 */
+	public void loadMemoryAndRegisters(MemoryImage image) throws IOException, SIMDEException {
+		image.load(gpr, fpr, pred, mem);
+	}
+
 	/**
 	 * Carga la memoria y los registros desde un fichero que, al menos, debe tener 3 líneas con las cadenas
-	 * "#GPR", "#FPR" y "#MEM".
+	 * "#GPR", "#FPR" y "#MEM", o desde una imagen binaria ({@link MemoryImage})
 	 * @param fileName Nombre del fichero que define los contenidos de registros y memoria
 	 */
-	public void loadMemoryAndRegisters(String fileName) throws FileNotFoundException, SIMDEException {
-		final File memFile = new File(fileName);
-		Scanner scan;
-		int what = -1;
-		scan = new Scanner(memFile);
+	public void loadMemoryAndRegisters(String fileName) throws IOException, SIMDEException {
+		if (MemoryImage.isImage(fileName)) {
+			loadMemoryAndRegisters(new MemoryImage(fileName));
+			return;
+		}
 		// Todos los ficheros están con el "." para separar los decimales
-		scan.useLocale(Locale.ENGLISH);
+		final TextTokenizer scan = new TextTokenizer(fileName);
+		int what = -1;
 		while (scan.hasNext()) {
-			final String text = scan.next();
-			if (GPRegisterBank.STR.equals(text)) {
+			if (scan.skip(GPRegisterBank.STR)) {
 				what = 0;					
 			}
-			else if (FPRegisterBank.STR.equals(text)) {
+			else if (scan.skip(FPRegisterBank.STR)) {
 				what = 1;					
 			}
-			else if (Memory.STR.equals(text)) {
+			else if (scan.skip(Memory.STR)) {
 				what = 2;					
 			}
-			else if (text.startsWith(STR_START_DIR)) {
+			else if (scan.startsWith(START_DIR)) {
 				// Dirección
-				int dir = Integer.parseInt(text.substring(1, text.length() - 1));
+				int dir = scan.nextAddress();
 				switch(what) {
 				case 0:
 					while (scan.hasNextInt()) {
@@ -106,37 +176,37 @@ public class VLIWMachine {
 					break;
 				}
 			}
+			else {
+				scan.skip();
+			}
 		}
-		scan.close();
 	}
 
 	/**
 	 * Compara el contenido de memoria y registros con el contenido definido en un fichero que, al menos, debe tener 3 líneas con las cadenas
-	 * "#GPR", "#FPR" y "#MEM". Imprime por pantalla las diferencias encontradas.
+	 * "#GPR", "#FPR" y "#MEM", o en una imagen binaria ({@link MemoryImage}). Imprime por pantalla las diferencias encontradas.
 	 * @param fileName Nombre del fichero que define los contenidos de registros y memoria a comparar con el estado actual de la máquina
-	 * @throws FileNotFoundException Si el fichero indicado no existe
+	 * @throws IOException Si el fichero indicado no existe o no se pudo leer
 	 * @throws SIMDEException Errores de ejecución, como intentar acceder a una dirección de memoria no válida. En este caso, se indicará el error por pantalla y se continuará con la comparación del resto de contenido.
 	 */
-	public int compareMemoryAndRegisters(String fileName) throws FileNotFoundException, SIMDEException {
+	public int compareMemoryAndRegisters(String fileName) throws IOException, SIMDEException {
+		if (MemoryImage.isImage(fileName))
+			return compareMemoryAndRegisters(new MemoryImage(fileName));
 		int errors = 0;
-		final File memFile = new File(fileName);
-		Scanner scan;
+		final TextTokenizer scan = new TextTokenizer(fileName);
 		int what = -1;
-		scan = new Scanner(memFile);
-		scan.useLocale(Locale.ENGLISH);
 		while (scan.hasNext()) {
-			final String text = scan.next();
-			if (GPRegisterBank.STR.equals(text)) {
+			if (scan.skip(GPRegisterBank.STR)) {
 				what = 0;					
 			}
-			else if (FPRegisterBank.STR.equals(text)) {
+			else if (scan.skip(FPRegisterBank.STR)) {
 				what = 1;					
 			}
-			else if (Memory.STR.equals(text)) {
+			else if (scan.skip(Memory.STR)) {
 				what = 2;					
 			}
-			else if (text.startsWith(STR_START_DIR)) {
-				int dir = Integer.parseInt(text.substring(1, text.length() - 1));
+			else if (scan.startsWith(START_DIR)) {
+				int dir = scan.nextAddress();
 				switch(what) {
 				case 0:
 					while (scan.hasNextInt()) {
@@ -169,18 +239,77 @@ public class VLIWMachine {
 					break;
 				}
 			}
+			else {
+				scan.skip();
+			}
 		}
-		scan.close();
 		return errors;
 	}
 
+	/**
+	 * Compara el contenido de memoria y registros con el de una imagen binaria. Igual que con los ficheros de texto, solo se comparan
+	 * las posiciones guardadas en la imagen, y no se comparan los registros de predicado
+	 * @param image Imagen binaria con los contenidos de registros y memoria a comparar con el estado actual de la máquina
+	 * @return Número de diferencias encontradas
+	 * @throws IOException Si la imagen está incompleta
+	 * @throws SIMDEException Si la imagen no cabe en la memoria o los registros de la máquina
+	 */
+	private int compareMemoryAndRegisters(MemoryImage image) throws IOException, SIMDEException {
+		final GPRegisterBank expectedGpr = new GPRegisterBank(gpr.getSize());
+		final FPRegisterBank expectedFpr = new FPRegisterBank(fpr.getSize());
+		final Memory expectedMem = new Memory(mem.getSize(), 0.0, 0);
+		image.load(expectedGpr, expectedFpr, null, expectedMem);
+		int errors = 0;
+		final BitSet gprWritten = expectedGpr.getWritten();
+		for (int dir = gprWritten.nextSetBit(0); dir >= 0; dir = gprWritten.nextSetBit(dir + 1)) {
+			if (gpr.read(dir) != expectedGpr.read(dir)) {
+				errors++;
+				System.out.println("Diferencia en GPR[" + dir + "]: " + gpr.read(dir) + " vs " + expectedGpr.read(dir));
+			}
+		}
+		final BitSet fprWritten = expectedFpr.getWritten();
+		for (int dir = fprWritten.nextSetBit(0); dir >= 0; dir = fprWritten.nextSetBit(dir + 1)) {
+			if (fpr.read(dir) != expectedFpr.read(dir)) {
+				errors++;
+				System.out.println("Diferencia en FPR[" + dir + "]: " + fpr.read(dir) + " vs " + expectedFpr.read(dir));
+			}
+		}
+		final BitSet memWritten = expectedMem.getWritten();
+		for (int dir = memWritten.nextSetBit(0); dir >= 0; dir = memWritten.nextSetBit(dir + 1)) {
+			if (mem.read(dir) != expectedMem.read(dir)) {
+				errors++;
+				System.out.println("Diferencia en MEM[" + dir + "]: " + mem.read(dir) + " vs " + expectedMem.read(dir));
+			}
+		}
+		return errors;
+	}
+
+	/**
+	 * Guarda el contenido de memoria y registros en una imagen binaria ({@link MemoryImage}), que se puede volver a cargar con
+	 * {@link #loadMemoryAndRegisters(String)}
+	 * @param fileName Nombre del fichero. Si ya existe, se sobrescribe
+	 * @throws IOException Si no se pudo escribir el fichero
+	 * @throws SIMDEException Errores de acceso a la memoria
+	 */
+	public void saveMemoryAndRegisters(String fileName) throws IOException, SIMDEException {
+		MemoryImage.save(fileName, gpr, fpr, pred, mem);
+	}
+
 	/**
 	 * Imprime por pantalla el contenido de memoria y registros
 	 */
 	public void printMemoryAndRegisters() {
-		System.out.print(gpr);
-		System.out.print(fpr);
-		System.out.print(mem);
+		printMemoryAndRegisters(System.out);
+	}
+
+	/**
+	 * Imprime el contenido de memoria y registros con el formato de los ficheros de texto de memoria y registros
+	 * @param out Flujo en el que se imprime
+	 */
+	public void printMemoryAndRegisters(PrintStream out) {
+		out.print(gpr);
+		out.print(fpr);
+		out.print(mem);
 	}
 
 	/**
@@ -194,189 +323,46 @@ public class VLIWMachine {
 	}
 	
 	/**
-	 * Busca y establece los valores de los operandos en tiempo de ejecución
-	 * @param op Operación que encapsula la instrucción secuencial que se quiere ejecutar
-	 */
-	private void setOperandValues(LongInstructionOperation op) {
-		double []values = new double[2];
-		final Instruction inst = op.getInstruction();
-		switch (inst.getOpcode()) {
-		case ADD:
-		case SUB:
-		case AND:
-		case NOR:
-		case OR:
-		case XOR:
-		case MULT:
-		case SLLV:
-		case SRLV:
-			values[0] = gpr.read(inst.getOp()[1]);
-			values[1] = gpr.read(inst.getOp()[2]);
-			break;
-		case ADDF:
-		case SUBF:
-		case MULTF:
-			values[0] = fpr.read(inst.getOp()[1]);
-			values[1] = fpr.read(inst.getOp()[2]);
-			break;
-		case ADDI:
-			values[0] = gpr.read(inst.getOp()[1]);
-			values[1] = inst.getOp()[2];
-			break;
-		case BEQ:
-		case BGT:
-		case BNE:
-			values[0] = gpr.read(inst.getOp()[0]);
-			values[1] = gpr.read(inst.getOp()[1]);
-			break;
-		case BGTF:
-		case BEQF:
-		case BNEF:
-			values[0] = fpr.read(inst.getOp()[0]);
-			values[1] = fpr.read(inst.getOp()[1]);
-			break;
-		case LF:
-		case LW:
-			values[0] = inst.getOp()[1] + gpr.read(inst.getOp()[2]);
-			values[1] = 0.0;
-			break;
-		case SF:
-			values[0] = inst.getOp()[1] + gpr.read(inst.getOp()[2]);
-			values[1] = fpr.read(inst.getOp()[0]);
-			break;
-		case SW:
-			values[0] = inst.getOp()[1] + gpr.read(inst.getOp()[2]);
-			values[1] = gpr.read(inst.getOp()[0]);
-			break;
-		default:
-			break;
-		
-		}
-		op.setOperandValues(values);
-	}
-	
-	/**
-	 * Finaliza la ejecución de una instrucción
+	 * Finaliza la ejecución de una instrucción. La semántica de cada instrucción la define su código de operación 
+	 * ({@link Opcode#execute(GPRegisterBank, FPRegisterBank, Memory, int, OperandValues)}); aquí solo se tratan los predicados, 
+	 * los saltos y los fallos de caché
 	 * @param action Acción que encapsula a la instrucción
-	 * @return Si es un salto, -1 si no se toma, o el PC resultante si se toma
+	 * @return Si es un salto que se toma, el PC resultante; {@link #CACHE_MISS} si es un acceso a memoria que provoca un fallo 
+	 * de caché (en ese caso la instrucción no se finaliza); o {@link #NO_JUMP} en cualquier otro caso
 	 * @throws SIMDEException Errores de ejecución
 	 */
 	private int execute(Action action) throws SIMDEException {
-		int newPc = -1;
-		final LongInstructionOperation op = action.getOper();
-		if (pred.read(op.getPred())) {
-			int op1, op2;
-			double opFP1, opFP2;
-			final Instruction inst = op.getInstruction();
-			switch (inst.getOpcode().getFU()) {
-			case FP_ADD:
-				opFP1 = op.getOperand1Value();
-				opFP2 = op.getOperand2Value();
-				switch(inst.getOpcode()) {
-				case ADDF:	fpr.write(inst.getOp()[0], opFP1 + opFP2);	break;
-				case SUBF:	fpr.write(inst.getOp()[0], opFP1 - opFP2);	break;
-				default:
-					throw new SIMDEException("Código de operación inesperado en la unidad de suma de punto flotante: " + inst.getOpcode());
-				}
-				break;
-			case FP_MULT:
-				opFP1 = op.getOperand1Value();
-				opFP2 = op.getOperand2Value();
-				if (Opcode.MULTF.equals(inst.getOpcode()))
-					fpr.write(inst.getOp()[0], opFP1 * opFP2);
-				else
-					throw new SIMDEException("Código de operación inesperado en la unidad de multiplicación de punto flotante: " + inst.getOpcode());
-				break;
-			case INT_ADD:
-				op1 = (int)op.getOperand1Value();
-				op2 = (int)op.getOperand2Value();
-				switch (inst.getOpcode()) {
-				case ADD:
-				case ADDI:	gpr.write(inst.getOp()[0], op1 + op2);		break;
-				case AND:	gpr.write(inst.getOp()[0], op1 & op2);		break;
-				case NOR:	gpr.write(inst.getOp()[0], ~(op1 | op2));	break;
-				case OR:	gpr.write(inst.getOp()[0], op1 | op2);		break;
-				case SLLV:	gpr.write(inst.getOp()[0], op1 << op2);		break;
-				case SRLV:	gpr.write(inst.getOp()[0], op1 >> op2);		break;
-				case SUB:	gpr.write(inst.getOp()[0], op1 - op2);		break;
-				case XOR:	gpr.write(inst.getOp()[0], op1 ^ op2);		break;
-				default:
-					throw new SIMDEException("Código de operación inesperado en la unidad de suma entera: " + inst.getOpcode());
-				}
-				break;
-			case INT_MULT:
-				op1 = (int)op.getOperand1Value();
-				op2 = (int)op.getOperand2Value();
-				if (Opcode.MULT.equals(inst.getOpcode()))
-					gpr.write(inst.getOp()[0], op1 * op2);
-				else
-					throw new SIMDEException("Código de operación inesperado en la unidad de multiplicación entera: " + inst.getOpcode());
-				break;
-			case JUMP:
-				boolean cond = false;
-				switch (inst.getOpcode()) {
-				case BEQ: 
-					op1 = (int)op.getOperand1Value();
-					op2 = (int)op.getOperand2Value();
-					cond = (op1 == op2);	
-					break;
-				case BGT: 
-					op1 = (int)op.getOperand1Value();
-					op2 = (int)op.getOperand2Value();
-					cond = (op1 > op2);	
-					break;
-				case BNE: 
-					op1 = (int)op.getOperand1Value();
-					op2 = (int)op.getOperand2Value();
-					cond = (op1 != op2);	
-					break;
-				case BEQF: 
-					opFP1 = op.getOperand1Value();
-					opFP2 = op.getOperand2Value();
-					cond = (opFP1 == opFP2);
-					break;
-				case BGTF: 
-					opFP1 = op.getOperand1Value();
-					opFP2 = op.getOperand2Value();
-					cond = (opFP1 > opFP2);
-					break;
-				case BNEF: 
-					opFP1 = op.getOperand1Value();
-					opFP2 = op.getOperand2Value();
-					cond = (opFP1 != opFP2);
-					break;
-				default:
-					throw new SIMDEException("Código de operación inesperado en la unidad de salto: " + inst.getOpcode());
+		int newPc = NO_JUMP;
+		final int k = action.getOper();
+		if (pred.read(code.getPred(k))) {
+			final Opcode opcode = code.getOpcode(k);
+			final FunctionalUnit fu = opcode.getFU();
+			if (fu == FunctionalUnit.MEM) {
+				// El acceso se busca en el modelo de caché la primera vez que se intenta finalizar, aunque ya haya fallado en el sorteo
+				if (!action.isLookedUp()) {
+					final int address = (int)action.getOperand1Value();
+					final boolean write = (code.getDest(k) == DecodedVLIWCode.NONE);
+					if (accessTrace != null)
+						traceAccess(code.getInstruction(k).getId(), address, write);
+					action.lookUp(mem.access(address, write));
 				}
+				// La instrucción no se finaliza hasta que se resuelva el fallo
+				if (!action.isCached())
+					return CACHE_MISS;
+			}
+			final boolean cond = opcode.execute(gpr, fpr, mem, code.getDest(k), action);
+			if (fu == FunctionalUnit.JUMP) {
 				if (cond)
-					newPc = ((LongInstructionJumpOperation)op).getDestination();
-				pred.write(((LongInstructionJumpOperation)op).getPredTrue(), cond);
-				pred.write(((LongInstructionJumpOperation)op).getPredFalse(), !cond);
-				break;
-			case MEM:
-				if (action.isCached()) {
-					switch (inst.getOpcode()) {
-					case LF: fpr.write(inst.getOp()[0], mem.read((int)op.getOperand1Value()));		break;
-					case LW: gpr.write(inst.getOp()[0], (int)mem.read((int)op.getOperand1Value()));	break;
-					case SF: mem.write((int)op.getOperand1Value(), op.getOperand2Value());			break;
-					case SW: mem.write((int)op.getOperand1Value(), (int)op.getOperand2Value());		break;
-					default:
-						throw new SIMDEException("Código de operación inesperado en la unidad de memoria: " + inst.getOpcode());
-					}
-				}
-				else {
-					throw new CacheFailException();
-				}
-				break;
-			default:
-				throw new SIMDEException("Unidad funcional desconocida: " + inst.getOpcode().getFU());
+					newPc = code.getTarget(k);
+				pred.write(code.getPredTrue(k), cond);
+				pred.write(code.getPredFalse(k), !cond);
 			}
 			if (debugMode)
-				System.out.println("\tFINAL:\t" + op.getInstruction());
+				System.out.println("\tFINAL:\t" + code.getInstruction(k));
 		}
 		else  {
 			if (debugMode) {
-				System.out.println("\tCANCELADA:\t" + op.getInstruction());						
+				System.out.println("\tCANCELADA:\t" + code.getInstruction(k));						
 			}
 		}
 		return newPc;
@@ -384,129 +370,455 @@ public class VLIWMachine {
 
 	/**
 	 * Planifica las operaciones para que se terminen de ejecutar cuando corresponda
-	 * @param inst Instrucción larga que contiene las operaciones a planificar
+	 * @param pc Posición de la instrucción larga que contiene las operaciones a planificar
 	 * @param cycle Ciclo de reloj en que se está comenzando la ejecución de esta instrucción larga
 	 */
-	private void schedule(LongInstruction inst, int cycle) {
-		final ArrayList<LongInstructionOperation> opers = inst.getValidOperations();
-		for (LongInstructionOperation op : opers) {
+	private void schedule(int pc, int cycle) {
+		final int last = code.getLast(pc);
+		for (int k = code.getFirst(pc); k < last; k++) {
 			if (debugMode)
-				System.out.println("\tCOMIENZO:\t" + op.getInstruction());
-			setOperandValues(op);
-			actionList.add(new Action(cycle + latencies[op.getInstruction().getOpcode().getFU().ordinal()] - 1, op));
+				System.out.println("\tCOMIENZO:\t" + code.getInstruction(k));
+			final Action action = newAction(cycle + code.getLatency(k) - 1, k);
+			code.getOpcode(k).fetch(gpr, fpr, code.getSrc1(k), code.getSrc2(k), code.getImm(k), action);
+			actionList.add(action);
 		}
 	}
 	
 	/**
-	 * Devuelve las instrucciones cuya ejecución está planificada para terminarse en el ciclo que se indica
-	 * @param cycle Ciclo de ejecución de la máquina
-	 * @return Instrucciones cuya ejecución está planificada para terminarse en el ciclo que se indica
+	 * Devuelve una acción para ejecutar la operación "oper" el ciclo "cycle". Las acciones se reutilizan, así que 
+	 * solo se crea una nueva si no queda ninguna libre
+	 * @param cycle Ciclo de la rueda temporal en el que se va a finalizar la ejecución de la operación
+	 * @param oper Posición de la operación en el código decodificado
+	 * @return Acción para ejecutar la operación
 	 */
-	private ArrayList<Action> getValidActions(int cycle) {
-		final ArrayList<Action> list = new ArrayList<>();
-		boolean more = true;
-		while (more) {
-			if (actionList.isEmpty())
-				more = false;
-			else {
-				final Action currentAction = actionList.peek();
-				if (currentAction.getCycle() == cycle) {
-					if (currentAction.getOper() instanceof LongInstructionJumpOperation) {
-						list.add(0, actionList.poll());
-					}
-					else {
-						list.add(actionList.poll());
-					}
+	private Action newAction(int cycle, int oper) {
+		final Action action = (nFreeActions == 0) ? new Action() : freeActions[--nFreeActions];
+		action.init(cycle, oper);
+		return action;
+	}
+	
+	/**
+	 * Devuelve una acción para ejecutar la operación "oper" el ciclo "cycle", cuando ya se sabe si produce fallo de caché
+	 * @param cycle Ciclo de la rueda temporal en el que se va a finalizar la ejecución de la operación
+	 * @param oper Posición de la operación en el código decodificado
+	 * @param cached Falso si es un acceso a memoria que produce un fallo de caché
+	 * @param epoch Época de burbujas en la que se planificó la operación
+	 * @return Acción para ejecutar la operación
+	 */
+	private Action newAction(int cycle, int oper, boolean cached, int epoch) {
+		final Action action = (nFreeActions == 0) ? new Action() : freeActions[--nFreeActions];
+		action.init(cycle, oper, cached, epoch);
+		return action;
+	}
+	
+	/**
+	 * Devuelve una acción ya finalizada para poder reutilizarla
+	 * @param action Acción finalizada
+	 */
+	private void releaseAction(Action action) {
+		if (nFreeActions == freeActions.length) {
+			final Action[] aux = new Action[nFreeActions * 2];
+			System.arraycopy(freeActions, 0, aux, 0, nFreeActions);
+			freeActions = aux;
+		}
+		freeActions[nFreeActions++] = action;
+	}
+	
+	/**
+	 * Decodifica el código de instrucciones largas para las latencias de esta máquina. Se guardan los últimos códigos decodificados 
+	 * (hasta {@link #MAX_DECODED}), de manera que ejecutar varias veces el mismo código, o alternar entre varias planificaciones, solo 
+	 * decodifica cada código la primera vez
+	 * @param vliwCode Código de instrucciones largas
+	 * @return Código decodificado
+	 */
+	private DecodedVLIWCode decode(VLIWCode vliwCode) {
+		for (int i = 0; i < decoded.size(); i++) {
+			final DecodedVLIWCode dCode = decoded.get(i);
+			if (dCode.getCode() == vliwCode) {
+				if (i > 0) {
+					decoded.remove(i);
+					decoded.add(0, dCode);
 				}
-				else
-					more = false;
+				return dCode;
 			}
 		}
-		return list;
+		final DecodedVLIWCode dCode = new DecodedVLIWCode(vliwCode, latencies);
+		decoded.add(0, dCode);
+		if (decoded.size() > MAX_DECODED)
+			decoded.remove(MAX_DECODED);
+		return dCode;
+	}
+	
+	/**
+	 * Devuelve las instrucciones cuya ejecución está planificada para terminarse en el ciclo que se indica. Las instrucciones de salto
+	 * se devuelven siempre las primeras, y el resto ordenadas por tipo de unidad funcional.
+	 * La lista devuelta se reutiliza en cada llamada.
+	 * @param cycle Ciclo de ejecución de la máquina
+	 * @return Instrucciones cuya ejecución está planificada para terminarse en el ciclo que se indica
+	 */
+	private ArrayList<Action> getValidActions(int cycle) {
+		validActions.clear();
+		actionList.poll(cycle, validActions);
+		return validActions;
 	}
 	
 	/**
 	 * Añade una burbuja en la ejecución por, por ejemplo, un fallo de caché.
 	 * 
-	 * Lo que hace es replanificar todas las tareas.
+	 * La rueda temporal no avanza durante la burbuja, así que basta con acumular la penalización en el desplazamiento
+	 * del reloj: todas las tareas pendientes quedan retrasadas sin tener que replanificarlas. Además, se abre una nueva 
+	 * época, de manera que las tareas pendientes ya no pueden provocar un fallo de caché.
 	 * @param latency Penalización en ciclos de ejecución
 	 */
 	private void addStall(int latency) {
-		Action[] actions = new Action[actionList.size()];
-		actions = actionList.toArray(actions);
-		actionList.clear();
-		for (Action prevAction : actions) {
-			actionList.add(new Action(prevAction, latency));
+		stallCycles += latency;
+		stallEpoch++;
+	}
+	
+	/**
+	 * Finaliza las operaciones planificadas para el ciclo actual y resuelve los fallos de caché que provoquen
+	 * @return Si se finalizó un salto que se toma, el PC resultante; {@link #NO_JUMP} en otro caso
+	 * @throws SIMDEException Errores de ejecución
+	 */
+	private int retire() throws SIMDEException {
+		int branchDestinationPC = NO_JUMP;
+		final ArrayList<Action> actions = getValidActions(cycle);
+		// Se recorre por índice para no crear un iterador en cada ciclo
+		for (int i = 0; i < actions.size(); i++) {
+			final Action action = actions.get(i);
+			final int potentialPC = execute(action);
+			if (potentialPC == CACHE_MISS)
+				// Colocamos la acción que provocó el fallo en la lista de pendientes
+				pendingActions.add(action);
+			else {
+				if (potentialPC != NO_JUMP)
+					branchDestinationPC = potentialPC;
+				releaseAction(action);
+			}
+		}
+		resolveCacheMisses();
+		if (trace != null)
+			recordCycle(actions);
+		return branchDestinationPC;
+	}
+	
+	/**
+	 * Sortea si un acceso a memoria que comienza ahora produce un fallo de caché. Mientras se graba una traza no se produce ningún fallo
+	 * @param oper Posición del acceso en el código decodificado
+	 * @return Falso si el acceso produce un fallo de caché
+	 */
+	private boolean drawCached(int oper) {
+		nDraws++;
+		if (trace != null) {
+			trace.addDraw(code.getInstruction(oper).getId());
+			return true;
+		}
+		if (commonRandomNumbers)
+			return getInstructionMisses(code.getInstruction(oper).getId()).nextCached();
+		return misses.nextCached();
+	}
+	
+	/**
+	 * Devuelve el generador de fallos de caché de una instrucción secuencial. Su semilla solo depende de la semilla de la máquina y 
+	 * del identificador de la instrucción
+	 * @param id Identificador de la instrucción secuencial
+	 * @return Generador de fallos de caché de la instrucción
+	 */
+	private CacheMissGenerator getInstructionMisses(int id) {
+		if (id >= instructionMisses.length)
+			instructionMisses = Arrays.copyOf(instructionMisses, id + 1);
+		if (instructionMisses[id] == null) {
+			instructionMisses[id] = new CacheMissGenerator(mem.getCacheMissRate());
+			instructionMisses[id].setSeed(ReplicaRunner.getSeed(seed, id));
+		}
+		return instructionMisses[id];
+	}
+	
+	/**
+	 * Añade a la traza que se está grabando los accesos a memoria finalizados en el ciclo actual, y comprueba si el resultado
+	 * de alguno de ellos podría cambiar al finalizarlo al final del ciclo por un fallo de caché
+	 * @param actions Acciones finalizadas en el ciclo actual
+	 */
+	private void recordCycle(ArrayList<Action> actions) {
+		final int memFU = FunctionalUnit.MEM.ordinal();
+		boolean hasMem = false;
+		for (int i = 0; i < actions.size(); i++) {
+			final Action action = actions.get(i);
+			final int k = action.getOper();
+			if (action.getFU() == memFU && pred.read(code.getPred(k))) {
+				trace.add(action.getDraw(), cycle - code.getLatency(k) + 1, cycle, (int)action.getOperand1Value(), code.getDest(k) == DecodedVLIWCode.NONE);
+				hasMem = true;
+			}
+		}
+		if (!hasMem || !trace.isExact())
+			return;
+		for (int i = 0; i < actions.size(); i++) {
+			final Action a1 = actions.get(i);
+			if (!pred.read(code.getPred(a1.getOper())))
+				continue;
+			for (int j = i + 1; j < actions.size(); j++) {
+				final Action a2 = actions.get(j);
+				if ((a1.getFU() == memFU || a2.getFU() == memFU) && pred.read(code.getPred(a2.getOper())) && conflict(a1, a2)) {
+					trace.setInexact();
+					return;
+				}
+			}
 		}
 	}
 	
 	/**
-	 * Ejecuta el código de instrucciones largas indicado en esta máquina
+	 * Devuelve verdadero si el resultado de dos acciones finalizadas en el mismo ciclo depende del orden en que se finalicen: 
+	 * escriben el mismo registro, o acceden a la misma dirección de memoria y alguna es un almacenamiento. Los saltos siempre
+	 * se finalizan los primeros, así que nunca dependen del orden
+	 * @param a1 Primera acción
+	 * @param a2 Segunda acción
+	 * @return Verdadero si el resultado de las dos acciones depende del orden en que se finalicen
+	 */
+	private boolean conflict(Action a1, Action a2) {
+		final int jumpFU = FunctionalUnit.JUMP.ordinal();
+		if (a1.getFU() == jumpFU || a2.getFU() == jumpFU)
+			return false;
+		final int k1 = a1.getOper();
+		final int k2 = a2.getOper();
+		final int dest1 = code.getDest(k1);
+		final int dest2 = code.getDest(k2);
+		// El primer operando de las instrucciones que escriben un registro indica el banco de registros
+		if (dest1 != DecodedVLIWCode.NONE && dest1 == dest2 && code.getOpcode(k1).getOperands()[0] == code.getOpcode(k2).getOperands()[0])
+			return true;
+		final int memFU = FunctionalUnit.MEM.ordinal();
+		return a1.getFU() == memFU && a2.getFU() == memFU && (dest1 == DecodedVLIWCode.NONE || dest2 == DecodedVLIWCode.NONE)
+				&& (int)a1.getOperand1Value() == (int)a2.getOperand1Value();
+	}
+	
+	/**
+	 * Si hubo fallos de caché en el ciclo actual, añade la burbuja correspondiente y finaliza las acciones que los provocaron
+	 * @throws SIMDEException Errores de ejecución
+	 */
+	private void resolveCacheMisses() throws SIMDEException {
+		// Si hubo fallos de caché, tenemos que meter burbujas en la ejecución, lo que retrasa la ejecución de las tareas pendientes
+		if (pendingActions.size() > 0) {
+			addStall(mem.getCacheMissPenalty());
+			if (debugMode) {
+				System.out.println("¡FALLO CACHE! Añadiendo penalización: " + mem.getCacheMissPenalty());
+				System.out.println("CICLO: " + (cycle + stallCycles) + "\tPC: " + pc);
+			}
+			// Ejecutamos las acciones que provocaron el fallo (puede haber más de un fallo de caché)
+			while (pendingActions.size() > 0) {
+				final Action action = pendingActions.remove(0);
+				// No puede fallar dos veces seguidas
+				action.setCached();
+				// Se lanza ignorando el PC de salida, que se tuvo que haber calculado antes
+				execute(action);
+				releaseAction(action);
+			}
+		}
+	}
+	
+	/**
+	 * Ejecuta el código de instrucciones largas indicado en esta máquina. Si está activado el modo compilado (ver {@link #setCompiled(boolean)}) 
+	 * y no se está en modo de depuración, los bloques del código que se puedan compilar se ejecutan compilados, y el resto con el intérprete
 	 * @param code Código de instrucciones largas
 	 * @return El número de ciclos que tardó la ejecución
 	 */
 	public int execute(VLIWCode code) {
-		int cycle = 0;
-		int pc = 0;
+		cycle = 0;
+		pc = 0;
 		boolean stop = false;
+		stallCycles = 0;
+		stallEpoch = 0;
+		nDraws = 0;
+		// Por si una ejecución anterior terminó con un error y dejó acciones pendientes
+		actionList.clear();
+		pendingActions.clear();
+		this.code = decode(code);
+		final CompiledBlock[] blocks = (compiled && !debugMode && trace == null && accessTrace == null) ? getCompiledBlocks() : null;
 		
 		if (debugMode)
 			System.out.println("CICLO: " + cycle + "\tPC: " + pc);
 		try {
-			schedule(code.getInstruction(pc), cycle);
-			final ArrayList<Action> pendingActions = new ArrayList<>();
 			do {
-				int branchDestinationPC = -1;
-				// Se ejecutan las operaciones correspondientes a este ciclo
-				final ArrayList<Action> actions = getValidActions(cycle);
-				for (Action action : actions) {
-					try {
-						int potentialPC = execute(action);
-						if (potentialPC != -1)
-							branchDestinationPC = potentialPC;  
-					} catch (CacheFailException e) {
-						// Colocamos la acción que provocó el fallo en la lista de pendientes
-						pendingActions.add(action);
-					}
-				}
-				// Si hubo fallos de caché, tenemos que meter burbujas en la ejecución. 
-				// Además, retrasamos la ejecución de las tareas pendientes. La forma no es muy eficiente (sacar todas las acciones y volver a meterlas, pero es lo más seguro
-				// También esto asegura que la acción que provocó el fallo de caché se replanifique cuando corresponda
-				if (pendingActions.size() > 0) {
-					addStall(mem.getCacheMissPenalty());
-					cycle += mem.getCacheMissPenalty();
-					if (debugMode) {
-						System.out.println("¡FALLO CACHE! Añadiendo penalización: " + mem.getCacheMissPenalty());
-						System.out.println("CICLO: " + cycle + "\tPC: " + pc);
-					}
-					// Ejecutamos las acciones que provocaron el fallo (puede haber más de un fallo de caché)
-					while (pendingActions.size() > 0) {
-						final Action action = pendingActions.remove(0);
-						// No puede fallar dos veces seguidas
-						action.setCached();
-						// Se lanza ignorando el PC de salida, que se tuvo que haber calculado antes
-						execute(action);
-					}
+				// Solo se puede entrar en un bloque compilado si no hay ningún salto en curso
+				final CompiledBlock block = (blocks == null || stop || actionList.hasJumps()) ? null : blocks[pc];
+				if (block != null) {
+					pc = block.run(context);
 				}
-				// Avanzamos el PC y el ciclo
-				cycle++;
-				pc = (branchDestinationPC != -1) ? branchDestinationPC : pc + 1;
-				if (debugMode)
-					System.out.println("CICLO: " + cycle + "\tPC: " + pc);
-				// Planificamos las operaciones asociadas a la nueva instrucción larga
-				if (code.isHalt(pc))
-					stop = true;
 				else {
-					schedule(code.getInstruction(pc), cycle);
-					stop = false;
+					// Planificamos las operaciones asociadas a la nueva instrucción larga
+					if (!stop)
+						schedule(pc, cycle);
+					// Se ejecutan las operaciones correspondientes a este ciclo
+					final int branchDestinationPC = retire();
+					// Avanzamos el PC y el ciclo
+					cycle++;
+					pc = (branchDestinationPC != NO_JUMP) ? branchDestinationPC : pc + 1;
+					if (debugMode)
+						System.out.println("CICLO: " + (cycle + stallCycles) + "\tPC: " + pc);
 				}
+				stop = this.code.isHalt(pc);
 			} while (!stop || !actionList.isEmpty());
 		} catch (SIMDEException e) {
 			e.printStackTrace();
 		}
-		return cycle;
+		return cycle + stallCycles;
+	}
+	
+	/**
+	 * Ejecuta el código de instrucciones largas indicado sin fallos de caché y graba la traza de sus accesos a memoria. Después, cada 
+	 * réplica puede obtener su número de ciclos con {@link #replay(MemoryTrace)} sin volver a ejecutar el programa. Al terminar, el estado 
+	 * de la máquina es el mismo que tras cualquier otra ejecución, siempre que la traza sea exacta (ver {@link MemoryTrace#isExact()}).
+	 * La traza se graba siempre con el intérprete. Con un modelo de caché (ver {@link #setCacheModel(CacheModel)}) los fallos dependen de
+	 * las direcciones y no de un sorteo, así que la traza nunca es exacta
+	 * @param code Código de instrucciones largas
+	 * @return Traza de los accesos a memoria de la ejecución
+	 */
+	public MemoryTrace record(VLIWCode code) {
+		final MemoryTrace newTrace = new MemoryTrace();
+		if (mem.getCacheModel() != null)
+			newTrace.setInexact();
+		trace = newTrace;
+		try {
+			newTrace.finish(execute(code));
+		} finally {
+			trace = null;
+		}
+		return newTrace;
 	}
 	
+	/**
+	 * Sortea los fallos de caché de esta máquina sobre una traza grabada con {@link #record(VLIWCode)}, usando su generador de fallos, 
+	 * y devuelve el número de ciclos resultante. No modifica la memoria ni los registros
+	 * @param trace Traza de los accesos a memoria del código
+	 * @return El número de ciclos que tardaría la ejecución
+	 */
+	public int replay(MemoryTrace trace) {
+		if (!commonRandomNumbers)
+			return trace.replay(misses, mem.getCacheMissPenalty());
+		final boolean[] miss = new boolean[trace.getNDraws()];
+		for (int draw = 0; draw < miss.length; draw++)
+			miss[draw] = !getInstructionMisses(trace.getDrawInstruction(draw)).nextCached();
+		return trace.replay(miss, mem.getCacheMissPenalty());
+	}
+	
+	/**
+	 * Calcula la distribución exacta del número de ciclos con la tasa de fallos y la penalización de esta máquina a partir de una
+	 * traza grabada con {@link #record(VLIWCode)}, sin lanzar réplicas (ver {@link CycleDistribution})
+	 * @param trace Traza de los accesos a memoria del código
+	 * @return Distribución del número de ciclos de la ejecución
+	 */
+	public CycleDistribution getDistribution(MemoryTrace trace) {
+		return trace.getDistribution(mem.getCacheMissRate(), mem.getCacheMissPenalty());
+	}
+	
+	/**
+	 * Devuelve los bloques compilados del código actual, y prepara los valores de los operandos que usan
+	 * @return El bloque compilado que comienza en cada instrucción larga, o null si no hay ninguno
+	 */
+	private CompiledBlock[] getCompiledBlocks() {
+		if (operandValues == null || operandValues.length != code.getNOperations()) {
+			operandValues = new OperandValues[code.getNOperations()];
+			for (int k = 0; k < operandValues.length; k++)
+				operandValues[k] = new OperandValues();
+		}
+		return code.getCompiledBlocks();
+	}
+	
+	/**
+	 * Establece la semilla del generador de números aleatorios de los fallos de caché
+	 * @param seed Semilla del generador de números aleatorios
+	 */
+	public void setSeed(long seed) {
+		misses.setSeed(seed);
+		this.seed = seed;
+		Arrays.fill(instructionMisses, null);
+	}
+	
+	/**
+	 * Devuelve el modelo de caché que decide los fallos según las direcciones (ver {@link Memory#getCacheModel()})
+	 * @return Modelo de caché, o null si solo se usa la tasa de fallos aleatoria
+	 */
+	public CacheModel getCacheModel() {
+		return mem.getCacheModel();
+	}
+
+	/**
+	 * Establece el modelo de caché que decide los fallos según las direcciones (ver {@link Memory#setCacheModel(CacheModel)}). El 
+	 * acceso que falla en el modelo se finaliza al final del ciclo, tras una burbuja que comparte con el resto de fallos del ciclo. A 
+	 * diferencia de los fallos sorteados, un fallo del modelo se penaliza aunque se haya añadido otra burbuja mientras el acceso estaba en
+	 * curso (ver {@link Action#isCached()})
+	 * @param cache Modelo de caché, o null para usar solo la tasa de fallos aleatoria
+	 */
+	public void setCacheModel(CacheModel cache) {
+		mem.setCacheModel(cache);
+	}
+	
+	/**
+	 * Escribe un acceso a memoria en el fichero de accesos, con el ciclo de reloj actual
+	 * @param instruction Identificador de la instrucción secuencial que realiza el acceso
+	 * @param address Dirección del acceso
+	 * @param write Verdadero si es una escritura; falso si es una lectura
+	 * @throws SIMDEException Si no se pudo escribir en el fichero
+	 */
+	private void traceAccess(int instruction, int address, boolean write) throws SIMDEException {
+		try {
+			accessTrace.write(cycle + stallCycles, instruction, address, write);
+		} catch (IOException ex) {
+			throw new SIMDEException("No se pudo escribir la traza de accesos a memoria (" + ex.getMessage() + ")");
+		}
+	}
+
+	/**
+	 * Devuelve el fichero donde se escriben los accesos a memoria
+	 * @return Fichero donde se escriben los accesos a memoria, o null si no se escriben
+	 */
+	public AccessTraceWriter getAccessTrace() {
+		return accessTrace;
+	}
+
+	/**
+	 * Establece el fichero donde se escribe cada acceso a memoria que se realiza, con su ciclo de reloj, la instrucción secuencial que lo 
+	 * realiza, su dirección y si es una lectura o una escritura. Mientras se escriben los accesos se usa siempre el intérprete
+	 * @param accessTrace Fichero donde se escriben los accesos a memoria, o null para no escribirlos
+	 */
+	public void setAccessTrace(AccessTraceWriter accessTrace) {
+		this.accessTrace = accessTrace;
+	}
+	
+	/**
+	 * Devuelve verdadero si cada instrucción secuencial tiene su propia secuencia de fallos de caché
+	 * @return Verdadero si cada instrucción secuencial tiene su propia secuencia de fallos de caché
+	 */
+	public boolean isCommonRandomNumbers() {
+		return commonRandomNumbers;
+	}
+
+	/**
+	 * Establece si cada instrucción secuencial tiene su propia secuencia de fallos de caché, derivada de la semilla de la máquina 
+	 * y del identificador de la instrucción. Así, el k-ésimo acceso dinámico de una misma instrucción tiene el mismo fallo de caché 
+	 * en cualquier planificación del mismo código secuencial, y las diferencias entre planificaciones simuladas con la misma semilla 
+	 * solo se deben a la planificación (números aleatorios comunes)
+	 * @param commonRandomNumbers Verdadero si cada instrucción secuencial debe tener su propia secuencia de fallos de caché; falso 
+	 * si todos los accesos comparten la misma secuencia
+	 */
+	public void setCommonRandomNumbers(boolean commonRandomNumbers) {
+		this.commonRandomNumbers = commonRandomNumbers;
+	}
+	
+	/**
+	 * Devuelve verdadero si la máquina ejecuta los bloques compilados del código cuando puede
+	 * @return Verdadero si la máquina ejecuta los bloques compilados del código cuando puede
+	 */
+	public boolean isCompiled() {
+		return compiled;
+	}
+
+	/**
+	 * Establece si la máquina debe compilar el código a bytecode (ver {@link VLIWCompiler}). En modo de depuración se usa siempre el intérprete
+	 * @param compiled Verdadero si la máquina debe ejecutar los bloques compilados del código cuando pueda; falso si debe usar siempre el intérprete
+	 */
+	public void setCompiled(boolean compiled) {
+		this.compiled = compiled;
+	}
+
 	/**
 	 * Devuelve verdadero si la máquina está en modo de depuración
 	 * @return Verdadero si la máquina está en modo de depuración
@@ -524,39 +836,270 @@ public class VLIWMachine {
 	}
 
 	/**
-	 * Una estructura para poder simular la ejecución de las instrucciones. Indica una operación y el ciclo en que se espera que deba terminar la ejecución de la instrucción 
+	 * Rueda temporal ("timing wheel") con las acciones pendientes de finalizar. Tiene una casilla por cada ciclo futuro, hasta la 
+	 * latencia máxima de las UF, y dentro de cada casilla una lista por tipo de UF. La casilla de las UF de salto se trata aparte,
+	 * para que los saltos se finalicen siempre antes que el resto de operaciones del mismo ciclo. 
+	 * Tanto la inserción como la extracción de una acción tienen coste constante.
 	 * @author Iván Castilla
 	 *
 	 */
-	private class Action implements Comparable<Action> {
-		/** Ciclo de reloj en el que se va a finalizar la ejecución de esta instrucción */
-		private final int cycle;
-		/** Operación que encapsula la instrucción a finalizar */
-		private final LongInstructionOperation oper;
-		/** En el caso de las instrucciones de acceso a memoria, indica si el acceso producirá un fallo de caché (valor false). En el resto de casos, siempre es verdadero */
-		private boolean cached = true;
+	private class ActionWheel {
+		/** Capacidad inicial de cada lista de acciones */
+		private final static int INITIAL_CAPACITY = 2;
+		/** Acciones pendientes, indexadas por [casilla del ciclo][tipo de UF][orden de llegada] */
+		private final Action[][][] buckets;
+		/** Número de acciones en cada lista, indexado por [casilla del ciclo][tipo de UF] */
+		private final int[][] counts;
+		/** Máscara para obtener la casilla que corresponde a un ciclo */
+		private final int mask;
+		/** Número total de acciones pendientes */
+		private int size = 0;
+		/** Número de saltos pendientes */
+		private int nJumps = 0;
+
+		/**
+		 * Crea una rueda temporal con capacidad para planificar acciones hasta "maxLatency" ciclos en el futuro
+		 * @param maxLatency Máxima latencia de las UF de la máquina
+		 */
+		public ActionWheel(int maxLatency) {
+			int nSlots = 1;
+			while (nSlots < maxLatency)
+				nSlots <<= 1;
+			mask = nSlots - 1;
+			final int nFU = FunctionalUnit.values().length;
+			buckets = new Action[nSlots][nFU][INITIAL_CAPACITY];
+			counts = new int[nSlots][nFU];
+		}
 		
 		/**
-		 * Crea una nueva accin para ejecutar la operacin "oper" el ciclo "cycle"
-		 * @param cycle Ciclo de reloj en el que se va a finalizar la ejecucin de esta instruccin
-		 * @param oper Operacin que encapsula la instruccin a finalizar
+		 * Añade una acción en la casilla correspondiente a su ciclo de finalización
+		 * @param action Acción a añadir
 		 */
-		public Action(int cycle, LongInstructionOperation oper) {
-			this.cycle = cycle;
-			this.oper = oper;
-			if (FunctionalUnit.MEM.equals(oper.getInstruction().getOpcode().getFU())) {
-				cached = (rnd.nextDouble() >= mem.getCacheMissRate());
+		public void add(Action action) {
+			final int slot = action.getCycle() & mask;
+			final int fu = action.getFU();
+			final int n = counts[slot][fu];
+			if (n == buckets[slot][fu].length) {
+				final Action[] aux = new Action[n * 2];
+				System.arraycopy(buckets[slot][fu], 0, aux, 0, n);
+				buckets[slot][fu] = aux;
+			}
+			buckets[slot][fu][n] = action;
+			counts[slot][fu] = n + 1;
+			size++;
+			if (fu == FunctionalUnit.JUMP.ordinal())
+				nJumps++;
+		}
+		
+		/**
+		 * Extrae las acciones que terminan en el ciclo indicado y las añade a la lista: primero los saltos, y después el resto, 
+		 * en el orden en que están definidas las UF en {@link FunctionalUnit}
+		 * @param cycle Ciclo de ejecución de la máquina
+		 * @param list Lista donde se añaden las acciones extraídas
+		 */
+		public void poll(int cycle, ArrayList<Action> list) {
+			final int slot = cycle & mask;
+			pollFU(slot, FunctionalUnit.JUMP.ordinal(), list);
+			for (int fu = 0; fu < counts[slot].length; fu++) {
+				if (fu != FunctionalUnit.JUMP.ordinal())
+					pollFU(slot, fu, list);
+			}
+		}
+		
+		/**
+		 * Extrae las acciones de un tipo de UF que terminan en el ciclo indicado y las añade a la lista en el orden en que llegaron
+		 * @param cycle Ciclo de ejecución de la máquina
+		 * @param fu Índice del tipo de UF
+		 * @param list Lista donde se añaden las acciones extraídas
+		 */
+		public void poll(int cycle, int fu, ArrayList<Action> list) {
+			pollFU(cycle & mask, fu, list);
+		}
+		
+		/**
+		 * Extrae las acciones de una casilla y tipo de UF y las añade a la lista en el orden en que llegaron
+		 * @param slot Casilla de la rueda
+		 * @param fu Índice del tipo de UF
+		 * @param list Lista donde se añaden las acciones extraídas
+		 */
+		private void pollFU(int slot, int fu, ArrayList<Action> list) {
+			final Action[] actions = buckets[slot][fu];
+			final int n = counts[slot][fu];
+			for (int i = 0; i < n; i++) {
+				list.add(actions[i]);
+				actions[i] = null;
+			}
+			counts[slot][fu] = 0;
+			size -= n;
+			if (fu == FunctionalUnit.JUMP.ordinal())
+				nJumps -= n;
+		}
+		
+		/**
+		 * Devuelve verdadero si no quedan acciones pendientes
+		 * @return Verdadero si no quedan acciones pendientes
+		 */
+		public boolean isEmpty() {
+			return size == 0;
+		}
+		
+		/**
+		 * Descarta todas las acciones pendientes
+		 */
+		public void clear() {
+			for (int slot = 0; slot < counts.length; slot++) {
+				for (int fu = 0; fu < counts[slot].length; fu++) {
+					Arrays.fill(buckets[slot][fu], 0, counts[slot][fu], null);
+					counts[slot][fu] = 0;
+				}
+			}
+			size = 0;
+			nJumps = 0;
+		}
+		
+		/**
+		 * Devuelve verdadero si hay algún salto pendiente
+		 * @return Verdadero si hay algún salto pendiente
+		 */
+		public boolean hasJumps() {
+			return nJumps > 0;
+		}
+	}
+
+	/**
+	 * Estado de la máquina que usan los bloques compilados
+	 * @author Iván Castilla
+	 *
+	 */
+	private class Context implements BlockContext {
+
+		@Override
+		public GPRegisterBank getGPRegisterBank() {
+			return gpr;
+		}
+
+		@Override
+		public FPRegisterBank getFPRegisterBank() {
+			return fpr;
+		}
+
+		@Override
+		public Memory getMemory() {
+			return mem;
+		}
+
+		@Override
+		public PredicateRegisterBank getPredicateRegisterBank() {
+			return pred;
+		}
+
+		@Override
+		public OperandValues[] getOperandValues() {
+			return operandValues;
+		}
+
+		@Override
+		public int getCycle() {
+			return cycle;
+		}
+
+		@Override
+		public boolean drawCached(int oper) {
+			return VLIWMachine.this.drawCached(oper);
+		}
+
+		@Override
+		public int getStallEpoch() {
+			return stallEpoch;
+		}
+
+		@Override
+		public void retireInFlight(int fu) throws SIMDEException {
+			validActions.clear();
+			actionList.poll(cycle, fu, validActions);
+			for (int i = 0; i < validActions.size(); i++) {
+				final Action action = validActions.get(i);
+				// No puede haber saltos en curso al entrar en un bloque
+				if (execute(action) == CACHE_MISS)
+					pendingActions.add(action);
+				else
+					releaseAction(action);
 			}
 		}
+
+		@Override
+		public void defer(int oper, OperandValues values) {
+			final Action action = newAction(cycle, oper, true, stallEpoch);
+			action.setOperandValues(values.getOperand1Value(), values.getOperand2Value());
+			pendingActions.add(action);
+		}
+
+		@Override
+		public void endCycle() throws SIMDEException {
+			resolveCacheMisses();
+			cycle++;
+		}
+
+		@Override
+		public void handOff(int oper, int cycle, OperandValues values, boolean cached, int epoch) {
+			final Action action = newAction(cycle, oper, cached, epoch);
+			action.setOperandValues(values.getOperand1Value(), values.getOperand2Value());
+			actionList.add(action);
+		}
+	}
+
+	/**
+	 * Una estructura para poder simular la ejecución de las instrucciones. Indica una operación, el ciclo en que se espera que deba terminar la ejecución de la instrucción
+	 * y los valores de sus operandos fuente. Las acciones se reutilizan una vez finalizadas (ver {@link VLIWMachine#newAction(int, int)}) 
+	 * @author Iván Castilla
+	 *
+	 */
+	private class Action extends OperandValues {
+		/** Ciclo de la rueda temporal (sin contar las burbujas) en el que se va a finalizar la ejecución de esta instrucción */
+		private int cycle;
+		/** Posición en el código decodificado de la operación que encapsula la instrucción a finalizar */
+		private int oper;
+		/** Índice del tipo de UF de la operación */
+		private int fu;
+		/** En el caso de las instrucciones de acceso a memoria, indica si el acceso producirá un fallo de caché (valor false). En el resto de casos, siempre es verdadero */
+		private boolean cached;
+		/** Época de burbujas en la que se planificó la acción. Si después se añade una burbuja, la acción ya no puede producir un fallo sorteado (ver {@link #isCached()}) */
+		private int epoch;
+		/** En el caso de las instrucciones de acceso a memoria, orden en que se sorteó su fallo de caché. Solo se usa al grabar una traza */
+		private int draw;
+		/** En el caso de las instrucciones de acceso a memoria, indica si ya se buscó su dirección en el modelo de caché */
+		private boolean lookedUp;
+		/** En el caso de las instrucciones de acceso a memoria, falso si su dirección falla en el modelo de caché. En el resto de casos, siempre es verdadero */
+		private boolean modelHit;
+		/**
+		 * Prepara la acción para ejecutar la operación "oper" el ciclo "cycle"
+		 * @param cycle Ciclo de reloj en el que se va a finalizar la ejecución de esta instrucción
+		 * @param oper Posición en el código decodificado de la operación que encapsula la instrucción a finalizar
+		 */
+		public void init(int cycle, int oper) {
+			final boolean isMem = (code.getFU(oper) == FunctionalUnit.MEM.ordinal());
+			final int draw = nDraws;
+			init(cycle, oper, isMem ? drawCached(oper) : true, stallEpoch);
+			if (isMem)
+				this.draw = draw;
+		}
 		
 		/**
-		 * Crea una nueva acción copia de la anterior pero retrasada "latency" ciclos de ejecución
-		 * @param prevAction Acción anteriormente planificada
-		 * @param latency Penalización de latencia
+		 * Prepara la acción para ejecutar la operación "oper" el ciclo "cycle", cuando ya se sabe si produce fallo de caché
+		 * @param cycle Ciclo de reloj en el que se va a finalizar la ejecución de esta instrucción
+		 * @param oper Posición en el código decodificado de la operación que encapsula la instrucción a finalizar
+		 * @param cached Falso si es un acceso a memoria que produce un fallo de caché
+		 * @param epoch Época de burbujas en la que se planificó la acción
 		 */
-		public Action(Action prevAction, int latency) {
-			this.cycle = prevAction.cycle + latency;
-			this.oper = prevAction.oper;
+		public void init(int cycle, int oper, boolean cached, int epoch) {
+			this.cycle = cycle;
+			this.oper = oper;
+			this.fu = code.getFU(oper);
+			this.cached = cached;
+			this.epoch = epoch;
+			this.draw = -1;
+			this.lookedUp = false;
+			this.modelHit = true;
 		}
 		
 		/**
@@ -568,41 +1111,67 @@ public class VLIWMachine {
 		}
 		
 		/**
-		 * Devuelve la operación que encapsula la instrucción a finalizar
-		 * @return Operación que encapsula la instrucción a finalizar
+		 * Devuelve la posición en el código decodificado de la operación que encapsula la instrucción a finalizar
+		 * @return Posición en el código decodificado de la operación que encapsula la instrucción a finalizar
 		 */
-		public LongInstructionOperation getOper() {
+		public int getOper() {
 			return oper;
 		}
 		
+		/**
+		 * Devuelve el índice del tipo de UF de la operación
+		 * @return Índice del tipo de UF de la operación
+		 */
+		public int getFU() {
+			return fu;
+		}
+		
+		/**
+		 * Devuelve el orden en que se sorteó el fallo de caché de un acceso a memoria
+		 * @return Orden en que se sorteó el fallo de caché, o -1 si no es un acceso a memoria
+		 */
+		public int getDraw() {
+			return draw;
+		}
+		
 		/**
 		 * Devuelve verdadero si es una instrucción de memoria y no produce fallo de caché, o si es cualquier otro tipo de instrucción.
+		 * Un fallo sorteado se perdona si la acción ya estaba en curso cuando se añadió una burbuja, porque el sorteo representa la
+		 * probabilidad de fallar durante toda la operación y la burbuja ya le ha dado tiempo a traer el dato. Un fallo del modelo de
+		 * caché, en cambio, corresponde a una dirección concreta que el modelo ya ha contado como fallo, así que se penaliza siempre,
+		 * para que los ciclos cuadren con las estadísticas del modelo. En ambos casos, todos los fallos de un mismo ciclo comparten
+		 * una única burbuja
 		 * @return Verdadero si es una instrucción de memoria y no produce fallo de caché, o si es cualquier otro tipo de instrucción
 		 */
 		public boolean isCached() {
-			return cached;
+			return modelHit && (cached || (epoch != stallEpoch));
 		}
 
 		/**
-		 * Establece que la instrucción no producirá un fallo de caché. Solo tiene sentido con instrucciones de memoria.
+		 * Establece que la instrucción no producirá un fallo de caché. Solo tiene sentido con instrucciones de memoria, que ya se 
+		 * buscaron en el modelo de caché.
 		 */
 		public void setCached() {
 			this.cached = true;
+			this.lookedUp = true;
+			this.modelHit = true;
 		}
 
-		@Override
-		public int compareTo(Action o) {
-			if (cycle < o.cycle)
-				return -1;
-			if (cycle > o.cycle)
-				return 1;
-			final FunctionalUnit fu = oper.getInstruction().getOpcode().getFU();
-			final FunctionalUnit oFu = o.oper.getInstruction().getOpcode().getFU();
-			if (fu.ordinal() < oFu.ordinal())
-				return -1;
-			if (fu.ordinal() > oFu.ordinal())
-				return 1;
-			return 0;
+		/**
+		 * Devuelve verdadero si ya se buscó la dirección del acceso en el modelo de caché
+		 * @return Verdadero si ya se buscó la dirección del acceso en el modelo de caché
+		 */
+		public boolean isLookedUp() {
+			return lookedUp;
+		}
+
+		/**
+		 * Añade el resultado de buscar la dirección del acceso en el modelo de caché. Solo tiene sentido con instrucciones de memoria.
+		 * @param hit Verdadero si el acceso acierta en el modelo de caché
+		 */
+		public void lookUp(boolean hit) {
+			this.modelHit = hit;
+			this.lookedUp = true;
 		}
 	}
 }
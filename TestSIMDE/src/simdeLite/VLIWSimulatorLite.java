@@ -4,6 +4,10 @@
 package simdeLite;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
 import java.util.Scanner;
 import java.util.TreeMap;
 
@@ -23,6 +27,8 @@ import com.beust.jcommander.ParameterException;
  *
  */
 public class VLIWSimulatorLite {
+	/** Número máximo de intervalos del histograma de ciclos */
+	private final static int HISTOGRAM_BINS = 10;
 
 	/**
 	 * Crea una configuración de máquina a partir de una lista de números separados por comas. Asume que solo hay una de salto siempre.
@@ -74,6 +80,147 @@ public class VLIWSimulatorLite {
 		return configuration;
 	}
 	
+	/**
+	 * Si se ha pedido, ejecuta una vez el código sin fallos de caché y graba su traza de accesos a memoria, para que cada réplica 
+	 * solo tenga que sortear los fallos (ver {@link VLIWMachine#record(VLIWCode)})
+	 * @param args1 Argumentos de la aplicación
+	 * @param machine Máquina que ejecuta el código
+	 * @param vliwcode Código de instrucciones largas
+	 * @return La traza de accesos a memoria, o null si no se ha pedido o si el resultado del programa puede depender de los fallos
+	 * @throws IOException Si no se pudo leer el fichero de memoria
+	 * @throws SIMDEException Errores de ejecución de la máquina simulada
+	 */
+	private static MemoryTrace recordTrace(Arguments args1, VLIWMachine machine, VLIWCode vliwcode) throws IOException, SIMDEException {
+		if (!args1.replay && !args1.exact)
+			return null;
+		machine.reset();
+		if (args1.memFileName != null)
+			machine.loadMemoryAndRegisters(args1.memFileName);
+		final MemoryTrace trace = machine.record(vliwcode);
+		if (!trace.isExact()) {
+			System.out.println("AVISO: El resultado del programa puede depender de los fallos de caché. Se simulan las réplicas completas");
+			return null;
+		}
+		return trace;
+	}
+	
+	/**
+	 * Ejecuta una vez el código de la planificación principal escribiendo sus accesos a memoria en el fichero indicado con --accesstrace. Si se indica una 
+	 * semilla, se usa para los fallos de caché de esta ejecución
+	 * @param args1 Argumentos de la aplicación
+	 * @param machine Máquina que ejecuta el código. Se resetea al terminar
+	 * @param vliwcode Código de instrucciones largas
+	 * @throws IOException Si no se pudo leer el fichero de memoria o escribir el de accesos
+	 * @throws SIMDEException Errores de ejecución de la máquina simulada
+	 */
+	private static void traceAccesses(Arguments args1, VLIWMachine machine, VLIWCode vliwcode) throws IOException, SIMDEException {
+		machine.reset();
+		if (args1.seed != null)
+			machine.setSeed(args1.seed);
+		if (args1.memFileName != null)
+			machine.loadMemoryAndRegisters(args1.memFileName);
+		try (AccessTraceWriter writer = new AccessTraceWriter(args1.accessTraceFileName)) {
+			machine.setAccessTrace(writer);
+			final int cycles = machine.execute(vliwcode);
+			System.out.println("Traza de accesos: " + writer.getCount() + " accesos en " + cycles + " ciclos guardados en " + args1.accessTraceFileName);
+		} finally {
+			machine.setAccessTrace(null);
+		}
+		machine.reset();
+	}
+	
+	/**
+	 * Crea los simuladores que lanzan las réplicas de una planificación en cada hilo
+	 * @param args1 Argumentos de la aplicación
+	 * @param latencies Latencia para cada tipo de UF incluida en la máquina
+	 * @param workerMachines Máquina de cada hilo. Se crean la primera vez que se usan y se reutilizan en cada lote de réplicas y 
+	 * en cada planificación. El primer hilo usa la máquina principal, para poder comparar después su estado final
+	 * @param vliwcode Código de instrucciones largas. No cambia durante la ejecución, así que todos los hilos lo comparten
+	 * @param trace Traza de accesos a memoria del código, o null si cada réplica tiene que ejecutar el código completo
+	 * @param commonRandomNumbers Verdadero si cada instrucción secuencial debe tener su propia secuencia de fallos de caché, para 
+	 * comparar varias planificaciones con números aleatorios comunes (ver {@link VLIWMachine#setCommonRandomNumbers(boolean)})
+	 * @return Los simuladores de la planificación
+	 */
+	private static ReplicaRunner.WorkerFactory createWorkers(Arguments args1, int[] latencies, VLIWMachine[] workerMachines, VLIWCode vliwcode, MemoryTrace trace, boolean commonRandomNumbers) {
+		return index -> {
+			if (workerMachines[index] == null) {
+				workerMachines[index] = new VLIWMachine(latencies, args1.memSize, args1.cacheMissRate, args1.cacheMissPenalty);
+				// Cada máquina necesita su propia caché. El primer hilo siempre usa la máquina principal
+				if (workerMachines[0].getCacheModel() != null)
+					workerMachines[index].setCacheModel(workerMachines[0].getCacheModel().newInstance());
+			}
+			final VLIWMachine workerMachine = workerMachines[index];
+			workerMachine.setCompiled(args1.compile);
+			workerMachine.setCommonRandomNumbers(commonRandomNumbers);
+			return (replica, seed) -> {
+				if (args1.debug)
+					System.out.println("Simulando réplica " + replica);
+				workerMachine.setSeed(seed);
+				if (trace != null)
+					return workerMachine.replay(trace);
+				workerMachine.reset();
+				if (args1.memFileName != null) {
+					workerMachine.loadMemoryAndRegisters(args1.memFileName);
+				}
+				final int cycles = workerMachine.execute(vliwcode);
+				if (args1.debug)
+					workerMachine.printMemoryAndRegisters();
+				return cycles;
+			};
+		};
+	}
+	
+	/**
+	 * Ejecuta una vez el código sin fallos de caché y evalúa sobre su traza de accesos a memoria todas las cachés LRU que resultan de
+	 * combinar --sweepsizes, --sweeplines y --sweepways (ver {@link StackDistance}). Muestra, para cada caché, su número de fallos y 
+	 * el número de ciclos que tardaría la ejecución
+	 * @param args1 Argumentos de la aplicación
+	 * @param machine Máquina que ejecuta el código
+	 * @param vliwcode Código de instrucciones largas
+	 * @throws IOException Si no se pudo leer el fichero de memoria
+	 * @throws SIMDEException Errores de ejecución de la máquina simulada
+	 */
+	private static void sweepCaches(Arguments args1, VLIWMachine machine, VLIWCode vliwcode) throws IOException, SIMDEException {
+		machine.reset();
+		if (args1.memFileName != null)
+			machine.loadMemoryAndRegisters(args1.memFileName);
+		final MemoryTrace trace = machine.record(vliwcode);
+		if (!trace.isExact())
+			System.out.println("AVISO: El resultado del programa puede depender de los fallos de caché. Los ciclos son aproximados");
+		System.out.println("Tamaño\tLínea\tVías\tFallos\tTasa fallos\tCiclos");
+		for (int line : args1.sweepLines) {
+			// Las distancias solo dependen del tamaño de línea y del número de conjuntos, y sirven para cualquier número de vías
+			final TreeMap<Integer, StackDistance> distances = new TreeMap<>();
+			for (int size : args1.sweepSizes) {
+				for (int ways : args1.sweepWays) {
+					final int nWays = (ways == 0) ? size / line : ways;
+					// La caché no tiene espacio para una línea por vía
+					if (nWays == 0 || line * nWays > size)
+						continue;
+					final StackDistance distance = distances.computeIfAbsent(size / (line * nWays), nSets -> new StackDistance(trace, line, nSets));
+					final int misses = distance.getMisses(nWays);
+					final double missRate = (trace.getSize() == 0) ? 0.0 : 100.0 * misses / trace.getSize();
+					System.out.println(size + "\t" + line + "\t" + ((ways == 0) ? "Total" : String.valueOf(ways)) + "\t" + misses + "\t" + missRate + "%\t" 
+							+ distance.getCycles(nWays, args1.cacheMissPenalty));
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Comprueba que todos los valores de una lista sean potencias de 2
+	 * @param values Lista de valores
+	 * @param name Nombre del parámetro, para el mensaje de error
+	 * @param zero Verdadero si también se admite el 0
+	 * @throws ParameterException Si algún valor no es una potencia de 2
+	 */
+	private static void checkPowersOfTwo(List<Integer> values, String name, boolean zero) throws ParameterException {
+		for (int value : values) {
+			if (Integer.bitCount(value) != 1 && !(zero && value == 0))
+				throw new ParameterException("ERROR: Los valores de " + name + " tienen que ser potencias de 2. Usado: " + value);
+		}
+	}
+	
 	/**
 	 * Lanza la aplicación
 	 * @param args Argumentos de la aplicación, definidos en {@link Arguments}
@@ -87,54 +234,146 @@ public class VLIWSimulatorLite {
 			jc.parse(args);
 			if(args1.cacheMissRate < 0 || args1.cacheMissRate > 100)
 				throw new ParameterException("ERROR: El porcentaje de fallos de cach� debe ser un n�mero entre 0 y 100. Usado: " + args1.cacheMissRate);
+			if(args1.memSize < 1)
+				throw new ParameterException("ERROR: El tamaño de la memoria debe ser mayor que 0. Usado: " + args1.memSize);
 			int []latencies = getLatencies(args1.latencies);
-			final VLIWMachine machine = new VLIWMachine(latencies, args1.cacheMissRate, args1.cacheMissPenalty);
+			final VLIWMachine machine = new VLIWMachine(latencies, args1.memSize, args1.cacheMissRate, args1.cacheMissPenalty);
 			machine.setDebugMode(args1.debug);
-			final Code code = Code.loadCode(args1.fileName);
+			machine.setCompiled(args1.compile);
+			machine.setCacheModel(args1.cache);
 			final TreeMap<FunctionalUnit, Integer> configuration = getConfiguration(args1.config);
-			final VLIWCode vliwcode = VLIWCode.loadCode(configuration, code, args1.fileNameVLIW);
+			final Code code;
+			final VLIWCode vliwcode;
+			if (args1.precompiled) {
+				final ProgramImage program = ProgramImage.load(args1.fileName, args1.fileNameVLIW);
+				code = program.getCode();
+				vliwcode = program.getVLIWCode(configuration, code);
+			}
+			else {
+				code = Code.loadCode(args1.fileName);
+				vliwcode = VLIWCode.loadCode(configuration, code, args1.fileNameVLIW);
+			}
 			if (args1.debug)
 				System.out.println(vliwcode);
+			// Planificaciones a simular: la principal y las que se comparan con ella
+			final ArrayList<String> fileNames = new ArrayList<>();
+			fileNames.add(args1.fileNameVLIW);
+			fileNames.addAll(args1.compare);
+			final VLIWCode[] vliwcodes = new VLIWCode[fileNames.size()];
+			vliwcodes[0] = vliwcode;
+			for (int s = 1; s < vliwcodes.length; s++)
+				vliwcodes[s] = args1.precompiled ? ProgramImage.load(args1.fileName, fileNames.get(s)).getVLIWCode(configuration, code)
+						: VLIWCode.loadCode(configuration, code, fileNames.get(s));
+			if (args1.accessTraceFileName != null)
+				traceAccesses(args1, machine, vliwcode);
+			// En modo de barrido, se evalúan todas las cachés sobre la traza de cada planificación
+			if (!args1.sweepSizes.isEmpty()) {
+				if (args1.cache != null)
+					throw new ParameterException("ERROR: No se puede usar --cache junto con --sweepsizes, que ya evalúa sus propias cachés");
+				checkPowersOfTwo(args1.sweepSizes, "--sweepsizes", false);
+				checkPowersOfTwo(args1.sweepLines, "--sweeplines", false);
+				checkPowersOfTwo(args1.sweepWays, "--sweepways", true);
+				for (int s = 0; s < vliwcodes.length; s++) {
+					if (vliwcodes.length > 1)
+						System.out.println("Planificación: " + fileNames.get(s));
+					sweepCaches(args1, machine, vliwcodes[s]);
+				}
+			}
 			// Si no hay fallos de caché, lanzo una única simulación
-			if (args1.cacheMissRate == 0) {
-				if (args1.memFileName != null)
-					machine.loadMemoryAndRegisters(args1.memFileName);
-				if (args1.debug)
-					machine.printMemoryAndRegisters();
-				int cycles = machine.execute(vliwcode);
-				if (args1.debug)
-					machine.printMemoryAndRegisters();
-				System.out.println("Total ciclos: " + cycles);
+			else if (args1.cacheMissRate == 0) {
+				final int[] cycles = new int[vliwcodes.length];
+				for (int s = 0; s < vliwcodes.length; s++) {
+					machine.reset();
+					if (args1.memFileName != null)
+						machine.loadMemoryAndRegisters(args1.memFileName);
+					if (args1.debug)
+						machine.printMemoryAndRegisters();
+					cycles[s] = machine.execute(vliwcodes[s]);
+					if (args1.debug)
+						machine.printMemoryAndRegisters();
+					if (vliwcodes.length > 1)
+						System.out.println("Planificación: " + fileNames.get(s));
+					System.out.println("Total ciclos: " + cycles[s]);
+					if (machine.getCacheModel() != null)
+						System.out.println("Caché (aciertos / fallos): " + machine.getCacheModel().getHits() + " / " + machine.getCacheModel().getMisses());
+				}
+				for (int s = 1; s < vliwcodes.length; s++)
+					System.out.println("Diferencia " + fileNames.get(s) + " - " + fileNames.get(0) + ": " + (cycles[s] - cycles[0]));
 			}
 			// En otro caso, lanzo tantas como indique el parámetro cacheMissSimul
 			else {
 				if(args1.cacheMissSimul < 1)
 					throw new ParameterException("ERROR: El número de réplicas a lanzar cuando el porcentaje de fallos de caché es mayor que 0 debe ser mayor que 0. Usado: " + args1.cacheMissSimul);
-				final int[] results = new int[args1.cacheMissSimul];
-				for (int i = 0; i < args1.cacheMissSimul; i++) {
-					if (args1.debug)
-						System.out.println("Simulando réplica " + i);
-					machine.reset();
-					if (args1.memFileName != null) {
-						machine.loadMemoryAndRegisters(args1.memFileName);
+				if(args1.threads < 1)
+					throw new ParameterException("ERROR: El número de hilos debe ser mayor que 0. Usado: " + args1.threads);
+				if(args1.precision < 0.0)
+					throw new ParameterException("ERROR: La precisión no puede ser negativa. Usado: " + args1.precision);
+				if(args1.precision > 0.0 && args1.maxReplicas < args1.cacheMissSimul)
+					throw new ParameterException("ERROR: El número máximo de réplicas no puede ser menor que el número de réplicas iniciales (" + args1.cacheMissSimul + "). Usado: " + args1.maxReplicas);
+				final MemoryTrace[] traces = new MemoryTrace[vliwcodes.length];
+				boolean exact = args1.exact;
+				for (int s = 0; s < vliwcodes.length; s++) {
+					traces[s] = recordTrace(args1, machine, vliwcodes[s]);
+					exact = exact && (traces[s] != null);
+				}
+				// La distribución exacta solo se puede calcular si todas las trazas son exactas
+				if (exact) {
+					final CycleDistribution[] distributions = new CycleDistribution[vliwcodes.length];
+					for (int s = 0; s < vliwcodes.length; s++) {
+						distributions[s] = machine.getDistribution(traces[s]);
+						if (vliwcodes.length > 1)
+							System.out.println("Planificación: " + fileNames.get(s));
+						System.out.println("Ciclos Promedio (Desv. Est.): " + distributions[s].getMean() + " (" + distributions[s].getStdDev() + ")");
+						System.out.println("Ciclos [min-max]: [" + distributions[s].getMin() + " - " + distributions[s].getMax() + "]");
+						distributions[s].print(System.out, HISTOGRAM_BINS);
 					}
-					results[i] = machine.execute(vliwcode);
-					if (args1.debug)
-						machine.printMemoryAndRegisters();
+					// El promedio de la diferencia no depende de cómo se emparejen las réplicas
+					for (int s = 1; s < vliwcodes.length; s++)
+						System.out.println("Diferencia " + fileNames.get(s) + " - " + fileNames.get(0) + " Promedio: " + (distributions[s].getMean() - distributions[0].getMean()));
+				}
+				else {
+					// Sin semilla, se usa una aleatoria, que se muestra para poder repetir la simulación
+					final long masterSeed = (args1.seed != null) ? args1.seed : new Random().nextLong();
+					System.out.println("Semilla: " + masterSeed);
+					// En modo de depuración se usa un único hilo para no mezclar la salida de las réplicas
+					final int nThreads = args1.debug ? 1 : args1.threads;
+					final VLIWMachine[] workerMachines = new VLIWMachine[nThreads];
+					workerMachines[0] = machine;
+					final ReplicaRunner.WorkerFactory[] factories = new ReplicaRunner.WorkerFactory[vliwcodes.length];
+					for (int s = 0; s < vliwcodes.length; s++)
+						factories[s] = createWorkers(args1, latencies, workerMachines, vliwcodes[s], traces[s], vliwcodes.length > 1);
+					// Todas las planificaciones usan la misma semilla en cada réplica, así que sus resultados se pueden comparar por parejas
+					final ReplicaRunner.Results results = new ReplicaRunner(nThreads).run(args1.cacheMissSimul, args1.maxReplicas, args1.precision, masterSeed, factories);
+					for (int s = 0; s < vliwcodes.length; s++) {
+						if (vliwcodes.length > 1)
+							System.out.println("Planificación: " + fileNames.get(s));
+						final Statistics.Accumulator cycles = results.getCycles(s);
+						final double []ci = cycles.get95CI();
+						System.out.println("Número réplicas: " + results.getNReplicas());
+						System.out.println("Ciclos Promedio (Desv. Est.): " + cycles.getMean() + " (" + cycles.getStdDev() + ")");
+						System.out.println("Ciclos IC95%: [" + ci[0] + ", " + ci[1] + "]");
+						System.out.println("Ciclos [min-max]: [" + (int)cycles.getMin() + " - " + (int)cycles.getMax() + "]");
+						results.getHistogram(s).print(System.out, HISTOGRAM_BINS);
+					}
+					for (int s = 1; s < vliwcodes.length; s++) {
+						final Statistics.Accumulator diff = results.getDifference(s);
+						final double []ci = diff.get95CI();
+						System.out.println("Diferencia " + fileNames.get(s) + " - " + fileNames.get(0) + " Promedio (Desv. Est.): " + diff.getMean() + " (" + diff.getStdDev() + ")");
+						System.out.println("Diferencia IC95%: [" + ci[0] + ", " + ci[1] + "]");
+					}
+					if (args1.precision > 0.0 && !results.isPrecise(args1.precision))
+						System.out.println("AVISO: Se alcanzó el máximo de réplicas (" + args1.maxReplicas + ") sin llegar a la precisión indicada");
 				}
-				double promedio = Statistics.average(results);
-				double sd = Statistics.stdDev(results, promedio);
-				double []ci = Statistics.normal95CI(promedio, sd, args1.cacheMissSimul);
-				System.out.println("Número réplicas: " + args1.cacheMissSimul);
-				System.out.println("Ciclos Promedio (Desv. Est.): " + promedio + " (" + sd + ")");
-				System.out.println("Ciclos IC95%: [" + ci[0] + ", " + ci[1] + "]");
-				System.out.println("Ciclos [min-max]: [" + Statistics.min(results) + " - " + Statistics.max(results) + "]");
 			}
 			if (args1.cmpMemFileName != null) {
 				System.out.println("Comparando memoria y registros con el fichero " + args1.cmpMemFileName);
 				int errors = machine.compareMemoryAndRegisters(args1.cmpMemFileName);
 				System.out.println("Número de diferencias encontradas: " + errors);
 			}
+			if (args1.memOutFileName != null) {
+				machine.saveMemoryAndRegisters(args1.memOutFileName);
+				System.out.println("Memoria y registros guardados en " + args1.memOutFileName);
+			}
 		} catch (IOException ex) {
 			System.out.println(ex.getMessage());
 			System.exit(-1);
@@ -158,22 +397,54 @@ public class VLIWSimulatorLite {
 		private String fileName = null;
 		@Parameter(names ={"--vliw", "-v"}, description = "Nombre del fichero con la planificación en la máquina VLIW (generalmente con extensión vliw)", order = 1, required = true)
 		private String fileNameVLIW = null;
+		@Parameter(names ={"--precompiled", "-pc"}, description = "Carga el código secuencial y las planificaciones de sus versiones precompiladas (ficheros con extensión .prog junto a cada planificación), que se regeneran automáticamente si no existen o si cambian los fuentes", order = 1)
+		private boolean precompiled = false;
 		@Parameter(names ={"--config", "-c"}, description = "Configuración de la máquina VLIW, expresado como número de UF de cada tipo, separadas por comas: <#SUMA_ENTERA,#MULT_ENTERA,#SUMA_FP,#MULT_FP,#MEMORIA>. Por defecto son dos de cada tipo. Siempre hay una única de salto.", order = 2)
 		private String config = "2,2,2,2,2";
 		@Parameter(names ={"--latencies", "-l"}, description = "Latencias de cada unidad funcional de la máquina VLIW, expresado como una lista separadas por comas: <#SUMA_ENTERA,#MULT_ENTERA,#SUMA_FP,#MULT_FP,#MEMORIA,#SALTO>.", order = 2)
 		private String latencies = "1,2,4,6,4,2";
-		@Parameter(names ={"--mem", "-m"}, description = "Nombre del fichero de configuración de memoria y registros", order = 3)
+		@Parameter(names ={"--compare", "-cv"}, description = "Lista de ficheros con otras planificaciones del mismo código secuencial, separados por comas, para compararlas con la de --vliw. Se simulan con números aleatorios comunes: el k-ésimo acceso a memoria de una misma instrucción tiene el mismo fallo de caché en todas las planificaciones, y se muestra la diferencia de ciclos de cada réplica con su IC95%", order = 1)
+		private List<String> compare = new ArrayList<>();
+		@Parameter(names ={"--mem", "-m"}, description = "Nombre del fichero de configuración de memoria y registros, en texto o como imagen binaria (ver MemoryImage)", order = 3)
 		private String memFileName = null;
+		@Parameter(names ={"--memsize", "-ms"}, description = "Número de palabras de memoria de la máquina", order = 3)
+		private int memSize = VLIWMachine.NMEM;
 		@Parameter(names ={"--debug", "-d"}, description = "Habilita el modo de debug", order = 4)
 		private boolean debug = false;
+		@Parameter(names ={"--compile", "-co"}, description = "Compila el código VLIW a bytecode para acelerar simulaciones largas. Los bloques que no se pueden compilar se ejecutan con el intérprete. Se ignora en modo de debug", order = 4)
+		private boolean compile = false;
 		@Parameter(names ={"--cachemissrate", "-cmr"}, description = "Porcentaje de fallos de caché (un número entero entre 0 y 100)", order = 5)
 		private int cacheMissRate = 0;
 		@Parameter(names ={"--cachemisspenalty", "-cmp"}, description = "Latencia ADICIONAL cuando se produce un fallo de caché", order = 5)
 		private int cacheMissPenalty = 5;
+		@Parameter(names ={"--cache", "-ca"}, description = "Modelo de caché asociativa por conjuntos, que decide los fallos según las direcciones: tamaño,línea,vías,política (por ejemplo, 1024,4,2,LRU). Los tamaños son potencias de 2 en palabras y la política es LRU o PLRU. Sus fallos se suman a los de --cachemissrate, que se puede dejar a 0 para usar solo este modelo. Cada fallo del modelo se penaliza, aunque el acceso ya se haya retrasado por otro fallo; los fallos de un mismo ciclo comparten la penalización", converter = CacheModelConverter.class, order = 5)
+		private CacheModel cache = null;
+		@Parameter(names ={"--sweepsizes", "-ws"}, description = "Lista de tamaños de caché, en palabras y separados por comas, que se evalúan sobre una única ejecución con distancias de pila LRU, combinados con --sweeplines y --sweepways. Muestra los fallos y los ciclos de cada caché en lugar de simular", order = 5)
+		private List<Integer> sweepSizes = new ArrayList<>();
+		@Parameter(names ={"--sweeplines", "-wl"}, description = "Lista de tamaños de línea, en palabras y separados por comas, para --sweepsizes", order = 5)
+		private List<Integer> sweepLines = new ArrayList<>(Arrays.asList(4));
+		@Parameter(names ={"--sweepways", "-ww"}, description = "Lista de números de vías, separados por comas, para --sweepsizes. El 0 indica una caché totalmente asociativa", order = 5)
+		private List<Integer> sweepWays = new ArrayList<>(Arrays.asList(1, 2, 4, 0));
 		@Parameter(names ={"--cachemisssimul", "-cms"}, description = "Número de réplicas a lanzar cuando se pone un porcentaje de fallos de caché > 0", order = 5)
 		private int cacheMissSimul = 20;
-		@Parameter(names ={"--memfinal", "-mf"}, description = "Nombre del fichero de configuración de memoria y registros para comparar con el resultado final", order = 3)
+		@Parameter(names ={"--replay", "-rp"}, description = "Ejecuta el programa una sola vez y en cada réplica solo vuelve a sortear los fallos de caché sobre la traza de accesos a memoria. Si el resultado del programa pudiera depender de los fallos, se simulan las réplicas completas", order = 5)
+		private boolean replay = false;
+		@Parameter(names ={"--exact", "-ex"}, description = "Calcula la distribución exacta de los ciclos (promedio, desviación estándar y percentiles) a partir de una única ejecución, sin lanzar réplicas. Si el resultado del programa pudiera depender de los fallos, se simulan las réplicas completas", order = 5)
+		private boolean exact = false;
+		@Parameter(names ={"--precision", "-pr"}, description = "Semiamplitud del IC95% que se quiere alcanzar, en tanto por 1 del promedio de ciclos (por ejemplo, 0.005). Se lanzan réplicas por lotes, empezando por --cachemisssimul, hasta alcanzarla o llegar a --maxreplicas. Por defecto, 0: solo se lanzan --cachemisssimul réplicas", order = 5)
+		private double precision = 0.0;
+		@Parameter(names ={"--maxreplicas", "-mr"}, description = "Número máximo de réplicas a lanzar cuando se indica una precisión con --precision", order = 5)
+		private int maxReplicas = 100000;
+		@Parameter(names ={"--seed", "-sd"}, description = "Semilla maestra de la que se deriva la semilla de cada réplica. Con la misma semilla se obtienen los mismos resultados con cualquier número de hilos. Por defecto, una aleatoria", order = 5)
+		private Long seed = null;
+		@Parameter(names ={"--threads", "-t"}, description = "Número de hilos para lanzar las réplicas. Por defecto, tantos como procesadores tenga el sistema", order = 5)
+		private int threads = Runtime.getRuntime().availableProcessors();
+		@Parameter(names ={"--memfinal", "-mf"}, description = "Nombre del fichero de configuración de memoria y registros, en texto o como imagen binaria, para comparar con el resultado final", order = 3)
 		private String cmpMemFileName = null;
+		@Parameter(names ={"--memout", "-mo"}, description = "Nombre del fichero donde se guarda, como imagen binaria (ver MemoryImage), el contenido final de memoria y registros: el mismo que se compara con --memfinal", order = 3)
+		private String memOutFileName = null;
+		@Parameter(names ={"--accesstrace", "-at"}, description = "Nombre del fichero binario donde se escribe cada acceso a memoria de una ejecución (ciclo, instrucción, dirección y si es lectura o escritura), para analizarlo con AccessTraceAnalyzer. La ejecución usa la semilla de --seed, si se indica", order = 6)
+		private String accessTraceFileName = null;
 	}
 	
 }
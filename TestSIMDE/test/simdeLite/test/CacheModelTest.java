@@ -0,0 +1,82 @@
+/**
+ * 
+ */
+package simdeLite.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import simdeLite.FunctionalUnit;
+import simdeLite.SIMDEException;
+import simdeLite.SetAssociativeCache;
+import simdeLite.VLIWCode;
+import simdeLite.VLIWMachine;
+
+/**
+ * Comprueba que los ciclos de la máquina VLIW con un modelo de caché cuadran con los fallos que cuenta el modelo: cada fallo del modelo
+ * se penaliza, y solo se comparte la penalización entre los fallos de un mismo ciclo. Se comprueba con el intérprete y con los bloques
+ * compilados
+ * @author Iván Castilla
+ *
+ */
+public class CacheModelTest {
+	/** Penalización de los fallos de caché */
+	private final static int PENALTY = 7;
+	/** Programas de ejemplo */
+	private static List<TestProgram> programs;
+
+	@BeforeClass
+	public static void createPrograms() throws IOException {
+		programs = TestProgram.createAll();
+	}
+
+	@AfterClass
+	public static void deletePrograms() {
+		TestProgram.deleteAll(programs);
+	}
+
+	/**
+	 * Compara los ciclos de cada programa con y sin modelo de caché, sin fallos sorteados
+	 * @param compiled Verdadero si se usan los bloques compilados
+	 */
+	private static void compare(boolean compiled) throws IOException, SIMDEException {
+		for (TestProgram program : programs) {
+			final VLIWCode vliwCode = program.loadVLIWCode(program.loadCode());
+			final VLIWMachine machine = program.newVLIWMachine(0, PENALTY);
+			machine.setCompiled(compiled);
+			program.reset(machine, 0);
+			final int base = machine.execute(vliwCode);
+			final SetAssociativeCache cache = new SetAssociativeCache(64, 4, 2, SetAssociativeCache.ReplacementPolicy.LRU);
+			machine.setCacheModel(cache);
+			program.reset(machine, 0);
+			final int cycles = machine.execute(vliwCode);
+			final long misses = cache.getMisses();
+			final String message = program + ": " + misses + " fallos";
+			assertTrue(message, misses > 0);
+			assertEquals(message, 0, (cycles - base) % PENALTY);
+			final int stalls = (cycles - base) / PENALTY;
+			// Con una sola UF de memoria no puede haber dos accesos que finalicen en el mismo ciclo
+			if (program.getConfiguration().get(FunctionalUnit.MEM) == 1)
+				assertEquals(message, misses, stalls);
+			else
+				assertTrue(message, stalls > 0 && stalls <= misses);
+		}
+	}
+
+	@Test
+	public void everyModelMissIsPenalized() throws IOException, SIMDEException {
+		compare(false);
+	}
+
+	@Test
+	public void everyModelMissIsPenalizedInCompiledBlocks() throws IOException, SIMDEException {
+		compare(true);
+	}
+}
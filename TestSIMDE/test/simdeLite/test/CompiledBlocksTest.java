@@ -0,0 +1,107 @@
+/**
+ * 
+ */
+package simdeLite.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import simdeLite.Code;
+import simdeLite.CompiledBlock;
+import simdeLite.DecodedVLIWCode;
+import simdeLite.SIMDEException;
+import simdeLite.SetAssociativeCache;
+import simdeLite.VLIWCode;
+import simdeLite.VLIWCompiler;
+import simdeLite.VLIWMachine;
+
+/**
+ * Comprueba que los bloques compilados a bytecode ({@link VLIWCompiler}) dan los mismos ciclos y el mismo contenido final de memoria y 
+ * registros que el intérprete de {@link VLIWMachine}, sin fallos de caché, con fallos sorteados y con un modelo de caché
+ * @author Iván Castilla
+ *
+ */
+public class CompiledBlocksTest {
+	/** Penalización de los fallos de caché */
+	private final static int PENALTY = 5;
+	/** Número de semillas con las que se prueba cada programa cuando hay fallos sorteados */
+	private final static int SEEDS = 5;
+	/** Programas de ejemplo */
+	private static List<TestProgram> programs;
+
+	@BeforeClass
+	public static void createPrograms() throws IOException {
+		programs = TestProgram.createAll();
+	}
+
+	@AfterClass
+	public static void deletePrograms() {
+		TestProgram.deleteAll(programs);
+	}
+
+	/**
+	 * Ejecuta cada programa con el intérprete y con los bloques compilados, con las mismas semillas, y compara los resultados
+	 * @param cacheMissRate Porcentaje de fallos de caché
+	 * @param cache Verdadero si se usa un modelo de caché asociativa por conjuntos
+	 * @param seeds Número de semillas
+	 */
+	private static void compare(int cacheMissRate, boolean cache, int seeds) throws IOException, SIMDEException {
+		for (TestProgram program : programs) {
+			final Code code = program.loadCode();
+			final VLIWCode vliwCode = program.loadVLIWCode(code);
+			final VLIWMachine interpreted = program.newVLIWMachine(cacheMissRate, PENALTY);
+			final VLIWMachine compiled = program.newVLIWMachine(cacheMissRate, PENALTY);
+			compiled.setCompiled(true);
+			if (cache) {
+				interpreted.setCacheModel(new SetAssociativeCache(16, 2, 2, SetAssociativeCache.ReplacementPolicy.LRU));
+				compiled.setCacheModel(interpreted.getCacheModel().newInstance());
+			}
+			for (long seed = 0; seed < seeds; seed++) {
+				program.reset(interpreted, seed);
+				program.reset(compiled, seed);
+				final String message = program + ", semilla " + seed;
+				assertEquals(message, interpreted.execute(vliwCode), compiled.execute(vliwCode));
+				assertEquals(message, TestProgram.dump(interpreted), TestProgram.dump(compiled));
+			}
+		}
+	}
+
+	/**
+	 * Comprueba que se compila el bloque de la primera instrucción larga de cada programa, para que las comparaciones no pasen solo
+	 * porque todo se ejecuta con el intérprete
+	 */
+	@Test
+	public void blocksAreCompiled() throws IOException {
+		for (TestProgram program : programs) {
+			final CompiledBlock[] blocks = new DecodedVLIWCode(program.loadVLIWCode(program.loadCode()), TestProgram.LATENCIES).getCompiledBlocks();
+			assertNotNull(program.toString(), blocks[0]);
+		}
+	}
+
+	@Test
+	public void withoutCacheMisses() throws IOException, SIMDEException {
+		compare(0, false, 1);
+	}
+
+	@Test
+	public void withRandomCacheMisses() throws IOException, SIMDEException {
+		compare(20, false, SEEDS);
+	}
+
+	@Test
+	public void withCacheModel() throws IOException, SIMDEException {
+		compare(0, true, 1);
+	}
+
+	@Test
+	public void withCacheModelAndRandomCacheMisses() throws IOException, SIMDEException {
+		compare(20, true, SEEDS);
+	}
+}
@@ -0,0 +1,105 @@
+/**
+ * 
+ */
+package simdeLite.test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+import org.junit.Test;
+
+import simdeLite.Statistics;
+
+/**
+ * Comprueba que {@link Statistics.Histogram} da los percentiles exactos mientras el rango de valores cabe en sus intervalos, que
+ * combinar histogramas da lo mismo que añadir todos los valores a uno solo, y que el error está acotado cuando hay que ensanchar
+ * los intervalos
+ * @author Iván Castilla
+ *
+ */
+public class HistogramTest {
+	/** Fracciones de los percentiles que se comprueban */
+	private final static double[] QS = {0.0, 0.1, 0.5, 0.9, 0.99, 0.999, 1.0};
+
+	/**
+	 * Devuelve los percentiles exactos de un conjunto de valores, con la misma definición que {@link Statistics.Histogram#getQuantile(double)}
+	 * @param values Valores
+	 * @return Los percentiles de {@link #QS}
+	 */
+	private static long[] getExactQuantiles(long[] values) {
+		final long[] sorted = values.clone();
+		Arrays.sort(sorted);
+		final long[] quantiles = new long[QS.length];
+		for (int i = 0; i < QS.length; i++)
+			quantiles[i] = sorted[(int)Math.max(1, (long)Math.ceil(QS[i] * sorted.length)) - 1];
+		return quantiles;
+	}
+
+	/**
+	 * Genera valores con la forma de los ciclos de las réplicas: una base grande más unos pocos cientos de ciclos de penalización
+	 * @param n Número de valores
+	 * @param base Valor mínimo
+	 * @param spread Diferencia máxima con el mínimo
+	 * @param seed Semilla
+	 * @return Los valores generados
+	 */
+	private static long[] generate(int n, long base, int spread, long seed) {
+		final SplittableRandom rnd = new SplittableRandom(seed);
+		final long[] values = new long[n];
+		for (int i = 0; i < n; i++)
+			values[i] = base + rnd.nextInt(spread);
+		return values;
+	}
+
+	@Test
+	public void exactQuantiles() {
+		final long[] values = generate(10000, 250000, 300, 1);
+		final Statistics.Histogram histogram = new Statistics.Histogram();
+		for (long value : values)
+			histogram.add(value);
+		assertEquals(1, histogram.getWidth());
+		final long[] quantiles = histogram.getQuantiles(QS);
+		assertArrayEquals(getExactQuantiles(values), quantiles);
+		// Con valores de este tamaño los percentiles tienen que distinguirse
+		assertTrue(quantiles[2] < quantiles[3] && quantiles[3] < quantiles[4]);
+	}
+
+	@Test
+	public void mergeEqualsSingleHistogram() {
+		final long[] values = generate(10000, 1000000, 5000, 2);
+		final Statistics.Histogram single = new Statistics.Histogram();
+		final Statistics.Histogram[] parts = new Statistics.Histogram[7];
+		for (int p = 0; p < parts.length; p++)
+			parts[p] = new Statistics.Histogram();
+		for (int i = 0; i < values.length; i++) {
+			single.add(values[i]);
+			parts[i % parts.length].add(values[i]);
+		}
+		final Statistics.Histogram merged = new Statistics.Histogram();
+		for (Statistics.Histogram part : parts)
+			merged.merge(part);
+		assertEquals(single.getCount(), merged.getCount());
+		assertArrayEquals(single.getQuantiles(QS), merged.getQuantiles(QS));
+		assertArrayEquals(getExactQuantiles(values), merged.getQuantiles(QS));
+		assertArrayEquals(single.getBins(single.getMin(), 100, 50), merged.getBins(merged.getMin(), 100, 50));
+	}
+
+	@Test
+	public void boundedErrorWithWideRange() {
+		final long[] values = generate(10000, 0, 50 * Statistics.Histogram.MAX_BINS, 3);
+		final Statistics.Histogram histogram = new Statistics.Histogram();
+		final Statistics.Histogram other = new Statistics.Histogram();
+		for (int i = 0; i < values.length; i++)
+			((i < values.length / 2) ? histogram : other).add(values[i]);
+		histogram.merge(other);
+		assertTrue(histogram.getWidth() > 1);
+		final long[] exact = getExactQuantiles(values);
+		final long[] quantiles = histogram.getQuantiles(QS);
+		for (int i = 0; i < QS.length; i++)
+			assertTrue("q = " + QS[i], Math.abs(quantiles[i] - exact[i]) <= histogram.getWidth() / 2);
+	}
+}
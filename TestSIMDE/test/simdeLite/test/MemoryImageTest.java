@@ -0,0 +1,116 @@
+/**
+ * 
+ */
+package simdeLite.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.List;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import simdeLite.MemoryImage;
+import simdeLite.SIMDEException;
+import simdeLite.SequentialMachine;
+import simdeLite.VLIWCode;
+import simdeLite.VLIWMachine;
+
+/**
+ * Comprueba que pasar el contenido de memoria y registros por una imagen binaria ({@link MemoryImage}) no lo cambia: de texto a imagen,
+ * de imagen a texto, y con el estado final de una ejecución
+ * @author Iván Castilla
+ *
+ */
+public class MemoryImageTest {
+	/** Programas de ejemplo */
+	private static List<TestProgram> programs;
+
+	@BeforeClass
+	public static void createPrograms() throws IOException {
+		programs = TestProgram.createAll();
+	}
+
+	@AfterClass
+	public static void deletePrograms() {
+		TestProgram.deleteAll(programs);
+	}
+
+	/**
+	 * Carga el fichero de texto de cada programa, lo guarda como imagen y lo vuelve a cargar desde la imagen y desde su conversión a texto
+	 */
+	@Test
+	public void textToImageToText() throws IOException, SIMDEException {
+		for (TestProgram program : programs) {
+			final String imageFileName = program.getTempFileName("mem.img");
+			final String textFileName = program.getTempFileName("mem.txt");
+			final VLIWMachine fromText = program.newVLIWMachine(0, 0);
+			program.reset(fromText, 0);
+			assertFalse(program.toString(), MemoryImage.isImage(program.getMemFileName()));
+			fromText.saveMemoryAndRegisters(imageFileName);
+			assertTrue(program.toString(), MemoryImage.isImage(imageFileName));
+
+			final VLIWMachine fromImage = program.newVLIWMachine(0, 0);
+			fromImage.loadMemoryAndRegisters(imageFileName);
+			assertEquals(program.toString(), TestProgram.dump(fromText), TestProgram.dump(fromImage));
+			assertEquals(program.toString(), 0, fromText.compareMemoryAndRegisters(imageFileName));
+
+			try (PrintStream out = new PrintStream(textFileName)) {
+				fromImage.printMemoryAndRegisters(out);
+			}
+			final VLIWMachine fromConverted = program.newVLIWMachine(0, 0);
+			fromConverted.loadMemoryAndRegisters(textFileName);
+			assertEquals(program.toString(), TestProgram.dump(fromText), TestProgram.dump(fromConverted));
+		}
+	}
+
+	/**
+	 * Ejecuta cada programa desde su fichero de texto y desde su imagen, y guarda y vuelve a cargar el estado final
+	 */
+	@Test
+	public void executionFromImage() throws IOException, SIMDEException {
+		for (TestProgram program : programs) {
+			final String imageFileName = program.getTempFileName("mem.img");
+			final String finalFileName = program.getTempFileName("final.img");
+			final VLIWCode vliwCode = program.loadVLIWCode(program.loadCode());
+			final VLIWMachine fromText = program.newVLIWMachine(0, 0);
+			program.reset(fromText, 0);
+			fromText.saveMemoryAndRegisters(imageFileName);
+			final int cycles = fromText.execute(vliwCode);
+
+			final VLIWMachine fromImage = program.newVLIWMachine(0, 0);
+			fromImage.loadMemoryAndRegisters(new MemoryImage(imageFileName));
+			assertEquals(program.toString(), cycles, fromImage.execute(vliwCode));
+			assertEquals(program.toString(), TestProgram.dump(fromText), TestProgram.dump(fromImage));
+
+			fromImage.saveMemoryAndRegisters(finalFileName);
+			final VLIWMachine reloaded = program.newVLIWMachine(0, 0);
+			reloaded.loadMemoryAndRegisters(finalFileName);
+			assertEquals(program.toString(), TestProgram.dump(fromText), TestProgram.dump(reloaded));
+			assertEquals(program.toString(), 0, fromText.compareMemoryAndRegisters(finalFileName));
+		}
+	}
+
+	/**
+	 * La máquina secuencial carga la misma imagen que guarda la máquina VLIW
+	 */
+	@Test
+	public void sequentialMachineLoadsImage() throws IOException, SIMDEException {
+		for (TestProgram program : programs) {
+			final String imageFileName = program.getTempFileName("mem.img");
+			final VLIWMachine vliw = program.newVLIWMachine(0, 0);
+			program.reset(vliw, 0);
+			vliw.saveMemoryAndRegisters(imageFileName);
+			final SequentialMachine fromText = program.newSequentialMachine(0, 0);
+			program.reset(fromText, 0);
+			final SequentialMachine fromImage = program.newSequentialMachine(0, 0);
+			fromImage.loadMemoryAndRegisters(imageFileName);
+			assertEquals(program.toString(), TestProgram.dump(fromText), TestProgram.dump(fromImage));
+		}
+	}
+}
@@ -0,0 +1,96 @@
+/**
+ * 
+ */
+package simdeLite.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import simdeLite.MemoryTrace;
+import simdeLite.SIMDEException;
+import simdeLite.VLIWCode;
+import simdeLite.VLIWMachine;
+
+/**
+ * Comprueba que volver a sortear los fallos de caché sobre la traza de accesos a memoria ({@link MemoryTrace}) da los mismos ciclos
+ * que la simulación completa con la misma semilla, y que grabar la traza deja la máquina en el mismo estado que una ejecución normal
+ * @author Iván Castilla
+ *
+ */
+public class MemoryTraceTest {
+	/** Porcentaje de fallos de caché */
+	private final static int CACHE_MISS_RATE = 20;
+	/** Penalización de los fallos de caché */
+	private final static int PENALTY = 5;
+	/** Número de semillas con las que se prueba cada programa */
+	private final static int SEEDS = 10;
+	/** Programas de ejemplo */
+	private static List<TestProgram> programs;
+
+	@BeforeClass
+	public static void createPrograms() throws IOException {
+		programs = TestProgram.createAll();
+	}
+
+	@AfterClass
+	public static void deletePrograms() {
+		TestProgram.deleteAll(programs);
+	}
+
+	/**
+	 * Graba la traza de cada programa y compara los ciclos de cada semilla al sortear los fallos sobre la traza y al ejecutar el programa
+	 * completo
+	 * @param commonRandomNumbers Verdadero si cada instrucción sortea sus fallos con su propia secuencia de números aleatorios
+	 */
+	private static void compare(boolean commonRandomNumbers) throws IOException, SIMDEException {
+		for (TestProgram program : programs) {
+			final VLIWCode vliwCode = program.loadVLIWCode(program.loadCode());
+			final VLIWMachine machine = program.newVLIWMachine(CACHE_MISS_RATE, PENALTY);
+			machine.setCommonRandomNumbers(commonRandomNumbers);
+			program.reset(machine, 0);
+			final MemoryTrace trace = machine.record(vliwCode);
+			assertTrue(program.toString(), trace.isExact());
+			for (long seed = 0; seed < SEEDS; seed++) {
+				final String message = program + ", semilla " + seed;
+				program.reset(machine, seed);
+				final int replayed = machine.replay(trace);
+				program.reset(machine, seed);
+				assertEquals(message, machine.execute(vliwCode), replayed);
+			}
+		}
+	}
+
+	@Test
+	public void replayMatchesExecution() throws IOException, SIMDEException {
+		compare(false);
+	}
+
+	@Test
+	public void replayMatchesExecutionWithCommonRandomNumbers() throws IOException, SIMDEException {
+		compare(true);
+	}
+
+	/**
+	 * Sin fallos de caché, la traza tiene los mismos ciclos que la ejecución, y el estado final de la máquina es el mismo
+	 */
+	@Test
+	public void recordLeavesSameState() throws IOException, SIMDEException {
+		for (TestProgram program : programs) {
+			final VLIWCode vliwCode = program.loadVLIWCode(program.loadCode());
+			final VLIWMachine recorded = program.newVLIWMachine(0, PENALTY);
+			final VLIWMachine executed = program.newVLIWMachine(0, PENALTY);
+			program.reset(recorded, 0);
+			program.reset(executed, 0);
+			final MemoryTrace trace = recorded.record(vliwCode);
+			assertEquals(program.toString(), executed.execute(vliwCode), trace.replay(new boolean[trace.getNDraws()], PENALTY));
+			assertEquals(program.toString(), TestProgram.dump(executed), TestProgram.dump(recorded));
+		}
+	}
+}
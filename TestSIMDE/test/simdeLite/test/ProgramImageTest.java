@@ -0,0 +1,123 @@
+/**
+ * 
+ */
+package simdeLite.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.AfterClass;
+import org.junit.Assume;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import simdeLite.ProgramImage;
+import simdeLite.SIMDEException;
+import simdeLite.SequentialMachine;
+import simdeLite.VLIWCode;
+import simdeLite.VLIWMachine;
+
+/**
+ * Comprueba que los programas cargados desde su imagen precompilada ({@link ProgramImage}) se ejecutan igual que los cargados desde
+ * los fuentes, que la imagen se regenera cuando cambian los fuentes, y que la imagen tiene los mismos permisos que su fuente
+ * @author Iván Castilla
+ *
+ */
+public class ProgramImageTest {
+	/** Programas de ejemplo */
+	private static List<TestProgram> programs;
+
+	@BeforeClass
+	public static void createPrograms() throws IOException {
+		programs = TestProgram.createAll();
+	}
+
+	@AfterClass
+	public static void deletePrograms() {
+		TestProgram.deleteAll(programs);
+	}
+
+	/**
+	 * Borra la imagen precompilada de un programa, si existe
+	 * @param program Programa de ejemplo
+	 * @return Ruta de la imagen
+	 */
+	private static Path deleteImage(TestProgram program) throws IOException {
+		final Path imagePath = Paths.get(program.getVliwFileName() + ProgramImage.EXTENSION);
+		Files.deleteIfExists(imagePath);
+		return imagePath;
+	}
+
+	/**
+	 * Ejecuta un programa en la máquina VLIW
+	 * @param program Programa de ejemplo
+	 * @param vliwCode Código de instrucciones largas
+	 * @return Los ciclos de la ejecución seguidos del contenido final de memoria y registros
+	 */
+	private static String run(TestProgram program, VLIWCode vliwCode) throws IOException, SIMDEException {
+		final VLIWMachine machine = program.newVLIWMachine(0, 0);
+		program.reset(machine, 0);
+		return machine.execute(vliwCode) + "\n" + TestProgram.dump(machine);
+	}
+
+	@Test
+	public void imageRunsLikeSources() throws IOException, SIMDEException {
+		for (TestProgram program : programs) {
+			final Path imagePath = deleteImage(program);
+			final ProgramImage created = ProgramImage.load(program.getPlaFileName(), program.getVliwFileName());
+			assertTrue(program.toString(), created.isRegenerated());
+			assertTrue(program.toString(), Files.exists(imagePath));
+			final ProgramImage image = ProgramImage.load(program.getPlaFileName(), program.getVliwFileName());
+			assertFalse(program.toString(), image.isRegenerated());
+
+			final String expected = run(program, program.loadVLIWCode(program.loadCode()));
+			assertEquals(program.toString(), expected, run(program, created.getVLIWCode(program.getConfiguration(), created.getCode())));
+			assertEquals(program.toString(), expected, run(program, image.getVLIWCode(program.getConfiguration(), image.getCode())));
+
+			final SequentialMachine fromSources = program.newSequentialMachine(0, 0);
+			program.reset(fromSources, 0);
+			final SequentialMachine fromImage = program.newSequentialMachine(0, 0);
+			program.reset(fromImage, 0);
+			assertEquals(program.toString(), fromSources.execute(program.loadCode()), fromImage.execute(image.getCode()));
+			assertEquals(program.toString(), TestProgram.dump(fromSources), TestProgram.dump(fromImage));
+		}
+	}
+
+	@Test
+	public void changedSourcesRegenerateImage() throws IOException {
+		for (TestProgram program : programs) {
+			deleteImage(program);
+			ProgramImage.load(program.getPlaFileName(), program.getVliwFileName());
+			Files.write(Paths.get(program.getVliwFileName()), System.lineSeparator().getBytes(), StandardOpenOption.APPEND);
+			assertTrue(program.toString(), ProgramImage.load(program.getPlaFileName(), program.getVliwFileName()).isRegenerated());
+			assertFalse(program.toString(), ProgramImage.load(program.getPlaFileName(), program.getVliwFileName()).isRegenerated());
+		}
+	}
+
+	@Test
+	public void imageKeepsSourcePermissions() throws IOException {
+		for (TestProgram program : programs) {
+			final Path source = Paths.get(program.getVliwFileName());
+			Assume.assumeTrue(Files.getFileAttributeView(source, PosixFileAttributeView.class) != null);
+			for (String mode : new String[] {"rw-r--r--", "rw-rw-r--"}) {
+				final Set<PosixFilePermission> permissions = PosixFilePermissions.fromString(mode);
+				Files.setPosixFilePermissions(source, permissions);
+				final Path imagePath = deleteImage(program);
+				ProgramImage.load(program.getPlaFileName(), program.getVliwFileName());
+				assertEquals(program + ", " + mode, permissions, Files.getPosixFilePermissions(imagePath));
+			}
+		}
+	}
+}
@@ -0,0 +1,135 @@
+/**
+ * 
+ */
+package simdeLite.test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import simdeLite.MemoryTrace;
+import simdeLite.ReplicaRunner;
+import simdeLite.SIMDEException;
+import simdeLite.Statistics;
+import simdeLite.VLIWCode;
+import simdeLite.VLIWMachine;
+
+/**
+ * Comprueba que {@link ReplicaRunner} lanza las mismas réplicas y obtiene exactamente las mismas estadísticas con uno o varios hilos,
+ * también cuando lanza réplicas por lotes hasta alcanzar una precisión
+ * @author Iván Castilla
+ *
+ */
+public class ReplicaRunnerTest {
+	/** Porcentaje de fallos de caché */
+	private final static int CACHE_MISS_RATE = 20;
+	/** Penalización de los fallos de caché */
+	private final static int PENALTY = 5;
+	/** Número de réplicas del primer lote */
+	private final static int FIRST_BATCH = 10;
+	/** Número máximo de réplicas */
+	private final static int MAX_REPLICAS = 20000;
+	/** Semiamplitud máxima del IC95%, en tanto por 1 del promedio */
+	private final static double PRECISION = 0.001;
+	/** Semilla maestra */
+	private final static long MASTER_SEED = 1234;
+	/** Número de hilos con los que se compara la ejecución en un solo hilo */
+	private final static int THREADS = 4;
+	/** Programas de ejemplo */
+	private static List<TestProgram> programs;
+
+	@BeforeClass
+	public static void createPrograms() throws IOException {
+		programs = TestProgram.createAll();
+	}
+
+	@AfterClass
+	public static void deletePrograms() {
+		TestProgram.deleteAll(programs);
+	}
+
+	/**
+	 * Crea los simuladores de un programa, que sortean los fallos de caché sobre su traza de accesos a memoria
+	 * @param program Programa de ejemplo
+	 * @return Los simuladores del programa
+	 */
+	private static ReplicaRunner.WorkerFactory createWorkers(TestProgram program) throws IOException, SIMDEException {
+		final VLIWCode vliwCode = program.loadVLIWCode(program.loadCode());
+		final VLIWMachine machine = program.newVLIWMachine(CACHE_MISS_RATE, PENALTY);
+		program.reset(machine, 0);
+		final MemoryTrace trace = machine.record(vliwCode);
+		return index -> {
+			final VLIWMachine workerMachine = program.newVLIWMachine(CACHE_MISS_RATE, PENALTY);
+			return (replica, seed) -> {
+				workerMachine.setSeed(seed);
+				return workerMachine.replay(trace);
+			};
+		};
+	}
+
+	/**
+	 * Comprueba que dos resúmenes de las mismas réplicas son idénticos
+	 * @param message Mensaje si no lo son
+	 * @param expected Resumen esperado
+	 * @param actual Resumen obtenido
+	 */
+	private static void assertSameResults(String message, ReplicaRunner.Results expected, ReplicaRunner.Results actual) {
+		assertEquals(message, expected.getNReplicas(), actual.getNReplicas());
+		for (int s = 0; s < expected.getNConfigurations(); s++) {
+			assertSameAccumulator(message, expected.getCycles(s), actual.getCycles(s));
+			assertSameAccumulator(message, expected.getDifference(s), actual.getDifference(s));
+			final double[] qs = {0.0, 0.5, 0.9, 0.99, 1.0};
+			assertArrayEquals(message, expected.getHistogram(s).getQuantiles(qs), actual.getHistogram(s).getQuantiles(qs));
+		}
+	}
+
+	/**
+	 * Comprueba que dos acumuladores tienen exactamente los mismos valores, sin tolerancia
+	 * @param message Mensaje si no los tienen
+	 * @param expected Acumulador esperado
+	 * @param actual Acumulador obtenido
+	 */
+	private static void assertSameAccumulator(String message, Statistics.Accumulator expected, Statistics.Accumulator actual) {
+		assertEquals(message, expected.getCount(), actual.getCount());
+		assertEquals(message, expected.getMean(), actual.getMean(), 0.0);
+		assertEquals(message, expected.getVariance(), actual.getVariance(), 0.0);
+		assertEquals(message, expected.getMin(), actual.getMin(), 0.0);
+		assertEquals(message, expected.getMax(), actual.getMax(), 0.0);
+	}
+
+	/**
+	 * Lanza réplicas de cada programa hasta alcanzar la precisión con un hilo y con varios
+	 */
+	@Test
+	public void sameResultsWithAnyNumberOfThreads() throws IOException, SIMDEException {
+		for (TestProgram program : programs) {
+			final ReplicaRunner.WorkerFactory factory = createWorkers(program);
+			final ReplicaRunner.Results serial = new ReplicaRunner(1).run(FIRST_BATCH, MAX_REPLICAS, PRECISION, MASTER_SEED, factory);
+			final ReplicaRunner.Results parallel = new ReplicaRunner(THREADS).run(FIRST_BATCH, MAX_REPLICAS, PRECISION, MASTER_SEED, factory);
+			assertTrue(program.toString(), serial.getNReplicas() > FIRST_BATCH);
+			assertSameResults(program.toString(), serial, parallel);
+		}
+	}
+
+	/**
+	 * Lanza las mismas réplicas en varias configuraciones a la vez, con un hilo y con varios, y compara también sus diferencias
+	 */
+	@Test
+	public void sameResultsWithSeveralConfigurations() throws IOException, SIMDEException {
+		final ReplicaRunner.WorkerFactory[] factories = new ReplicaRunner.WorkerFactory[programs.size()];
+		for (int s = 0; s < factories.length; s++)
+			factories[s] = createWorkers(programs.get(s));
+		final ReplicaRunner.Results serial = new ReplicaRunner(1).run(FIRST_BATCH, MAX_REPLICAS, PRECISION, MASTER_SEED, factories);
+		for (int nThreads = 2; nThreads <= THREADS; nThreads++) {
+			final ReplicaRunner.Results parallel = new ReplicaRunner(nThreads).run(FIRST_BATCH, MAX_REPLICAS, PRECISION, MASTER_SEED, factories);
+			assertSameResults(nThreads + " hilos", serial, parallel);
+		}
+	}
+}
@@ -0,0 +1,105 @@
+/**
+ * 
+ */
+package simdeLite.test;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import simdeLite.MemoryTrace;
+import simdeLite.SIMDEException;
+import simdeLite.SetAssociativeCache;
+import simdeLite.StackDistance;
+import simdeLite.VLIWCode;
+import simdeLite.VLIWMachine;
+
+/**
+ * Comprueba que los fallos que se obtienen con las distancias de pila ({@link StackDistance}) coinciden, acceso a acceso, con los de una
+ * caché LRU ({@link SetAssociativeCache}) con el mismo tamaño de línea y número de conjuntos, y que sus ciclos coinciden con los de la
+ * máquina VLIW con ese modelo de caché
+ * @author Iván Castilla
+ *
+ */
+public class StackDistanceTest {
+	/** Penalización de los fallos de caché */
+	private final static int PENALTY = 5;
+	/** Tamaños de caché, en palabras */
+	private final static int[] SIZES = {8, 16, 64, 256};
+	/** Tamaños de línea, en palabras */
+	private final static int[] LINES = {1, 2, 4, 8};
+	/** Números de vías; 0 indica una caché totalmente asociativa */
+	private final static int[] WAYS = {1, 2, 4, 0};
+	/** Programas de ejemplo */
+	private static List<TestProgram> programs;
+
+	@BeforeClass
+	public static void createPrograms() throws IOException {
+		programs = TestProgram.createAll();
+	}
+
+	@AfterClass
+	public static void deletePrograms() {
+		TestProgram.deleteAll(programs);
+	}
+
+	/**
+	 * Graba la traza de un programa sin fallos de caché
+	 * @param program Programa de ejemplo
+	 * @param vliwCode Código de instrucciones largas del programa
+	 * @return La traza de los accesos a memoria del programa
+	 */
+	private static MemoryTrace record(TestProgram program, VLIWCode vliwCode) throws IOException, SIMDEException {
+		final VLIWMachine machine = program.newVLIWMachine(0, PENALTY);
+		program.reset(machine, 0);
+		return machine.record(vliwCode);
+	}
+
+	@Test
+	public void sameMissesAsLRUCache() throws IOException, SIMDEException {
+		for (TestProgram program : programs) {
+			final MemoryTrace trace = record(program, program.loadVLIWCode(program.loadCode()));
+			for (int line : LINES) {
+				for (int size : SIZES) {
+					for (int ways : WAYS) {
+						final int nWays = (ways == 0) ? size / line : ways;
+						if (line * nWays > size || nWays > SetAssociativeCache.MAX_ASSOCIATIVITY)
+							continue;
+						final StackDistance distance = new StackDistance(trace, line, size / (line * nWays));
+						final SetAssociativeCache cache = new SetAssociativeCache(size, line, nWays, SetAssociativeCache.ReplacementPolicy.LRU);
+						final String message = program + ", caché " + cache;
+						for (int i = 0; i < trace.getSize(); i++)
+							assertEquals(message + ", acceso " + i, cache.access(trace.getAddress(i), trace.isStore(i)), distance.getDistance(i) < nWays);
+						assertEquals(message, cache.getMisses(), distance.getMisses(nWays));
+					}
+				}
+			}
+		}
+	}
+
+	@Test
+	public void sameCyclesAsMachineWithCacheModel() throws IOException, SIMDEException {
+		for (TestProgram program : programs) {
+			final VLIWCode vliwCode = program.loadVLIWCode(program.loadCode());
+			final MemoryTrace trace = record(program, vliwCode);
+			final VLIWMachine machine = program.newVLIWMachine(0, PENALTY);
+			for (int line : LINES) {
+				final int size = 16 * line;
+				final int nWays = 2;
+				final SetAssociativeCache cache = new SetAssociativeCache(size, line, nWays, SetAssociativeCache.ReplacementPolicy.LRU);
+				machine.setCacheModel(cache);
+				program.reset(machine, 0);
+				final int cycles = machine.execute(vliwCode);
+				final StackDistance distance = new StackDistance(trace, line, size / (line * nWays));
+				final String message = program + ", caché " + cache;
+				assertEquals(message, cache.getMisses(), distance.getMisses(nWays));
+				assertEquals(message, cycles, distance.getCycles(nWays, PENALTY));
+			}
+		}
+	}
+}
@@ -0,0 +1,303 @@
+/**
+ * 
+ */
+package simdeLite.test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+
+import simdeLite.Code;
+import simdeLite.FunctionalUnit;
+import simdeLite.SIMDEException;
+import simdeLite.SequentialMachine;
+import simdeLite.VLIWCode;
+import simdeLite.VLIWMachine;
+import simdeLite.bench.BenchmarkFiles;
+import simdeLite.bench.BenchmarkProgram;
+
+/**
+ * Programa de ejemplo para las pruebas: código secuencial, planificación VLIW y contenido inicial de memoria y registros. Son el bucle de
+ * suma y multiplicación de vectores de los ejemplos de SIMDE, con una planificación sin empaquetar y otra empaquetada que usa predicados,
+ * y los programas de las pruebas de rendimiento ({@link BenchmarkProgram}), planificados para 1 y 2 UF de cada tipo
+ * @author Iván Castilla
+ *
+ */
+public final class TestProgram {
+	/** Latencias de las UF, las mismas que usan por defecto los simuladores */
+	public final static int[] LATENCIES = BenchmarkFiles.LATENCIES;
+	/** Tamaño del problema de los programas de las pruebas de rendimiento */
+	private final static int SIZE = 8;
+	/** Código secuencial del bucle de ejemplo */
+	private final static String LOOP_CODE = String.join("\n",
+			"// Suma de vectores con multiplicacion",
+			"\tADDI\tR2 R0 #10",
+			"\tADDI\tR3 R0 #0",
+			"\tADDI\tR4 R0 #16",
+			"LOOP:",
+			"\tLF\tF1 0(R2)",
+			"\tLF\tF2 16(R2)",
+			"\tADDF\tF3 F1 F2",
+			"\tMULTF\tF4 F3 F1",
+			"\tSF\tF4 40(R2)",
+			"\tADDI\tR2 R2 #1",
+			"\tADDI\tR3 R3 #1",
+			"\tBNE\tR3 R4 LOOP", "");
+	/** Contenido inicial de memoria y registros del bucle de ejemplo */
+	private final static String LOOP_MEMORY = String.join("\n",
+			"#GPR", "[1] 5 6", "#FPR", "[0] 1.5 2.5", "#MEM",
+			"[10] 1.0 2.0 3.0 4.0 5.0 6.0 7.0 8.0 9.0 10.0 11.0 12.0 13.0 14.0 15.0 16.0",
+			"[26] 0.5 0.5 0.5 0.5 0.5 0.5 0.5 0.5 0.5 0.5 0.5 0.5 0.5 0.5 0.5 0.5", "");
+	/** Planificación del bucle de ejemplo con una operación por instrucción larga */
+	private final static String LOOP_SEQUENTIAL = String.join("\n",
+			"29", "1 0 0 0 0", "1 1 0 0 0", "1 2 0 0 0", "1 3 0 0 0", "0", "0", "0", "1 4 0 0 0", "0", "0", "0", "1 5 0 0 0", "0", "0", "0",
+			"1 6 0 0 0", "0", "0", "0", "0", "0", "1 7 0 0 0", "0", "0", "0", "1 8 0 0 0", "1 9 0 0 0", "1 10 0 0 0 3 1 2", "0", "");
+	/**
+	 * Planificación empaquetada del bucle de ejemplo, con operaciones predicadas y en las ranuras de retardo del salto. Termina con
+	 * una instrucción larga vacía para que el salto finalice dentro del código, y no solo en el intérprete
+	 */
+	private final static String LOOP_PACKED = String.join("\n",
+			"13", "2 0 0 0 0 1 0 1 0", "1 2 0 0 0", "4 3 0 0 0 4 0 1 0 8 0 0 3 9 0 1 0", "0", "0", "0", "1 5 0 0 0", "0", "0", "0", "1 6 0 0 0",
+			"2 7 0 0 0 10 0 0 0 2 3 2", "0", "");
+
+	/** Nombre del programa, para los mensajes de las pruebas */
+	private final String name;
+	/** Directorio temporal donde están los ficheros */
+	private final Path dir;
+	/** Ficheros generados para un programa de las pruebas de rendimiento, o null si es el bucle de ejemplo */
+	private final BenchmarkFiles files;
+	/** Fichero con el código secuencial */
+	private final String plaFileName;
+	/** Fichero con la planificación VLIW */
+	private final String vliwFileName;
+	/** Fichero con el contenido inicial de memoria y registros */
+	private final String memFileName;
+	/** Configuración de UF para la que se hizo la planificación VLIW */
+	private final TreeMap<FunctionalUnit, Integer> configuration;
+	/** Número de palabras de memoria de las máquinas */
+	private final int memSize;
+
+	/**
+	 * Crea el bucle de ejemplo con una de sus planificaciones
+	 * @param name Nombre del programa
+	 * @param schedule Contenido del fichero con la planificación VLIW
+	 * @throws IOException Si no se pueden crear los ficheros
+	 */
+	private TestProgram(String name, String schedule) throws IOException {
+		this.name = name;
+		dir = Files.createTempDirectory("simdeTest");
+		files = null;
+		plaFileName = write("loop.pla", LOOP_CODE);
+		vliwFileName = write("loop.vliw", schedule);
+		memFileName = write("loop.mem", LOOP_MEMORY);
+		configuration = BenchmarkFiles.getConfiguration("2,2,2,2,2");
+		memSize = VLIWMachine.NMEM;
+	}
+
+	/**
+	 * Crea un programa de las pruebas de rendimiento
+	 * @param program Programa de las pruebas de rendimiento
+	 * @param config Configuración de la máquina VLIW, expresada como número de UF de cada tipo, separadas por comas
+	 * @throws IOException Si no se pueden crear los ficheros
+	 */
+	private TestProgram(BenchmarkProgram program, String config) throws IOException {
+		this.name = program.name() + " (" + config + ")";
+		dir = Files.createTempDirectory("simdeTest");
+		files = new BenchmarkFiles(program, SIZE, config);
+		plaFileName = files.getPlaFileName();
+		vliwFileName = files.getVliwFileName();
+		memFileName = files.getMemFileName();
+		configuration = files.getConfiguration();
+		memSize = Math.max(VLIWMachine.NMEM, files.getMemSize());
+	}
+
+	/**
+	 * Crea todos los programas de ejemplo
+	 * @return Los programas de ejemplo
+	 * @throws IOException Si no se pueden crear los ficheros
+	 */
+	public static List<TestProgram> createAll() throws IOException {
+		final List<TestProgram> programs = new ArrayList<>();
+		programs.add(new TestProgram("LOOP (secuencial)", LOOP_SEQUENTIAL));
+		programs.add(new TestProgram("LOOP (empaquetado)", LOOP_PACKED));
+		for (BenchmarkProgram program : BenchmarkProgram.values()) {
+			programs.add(new TestProgram(program, "1,1,1,1,1"));
+			programs.add(new TestProgram(program, "2,2,2,2,2"));
+		}
+		return programs;
+	}
+
+	/**
+	 * Borra los ficheros de una lista de programas
+	 * @param programs Programas de ejemplo
+	 */
+	public static void deleteAll(List<TestProgram> programs) {
+		for (TestProgram program : programs)
+			program.delete();
+	}
+
+	/**
+	 * Escribe un fichero en el directorio temporal
+	 * @param fileName Nombre del fichero
+	 * @param content Contenido del fichero
+	 * @return Ruta completa del fichero
+	 * @throws IOException Si no se puede escribir el fichero
+	 */
+	private String write(String fileName, String content) throws IOException {
+		final Path path = dir.resolve(fileName);
+		Files.write(path, content.getBytes(StandardCharsets.UTF_8));
+		return path.toString();
+	}
+
+	/**
+	 * Borra los ficheros del programa, incluidos los que hayan creado las pruebas en su directorio
+	 */
+	public void delete() {
+		if (files != null)
+			files.delete();
+		try {
+			Files.walk(dir).sorted((a, b) -> b.compareTo(a)).forEach(path -> path.toFile().delete());
+		} catch (IOException e) {
+			// Son ficheros temporales
+		}
+	}
+
+	/**
+	 * Devuelve la ruta de un fichero nuevo en el directorio temporal del programa
+	 * @param fileName Nombre del fichero
+	 * @return Ruta completa del fichero
+	 */
+	public String getTempFileName(String fileName) {
+		return dir.resolve(fileName).toString();
+	}
+
+	/**
+	 * Carga el código secuencial
+	 * @return El código secuencial
+	 * @throws IOException Si no se puede leer el fichero
+	 */
+	public Code loadCode() throws IOException {
+		return Code.loadCode(plaFileName);
+	}
+
+	/**
+	 * Carga la planificación VLIW
+	 * @param code Código secuencial
+	 * @return El código de instrucciones largas
+	 * @throws IOException Si no se puede leer el fichero
+	 */
+	public VLIWCode loadVLIWCode(Code code) throws IOException {
+		return VLIWCode.loadCode(configuration, code, vliwFileName);
+	}
+
+	/**
+	 * Crea una máquina VLIW con el tamaño de memoria que necesita el programa
+	 * @param cacheMissRate Porcentaje de fallos de caché
+	 * @param cacheMissPenalty Penalización de un fallo de caché
+	 * @return La máquina VLIW
+	 */
+	public VLIWMachine newVLIWMachine(int cacheMissRate, int cacheMissPenalty) {
+		return new VLIWMachine(LATENCIES, memSize, cacheMissRate, cacheMissPenalty);
+	}
+
+	/**
+	 * Crea una máquina secuencial con el tamaño de memoria que necesita el programa
+	 * @param cacheMissRate Porcentaje de fallos de caché
+	 * @param cacheMissPenalty Penalización de un fallo de caché
+	 * @return La máquina secuencial
+	 */
+	public SequentialMachine newSequentialMachine(int cacheMissRate, int cacheMissPenalty) {
+		return new SequentialMachine(LATENCIES, memSize, cacheMissRate, cacheMissPenalty);
+	}
+
+	/**
+	 * Prepara una máquina VLIW para una ejecución: la resetea, fija la semilla y carga el contenido inicial de memoria y registros
+	 * @param machine Máquina VLIW
+	 * @param seed Semilla de los fallos de caché
+	 * @throws IOException Si no se puede leer el fichero de memoria
+	 * @throws SIMDEException Si el fichero de memoria no es válido
+	 */
+	public void reset(VLIWMachine machine, long seed) throws IOException, SIMDEException {
+		machine.reset();
+		machine.setSeed(seed);
+		machine.loadMemoryAndRegisters(memFileName);
+	}
+
+	/**
+	 * Prepara una máquina secuencial para una ejecución: la resetea, fija la semilla y carga el contenido inicial de memoria y registros
+	 * @param machine Máquina secuencial
+	 * @param seed Semilla de los fallos de caché
+	 * @throws IOException Si no se puede leer el fichero de memoria
+	 * @throws SIMDEException Si el fichero de memoria no es válido
+	 */
+	public void reset(SequentialMachine machine, long seed) throws IOException, SIMDEException {
+		machine.reset();
+		machine.setSeed(seed);
+		machine.loadMemoryAndRegisters(memFileName);
+	}
+
+	/**
+	 * Devuelve el contenido de memoria y registros de una máquina VLIW, tal y como lo imprime la propia máquina
+	 * @param machine Máquina VLIW
+	 * @return Contenido de memoria y registros
+	 */
+	public static String dump(VLIWMachine machine) {
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		machine.printMemoryAndRegisters(new PrintStream(out));
+		return out.toString();
+	}
+
+	/**
+	 * Devuelve el contenido de memoria y registros de una máquina secuencial, tal y como lo imprime la propia máquina
+	 * @param machine Máquina secuencial
+	 * @return Contenido de memoria y registros
+	 */
+	public static String dump(SequentialMachine machine) {
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		machine.printMemoryAndRegisters(new PrintStream(out));
+		return out.toString();
+	}
+
+	/**
+	 * Devuelve el nombre del fichero con el código secuencial
+	 * @return Nombre del fichero con el código secuencial
+	 */
+	public String getPlaFileName() {
+		return plaFileName;
+	}
+
+	/**
+	 * Devuelve el nombre del fichero con la planificación VLIW
+	 * @return Nombre del fichero con la planificación VLIW
+	 */
+	public String getVliwFileName() {
+		return vliwFileName;
+	}
+
+	/**
+	 * Devuelve el nombre del fichero con el contenido inicial de memoria y registros
+	 * @return Nombre del fichero con el contenido inicial de memoria y registros
+	 */
+	public String getMemFileName() {
+		return memFileName;
+	}
+
+	/**
+	 * Devuelve la configuración de UF para la que se hizo la planificación VLIW
+	 * @return Configuración de UF para la que se hizo la planificación VLIW
+	 */
+	public TreeMap<FunctionalUnit, Integer> getConfiguration() {
+		return configuration;
+	}
+
+	@Override
+	public String toString() {
+		return name;
+	}
+}
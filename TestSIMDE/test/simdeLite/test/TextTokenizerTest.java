@@ -0,0 +1,198 @@
+/**
+ * 
+ */
+package simdeLite.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Scanner;
+import java.util.SplittableRandom;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import simdeLite.SIMDEException;
+import simdeLite.SequentialMachine;
+import simdeLite.TextTokenizer;
+import simdeLite.VLIWMachine;
+
+/**
+ * Comprueba que {@link TextTokenizer} acepta los mismos elementos que {@link Scanner} con {@link Locale#ENGLISH}, que es lo que usaban
+ * antes las máquinas para leer los ficheros de texto, y que obtiene los mismos valores, bit a bit
+ * @author Iván Castilla
+ *
+ */
+public class TextTokenizerTest {
+	/** Elementos poco habituales, pero que {@link Scanner} acepta o rechaza de alguna forma particular */
+	private final static String[] SPECIAL = {"NaN", "-NaN", "+NaN", "Infinity", "-Infinity", "+Infinity", "1e400", "-1e400", "1e-400",
+			"4.9E-324", "2.2250738585072014E-308", "1.7976931348623157E308", "0.1", "-0.0", "+0", "5.", ".5", "-.5", "5.e3", "1E+22",
+			"1e23", "123456789012345678901234567890", "9007199254740993", "0.30000000000000004", "1,000", "-1,000", "12,345,678.25",
+			"1,000e3", "1,00", "10,000,00", ",100", "0x1.8p1", "0x10", "1..2", "-", "+", ".", "e5", "1e", "1e+", "--1", "+-1", "Inf",
+			"nan", "infinity", "∞", "-∞", "١٢٣", "2147483647", "2147483648", "-2147483648", "-2147483649",
+			"007", "1_000", "abc", "#MEM", "[3]", "[x]"};
+	/** Programas de ejemplo */
+	private static List<TestProgram> programs;
+
+	@BeforeClass
+	public static void createPrograms() throws IOException {
+		programs = TestProgram.createAll();
+	}
+
+	@AfterClass
+	public static void deletePrograms() {
+		TestProgram.deleteAll(programs);
+	}
+
+	/**
+	 * Recorre un fichero a la vez con {@link TextTokenizer} y con {@link Scanner}, y comprueba que los dos reconocen los mismos enteros
+	 * y reales con los mismos valores
+	 * @param fileName Nombre del fichero
+	 * @return Número de elementos del fichero
+	 */
+	private static int compare(String fileName) throws IOException {
+		final TextTokenizer tokenizer = new TextTokenizer(fileName);
+		int tokens = 0;
+		try (Scanner scanner = new Scanner(new File(fileName))) {
+			scanner.useLocale(Locale.ENGLISH);
+			while (scanner.hasNext()) {
+				assertTrue(fileName, tokenizer.hasNext());
+				final String message = fileName + ", elemento " + tokens;
+				final boolean isInt = scanner.hasNextInt();
+				final boolean isDouble = scanner.hasNextDouble();
+				assertEquals(message, isInt, tokenizer.hasNextInt());
+				assertEquals(message, isDouble, tokenizer.hasNextDouble());
+				if (isInt) {
+					assertEquals(message, scanner.nextInt(), tokenizer.nextInt());
+				}
+				else if (isDouble) {
+					final double expected = scanner.nextDouble();
+					final double value = tokenizer.nextDouble();
+					assertEquals(message + " (" + expected + " vs " + value + ")", Double.doubleToRawLongBits(expected), Double.doubleToRawLongBits(value));
+				}
+				else {
+					scanner.next();
+					tokenizer.skip();
+				}
+				tokens++;
+			}
+			assertFalse(fileName, tokenizer.hasNext());
+		}
+		return tokens;
+	}
+
+	/**
+	 * Escribe un fichero de texto con la codificación por defecto, que es la que usa {@link Scanner}
+	 * @param fileName Nombre del fichero
+	 * @param lines Líneas del fichero
+	 */
+	private static void write(String fileName, List<String> lines) throws IOException {
+		Files.write(Paths.get(fileName), lines, Charset.defaultCharset());
+	}
+
+	/**
+	 * Devuelve los elementos de {@link #SPECIAL} que se pueden escribir con la codificación por defecto
+	 * @return Los elementos que se pueden escribir
+	 */
+	private static List<String> getSpecial() {
+		final CharsetEncoder encoder = Charset.defaultCharset().newEncoder();
+		final List<String> special = new ArrayList<>();
+		for (String token : SPECIAL)
+			if (encoder.canEncode(token))
+				special.add(token);
+		return special;
+	}
+
+	@Test
+	public void sameValuesInExampleFiles() throws IOException {
+		for (TestProgram program : programs) {
+			assertTrue(program.toString(), compare(program.getMemFileName()) > 0);
+			assertTrue(program.toString(), compare(program.getVliwFileName()) > 0);
+		}
+	}
+
+	@Test
+	public void sameValuesInSpecialTokens() throws IOException {
+		final String fileName = programs.get(0).getTempFileName("special.mem");
+		final List<String> special = getSpecial();
+		write(fileName, special);
+		assertEquals(special.size(), compare(fileName));
+		// Los mismos elementos, seguidos unos de otros en una sola línea
+		write(fileName, Arrays.asList(String.join(" ", special)));
+		assertEquals(special.size(), compare(fileName));
+	}
+
+	@Test
+	public void sameValuesInRandomTokens() throws IOException {
+		final SplittableRandom rnd = new SplittableRandom(1);
+		final List<String> special = getSpecial();
+		final List<String> lines = new ArrayList<>();
+		for (int i = 0; i < 5000; i++) {
+			switch (rnd.nextInt(6)) {
+			case 0:
+				lines.add(Double.toString(Double.longBitsToDouble(rnd.nextLong())));
+				break;
+			case 1:
+				lines.add(Double.toString(rnd.nextDouble(-1e6, 1e6)));
+				break;
+			case 2:
+				lines.add(String.format(Locale.ENGLISH, "%,." + rnd.nextInt(6) + "f", rnd.nextDouble(-1e9, 1e9)));
+				break;
+			case 3:
+				lines.add(String.format(Locale.ENGLISH, "%,d", rnd.nextLong(-10000000000L, 10000000000L)));
+				break;
+			case 4:
+				lines.add(Integer.toString(rnd.nextInt()));
+				break;
+			default:
+				lines.add(special.get(rnd.nextInt(special.size())));
+				break;
+			}
+		}
+		final String fileName = programs.get(0).getTempFileName("random.mem");
+		write(fileName, lines);
+		assertEquals(lines.size(), compare(fileName));
+	}
+
+	/**
+	 * Los valores no finitos que escribe la propia máquina se vuelven a leer, sin cortar la secuencia de direcciones en la que aparecen
+	 */
+	@Test
+	public void machinesReadTheirOwnOutput() throws IOException, SIMDEException {
+		final TestProgram program = programs.get(0);
+		final String fileName = program.getTempFileName("infinity.mem");
+		final String printedFileName = program.getTempFileName("printed.mem");
+		write(fileName, Arrays.asList("#GPR", "[1] 3 1,000 5", "#FPR", "[0] 1e400 5.0 -1e400 2.5", "#MEM", "[0] 1e400 5.0 -1e400 NaN 1,000.5 7.0"));
+		final VLIWMachine machine = new VLIWMachine(TestProgram.LATENCIES, 16, 0, 0);
+		machine.loadMemoryAndRegisters(fileName);
+		final String dump = TestProgram.dump(machine);
+		try (PrintStream out = new PrintStream(printedFileName)) {
+			machine.printMemoryAndRegisters(out);
+		}
+		final VLIWMachine reloaded = new VLIWMachine(TestProgram.LATENCIES, 16, 0, 0);
+		reloaded.loadMemoryAndRegisters(printedFileName);
+		assertEquals(dump, TestProgram.dump(reloaded));
+		assertTrue(dump, dump.contains("-Infinity") && dump.contains("NaN") && dump.contains("1000.5") && dump.contains("7.0"));
+
+		final SequentialMachine sequential = new SequentialMachine(TestProgram.LATENCIES, 16, 0, 0);
+		sequential.loadMemoryAndRegisters(printedFileName);
+		assertEquals(dump, TestProgram.dump(sequential));
+
+		// NaN nunca es igual a sí mismo, así que es la única diferencia; si se cortara la secuencia, tampoco se compararía 7.0
+		write(fileName, Arrays.asList("#GPR", "[1] 3 1,000 5", "#FPR", "[0] 1e400 5.0 -1e400 2.5", "#MEM", "[0] Infinity 5.0 -Infinity NaN 1,000.5 8.0"));
+		assertEquals(2, machine.compareMemoryAndRegisters(fileName));
+	}
+}
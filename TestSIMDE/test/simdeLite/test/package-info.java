@@ -0,0 +1,13 @@
+/**
+ * Pruebas de equivalencia de los simuladores, basadas en JUnit 4 (https://junit.org/junit4). Cada prueba ejecuta los mismos programas 
+ * por dos caminos que deben dar exactamente el mismo resultado (por ejemplo, el intérprete y los bloques compilados, o una réplica completa 
+ * y su repetición sobre la traza de accesos a memoria) y comprueba que coinciden. Los programas son los de {@link simdeLite.test.TestProgram}.
+ * 
+ * Para compilarlas hay que añadir a la carpeta "jar" las librerías junit y hamcrest-core, e incluir como carpetas de fuentes "test" y 
+ * "bench" (de la que solo se usan los generadores de programas, que no necesitan JMH). Se lanzan con:
+ * 
+ * java -cp bin:jar/* org.junit.runner.JUnitCore simdeLite.test.CompiledBlocksTest ...
+ * @author Iván Castilla
+ *
+ */
+package simdeLite.test;